@@ -0,0 +1,146 @@
+package org.spongepowered.cookbook.plugin;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.scheduler.Task;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.chat.ChatTypes;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Changes blocks in the world over several ticks.
+ *
+ * <p>Each tick goes through at most a fixed number of positions, whether it
+ * places a block at them or not, and stops early once it has used up its
+ * time budget. The owner is shown the progress on their action bar.</p>
+ *
+ * <p>The task must be submitted as a synchronous task that runs every tick.</p>
+ */
+public abstract class BlockChangeTask implements Consumer<Task> {
+
+    // How many positions are gone through between checks of the time budget
+    private static final int TIME_CHECK_INTERVAL = 32;
+    // How often the owner is told about the progress, in ticks
+    private static final int PROGRESS_INTERVAL = 20;
+
+    private final UUID owner;
+    private final String action;
+    private final int blocksPerTick;
+    private final long tickBudget;
+
+    private boolean done;
+    private int progress;
+    private int ticks;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a new task.
+     *
+     * @param owner The player to report progress to
+     * @param action What the task does, shown along with its progress
+     * @param blocksPerTick The most positions to go through in a single tick
+     * @param tickBudget The most time to spend in a single tick, in nanoseconds
+     */
+    protected BlockChangeTask(UUID owner, String action, int blocksPerTick, long tickBudget) {
+        this.owner = owner;
+        this.action = action;
+        this.blocksPerTick = blocksPerTick;
+        this.tickBudget = tickBudget;
+    }
+
+    /**
+     * Stops the task on its next tick. Blocks that have already been placed
+     * stay where they are.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isDone() {
+        return this.done;
+    }
+
+    /**
+     * Gets the number of the positions counted by {@link #getTotal()} that
+     * have been dealt with so far.
+     *
+     * @return The number of positions
+     */
+    public int getProgress() {
+        return this.progress;
+    }
+
+    /**
+     * Gets the number of positions this task deals with in total.
+     *
+     * @return The number of positions
+     */
+    public abstract int getTotal();
+
+    /**
+     * Advances the task by one position.
+     *
+     * @return Whether the position is one of those counted by
+     *     {@link #getTotal()}, whether or not a block was placed there
+     */
+    protected abstract boolean step();
+
+    /**
+     * Checks whether all blocks have been placed.
+     *
+     * @return Whether the task is complete
+     */
+    protected abstract boolean isComplete();
+
+    /**
+     * Called once all blocks have been placed.
+     *
+     * @return The message to send to the owner
+     */
+    protected abstract Text onComplete();
+
+    /**
+     * Called when the task is cancelled.
+     */
+    protected void onCancel() {
+    }
+
+    @Override
+    public void accept(Task task) {
+        if (this.cancelled) {
+            onCancel();
+            finish(task, Text.of(TextColors.YELLOW, this.action + " cancelled after " + this.progress + " of " + getTotal() + " blocks."));
+            return;
+        }
+        final long deadline = System.nanoTime() + this.tickBudget;
+        // Every step counts, even the ones that skip a position or move on to
+        // the next section, since they take time as well
+        int steps = 0;
+        while (steps < this.blocksPerTick && !isComplete()) {
+            if (steps % TIME_CHECK_INTERVAL == 0 && steps > 0 && System.nanoTime() >= deadline) {
+                break;
+            }
+            steps++;
+            if (step()) {
+                this.progress++;
+            }
+        }
+        if (isComplete()) {
+            finish(task, onComplete());
+        } else if (++this.ticks % PROGRESS_INTERVAL == 0) {
+            final int total = getTotal();
+            // A masked paste may select nothing, but still has to go through its region
+            final long percent = total == 0 ? 100 : this.progress * 100L / total;
+            Sponge.getServer().getPlayer(this.owner).ifPresent(player -> player.sendMessage(ChatTypes.ACTION_BAR,
+                    Text.of(TextColors.GRAY, this.action + "... " + percent + "% (" + this.progress + "/" + total + ")")));
+        }
+    }
+
+    private void finish(Task task, Text message) {
+        this.done = true;
+        task.cancel();
+        Sponge.getServer().getPlayer(this.owner).ifPresent(player -> player.sendMessage(message));
+    }
+}
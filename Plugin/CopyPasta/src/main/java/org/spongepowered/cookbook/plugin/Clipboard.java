@@ -0,0 +1,231 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.tileentity.TileEntityArchetype;
+import org.spongepowered.api.entity.EntityArchetype;
+import org.spongepowered.api.util.PositionOutOfBoundsException;
+import org.spongepowered.api.world.extent.ArchetypeVolume;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A copied or loaded region, stored as a palette of block states and one
+ * palette id per block.
+ *
+ * <p>The palette ids are packed with only as many bits as the palette needs,
+ * so a region made of a handful of different blocks takes a few bits per
+ * block, rather than a reference to a block state per block. Tile entities
+ * are only stored for the positions that have one, and entities are stored
+ * as archetypes along with their exact position.</p>
+ *
+ * <p>Positions are relative to the point the region was copied from, the same
+ * way they are for an {@link ArchetypeVolume}. Blocks are laid out x first,
+ * then z, then y, which is also the order schematics store them in, so
+ * schematic data can be streamed straight in and out of a clipboard.</p>
+ *
+ * <p>Clipboards are never modified after they have been built. Commands that
+ * change a clipboard create a new one instead, which is what makes it safe to
+ * hand them to async tasks.</p>
+ */
+public final class Clipboard {
+
+    // A rough guess, tile entity and entity data varies a lot
+    private static final long TILE_ENTITY_SIZE = 1024;
+    private static final long ENTITY_SIZE = 1024;
+
+    private final Vector3i min;
+    private final Vector3i max;
+    private final Vector3i size;
+    private final List<BlockState> palette;
+    private final PackedIntArray blocks;
+    private final Map<Vector3i, TileEntityArchetype> tileEntities;
+    private final ListMultimap<Vector3d, EntityArchetype> entities;
+
+    /**
+     * Creates a new clipboard without entities. The block array is used as
+     * is, and must not be modified by the caller afterwards.
+     *
+     * @param min The minimum position, relative to the origin
+     * @param size The size of the region
+     * @param palette The block states referenced by the block array
+     * @param blocks The palette id of every block, x first, then z, then y
+     * @param tileEntities The tile entities, by position relative to the origin
+     */
+    public Clipboard(Vector3i min, Vector3i size, List<BlockState> palette, PackedIntArray blocks,
+            Map<Vector3i, TileEntityArchetype> tileEntities) {
+        this(min, size, palette, blocks, tileEntities, ImmutableListMultimap.of());
+    }
+
+    /**
+     * Creates a new clipboard. The block array is used as is, and must not be
+     * modified by the caller afterwards.
+     *
+     * @param min The minimum position, relative to the origin
+     * @param size The size of the region
+     * @param palette The block states referenced by the block array
+     * @param blocks The palette id of every block, x first, then z, then y
+     * @param tileEntities The tile entities, by position relative to the origin
+     * @param entities The entities, by position relative to the origin
+     */
+    public Clipboard(Vector3i min, Vector3i size, List<BlockState> palette, PackedIntArray blocks,
+            Map<Vector3i, TileEntityArchetype> tileEntities, ListMultimap<Vector3d, EntityArchetype> entities) {
+        if (blocks.length() != size.getX() * size.getY() * size.getZ()) {
+            throw new IllegalArgumentException("Expected " + size.getX() * size.getY() * size.getZ() + " blocks, got " + blocks.length());
+        }
+        this.min = min;
+        this.max = min.add(size).sub(Vector3i.ONE);
+        this.size = size;
+        this.palette = ImmutableList.copyOf(palette);
+        this.blocks = blocks;
+        this.tileEntities = ImmutableMap.copyOf(tileEntities);
+        this.entities = ImmutableListMultimap.copyOf(entities);
+    }
+
+    /**
+     * Copies an archetype volume into a new clipboard.
+     *
+     * @param volume The volume to copy
+     * @param entities The entities to keep along with the blocks, by
+     *     position relative to the origin
+     * @return The new clipboard
+     */
+    public static Clipboard copyOf(ArchetypeVolume volume, ListMultimap<Vector3d, EntityArchetype> entities) {
+        final Vector3i min = volume.getBlockMin();
+        final Vector3i max = volume.getBlockMax();
+        final Vector3i size = volume.getBlockSize();
+        final Map<BlockState, Integer> ids = new HashMap<>();
+        final ImmutableList.Builder<BlockState> palette = ImmutableList.builder();
+        // Start out small and widen the array whenever the palette outgrows it
+        PackedIntArray blocks = new PackedIntArray(1, size.getX() * size.getY() * size.getZ());
+        int index = 0;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    final BlockState state = volume.getBlock(x, y, z);
+                    Integer id = ids.get(state);
+                    if (id == null) {
+                        id = ids.size();
+                        ids.put(state, id);
+                        palette.add(state);
+                        if (id > blocks.getMaxValue()) {
+                            blocks = blocks.resize(blocks.getBits() + 1);
+                        }
+                    }
+                    blocks.set(index++, id);
+                }
+            }
+        }
+        return new Clipboard(min, size, palette.build(), blocks, volume.getTileEntityArchetypes(), entities);
+    }
+
+    public Vector3i getMin() {
+        return this.min;
+    }
+
+    public Vector3i getMax() {
+        return this.max;
+    }
+
+    public Vector3i getSize() {
+        return this.size;
+    }
+
+    /**
+     * Gets the number of blocks in this clipboard.
+     *
+     * @return The number of blocks
+     */
+    public int getVolume() {
+        return this.blocks.length();
+    }
+
+    public List<BlockState> getPalette() {
+        return this.palette;
+    }
+
+    /**
+     * Gets the packed palette ids. The array must not be modified.
+     *
+     * @return The palette ids
+     */
+    PackedIntArray getPackedBlocks() {
+        return this.blocks;
+    }
+
+    /**
+     * Gets the approximate number of bytes this clipboard keeps on the heap.
+     * Block states are shared with the registry, so only the references to
+     * them are counted.
+     *
+     * @return The size in bytes
+     */
+    public long getSizeInBytes() {
+        return this.blocks.getSizeInBytes() + 8L * this.palette.size() + TILE_ENTITY_SIZE * this.tileEntities.size()
+                + ENTITY_SIZE * this.entities.size();
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return x >= this.min.getX() && y >= this.min.getY() && z >= this.min.getZ()
+                && x <= this.max.getX() && y <= this.max.getY() && z <= this.max.getZ();
+    }
+
+    /**
+     * Gets the index of a position in the block array.
+     *
+     * @param x The x coordinate, relative to the origin
+     * @param y The y coordinate, relative to the origin
+     * @param z The z coordinate, relative to the origin
+     * @return The index
+     */
+    public int getIndex(int x, int y, int z) {
+        if (!contains(x, y, z)) {
+            throw new PositionOutOfBoundsException(new Vector3i(x, y, z), this.min, this.max);
+        }
+        return ((y - this.min.getY()) * this.size.getZ() + (z - this.min.getZ())) * this.size.getX() + (x - this.min.getX());
+    }
+
+    /**
+     * Gets the palette id of the block at an index of the block array.
+     *
+     * @param index The index
+     * @return The palette id
+     */
+    public int getPaletteId(int index) {
+        return this.blocks.get(index);
+    }
+
+    public BlockState getBlock(int index) {
+        return this.palette.get(this.blocks.get(index));
+    }
+
+    public BlockState getBlock(int x, int y, int z) {
+        return getBlock(getIndex(x, y, z));
+    }
+
+    public Optional<TileEntityArchetype> getTileEntityArchetype(int x, int y, int z) {
+        return Optional.ofNullable(this.tileEntities.get(new Vector3i(x, y, z)));
+    }
+
+    public Map<Vector3i, TileEntityArchetype> getTileEntityArchetypes() {
+        return this.tileEntities;
+    }
+
+    /**
+     * Gets the entities, by their position relative to the origin. Several
+     * entities may share a position.
+     *
+     * @return The entities
+     */
+    public ListMultimap<Vector3d, EntityArchetype> getEntityArchetypes() {
+        return this.entities;
+    }
+}
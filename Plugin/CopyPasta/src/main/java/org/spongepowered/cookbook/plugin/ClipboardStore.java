@@ -0,0 +1,405 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import org.slf4j.Logger;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.tileentity.TileEntityArchetype;
+import org.spongepowered.api.data.persistence.InvalidDataException;
+import org.spongepowered.api.entity.EntityArchetype;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps the clipboards of all players within a memory budget.
+ *
+ * <p>Clipboards are kept on the heap in least recently used order. Once they
+ * take up more than the budget, the least recently used ones are written to
+ * files in the spill directory and dropped from the heap. They are read back
+ * in the next time they are used. Clipboards never change, so each one is only
+ * written once, and its file is reused if it has to be spilled again.</p>
+ *
+ * <p>Spill files are written and read on the executor the store is given,
+ * never on the thread that calls into the store. A clipboard stays on the
+ * heap until its file has been written, and {@link #get(UUID)} hands out a
+ * future that completes once a spilled clipboard has been read back.</p>
+ *
+ * <p>Clipboards loaded from the {@link SchematicLibrary} are shared with the
+ * library and everyone else who loaded the same schematic. The library
+ * already accounts for them, so they don't count against the budget of the
+ * store and are never spilled. The store holds their library reference and
+ * releases it once the clipboard is replaced or removed.</p>
+ *
+ * <p>All methods are thread safe, so async tasks can use the store as well as
+ * the main thread.</p>
+ */
+public final class ClipboardStore {
+
+    private static final int FORMAT_VERSION = 2;
+    private static final String FILE_EXTENSION = ".clipboard";
+    // The block data is copied through a buffer of 1MiB
+    private static final int WINDOW_LONGS = 1 << 17;
+
+    private final Path spillDir;
+    private final long budget;
+    private final SchematicLibrary library;
+    private final Executor executor;
+    private final Logger logger;
+    // Access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
+
+    /**
+     * Creates a new store. Files left in the spill directory by a previous
+     * run are deleted.
+     *
+     * @param spillDir The directory to spill clipboards to
+     * @param budget The most bytes to keep on the heap
+     * @param library The library to release shared clipboards to
+     * @param executor The executor to write and read spill files on
+     * @param logger The logger to report spill failures to
+     * @throws IOException If the spill directory couldn't be prepared
+     */
+    public ClipboardStore(Path spillDir, long budget, SchematicLibrary library, Executor executor, Logger logger) throws IOException {
+        this.spillDir = spillDir;
+        this.budget = budget;
+        this.library = library;
+        this.executor = executor;
+        this.logger = logger;
+        Files.createDirectories(spillDir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDir, "*" + FILE_EXTENSION)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Gets the clipboard of a player. The future is already complete unless
+     * the clipboard was spilled, in which case it completes on the executor
+     * once the clipboard has been read back. It never completes
+     * exceptionally, a clipboard that can't be read back is removed.
+     *
+     * @param owner The player
+     * @return The clipboard, or null if the player has none
+     */
+    public synchronized CompletableFuture<Clipboard> get(UUID owner) {
+        final Entry entry = this.entries.get(owner);
+        if (entry == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (entry.clipboard != null) {
+            return CompletableFuture.completedFuture(entry.clipboard);
+        }
+        if (entry.restore == null) {
+            final Path file = entry.file;
+            entry.restore = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return read(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, this.executor).handle((clipboard, e) -> {
+                synchronized (this) {
+                    entry.restore = null;
+                    if (entry.removed) {
+                        // Replaced or removed while it was read
+                        return null;
+                    }
+                    if (e != null) {
+                        this.logger.error("Failed to read the spilled clipboard of " + owner + " from " + file, e);
+                        remove(owner);
+                        return null;
+                    }
+                    entry.clipboard = clipboard;
+                    this.residentBytes += entry.size;
+                    trim();
+                    return clipboard;
+                }
+            });
+        }
+        return entry.restore;
+    }
+
+    /**
+     * Sets the clipboard of a player, replacing the previous one.
+     *
+     * @param owner The player
+     * @param clipboard The clipboard, or null to clear it
+     */
+    public synchronized void put(UUID owner, Clipboard clipboard) {
+        put(owner, clipboard, null);
+    }
+
+    /**
+     * Sets the clipboard of a player to one acquired from the library,
+     * replacing the previous one. The store takes over the reference to the
+     * clipboard.
+     *
+     * @param owner The player
+     * @param clipboard The clipboard
+     * @param libraryHash The hash of the schematic the clipboard was
+     *     acquired for, or null if it isn't shared with the library
+     */
+    public synchronized void put(UUID owner, Clipboard clipboard, String libraryHash) {
+        remove(owner);
+        if (clipboard != null) {
+            final Entry entry = new Entry(clipboard, libraryHash);
+            this.entries.put(owner, entry);
+            this.residentBytes += entry.size;
+            trim();
+        }
+    }
+
+    /**
+     * Removes the clipboard of a player, along with its spill file.
+     *
+     * @param owner The player
+     */
+    public synchronized void remove(UUID owner) {
+        final Entry entry = this.entries.remove(owner);
+        if (entry == null) {
+            return;
+        }
+        entry.removed = true;
+        if (entry.clipboard != null) {
+            this.residentBytes -= entry.size;
+        }
+        if (entry.file != null) {
+            delete(entry.file);
+        }
+        if (entry.libraryHash != null) {
+            this.library.release(entry.libraryHash);
+        }
+    }
+
+    /**
+     * Removes all clipboards and deletes their spill files.
+     */
+    public synchronized void clear() {
+        for (UUID owner : new ArrayList<>(this.entries.keySet())) {
+            remove(owner);
+        }
+    }
+
+    /**
+     * Gets the approximate number of bytes the clipboards that are currently
+     * on the heap take up.
+     *
+     * @return The size in bytes
+     */
+    public synchronized long getResidentBytes() {
+        return this.residentBytes;
+    }
+
+    private void trim() {
+        // The most recently used clipboard is the one that is about to be
+        // used, so it is never spilled, even if it is larger than the budget
+        final Iterator<Map.Entry<UUID, Entry>> iterator = this.entries.entrySet().iterator();
+        int remaining = this.entries.size();
+        // Clipboards that are being spilled will leave the heap soon
+        long bytes = this.residentBytes;
+        while (bytes > this.budget && remaining-- > 1) {
+            final Map.Entry<UUID, Entry> next = iterator.next();
+            final Entry entry = next.getValue();
+            if (entry.clipboard == null || entry.libraryHash != null) {
+                continue;
+            }
+            bytes -= entry.size;
+            if (entry.spilling) {
+                continue;
+            }
+            if (entry.file != null) {
+                entry.clipboard = null;
+                this.residentBytes -= entry.size;
+            } else {
+                spill(next.getKey(), entry);
+            }
+        }
+    }
+
+    /**
+     * Writes the spill file of a clipboard on the executor. The clipboard
+     * only leaves the heap once the file has been written, by the trim that
+     * follows.
+     */
+    private void spill(UUID owner, Entry entry) {
+        final Path file = this.spillDir.resolve(owner + "-" + System.nanoTime() + FILE_EXTENSION);
+        final Clipboard clipboard = entry.clipboard;
+        entry.spilling = true;
+        this.executor.execute(() -> {
+            boolean written = false;
+            try {
+                write(file, clipboard);
+                written = true;
+            } catch (IOException | RuntimeException e) {
+                this.logger.warn("Failed to spill the clipboard of " + owner + " to " + file, e);
+            }
+            synchronized (this) {
+                entry.spilling = false;
+                // Looking the entry up would count as a use and keep it on the heap
+                if (!written || entry.removed) {
+                    delete(file);
+                    return;
+                }
+                entry.file = file;
+                trim();
+            }
+        });
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            this.logger.warn("Failed to delete spilled clipboard " + file, e);
+        }
+    }
+
+    /*
+     * The spill file starts with the length of a header holding the size,
+     * palette, tile entities and entities of the clipboard, followed by the
+     * packed block data as is, so it can be copied straight in and out of
+     * the file through a small buffer.
+     */
+
+    private static void write(Path file, Clipboard clipboard) throws IOException {
+        final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        final NbtOutputStream out = new NbtOutputStream(header);
+        final PackedIntArray blocks = clipboard.getPackedBlocks();
+        out.writeInt(FORMAT_VERSION);
+        out.writeVector(clipboard.getMin());
+        out.writeVector(clipboard.getSize());
+        out.writeInt(blocks.getBits());
+        final List<BlockState> palette = clipboard.getPalette();
+        out.writeInt(palette.size());
+        for (BlockState state : palette) {
+            out.writeUTF(state.getId());
+        }
+        final Map<Vector3i, TileEntityArchetype> tileEntities = clipboard.getTileEntityArchetypes();
+        out.writeInt(tileEntities.size());
+        for (Map.Entry<Vector3i, TileEntityArchetype> entry : tileEntities.entrySet()) {
+            out.writeVector(entry.getKey());
+            out.writeArchetype(entry.getValue());
+        }
+        final ListMultimap<Vector3d, EntityArchetype> entities = clipboard.getEntityArchetypes();
+        out.writeInt(entities.size());
+        for (Map.Entry<Vector3d, EntityArchetype> entry : entities.entries()) {
+            out.writePosition(entry.getKey());
+            out.writeEntityArchetype(entry.getValue());
+        }
+        out.flush();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            final ByteBuffer headerLength = ByteBuffer.allocate(Integer.BYTES);
+            headerLength.putInt(header.size()).flip();
+            writeFully(channel, headerLength);
+            writeFully(channel, ByteBuffer.wrap(header.toByteArray()));
+            final ByteBuffer window = ByteBuffer.allocate(Math.min(WINDOW_LONGS, blocks.getDataLength()) * Long.BYTES);
+            for (int offset = 0; offset < blocks.getDataLength(); offset += WINDOW_LONGS) {
+                final int count = Math.min(WINDOW_LONGS, blocks.getDataLength() - offset);
+                window.clear();
+                blocks.writeTo(window.asLongBuffer(), offset, count);
+                window.limit(count * Long.BYTES);
+                writeFully(channel, window);
+            }
+        }
+    }
+
+    private static Clipboard read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer headerLength = ByteBuffer.allocate(Integer.BYTES);
+            readFully(channel, headerLength);
+            final ByteBuffer header = ByteBuffer.allocate(headerLength.getInt(0));
+            readFully(channel, header);
+            header.flip();
+            final NbtInputStream in = new NbtInputStream(new ByteBufferInputStream(header));
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new InvalidDataException("Unknown clipboard format");
+            }
+            final Vector3i min = in.readVector();
+            final Vector3i size = in.readVector();
+            final int bits = in.readInt();
+            final List<BlockState> palette = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                palette.add(in.readBlockState());
+            }
+            final Map<Vector3i, TileEntityArchetype> tileEntities = new HashMap<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                tileEntities.put(in.readVector(), in.readArchetype());
+            }
+            final ListMultimap<Vector3d, EntityArchetype> entities = ArrayListMultimap.create();
+            for (int i = in.readInt(); i > 0; i--) {
+                entities.put(in.readPosition(), in.readEntityArchetype());
+            }
+
+            final PackedIntArray blocks = new PackedIntArray(bits, size.getX() * size.getY() * size.getZ());
+            final ByteBuffer window = ByteBuffer.allocate(Math.min(WINDOW_LONGS, blocks.getDataLength()) * Long.BYTES);
+            for (int offset = 0; offset < blocks.getDataLength(); offset += WINDOW_LONGS) {
+                final int count = Math.min(WINDOW_LONGS, blocks.getDataLength() - offset);
+                window.clear().limit(count * Long.BYTES);
+                readFully(channel, window);
+                window.flip();
+                blocks.readFrom(window.asLongBuffer(), offset, count);
+            }
+            return new Clipboard(min, size, palette, blocks, tileEntities, entities);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final long size;
+        // Null unless the clipboard is shared with the library
+        private final String libraryHash;
+        // Null while the clipboard is spilled
+        private Clipboard clipboard;
+        // Null until the clipboard is spilled for the first time
+        private Path file;
+        // Whether the spill file is being written
+        private boolean spilling;
+        // Null unless the clipboard is being read back
+        private CompletableFuture<Clipboard> restore;
+        // Whether the entry was replaced or removed from the store
+        private boolean removed;
+
+        private Entry(Clipboard clipboard, String libraryHash) {
+            this.clipboard = clipboard;
+            this.libraryHash = libraryHash;
+            this.size = libraryHash == null ? clipboard.getSizeInBytes() : 0;
+        }
+    }
+}
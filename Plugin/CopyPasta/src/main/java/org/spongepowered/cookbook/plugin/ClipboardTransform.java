@@ -0,0 +1,362 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.tileentity.TileEntityArchetype;
+import org.spongepowered.api.entity.EntityArchetype;
+import org.spongepowered.api.data.key.Key;
+import org.spongepowered.api.data.key.Keys;
+import org.spongepowered.api.data.type.Hinge;
+import org.spongepowered.api.data.type.Hinges;
+import org.spongepowered.api.data.type.LogAxes;
+import org.spongepowered.api.data.type.LogAxis;
+import org.spongepowered.api.data.type.PortionType;
+import org.spongepowered.api.data.type.PortionTypes;
+import org.spongepowered.api.data.value.BaseValue;
+import org.spongepowered.api.util.Axis;
+import org.spongepowered.api.util.Direction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Rotates or mirrors a clipboard around its origin.
+ *
+ * <p>A transformed view of a volume has to transform the position of every
+ * block it is asked for, every time. A transform instead builds a new
+ * clipboard once, after which pasting is as fast as for any clipboard. The
+ * new clipboard is filled in block order, so the writes are sequential and the
+ * reads along each row have a fixed stride. The work is split up over a
+ * fork-join pool on long boundaries, so no two tasks ever write to the same
+ * long.</p>
+ *
+ * <p>Rotating a block also has to turn the block states that face somewhere,
+ * like stairs, logs or doors. Those are only transformed once per palette
+ * entry, which gives a table from the old palette ids to the new ones that
+ * every block is looked up in.</p>
+ */
+public final class ClipboardTransform {
+
+    // Leaves of the fill task write at most this many longs
+    private static final int FILL_THRESHOLD = 4096;
+    // The horizontal directions, clockwise from north, 22.5 degrees apart
+    private static final Direction[] COMPASS = {
+            Direction.NORTH, Direction.NORTH_NORTHEAST, Direction.NORTHEAST, Direction.EAST_NORTHEAST,
+            Direction.EAST, Direction.EAST_SOUTHEAST, Direction.SOUTHEAST, Direction.SOUTH_SOUTHEAST,
+            Direction.SOUTH, Direction.SOUTH_SOUTHWEST, Direction.SOUTHWEST, Direction.WEST_SOUTHWEST,
+            Direction.WEST, Direction.WEST_NORTHWEST, Direction.NORTHWEST, Direction.NORTH_NORTHWEST
+    };
+
+    // A signed permutation matrix, row major, so every axis maps to exactly
+    // one axis and its inverse is its transpose
+    private final int[] matrix;
+
+    private ClipboardTransform(int[] matrix) {
+        this.matrix = matrix;
+    }
+
+    /**
+     * Gets a transform that rotates around the y axis, clockwise when looking
+     * down.
+     *
+     * @param quarterTurns The number of quarter turns, may be negative
+     * @return The transform
+     */
+    public static ClipboardTransform rotation(int quarterTurns) {
+        switch (Math.floorMod(quarterTurns, 4)) {
+            case 1:
+                return new ClipboardTransform(new int[] {0, 0, -1, 0, 1, 0, 1, 0, 0});
+            case 2:
+                return new ClipboardTransform(new int[] {-1, 0, 0, 0, 1, 0, 0, 0, -1});
+            case 3:
+                return new ClipboardTransform(new int[] {0, 0, 1, 0, 1, 0, -1, 0, 0});
+            default:
+                return new ClipboardTransform(new int[] {1, 0, 0, 0, 1, 0, 0, 0, 1});
+        }
+    }
+
+    /**
+     * Gets a transform that mirrors along an axis.
+     *
+     * @param axis The axis to mirror along
+     * @return The transform
+     */
+    public static ClipboardTransform flip(Axis axis) {
+        final int[] matrix = {1, 0, 0, 0, 1, 0, 0, 0, 1};
+        final int diagonal = axis.ordinal() * 4;
+        matrix[diagonal] = -1;
+        return new ClipboardTransform(matrix);
+    }
+
+    /**
+     * Transforms a position.
+     *
+     * @param position The position
+     * @return The transformed position
+     */
+    public Vector3i apply(Vector3i position) {
+        return apply(position.getX(), position.getY(), position.getZ());
+    }
+
+    /**
+     * Transforms the exact position of an entity. An entity in the center of
+     * a block ends up in the center of the transformed block.
+     *
+     * @param position The position
+     * @return The transformed position
+     */
+    public Vector3d apply(Vector3d position) {
+        final double x = position.getX() - 0.5;
+        final double y = position.getY() - 0.5;
+        final double z = position.getZ() - 0.5;
+        final int[] m = this.matrix;
+        return new Vector3d(m[0] * x + m[1] * y + m[2] * z + 0.5, m[3] * x + m[4] * y + m[5] * z + 0.5,
+                m[6] * x + m[7] * y + m[8] * z + 0.5);
+    }
+
+    private Vector3i apply(int x, int y, int z) {
+        final int[] m = this.matrix;
+        return new Vector3i(m[0] * x + m[1] * y + m[2] * z, m[3] * x + m[4] * y + m[5] * z, m[6] * x + m[7] * y + m[8] * z);
+    }
+
+    private Vector3i applyInverse(int x, int y, int z) {
+        final int[] m = this.matrix;
+        return new Vector3i(m[0] * x + m[3] * y + m[6] * z, m[1] * x + m[4] * y + m[7] * z, m[2] * x + m[5] * y + m[8] * z);
+    }
+
+    /**
+     * Checks whether this transform mirrors, rather than only rotates.
+     *
+     * @return Whether this transform mirrors
+     */
+    public boolean isMirror() {
+        final int[] m = this.matrix;
+        final int determinant = m[0] * (m[4] * m[8] - m[5] * m[7]) - m[1] * (m[3] * m[8] - m[5] * m[6]) + m[2] * (m[3] * m[7] - m[4] * m[6]);
+        return determinant < 0;
+    }
+
+    /**
+     * Transforms a direction. Horizontal directions stay on the compass they
+     * are on.
+     *
+     * @param direction The direction
+     * @return The transformed direction
+     */
+    public Direction apply(Direction direction) {
+        if (direction == Direction.UP || direction == Direction.DOWN) {
+            return apply(0, direction == Direction.UP ? 1 : -1, 0).getY() > 0 ? Direction.UP : Direction.DOWN;
+        }
+        for (int i = 0; i < COMPASS.length; i++) {
+            if (COMPASS[i] == direction) {
+                // North is -z and east is +x, scaled up so the compass
+                // points between the axes stay exact enough to round
+                final double angle = Math.toRadians(i * 22.5);
+                final int x = (int) Math.round(Math.sin(angle) * 1000);
+                final int z = (int) Math.round(-Math.cos(angle) * 1000);
+                final Vector3i transformed = apply(x, 0, z);
+                final double transformedAngle = Math.toDegrees(Math.atan2(transformed.getX(), -transformed.getZ()));
+                return COMPASS[Math.floorMod((int) Math.round(transformedAngle / 22.5), COMPASS.length)];
+            }
+        }
+        return direction;
+    }
+
+    /**
+     * Transforms an axis.
+     *
+     * @param axis The axis
+     * @return The transformed axis
+     */
+    public Axis apply(Axis axis) {
+        final Vector3i unit = apply(axis == Axis.X ? 1 : 0, axis == Axis.Y ? 1 : 0, axis == Axis.Z ? 1 : 0);
+        return unit.getX() != 0 ? Axis.X : unit.getY() != 0 ? Axis.Y : Axis.Z;
+    }
+
+    private LogAxis apply(LogAxis axis) {
+        if (axis.equals(LogAxes.X)) {
+            return toLogAxis(apply(Axis.X));
+        } else if (axis.equals(LogAxes.Y)) {
+            return toLogAxis(apply(Axis.Y));
+        } else if (axis.equals(LogAxes.Z)) {
+            return toLogAxis(apply(Axis.Z));
+        }
+        return axis;
+    }
+
+    private static LogAxis toLogAxis(Axis axis) {
+        return axis == Axis.X ? LogAxes.X : axis == Axis.Y ? LogAxes.Y : LogAxes.Z;
+    }
+
+    private PortionType apply(PortionType portion) {
+        // Only flipping upside down turns the top half into the bottom half
+        if (this.matrix[4] > 0) {
+            return portion;
+        }
+        return portion.equals(PortionTypes.TOP) ? PortionTypes.BOTTOM : portion.equals(PortionTypes.BOTTOM) ? PortionTypes.TOP : portion;
+    }
+
+    private Hinge apply(Hinge hinge) {
+        if (!isMirror()) {
+            return hinge;
+        }
+        return hinge.equals(Hinges.LEFT) ? Hinges.RIGHT : hinge.equals(Hinges.RIGHT) ? Hinges.LEFT : hinge;
+    }
+
+    /**
+     * Transforms a block state, turning everything that faces somewhere.
+     *
+     * @param state The block state
+     * @return The transformed block state
+     */
+    public BlockState apply(BlockState state) {
+        BlockState transformed = state;
+        transformed = with(transformed, Keys.DIRECTION, this::apply);
+        transformed = with(transformed, Keys.AXIS, this::apply);
+        transformed = with(transformed, Keys.LOG_AXIS, this::apply);
+        transformed = with(transformed, Keys.PORTION_TYPE, this::apply);
+        transformed = with(transformed, Keys.HINGE_POSITION, this::apply);
+        return transformed;
+    }
+
+    private static <E> BlockState with(BlockState state, Key<? extends BaseValue<E>> key, UnaryOperator<E> transform) {
+        final Optional<E> value = state.get(key);
+        if (!value.isPresent()) {
+            return state;
+        }
+        final E transformed = transform.apply(value.get());
+        // Some blocks only support part of the values of a key, like blocks
+        // that can't face up, those are left as they are
+        return transformed.equals(value.get()) ? state : state.with(key, transformed).orElse(state);
+    }
+
+    /**
+     * Builds the transformed clipboard. This may be called from any thread,
+     * the work is split up over the given pool.
+     *
+     * @param clipboard The clipboard to transform
+     * @param pool The pool to build the clipboard on
+     * @return The transformed clipboard
+     */
+    public Clipboard apply(Clipboard clipboard, ForkJoinPool pool) {
+        final Vector3i corner1 = apply(clipboard.getMin());
+        final Vector3i corner2 = apply(clipboard.getMax());
+        final Vector3i min = corner1.min(corner2);
+        final Vector3i size = corner1.max(corner2).sub(min).add(Vector3i.ONE);
+
+        // Transform every palette entry once, states that end up the same
+        // are merged
+        final List<BlockState> palette = new ArrayList<>();
+        final Map<BlockState, Integer> ids = new HashMap<>();
+        final List<BlockState> oldPalette = clipboard.getPalette();
+        final int[] remap = new int[oldPalette.size()];
+        for (int id = 0; id < remap.length; id++) {
+            final BlockState state = apply(oldPalette.get(id));
+            Integer newId = ids.get(state);
+            if (newId == null) {
+                newId = palette.size();
+                ids.put(state, newId);
+                palette.add(state);
+            }
+            remap[id] = newId;
+        }
+
+        final PackedIntArray blocks = new PackedIntArray(PackedIntArray.bitsFor(palette.size()), clipboard.getVolume());
+        pool.invoke(new Fill(clipboard, remap, blocks, min, size, 0, blocks.getDataLength()));
+
+        final Map<Vector3i, TileEntityArchetype> tileEntities = new HashMap<>();
+        for (Map.Entry<Vector3i, TileEntityArchetype> entry : clipboard.getTileEntityArchetypes().entrySet()) {
+            final TileEntityArchetype archetype = entry.getValue();
+            tileEntities.put(apply(entry.getKey()), TileEntityArchetype.builder()
+                    .state(apply(archetype.getState()))
+                    .tile(archetype.getTileEntityType())
+                    .tileData(archetype.getTileData())
+                    .build());
+        }
+        // Entities are moved along, but keep facing the way they did
+        final ListMultimap<Vector3d, EntityArchetype> entities = ArrayListMultimap.create();
+        for (Map.Entry<Vector3d, EntityArchetype> entry : clipboard.getEntityArchetypes().entries()) {
+            entities.put(apply(entry.getKey()), entry.getValue());
+        }
+        return new Clipboard(min, size, palette, blocks, tileEntities, entities);
+    }
+
+    /**
+     * Fills a range of longs of the transformed clipboard. The ranges are
+     * split on long boundaries, so no two tasks ever write to the same long.
+     */
+    private final class Fill extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Clipboard source;
+        private final int[] remap;
+        private final PackedIntArray blocks;
+        private final Vector3i min;
+        private final Vector3i size;
+        private final int fromLong;
+        private final int toLong;
+
+        Fill(Clipboard source, int[] remap, PackedIntArray blocks, Vector3i min, Vector3i size, int fromLong, int toLong) {
+            this.source = source;
+            this.remap = remap;
+            this.blocks = blocks;
+            this.min = min;
+            this.size = size;
+            this.fromLong = fromLong;
+            this.toLong = toLong;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.toLong - this.fromLong > FILL_THRESHOLD) {
+                final int middle = (this.fromLong + this.toLong) >>> 1;
+                invokeAll(new Fill(this.source, this.remap, this.blocks, this.min, this.size, this.fromLong, middle),
+                        new Fill(this.source, this.remap, this.blocks, this.min, this.size, middle, this.toLong));
+                return;
+            }
+            final int valuesPerLong = this.blocks.getValuesPerLong();
+            final int from = this.fromLong * valuesPerLong;
+            final int to = Math.min(this.toLong * valuesPerLong, this.blocks.length());
+            final int sizeX = this.size.getX();
+            final int sizeZ = this.size.getZ();
+            // A step along x in the new clipboard is a fixed step in the
+            // source, so only the start of each row is transformed
+            final Vector3i step = applyInverse(1, 0, 0);
+            final Vector3i sourceSize = this.source.getSize();
+            final int sourceStep = (step.getY() * sourceSize.getZ() + step.getZ()) * sourceSize.getX() + step.getX();
+            int x = from % sizeX;
+            int z = from / sizeX % sizeZ;
+            int y = from / (sizeX * sizeZ);
+            int sourceIndex = getSourceIndex(x, y, z);
+            for (int index = from; index < to; index++) {
+                this.blocks.set(index, this.remap[this.source.getPaletteId(sourceIndex)]);
+                if (++x == sizeX) {
+                    x = 0;
+                    if (++z == sizeZ) {
+                        z = 0;
+                        y++;
+                    }
+                    if (index + 1 < to) {
+                        sourceIndex = getSourceIndex(x, y, z);
+                    }
+                } else {
+                    sourceIndex += sourceStep;
+                }
+            }
+        }
+
+        private int getSourceIndex(int x, int y, int z) {
+            final Vector3i position = applyInverse(this.min.getX() + x, this.min.getY() + y, this.min.getZ() + z);
+            return this.source.getIndex(position.getX(), position.getY(), position.getZ());
+        }
+    }
+}
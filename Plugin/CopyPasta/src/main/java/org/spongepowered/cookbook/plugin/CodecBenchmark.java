@@ -0,0 +1,119 @@
+package org.spongepowered.cookbook.plugin;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Measures how fast each codec saves and loads a clipboard, and how large the
+ * files get, off the main thread.
+ *
+ * <p>Every codec writes the clipboard to a file and reads it back a number of
+ * times, after one round that isn't measured to warm up. The median times are
+ * reported as the throughput of the uncompressed schematic, so codecs can be
+ * compared directly, along with the size of the file relative to the
+ * uncompressed one.</p>
+ */
+public class CodecBenchmark implements Runnable {
+
+    private static final List<SchematicCodec> CODECS = Arrays.asList(SchematicCodec.UNCOMPRESSED, SchematicCodec.deflate(1),
+            SchematicCodec.deflate(6), SchematicCodec.gzip(1), SchematicCodec.gzip(6), SchematicCodec.gzip(9));
+
+    private final Executor mainThread;
+    private final UUID owner;
+    private final Clipboard clipboard;
+    private final Path dir;
+    private final int iterations;
+
+    /**
+     * Creates a new benchmark.
+     *
+     * @param mainThread Runs the reports on the main thread
+     * @param owner The player to report the results to
+     * @param clipboard The clipboard to save and load
+     * @param dir The directory to write the files to, which should be on the
+     *     same disk as the schematics
+     * @param iterations How often each codec saves and loads the clipboard
+     */
+    public CodecBenchmark(Executor mainThread, UUID owner, Clipboard clipboard, Path dir, int iterations) {
+        this.mainThread = mainThread;
+        this.owner = owner;
+        this.clipboard = clipboard;
+        this.dir = dir;
+        this.iterations = iterations;
+    }
+
+    @Override
+    public void run() {
+        final Path file;
+        try {
+            file = Files.createTempFile(this.dir, "bench.", ".tmp");
+        } catch (IOException e) {
+            e.printStackTrace();
+            report(Text.of(TextColors.DARK_RED, "Error benchmarking codecs: " + e.getMessage()));
+            return;
+        }
+        try {
+            long uncompressedSize = -1;
+            for (SchematicCodec codec : CODECS) {
+                final long[] encode = new long[this.iterations];
+                final long[] decode = new long[this.iterations];
+                for (int i = -1; i < this.iterations; i++) {
+                    long start = System.nanoTime();
+                    try (OutputStream out = codec.newOutputStream(Files.newOutputStream(file))) {
+                        SchematicWriter.write(out, this.clipboard, false, "benchmark", "benchmark");
+                    }
+                    final long encoded = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    try (InputStream in = SchematicCodec.newInputStream(file)) {
+                        SchematicReader.read(in, false);
+                    }
+                    final long decoded = System.nanoTime() - start;
+                    // The first round only warms up
+                    if (i >= 0) {
+                        encode[i] = encoded;
+                        decode[i] = decoded;
+                    }
+                }
+                final long size = Files.size(file);
+                if (codec.getType() == SchematicCodec.Type.NONE) {
+                    uncompressedSize = size;
+                }
+                report(Text.of(TextColors.GOLD, codec.getId(), TextColors.GRAY, ": " + size / 1024 + " KiB"
+                        + (uncompressedSize > 0 ? String.format(" (%.1f%%)", size * 100.0 / uncompressedSize) : "")
+                        + ", save " + getThroughput(uncompressedSize, encode) + ", load " + getThroughput(uncompressedSize, decode)));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            report(Text.of(TextColors.DARK_RED, "Error benchmarking codecs: " + e.getMessage()));
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static String getThroughput(long bytes, long[] times) {
+        Arrays.sort(times);
+        final long median = times[times.length / 2];
+        return String.format("%.1f MB/s (%.1f ms)", bytes * 1000.0 / Math.max(1, median), median / 1e6);
+    }
+
+    private void report(Text message) {
+        // Players may only be touched from the main thread, and the owner may
+        // have logged out while the benchmark was running.
+        this.mainThread.execute(() -> Sponge.getServer().getPlayer(this.owner).ifPresent(player -> player.sendMessage(message)));
+    }
+}
@@ -1,10 +1,15 @@
 package org.spongepowered.cookbook.plugin;
 
+import static org.spongepowered.api.command.args.GenericArguments.enumValue;
+import static org.spongepowered.api.command.args.GenericArguments.flags;
+import static org.spongepowered.api.command.args.GenericArguments.integer;
+import static org.spongepowered.api.command.args.GenericArguments.none;
+import static org.spongepowered.api.command.args.GenericArguments.optional;
+import static org.spongepowered.api.command.args.GenericArguments.remainingJoinedStrings;
 import static org.spongepowered.api.command.args.GenericArguments.seq;
 import static org.spongepowered.api.command.args.GenericArguments.string;
 
 import com.flowpowered.math.vector.Vector3i;
-import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.spongepowered.api.Sponge;
@@ -12,39 +17,64 @@ import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.spec.CommandSpec;
 import org.spongepowered.api.config.ConfigDir;
-import org.spongepowered.api.data.DataContainer;
-import org.spongepowered.api.data.persistence.DataFormats;
-import org.spongepowered.api.data.persistence.DataTranslators;
 import org.spongepowered.api.data.type.HandTypes;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.Order;
 import org.spongepowered.api.event.block.InteractBlockEvent;
+import org.spongepowered.api.event.filter.cause.First;
 import org.spongepowered.api.event.filter.cause.Root;
 import org.spongepowered.api.event.game.state.GamePreInitializationEvent;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.event.item.inventory.ChangeInventoryEvent;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
 import org.spongepowered.api.item.ItemTypes;
 import org.spongepowered.api.item.inventory.ItemStack;
 import org.spongepowered.api.plugin.Plugin;
 import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.api.scheduler.SpongeExecutorService;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
-import org.spongepowered.api.world.BlockChangeFlags;
+import org.spongepowered.api.util.Axis;
+import org.spongepowered.api.world.World;
 import org.spongepowered.api.world.extent.ArchetypeVolume;
-import org.spongepowered.api.world.schematic.BlockPaletteTypes;
-import org.spongepowered.api.world.schematic.Schematic;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
 
 @Plugin(id = CopyPasta.PLUGIN_ID, name = "CopyPasta", version = "0.4", description = "An example of the schematic API.")
 public class CopyPasta {
 
     public static final String PLUGIN_ID = "copypasta";
+    // The most positions a paste goes through per tick, and the most time it may take
+    private static final int PASTE_BLOCKS_PER_TICK = 10000;
+    private static final long PASTE_TICK_BUDGET = TimeUnit.MILLISECONDS.toNanos(10);
+    // Selections with more blocks than this are snapshotted and copied off the main thread
+    private static final int PARALLEL_COPY_THRESHOLD = 32 * 32 * 32;
+    // The most memory the clipboards of all players may take up before they are spilled to disk
+    private static final long CLIPBOARD_MEMORY_BUDGET = 256L << 20;
+    // The most edits each player can undo, and the most memory their journals may take up before they are spilled to disk
+    private static final int HISTORY_SIZE = 20;
+    private static final long HISTORY_MEMORY_BUDGET = 32L << 20;
+    // The most memory decoded schematics nobody uses anymore may take up before they are evicted
+    private static final long SCHEMATIC_CACHE_BUDGET = 128L << 20;
+    // Schematics are gzipped like other tools expect, unless another codec is asked for
+    private static final SchematicCodec DEFAULT_CODEC = SchematicCodec.gzip(Deflater.DEFAULT_COMPRESSION);
 
     @Inject
     private Logger logger;
@@ -55,23 +85,44 @@ public class CopyPasta {
     private File config;
 
     //We store players in a map using UUIDs to allow player objects to be garbage collected.
-    private final Map<UUID, PlayerData> player_data = Maps.newHashMap();
+    //Async tasks may look players up as well, so the map has to be concurrent.
+    private final Map<UUID, PlayerData> player_data = new ConcurrentHashMap<>();
     private File schematicsDir;
+    private SchematicLibrary library;
+    private ClipboardStore clipboards;
+    private Path journalsDir;
+    private SpongeExecutorService syncExecutor;
+    private SpongeExecutorService asyncExecutor;
+    private final ListenerStats primaryStats = new ListenerStats("InteractBlockEvent.Primary.MainHand");
+    private final ListenerStats secondaryStats = new ListenerStats("InteractBlockEvent.Secondary.MainHand");
+    private final ListenerStats inventoryStats = new ListenerStats("ChangeInventoryEvent");
 
     private PlayerData get(Player pl) {
-        PlayerData data = this.player_data.get(pl.getUniqueId());
-        if (data == null) {
-            data = new PlayerData(pl.getUniqueId());
-            this.player_data.put(pl.getUniqueId(), data);
-        }
-        return data;
+        return this.player_data.computeIfAbsent(pl.getUniqueId(), uid -> new PlayerData(uid, this.clipboards,
+                new EditHistory(uid, this.journalsDir, HISTORY_SIZE, HISTORY_MEMORY_BUDGET, this.asyncExecutor, this.logger)));
+    }
+
+    private void startTask(Player player, PlayerData data, BlockChangeTask task) {
+        data.setTask(task);
+        Sponge.getScheduler().createTaskBuilder()
+                .name(PLUGIN_ID + "-" + player.getName())
+                .intervalTicks(1)
+                .execute(task)
+                .submit(this);
     }
 
     @Listener
-    public void onGamePreInitialization(GamePreInitializationEvent event) {
+    public void onGamePreInitialization(GamePreInitializationEvent event) throws IOException {
         this.schematicsDir = new File(this.config, "schematics");
         this.schematicsDir.mkdirs();
         this.logger.info("Saving schematics to " + this.schematicsDir.getAbsolutePath());
+        this.library = new SchematicLibrary(this.schematicsDir.toPath(), SCHEMATIC_CACHE_BUDGET, this.logger);
+        this.syncExecutor = Sponge.getScheduler().createSyncExecutor(this);
+        this.asyncExecutor = Sponge.getScheduler().createAsyncExecutor(this);
+        this.clipboards = new ClipboardStore(new File(this.schematicsDir, ".clipboards").toPath(), CLIPBOARD_MEMORY_BUDGET, this.library,
+                this.asyncExecutor, this.logger);
+        this.journalsDir = new File(this.schematicsDir, ".journals").toPath();
+        EditHistory.clearSpillDir(this.journalsDir);
         Sponge.getCommandManager().register(this, CommandSpec.builder()
                 .description(Text.of("Copies a region of the world to your clipboard"))
                 .permission(PLUGIN_ID + ".command.copy")
@@ -88,18 +139,68 @@ public class CopyPasta {
                     }
                     Vector3i min = data.getPos1().min(data.getPos2());
                     Vector3i max = data.getPos1().max(data.getPos2());
+                    Vector3i origin = player.getLocation().getPosition().toInt();
+                    Vector3i size = max.sub(min).add(Vector3i.ONE);
+
+                    if ((long) size.getX() * size.getY() * size.getZ() <= PARALLEL_COPY_THRESHOLD) {
+                        // Defines the volume we will be copying, using the min
+                        // and max values gotten from the interact events.
+                        ArchetypeVolume volume = player.getWorld().createArchetypeVolume(min, max, origin);
+                        data.setClipboard(Clipboard.copyOf(volume, RegionSnapshot.takeEntities(player.getWorld(), min, max, origin)));
+                        player.sendMessage(Text.of(TextColors.GREEN, "Saved to clipboard."));
+                        return CommandResult.success();
+                    }
 
-                    // Defines the volume we will be copying, using the min
-                    // and max values gotten from the interact events.
-                    ArchetypeVolume volume = player.getWorld().createArchetypeVolume(min, max, player.getLocation().getPosition().toInt());
-                    data.setClipboard(volume);
-                    player.sendMessage(Text.of(TextColors.GREEN, "Saved to clipboard."));
+                    // For large selections only a copy of each chunk is taken
+                    // on the main thread, the clipboard is built from those
+                    // copies in parallel.
+                    RegionSnapshot snapshot = RegionSnapshot.take(player.getWorld(), min, max, origin);
+                    UUID owner = player.getUniqueId();
+                    player.sendMessage(Text.of(TextColors.GRAY, "Copying..."));
+                    this.asyncExecutor.execute(() -> {
+                        final Clipboard clipboard;
+                        try {
+                            clipboard = snapshot.toClipboard(ForkJoinPool.commonPool());
+                        } catch (RuntimeException e) {
+                            e.printStackTrace();
+                            this.syncExecutor.execute(() -> Sponge.getServer().getPlayer(owner).ifPresent(online ->
+                                    online.sendMessage(Text.of(TextColors.DARK_RED, "Error copying region: " + e.getMessage()))));
+                            return;
+                        }
+                        this.syncExecutor.execute(() -> Sponge.getServer().getPlayer(owner).ifPresent(online -> {
+                            get(online).setClipboard(clipboard);
+                            online.sendMessage(Text.of(TextColors.GREEN, "Saved to clipboard."));
+                        }));
+                    });
                     return CommandResult.success();
                 })
                 .build(), "copy");
         Sponge.getCommandManager().register(this, CommandSpec.builder()
                 .description(Text.of("Pastes your clipboard at your current position"))
                 .permission(PLUGIN_ID + ".command.paste")
+                .child(CommandSpec.builder()
+                        .description(Text.of("Cancels the paste, undo or redo in progress"))
+                        .permission(PLUGIN_ID + ".command.paste")
+                        .executor((src, args) -> {
+                            if (!(src instanceof Player)) {
+                                src.sendMessage(Text.of(TextColors.RED, "Player only."));
+                                return CommandResult.success();
+                            }
+                            Player player = (Player) src;
+                            PlayerData data = get(player);
+                            if (!data.isBusy()) {
+                                player.sendMessage(Text.of(TextColors.RED, "You are not pasting anything"));
+                                return CommandResult.success();
+                            }
+                            data.getTask().cancel();
+                            return CommandResult.success();
+                        })
+                        .build(), "cancel")
+                .arguments(flags()
+                        .flag("a", "-skip-air")
+                        .valueFlag(string(Text.of("only")), "o", "-only")
+                        .valueFlag(string(Text.of("replace")), "r", "-replace")
+                        .buildWith(none()))
                 .executor((src, args) -> {
                     if (!(src instanceof Player)) {
                         src.sendMessage(Text.of(TextColors.RED, "Player only."));
@@ -107,23 +208,46 @@ public class CopyPasta {
                     }
                     Player player = (Player) src;
                     PlayerData data = get(player);
-                    ArchetypeVolume volume = data.getClipboard();
-                    if (volume == null) {
-                        player.sendMessage(Text.of(TextColors.RED, "You must copy something before pasting"));
+                    if (data.isBusy()) {
+                        player.sendMessage(Text.of(TextColors.RED, "You are already pasting, use /paste cancel to stop"));
+                        return CommandResult.success();
+                    }
+                    // -a leaves the world alone where the clipboard has air,
+                    // -o only pastes the listed blocks of the clipboard and
+                    // -r only replaces the listed blocks in the world
+                    PasteMask mask;
+                    try {
+                        mask = new PasteMask(args.hasAny("a"), args.<String>getOne("only").map(PasteMask::parseBlocks).orElse(null),
+                                args.<String>getOne("replace").map(PasteMask::parseBlocks).orElse(null));
+                    } catch (IllegalArgumentException e) {
+                        player.sendMessage(Text.of(TextColors.RED, e.getMessage()));
                         return CommandResult.success();
                     }
 
-                    // Here we paste in the volume that we have previously
-                    // copied or loaded. We specify that we want all block changes (update neighbor, observers and physics)
-                    volume.apply(player.getLocation(), BlockChangeFlags.ALL);
-                    player.sendMessage(Text.of(TextColors.GREEN, "Pasted clipboard into world."));
+                    withClipboard(player, "You must copy something before pasting", (online, clipboard) -> {
+                        // Another paste may have started while a spilled
+                        // clipboard was read back
+                        PlayerData current = get(online);
+                        if (current.isBusy()) {
+                            online.sendMessage(Text.of(TextColors.RED, "You are already pasting, use /paste cancel to stop"));
+                            return;
+                        }
+                        // Here we paste in the clipboard that we have previously
+                        // copied or loaded. Placing everything at once would stall
+                        // the server, so the paste is spread over several ticks.
+                        // The blocks it replaces are recorded, so it can be undone.
+                        PasteTask paste = new PasteTask(online.getUniqueId(), online.getWorld(), online.getLocation().getBlockPosition(),
+                                clipboard, mask, PASTE_BLOCKS_PER_TICK, PASTE_TICK_BUDGET, current.getHistory()::push);
+                        startTask(online, current, paste);
+                        online.sendMessage(Text.of(TextColors.GRAY, "Pasting " + paste.getTotal() + " blocks..."));
+                    });
                     return CommandResult.success();
                 })
                 .build(), "paste");
         Sponge.getCommandManager().register(this, CommandSpec.builder()
-                .description(Text.of("Saves your clipboard to disk"))
+                .description(Text.of("Saves your clipboard to disk, optionally with a codec like gzip:9, deflate:1 or none"))
                 .permission(PLUGIN_ID + ".command.save")
-                .arguments(seq(string(Text.of("format")), string(Text.of("name"))))
+                .arguments(seq(string(Text.of("format")), string(Text.of("name")), optional(string(Text.of("codec")))))
                 .executor((src, args) -> {
                     if (!(src instanceof Player)) {
                         src.sendMessage(Text.of(TextColors.RED, "Player only."));
@@ -132,50 +256,117 @@ public class CopyPasta {
                     String format = args.getOne("format").get().toString();
                     String name = args.getOne("name").get().toString();
                     Player player = (Player) src;
-                    PlayerData data = get(player);
-                    ArchetypeVolume volume = data.getClipboard();
-                    if (volume == null) {
-                        player.sendMessage(Text.of(TextColors.RED, "You must copy something before saving"));
-                        return CommandResult.success();
-                    }
                     if (!"legacy".equalsIgnoreCase(format) && !"sponge".equalsIgnoreCase(format)) {
                         player.sendMessage(Text.of(TextColors.RED, "Unsupported schematic format, supported formats are [legacy, sponge]"));
                         return CommandResult.success();
                     }
+                    SchematicCodec codec;
+                    try {
+                        codec = args.<String>getOne("codec").map(SchematicCodec::parse).orElse(DEFAULT_CODEC);
+                    } catch (IllegalArgumentException e) {
+                        player.sendMessage(Text.of(TextColors.RED, e.getMessage()));
+                        return CommandResult.success();
+                    }
 
-                    // Here we create the schematic object, set it's values,
-                    // volume, and palette. The palette defines how the blocks
-                    // are saved.
-
-                    Schematic schematic = Schematic.builder()
-                            .volume(data.getClipboard())
-                            .metaValue(Schematic.METADATA_AUTHOR, player.getName())
-                            .metaValue(Schematic.METADATA_NAME, name)
-                            .paletteType(BlockPaletteTypes.LOCAL)
-                            .build();
-
-                    // We need to serialize the Schematic to a DataContainer so
-                    // that we can save it using one of the DataFormats.
-                    DataContainer schematicData = null;
-                    if ("legacy".equalsIgnoreCase(format)) {
-                        schematicData = DataTranslators.LEGACY_SCHEMATIC.translate(schematic);
-                    } else if ("sponge".equalsIgnoreCase(format)) {
-                        schematicData = DataTranslators.SCHEMATIC.translate(schematic);
+                    // Encoding and compressing a large clipboard takes a while,
+                    // so we hand it to the async scheduler and let the task
+                    // report back once the schematic is in the library.
+                    withClipboard(player, "You must copy something before saving", (online, clipboard) -> {
+                        online.sendMessage(Text.of(TextColors.GRAY, "Saving schematic..."));
+                        this.asyncExecutor.execute(new SchematicSaveTask(this.syncExecutor, this.library, online.getUniqueId(), clipboard,
+                                online.getName(), name, "legacy".equalsIgnoreCase(format), codec));
+                    });
+                    return CommandResult.success();
+                })
+                .build(), "save");
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+                .description(Text.of("Saves only the blocks of your clipboard that differ from another schematic"))
+                .permission(PLUGIN_ID + ".command.save")
+                .arguments(seq(string(Text.of("base")), string(Text.of("name")), optional(string(Text.of("codec")))))
+                .executor((src, args) -> {
+                    if (!(src instanceof Player)) {
+                        src.sendMessage(Text.of(TextColors.RED, "Player only."));
+                        return CommandResult.success();
+                    }
+                    String baseName = args.getOne("base").get().toString();
+                    String name = args.getOne("name").get().toString();
+                    Player player = (Player) src;
+                    Optional<SchematicLibrary.Entry> base = this.library.getEntry(baseName);
+                    if (!base.isPresent()) {
+                        player.sendMessage(Text.of(TextColors.RED, "Schematic " + baseName + " not found."));
+                        return CommandResult.success();
                     }
-                    File outputFile = new File(this.schematicsDir, name + ".schematic");
+                    SchematicCodec codec;
                     try {
+                        codec = args.<String>getOne("codec").map(SchematicCodec::parse).orElse(DEFAULT_CODEC);
+                    } catch (IllegalArgumentException e) {
+                        player.sendMessage(Text.of(TextColors.RED, e.getMessage()));
+                        return CommandResult.success();
+                    }
 
-                        // Normally we save NBT files as NBT files. We do this by using the NBT DataFormat.
-                        DataFormats.NBT.writeTo(new GZIPOutputStream(new FileOutputStream(outputFile)), schematicData);
-                        player.sendMessage(Text.of(TextColors.GREEN, "Saved schematic to " + outputFile.getAbsolutePath()));
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        player.sendMessage(Text.of(TextColors.DARK_RED, "Error saving schematic: " + e.getMessage()));
+                    // Comparing against the base needs it decoded, which
+                    // happens off the main thread along with the save. The
+                    // base is pinned until then, so saving over it meanwhile
+                    // can't delete its files.
+                    withClipboard(player, "You must copy something before saving", (online, clipboard) -> {
+                        Optional<SchematicLibrary.Entry> pinned = this.library.pin(baseName);
+                        if (!pinned.isPresent()) {
+                            online.sendMessage(Text.of(TextColors.RED, "Schematic " + baseName + " not found."));
+                            return;
+                        }
+                        online.sendMessage(Text.of(TextColors.GRAY, "Saving schematic..."));
+                        this.asyncExecutor.execute(new SchematicSaveTask(this.syncExecutor, this.library, online.getUniqueId(), clipboard,
+                                online.getName(), name, pinned.get().isLegacy(), codec, pinned.get()));
+                    });
+                    return CommandResult.success();
+                })
+                .build(), "savedelta");
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+                .description(Text.of("Bases a delta schematic on its full schematic directly, instead of a chain of deltas"))
+                .permission(PLUGIN_ID + ".command.compact")
+                .arguments(seq(string(Text.of("name")), optional(string(Text.of("codec")))))
+                .executor((src, args) -> {
+                    String name = args.getOne("name").get().toString();
+                    SchematicCodec codec;
+                    try {
+                        codec = args.<String>getOne("codec").map(SchematicCodec::parse).orElse(DEFAULT_CODEC);
+                    } catch (IllegalArgumentException e) {
+                        src.sendMessage(Text.of(TextColors.RED, e.getMessage()));
+                        return CommandResult.success();
+                    }
+                    // Pinned until it is compacted, so saving over it can't delete its files first
+                    Optional<SchematicLibrary.Entry> entry = this.library.pin(name);
+                    if (!entry.isPresent()) {
+                        src.sendMessage(Text.of(TextColors.RED, "Schematic " + name + " not found."));
+                        return CommandResult.success();
+                    }
+                    if (entry.get().getChain().size() <= 1) {
+                        this.library.unpin(entry.get());
+                        src.sendMessage(Text.of(TextColors.RED, "Schematic " + name + " isn't based on another delta"));
                         return CommandResult.success();
                     }
+
+                    src.sendMessage(Text.of(TextColors.GRAY, "Compacting schematic..."));
+                    this.asyncExecutor.execute(() -> {
+                        Text message;
+                        try {
+                            SchematicLibrary.Entry compacted = this.library.compact(entry.get(), codec);
+                            message = Text.of(TextColors.GREEN, "Compacted schematic " + name + (compacted.isDelta()
+                                    ? " into a delta of its full schematic" : " into a full schematic")
+                                    + this.library.getKeptCodec(compacted, codec).map(type -> ", kept the identical stored file compressed as "
+                                    + type.name().toLowerCase(Locale.ROOT)).orElse(""));
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                            message = Text.of(TextColors.DARK_RED, "Error compacting schematic: " + e.getMessage());
+                        } finally {
+                            this.library.unpin(entry.get());
+                        }
+                        Text result = message;
+                        this.syncExecutor.execute(() -> src.sendMessage(result));
+                    });
                     return CommandResult.success();
                 })
-                .build(), "save");
+                .build(), "compactschematic");
         Sponge.getCommandManager().register(this, CommandSpec.builder()
                 .description(Text.of("Loads a schematic from disk to your clipboard"))
                 .permission(PLUGIN_ID + ".command.load")
@@ -193,65 +384,345 @@ public class CopyPasta {
                         player.sendMessage(Text.of(TextColors.RED, "Unsupported schematic format, supported formats are [legacy, sponge]"));
                         return CommandResult.success();
                     }
-                    File inputFile = new File(this.schematicsDir, name + ".schematic");
-                    if (!inputFile.exists()) {
-                        player.sendMessage(Text.of(TextColors.RED, "Schematic at " + inputFile.getAbsolutePath() + " not found."));
+                    // Schematic files put in the directory by hand are added to
+                    // the library when they are first loaded, the format is
+                    // only needed for those.
+                    File looseFile = new File(this.schematicsDir, name + ".schematic");
+                    if (!this.library.getEntry(name).isPresent() && !looseFile.exists()) {
+                        player.sendMessage(Text.of(TextColors.RED, "Schematic " + name + " not found."));
                         return CommandResult.success();
                     }
-                    DataContainer schematicData = null;
-                    try {
-                        // Schematics and normally saved as NBT, so we use the
-                        // NBT DataFormat to read the data.
-                        schematicData = DataFormats.NBT.readFrom(new GZIPInputStream(new FileInputStream(inputFile)));
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        player.sendMessage(Text.of(TextColors.DARK_RED, "Error loading schematic: " + e.getMessage()));
+
+                    // The schematic is read and decoded off the main thread,
+                    // the clipboard is only set once it is done.
+                    player.sendMessage(Text.of(TextColors.GRAY, "Loading schematic..."));
+                    this.asyncExecutor.execute(new SchematicLoadTask(this.syncExecutor, this.library, player.getUniqueId(), name, looseFile,
+                            "legacy".equalsIgnoreCase(format), data::setClipboard));
+                    return CommandResult.success();
+                })
+                .build(), "load");
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+                .description(Text.of("Lists the saved schematics, optionally only those matching a name or author"))
+                .permission(PLUGIN_ID + ".command.schematics")
+                .arguments(optional(remainingJoinedStrings(Text.of("query"))))
+                .executor((src, args) -> {
+                    // Only the index is searched, no schematic is opened
+                    List<SchematicLibrary.Entry> entries = this.library.search(args.<String>getOne("query").orElse(""));
+                    if (entries.isEmpty()) {
+                        src.sendMessage(Text.of(TextColors.RED, "No schematics found."));
+                        return CommandResult.success();
+                    }
+                    for (SchematicLibrary.Entry entry : entries) {
+                        src.sendMessage(Text.of(TextColors.GOLD, entry.getName(), TextColors.GRAY, ": "
+                                + entry.getWidth() + "x" + entry.getHeight() + "x" + entry.getLength() + ", "
+                                + entry.getBlockCount() + " blocks, " + entry.getPaletteSize() + " states"
+                                + (entry.getAuthor().isEmpty() ? "" : ", by " + entry.getAuthor())
+                                + (entry.isDelta() ? ", delta " + entry.getChain().size() + " deep" : "")));
+                    }
+                    return CommandResult.success();
+                })
+                .build(), "schematics");
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+                .description(Text.of("Measures how fast each codec saves and loads your clipboard"))
+                .permission(PLUGIN_ID + ".command.schematicbench")
+                .arguments(optional(integer(Text.of("iterations")), 5))
+                .executor((src, args) -> {
+                    if (!(src instanceof Player)) {
+                        src.sendMessage(Text.of(TextColors.RED, "Player only."));
+                        return CommandResult.success();
+                    }
+                    Player player = (Player) src;
+                    int iterations = args.<Integer>getOne("iterations").get();
+                    if (iterations < 1) {
+                        player.sendMessage(Text.of(TextColors.RED, "Iterations must be at least 1"));
                         return CommandResult.success();
                     }
-                    Schematic schematic = null;
 
-                    // We need to deserialize the DataContainer to a Schematic before we cam use it.
-                    if ("legacy".equalsIgnoreCase(format)) {
-                        schematic = DataTranslators.LEGACY_SCHEMATIC.translate(schematicData);
-                    } else if ("sponge".equalsIgnoreCase(format)) {
-                        schematic = DataTranslators.SCHEMATIC.translate(schematicData);
+                    // The files are written next to the schematics, so the
+                    // results include the disk they are actually stored on
+                    withClipboard(player, "You must copy something before benchmarking", (online, clipboard) -> {
+                        online.sendMessage(Text.of(TextColors.GRAY, "Benchmarking codecs..."));
+                        this.asyncExecutor.execute(new CodecBenchmark(this.syncExecutor, online.getUniqueId(), clipboard,
+                                this.schematicsDir.toPath(), iterations));
+                    });
+                    return CommandResult.success();
+                })
+                .build(), "schematicbench");
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+                .description(Text.of("Rotates your clipboard clockwise around your position when you copied it"))
+                .permission(PLUGIN_ID + ".command.rotate")
+                .arguments(optional(integer(Text.of("degrees")), 90))
+                .executor((src, args) -> {
+                    if (!(src instanceof Player)) {
+                        src.sendMessage(Text.of(TextColors.RED, "Player only."));
+                        return CommandResult.success();
                     }
-                    player.sendMessage(Text.of(TextColors.GREEN, "Loaded schematic from " + inputFile.getAbsolutePath()));
-                    data.setClipboard(schematic);
+                    int degrees = args.<Integer>getOne("degrees").get();
+                    if (degrees % 90 != 0) {
+                        src.sendMessage(Text.of(TextColors.RED, "Degrees must be a multiple of 90"));
+                        return CommandResult.success();
+                    }
+                    transformClipboard((Player) src, ClipboardTransform.rotation(degrees / 90), "Rotated clipboard.");
                     return CommandResult.success();
                 })
-                .build(), "load");
+                .build(), "rotate");
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+                .description(Text.of("Mirrors your clipboard along an axis through your position when you copied it"))
+                .permission(PLUGIN_ID + ".command.flip")
+                .arguments(enumValue(Text.of("axis"), Axis.class))
+                .executor((src, args) -> {
+                    if (!(src instanceof Player)) {
+                        src.sendMessage(Text.of(TextColors.RED, "Player only."));
+                        return CommandResult.success();
+                    }
+                    transformClipboard((Player) src, ClipboardTransform.flip(args.<Axis>getOne("axis").get()), "Flipped clipboard.");
+                    return CommandResult.success();
+                })
+                .build(), "flip");
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+                .description(Text.of("Shows how often the wand listeners ran and how long they took, -r resets the counts"))
+                .permission(PLUGIN_ID + ".command.wandstats")
+                .arguments(flags().flag("r", "-reset").buildWith(none()))
+                .executor((src, args) -> {
+                    for (ListenerStats stats : Arrays.asList(this.primaryStats, this.secondaryStats, this.inventoryStats)) {
+                        src.sendMessage(stats.toText());
+                        if (args.hasAny("r")) {
+                            stats.reset();
+                        }
+                    }
+                    return CommandResult.success();
+                })
+                .build(), "wandstats");
+        Sponge.getCommandManager().register(this, createHistoryCommand(true), "undo");
+        Sponge.getCommandManager().register(this, createHistoryCommand(false), "redo");
+    }
+
+    /**
+     * Runs an action with the clipboard of a player on the main thread. A
+     * spilled clipboard is read back off the main thread first, so the action
+     * may run a few ticks later, and only if the player is still online.
+     *
+     * @param player The player
+     * @param missing The message to send if the player has no clipboard
+     * @param action The action, given the player and their clipboard
+     */
+    private void withClipboard(Player player, String missing, BiConsumer<Player, Clipboard> action) {
+        CompletableFuture<Clipboard> future = get(player).getClipboard();
+        UUID owner = player.getUniqueId();
+        Consumer<Clipboard> run = clipboard -> Sponge.getServer().getPlayer(owner).ifPresent(online -> {
+            if (clipboard == null) {
+                online.sendMessage(Text.of(TextColors.RED, missing));
+            } else {
+                action.accept(online, clipboard);
+            }
+        });
+        if (future.isDone()) {
+            run.accept(future.join());
+        } else {
+            player.sendMessage(Text.of(TextColors.GRAY, "Restoring clipboard..."));
+            future.thenAcceptAsync(run, this.syncExecutor);
+        }
+    }
+
+    private void transformClipboard(Player player, ClipboardTransform transform, String done) {
+        withClipboard(player, "You must copy something before transforming it", (online, clipboard) ->
+                transformClipboard(online, clipboard, transform, done));
+    }
+
+    private void transformClipboard(Player player, Clipboard clipboard, ClipboardTransform transform, String done) {
+        if (clipboard.getVolume() <= PARALLEL_COPY_THRESHOLD) {
+            get(player).setClipboard(transform.apply(clipboard, ForkJoinPool.commonPool()));
+            player.sendMessage(Text.of(TextColors.GREEN, done));
+            return;
+        }
+
+        // Clipboards are never modified, so large ones can be transformed
+        // off the main thread while the old one is still in use
+        UUID owner = player.getUniqueId();
+        player.sendMessage(Text.of(TextColors.GRAY, "Transforming..."));
+        this.asyncExecutor.execute(() -> {
+            final Clipboard transformed;
+            try {
+                transformed = transform.apply(clipboard, ForkJoinPool.commonPool());
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                this.syncExecutor.execute(() -> Sponge.getServer().getPlayer(owner).ifPresent(online ->
+                        online.sendMessage(Text.of(TextColors.DARK_RED, "Error transforming clipboard: " + e.getMessage()))));
+                return;
+            }
+            this.syncExecutor.execute(() -> Sponge.getServer().getPlayer(owner).ifPresent(online -> {
+                get(online).setClipboard(transformed);
+                online.sendMessage(Text.of(TextColors.GREEN, done));
+            }));
+        });
+    }
+
+    private CommandSpec createHistoryCommand(boolean undo) {
+        String action = undo ? "undo" : "redo";
+        return CommandSpec.builder()
+                .description(Text.of(undo ? "Undoes your last paste" : "Redoes your last undone paste"))
+                .permission(PLUGIN_ID + ".command." + action)
+                .executor((src, args) -> {
+                    if (!(src instanceof Player)) {
+                        src.sendMessage(Text.of(TextColors.RED, "Player only."));
+                        return CommandResult.success();
+                    }
+                    Player player = (Player) src;
+                    PlayerData data = get(player);
+                    if (data.isBusy()) {
+                        player.sendMessage(Text.of(TextColors.RED, "You are already pasting, use /paste cancel to stop"));
+                        return CommandResult.success();
+                    }
+                    CompletableFuture<EditJournal> future = undo ? data.getHistory().peekUndo() : data.getHistory().peekRedo();
+                    UUID owner = player.getUniqueId();
+                    BiConsumer<EditJournal, Throwable> run = (journal, e) -> Sponge.getServer().getPlayer(owner).ifPresent(online ->
+                            replayEdit(online, undo, journal, e));
+                    if (future.isDone()) {
+                        future.whenComplete(run);
+                    } else {
+                        // Spilled edits are read back off the main thread
+                        player.sendMessage(Text.of(TextColors.GRAY, "Reading edit..."));
+                        future.whenCompleteAsync(run, this.syncExecutor);
+                    }
+                    return CommandResult.success();
+                })
+                .build();
+    }
+
+    private void replayEdit(Player player, boolean undo, EditJournal journal, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            this.logger.error("Failed to read an edit of " + player.getName(), cause);
+            player.sendMessage(Text.of(TextColors.DARK_RED, "Error reading edit: " + cause.getMessage()));
+            return;
+        }
+        if (journal == null) {
+            player.sendMessage(Text.of(TextColors.RED, "Nothing to " + (undo ? "undo" : "redo")));
+            return;
+        }
+        PlayerData data = get(player);
+        // Checked again, the player may have started another task while the edit was read
+        if (data.isBusy()) {
+            player.sendMessage(Text.of(TextColors.RED, "You are already pasting, use /paste cancel to stop"));
+            return;
+        }
+        Optional<World> world = Sponge.getServer().getWorld(journal.getWorldId());
+        if (!world.isPresent()) {
+            player.sendMessage(Text.of(TextColors.RED, "The world of that edit isn't loaded"));
+            return;
+        }
+
+        // Only the blocks the edit changed are placed again, with the same
+        // tick budget as a paste
+        startTask(player, data, new JournalTask(player.getUniqueId(), world.get(), journal, undo, PASTE_BLOCKS_PER_TICK,
+                PASTE_TICK_BUDGET, () -> {
+                    if (undo) {
+                        data.getHistory().undone(journal);
+                    } else {
+                        data.getHistory().redone(journal);
+                    }
+                }));
+    }
+
+    @Listener
+    public void onDisconnect(ClientConnectionEvent.Disconnect event) {
+        // Players who left don't need their selection or clipboard anymore
+        PlayerData data = this.player_data.remove(event.getTargetEntity().getUniqueId());
+        if (data != null) {
+            if (data.getTask() != null) {
+                data.getTask().cancel();
+            }
+            this.clipboards.remove(data.getUid());
+            data.getHistory().clear();
+        }
     }
 
+    @Listener
+    public void onGameStoppingServer(GameStoppingServerEvent event) {
+        this.clipboards.clear();
+        for (PlayerData data : this.player_data.values()) {
+            data.getHistory().clear();
+        }
+    }
+
+    // The interact listeners run for every block anyone hits or uses, but
+    // almost never for a wand. That a player doesn't hold the wand is cached
+    // until their inventory changes, so the common case looks at neither the
+    // item nor the block, and allocates nothing. That they do is always
+    // checked against the item again before an event is cancelled, in case
+    // an inventory change was missed.
+
     @Listener
     public void onInteract(InteractBlockEvent.Secondary.MainHand event, @Root Player player) {
-        Optional<ItemStack> item = player.getItemInHand(HandTypes.MAIN_HAND);
-        if (item.isPresent() && item.get().getType().equals(ItemTypes.WOODEN_AXE) && event.getTargetBlock() != BlockSnapshot.NONE) {
-            get(player).setPos2(event.getTargetBlock().getPosition());
-            player.sendMessage(Text.of(TextColors.LIGHT_PURPLE, "Position 2 set to " + event.getTargetBlock().getPosition()));
-            event.setCancelled(true);
+        final long start = System.nanoTime();
+        boolean handled = false;
+        try {
+            PlayerData data = getIfHoldingWand(player);
+            if (data != null && event.getTargetBlock() != BlockSnapshot.NONE) {
+                data.setPos2(event.getTargetBlock().getPosition());
+                player.sendMessage(Text.of(TextColors.LIGHT_PURPLE, "Position 2 set to " + event.getTargetBlock().getPosition()));
+                event.setCancelled(true);
+                handled = true;
+            }
+        } finally {
+            this.secondaryStats.record(start, handled);
         }
     }
 
     @Listener
     public void onInteract(InteractBlockEvent.Primary.MainHand event, @Root Player player) {
-        Optional<ItemStack> item = player.getItemInHand(HandTypes.MAIN_HAND);
-        if (item.isPresent() && item.get().getType().equals(ItemTypes.WOODEN_AXE)) {
-            get(player).setPos1(event.getTargetBlock().getPosition());
-            player.sendMessage(Text.of(TextColors.LIGHT_PURPLE, "Position 1 set to " + event.getTargetBlock().getPosition()));
-            event.setCancelled(true);
+        final long start = System.nanoTime();
+        boolean handled = false;
+        try {
+            PlayerData data = getIfHoldingWand(player);
+            if (data != null) {
+                data.setPos1(event.getTargetBlock().getPosition());
+                player.sendMessage(Text.of(TextColors.LIGHT_PURPLE, "Position 1 set to " + event.getTargetBlock().getPosition()));
+                event.setCancelled(true);
+                handled = true;
+            }
+        } finally {
+            this.primaryStats.record(start, handled);
+        }
+    }
+
+    @Listener(order = Order.POST)
+    public void onInventoryChange(ChangeInventoryEvent event, @First Player player) {
+        final long start = System.nanoTime();
+        PlayerData data = this.player_data.get(player.getUniqueId());
+        if (data != null) {
+            // Only has to invalidate a cached miss, a cached hit is checked
+            // again on every interaction anyway
+            data.setWandStale();
         }
+        this.inventoryStats.record(start, data != null);
+    }
+
+    private PlayerData getIfHoldingWand(Player player) {
+        PlayerData data = this.player_data.get(player.getUniqueId());
+        if (data == null) {
+            // Only the first interaction of a player creates their data
+            data = get(player);
+        }
+        return data.isHoldingWand(player) ? data : null;
     }
 
     public static class PlayerData {
 
         private final UUID uid;
+        private final ClipboardStore clipboards;
+        private final EditHistory history;
         private Vector3i pos1;
         private Vector3i pos2;
-        private ArchetypeVolume clipboard;
+        private BlockChangeTask task;
+        // Only touched on the main thread, a cached miss is checked again once the inventory changes
+        private boolean holdingWand;
+        private boolean wandStale = true;
 
-        public PlayerData(UUID uid) {
+        public PlayerData(UUID uid, ClipboardStore clipboards, EditHistory history) {
             this.uid = uid;
+            this.clipboards = clipboards;
+            this.history = history;
         }
 
         public UUID getUid() {
@@ -274,12 +745,73 @@ public class CopyPasta {
             this.pos2 = pos;
         }
 
-        public ArchetypeVolume getClipboard() {
-            return this.clipboard;
+        /**
+         * Gets the clipboard, which may have to be read back from disk
+         * first.
+         *
+         * @return The clipboard, or null if there is none
+         */
+        public CompletableFuture<Clipboard> getClipboard() {
+            return this.clipboards.get(this.uid);
+        }
+
+        public void setClipboard(Clipboard clipboard) {
+            this.clipboards.put(this.uid, clipboard);
+        }
+
+        /**
+         * Sets the clipboard to one shared with the schematic library.
+         *
+         * @param clipboard The clipboard
+         * @param libraryHash The hash of the schematic it was acquired for
+         */
+        public void setClipboard(Clipboard clipboard, String libraryHash) {
+            this.clipboards.put(this.uid, clipboard, libraryHash);
+        }
+
+        public EditHistory getHistory() {
+            return this.history;
+        }
+
+        public BlockChangeTask getTask() {
+            return this.task;
+        }
+
+        public void setTask(BlockChangeTask task) {
+            this.task = task;
+        }
+
+        /**
+         * Checks whether the player holds the selection wand in their main
+         * hand. If they didn't the last time, the item is only looked at
+         * again once their inventory has changed. If they did, it is always
+         * looked at again, so a missed inventory change never cancels the
+         * interactions of a player who put the wand away.
+         *
+         * @param player The player
+         * @return Whether the player holds the wand
+         */
+        public boolean isHoldingWand(Player player) {
+            if (this.wandStale || this.holdingWand) {
+                Optional<ItemStack> item = player.getItemInHand(HandTypes.MAIN_HAND);
+                this.holdingWand = item.isPresent() && item.get().getType().equals(ItemTypes.WOODEN_AXE);
+                this.wandStale = false;
+            }
+            return this.holdingWand;
+        }
+
+        public void setWandStale() {
+            this.wandStale = true;
         }
 
-        public void setClipboard(ArchetypeVolume volume) {
-            this.clipboard = volume;
+        /**
+         * Checks whether a paste, undo or redo of this player is still
+         * running. Only one may run at a time.
+         *
+         * @return Whether the player is busy
+         */
+        public boolean isBusy() {
+            return this.task != null && !this.task.isDone();
         }
     }
 }
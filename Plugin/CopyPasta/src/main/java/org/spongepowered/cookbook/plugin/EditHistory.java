@@ -0,0 +1,298 @@
+package org.spongepowered.cookbook.plugin;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * The undo and redo stacks of a single player.
+ *
+ * <p>The history holds a limited number of edits, the oldest ones are
+ * forgotten first. Once the journals on the heap take up more than the
+ * memory budget, the oldest ones are written to the spill directory and read
+ * back when they are undone or redone. Spill files are written and read on
+ * the executor, never on the calling thread.</p>
+ */
+public final class EditHistory {
+
+    private static final String FILE_EXTENSION = ".journal";
+
+    private final UUID owner;
+    private final Path spillDir;
+    private final int maxSize;
+    private final long memoryBudget;
+    private final Executor executor;
+    private final Logger logger;
+    // The most recent edit is at the head of both stacks
+    private final Deque<Entry> undo = new ArrayDeque<>();
+    private final Deque<Entry> redo = new ArrayDeque<>();
+    private long residentBytes;
+    // Set once the history is cleared, see clear()
+    private boolean cleared;
+
+    /**
+     * Creates a new history.
+     *
+     * @param owner The player the history belongs to
+     * @param spillDir The directory to spill journals to
+     * @param maxSize The most edits to remember
+     * @param memoryBudget The most bytes of journals to keep on the heap
+     * @param executor The executor to write and read spill files on
+     * @param logger The logger to report spill failures to
+     */
+    public EditHistory(UUID owner, Path spillDir, int maxSize, long memoryBudget, Executor executor, Logger logger) {
+        this.owner = owner;
+        this.spillDir = spillDir;
+        this.maxSize = maxSize;
+        this.memoryBudget = memoryBudget;
+        this.executor = executor;
+        this.logger = logger;
+    }
+
+    /**
+     * Deletes the journals a previous run left in a spill directory.
+     *
+     * @param spillDir The spill directory
+     * @throws IOException If the directory couldn't be cleaned up
+     */
+    public static void clearSpillDir(Path spillDir) throws IOException {
+        Files.createDirectories(spillDir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDir, "*" + FILE_EXTENSION)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Records a new edit. Edits that were undone can't be redone anymore
+     * afterwards. Edits recorded after the history was cleared are dropped.
+     *
+     * @param journal The journal of the edit
+     */
+    public synchronized void push(EditJournal journal) {
+        if (this.cleared || (journal.getChangeCount() == 0 && journal.getTileEntitiesAfter().isEmpty())) {
+            return;
+        }
+        while (!this.redo.isEmpty()) {
+            forget(this.redo.pop());
+        }
+        final Entry entry = new Entry(journal);
+        this.undo.push(entry);
+        this.residentBytes += entry.size;
+        while (this.undo.size() > this.maxSize) {
+            forget(this.undo.removeLast());
+        }
+        trim();
+    }
+
+    /**
+     * Gets the edit that would be undone next. The future is already
+     * complete unless the edit was spilled, in which case it completes on the
+     * executor once the journal has been read back, or exceptionally if it
+     * couldn't be.
+     *
+     * @return The journal, or null if there is nothing to undo
+     */
+    public synchronized CompletableFuture<EditJournal> peekUndo() {
+        return load(this.undo.peek());
+    }
+
+    /**
+     * Gets the edit that would be redone next. The future is already
+     * complete unless the edit was spilled, in which case it completes on the
+     * executor once the journal has been read back, or exceptionally if it
+     * couldn't be.
+     *
+     * @return The journal, or null if there is nothing to redo
+     */
+    public synchronized CompletableFuture<EditJournal> peekRedo() {
+        return load(this.redo.peek());
+    }
+
+    /**
+     * Moves the given edit from the undo to the redo stack, once it has been
+     * undone. Does nothing if the edit isn't the next one to undo anymore.
+     *
+     * @param journal The journal that was undone
+     */
+    public synchronized void undone(EditJournal journal) {
+        move(journal, this.undo, this.redo);
+    }
+
+    /**
+     * Moves the given edit from the redo to the undo stack, once it has been
+     * redone. Does nothing if the edit isn't the next one to redo anymore.
+     *
+     * @param journal The journal that was redone
+     */
+    public synchronized void redone(EditJournal journal) {
+        move(journal, this.redo, this.undo);
+    }
+
+    /**
+     * Forgets all edits and deletes their spill files, once the player has
+     * left. A task that was cancelled along with the history only hands in
+     * its journal on its next tick, which {@link #push(EditJournal)} then
+     * drops, so it never ends up in a spill file nobody deletes.
+     */
+    public synchronized void clear() {
+        this.cleared = true;
+        while (!this.undo.isEmpty()) {
+            forget(this.undo.pop());
+        }
+        while (!this.redo.isEmpty()) {
+            forget(this.redo.pop());
+        }
+    }
+
+    private void move(EditJournal journal, Deque<Entry> from, Deque<Entry> to) {
+        final Entry entry = from.peek();
+        if (entry != null && entry.journal == journal) {
+            from.pop();
+            to.push(entry);
+        }
+    }
+
+    private CompletableFuture<EditJournal> load(Entry entry) {
+        if (entry == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (entry.journal != null) {
+            return CompletableFuture.completedFuture(entry.journal);
+        }
+        if (entry.restore == null) {
+            final Path file = entry.file;
+            entry.restore = CompletableFuture.supplyAsync(() -> {
+                try (NbtInputStream in = new NbtInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    return EditJournal.read(in);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, this.executor).handle((journal, e) -> {
+                synchronized (this) {
+                    entry.restore = null;
+                    if (e != null) {
+                        // Tried again the next time the edit is asked for
+                        throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                    }
+                    if (!entry.forgotten) {
+                        entry.journal = journal;
+                        this.residentBytes += entry.size;
+                        trim();
+                    }
+                    return journal;
+                }
+            });
+        }
+        return entry.restore;
+    }
+
+    private void trim() {
+        // Spill the oldest edits first, but never the next one to undo or
+        // redo, since it is likely about to be used. Journals that are being
+        // spilled will leave the heap soon.
+        final long bytes = trim(this.undo.descendingIterator(), this.undo.peek(), this.residentBytes);
+        trim(this.redo.descendingIterator(), this.redo.peek(), bytes);
+    }
+
+    private long trim(Iterator<Entry> oldestFirst, Entry keep, long bytes) {
+        while (bytes > this.memoryBudget && oldestFirst.hasNext()) {
+            final Entry entry = oldestFirst.next();
+            if (entry == keep || entry.journal == null) {
+                continue;
+            }
+            bytes -= entry.size;
+            if (entry.spilling) {
+                continue;
+            }
+            if (entry.file != null) {
+                entry.journal = null;
+                this.residentBytes -= entry.size;
+            } else {
+                spill(entry);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the spill file of a journal on the executor. The journal only
+     * leaves the heap once the file has been written, by the trim that
+     * follows.
+     */
+    private void spill(Entry entry) {
+        final Path file = this.spillDir.resolve(this.owner + "-" + System.nanoTime() + FILE_EXTENSION);
+        final EditJournal journal = entry.journal;
+        entry.spilling = true;
+        this.executor.execute(() -> {
+            boolean written = false;
+            try (NbtOutputStream out = new NbtOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                journal.write(out);
+                written = true;
+            } catch (IOException | RuntimeException e) {
+                this.logger.warn("Failed to spill an edit of " + this.owner + " to " + file, e);
+            }
+            synchronized (this) {
+                entry.spilling = false;
+                if (!written || entry.forgotten) {
+                    delete(file);
+                    return;
+                }
+                entry.file = file;
+                trim();
+            }
+        });
+    }
+
+    private void forget(Entry entry) {
+        entry.forgotten = true;
+        if (entry.journal != null) {
+            this.residentBytes -= entry.size;
+        }
+        if (entry.file != null) {
+            delete(entry.file);
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            this.logger.warn("Failed to delete spilled edit " + file, e);
+        }
+    }
+
+    private static final class Entry {
+
+        private final long size;
+        // Null while the journal is spilled
+        private EditJournal journal;
+        // Null until the journal is spilled for the first time
+        private Path file;
+        // Whether the spill file is being written
+        private boolean spilling;
+        // Null unless the journal is being read back
+        private CompletableFuture<EditJournal> restore;
+        // Whether the edit was dropped from the history
+        private boolean forgotten;
+
+        private Entry(EditJournal journal) {
+            this.journal = journal;
+            this.size = journal.getSizeInBytes();
+        }
+    }
+}
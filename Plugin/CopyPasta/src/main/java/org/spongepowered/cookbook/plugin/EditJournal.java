@@ -0,0 +1,303 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.tileentity.TileEntityArchetype;
+import org.spongepowered.api.data.persistence.InvalidDataException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The blocks an edit changed, with the block states and tile entities they
+ * had before and after the edit.
+ *
+ * <p>Only blocks that actually changed are recorded. Each change is stored as
+ * its index in the edited region and two ids into a palette shared by the
+ * whole journal, all packed with as few bits as they need. Tile entities are
+ * only stored for the positions that had or got one.</p>
+ *
+ * <p>Journals are never modified once they have been built.</p>
+ */
+public final class EditJournal {
+
+    private static final int FORMAT_VERSION = 1;
+    // A rough guess, tile entity data varies a lot
+    private static final long TILE_ENTITY_SIZE = 1024;
+
+    private final UUID worldId;
+    private final Vector3i min;
+    private final Vector3i size;
+    private final List<BlockState> palette;
+    private final PackedIntArray positions;
+    private final PackedIntArray before;
+    private final PackedIntArray after;
+    private final Map<Integer, TileEntityArchetype> tileEntitiesBefore;
+    private final Map<Integer, TileEntityArchetype> tileEntitiesAfter;
+
+    private EditJournal(UUID worldId, Vector3i min, Vector3i size, List<BlockState> palette, PackedIntArray positions,
+            PackedIntArray before, PackedIntArray after, Map<Integer, TileEntityArchetype> tileEntitiesBefore,
+            Map<Integer, TileEntityArchetype> tileEntitiesAfter) {
+        this.worldId = worldId;
+        this.min = min;
+        this.size = size;
+        this.palette = ImmutableList.copyOf(palette);
+        this.positions = positions;
+        this.before = before;
+        this.after = after;
+        this.tileEntitiesBefore = ImmutableMap.copyOf(tileEntitiesBefore);
+        this.tileEntitiesAfter = ImmutableMap.copyOf(tileEntitiesAfter);
+    }
+
+    public UUID getWorldId() {
+        return this.worldId;
+    }
+
+    /**
+     * Gets the minimum position of the edited region, in world coordinates.
+     *
+     * @return The minimum position
+     */
+    public Vector3i getMin() {
+        return this.min;
+    }
+
+    public Vector3i getMax() {
+        return this.min.add(this.size).sub(Vector3i.ONE);
+    }
+
+    public Vector3i getSize() {
+        return this.size;
+    }
+
+    /**
+     * Gets the number of changed blocks.
+     *
+     * @return The number of changes
+     */
+    public int getChangeCount() {
+        return this.positions.length();
+    }
+
+    /**
+     * Gets the index in the edited region of a changed block. Blocks are laid
+     * out x first, then z, then y, like in a {@link Clipboard}.
+     *
+     * @param change The number of the change
+     * @return The index
+     */
+    public int getIndex(int change) {
+        return this.positions.get(change);
+    }
+
+    public BlockState getBefore(int change) {
+        return this.palette.get(this.before.get(change));
+    }
+
+    public BlockState getAfter(int change) {
+        return this.palette.get(this.after.get(change));
+    }
+
+    /**
+     * Gets the tile entities that were replaced by the edit, by their index
+     * in the edited region.
+     *
+     * @return The tile entities
+     */
+    public Map<Integer, TileEntityArchetype> getTileEntitiesBefore() {
+        return this.tileEntitiesBefore;
+    }
+
+    /**
+     * Gets the tile entities that were placed by the edit, by their index in
+     * the edited region.
+     *
+     * @return The tile entities
+     */
+    public Map<Integer, TileEntityArchetype> getTileEntitiesAfter() {
+        return this.tileEntitiesAfter;
+    }
+
+    /**
+     * Gets the approximate number of bytes this journal keeps on the heap.
+     *
+     * @return The size in bytes
+     */
+    public long getSizeInBytes() {
+        return this.positions.getSizeInBytes() + this.before.getSizeInBytes() + this.after.getSizeInBytes() + 8L * this.palette.size()
+                + TILE_ENTITY_SIZE * (this.tileEntitiesBefore.size() + this.tileEntitiesAfter.size());
+    }
+
+    /**
+     * Writes this journal to a stream.
+     *
+     * @param out The stream to write to
+     * @throws IOException If the stream couldn't be written
+     */
+    public void write(NbtOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(this.worldId.getMostSignificantBits());
+        out.writeLong(this.worldId.getLeastSignificantBits());
+        out.writeVector(this.min);
+        out.writeVector(this.size);
+        out.writeInt(this.palette.size());
+        for (BlockState state : this.palette) {
+            out.writeUTF(state.getId());
+        }
+        this.positions.write(out);
+        this.before.write(out);
+        this.after.write(out);
+        writeTileEntities(out, this.tileEntitiesBefore);
+        writeTileEntities(out, this.tileEntitiesAfter);
+    }
+
+    /**
+     * Reads a journal written by {@link #write(NbtOutputStream)}.
+     *
+     * @param in The stream to read from
+     * @return The journal
+     * @throws IOException If the stream couldn't be read
+     * @throws InvalidDataException If the journal is invalid
+     */
+    public static EditJournal read(NbtInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new InvalidDataException("Unknown journal format");
+        }
+        final UUID worldId = new UUID(in.readLong(), in.readLong());
+        final Vector3i min = in.readVector();
+        final Vector3i size = in.readVector();
+        final List<BlockState> palette = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            palette.add(in.readBlockState());
+        }
+        return new EditJournal(worldId, min, size, palette, PackedIntArray.read(in), PackedIntArray.read(in), PackedIntArray.read(in),
+                readTileEntities(in), readTileEntities(in));
+    }
+
+    private static void writeTileEntities(NbtOutputStream out, Map<Integer, TileEntityArchetype> tileEntities) throws IOException {
+        out.writeInt(tileEntities.size());
+        for (Map.Entry<Integer, TileEntityArchetype> entry : tileEntities.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeArchetype(entry.getValue());
+        }
+    }
+
+    private static Map<Integer, TileEntityArchetype> readTileEntities(NbtInputStream in) throws IOException {
+        final Map<Integer, TileEntityArchetype> tileEntities = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            tileEntities.put(in.readInt(), in.readArchetype());
+        }
+        return tileEntities;
+    }
+
+    /**
+     * Records the changes of an edit as it happens.
+     */
+    public static final class Builder {
+
+        private final UUID worldId;
+        private final Vector3i min;
+        private final Vector3i size;
+        private final Map<BlockState, Integer> ids = new HashMap<>();
+        private final List<BlockState> palette = new ArrayList<>();
+        // Grown as needed, and only packed once the edit is done
+        private int[] positions = new int[256];
+        private int[] before = new int[256];
+        private int[] after = new int[256];
+        private int changes;
+        private final Map<Integer, TileEntityArchetype> tileEntitiesBefore = new HashMap<>();
+        private final Map<Integer, TileEntityArchetype> tileEntitiesAfter = new HashMap<>();
+
+        /**
+         * Creates a new builder.
+         *
+         * @param worldId The world that is edited
+         * @param min The minimum position of the edited region
+         * @param size The size of the edited region
+         */
+        public Builder(UUID worldId, Vector3i min, Vector3i size) {
+            this.worldId = worldId;
+            this.min = min;
+            this.size = size;
+        }
+
+        /**
+         * Records a changed block. Every index should only be recorded once.
+         *
+         * @param index The index of the block in the edited region
+         * @param before The block state before the change
+         * @param after The block state after the change
+         */
+        public void record(int index, BlockState before, BlockState after) {
+            if (this.changes == this.positions.length) {
+                final int capacity = this.changes * 2;
+                this.positions = Arrays.copyOf(this.positions, capacity);
+                this.before = Arrays.copyOf(this.before, capacity);
+                this.after = Arrays.copyOf(this.after, capacity);
+            }
+            this.positions[this.changes] = index;
+            this.before[this.changes] = getId(before);
+            this.after[this.changes] = getId(after);
+            this.changes++;
+        }
+
+        /**
+         * Gets the number of changed blocks recorded so far.
+         *
+         * @return The number of changes
+         */
+        public int getChangeCount() {
+            return this.changes;
+        }
+
+        /**
+         * Gets the index in the edited region of a recorded change.
+         *
+         * @param change The number of the change
+         * @return The index
+         */
+        public int getIndex(int change) {
+            return this.positions[change];
+        }
+
+        public void recordTileEntityBefore(int index, TileEntityArchetype archetype) {
+            this.tileEntitiesBefore.put(index, archetype);
+        }
+
+        public void recordTileEntityAfter(int index, TileEntityArchetype archetype) {
+            this.tileEntitiesAfter.put(index, archetype);
+        }
+
+        private int getId(BlockState state) {
+            Integer id = this.ids.get(state);
+            if (id == null) {
+                id = this.palette.size();
+                this.ids.put(state, id);
+                this.palette.add(state);
+            }
+            return id;
+        }
+
+        public EditJournal build() {
+            final int paletteBits = PackedIntArray.bitsFor(this.palette.size());
+            final PackedIntArray positions = new PackedIntArray(PackedIntArray.bitsFor(this.size.getX() * this.size.getY() * this.size.getZ()),
+                    this.changes);
+            final PackedIntArray before = new PackedIntArray(paletteBits, this.changes);
+            final PackedIntArray after = new PackedIntArray(paletteBits, this.changes);
+            for (int i = 0; i < this.changes; i++) {
+                positions.set(i, this.positions[i]);
+                before.set(i, this.before[i]);
+                after.set(i, this.after[i]);
+            }
+            return new EditJournal(this.worldId, this.min, this.size, this.palette, positions, before, after, this.tileEntitiesBefore,
+                    this.tileEntitiesAfter);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.block.tileentity.TileEntityArchetype;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Undoes or redoes an edit over several ticks, by placing the block states
+ * and tile entities its {@link EditJournal} recorded.
+ *
+ * <p>Like a {@link PasteTask}, blocks inside the edited region are placed
+ * without updates first, and the ones on its outer shell with all updates
+ * afterwards. The blocks placed without updates then get a single block
+ * update each. Placing the same states twice does no harm, so an undo or redo
+ * that was cancelled can simply be run again.</p>
+ */
+public class JournalTask extends BlockChangeTask {
+
+    private enum Phase {
+        INTERIOR,
+        SHELL,
+        UPDATES,
+        TILE_ENTITIES,
+        DONE
+    }
+
+    private final World world;
+    private final EditJournal journal;
+    private final boolean undo;
+    private final Runnable onComplete;
+    private final Vector3i min;
+    private final Vector3i max;
+    private final List<Map.Entry<Integer, TileEntityArchetype>> tileEntities;
+
+    private Phase phase = Phase.INTERIOR;
+    private int cursor;
+
+    /**
+     * Creates a new task.
+     *
+     * @param owner The player to report progress to
+     * @param world The world the edit was made in
+     * @param journal The journal of the edit
+     * @param undo Whether to undo the edit, rather than redo it
+     * @param blocksPerTick The most positions to go through in a single tick
+     * @param tickBudget The most time to spend in a single tick, in nanoseconds
+     * @param onComplete Called once the whole edit has been undone or redone
+     */
+    public JournalTask(UUID owner, World world, EditJournal journal, boolean undo, int blocksPerTick, long tickBudget, Runnable onComplete) {
+        super(owner, undo ? "Undo" : "Redo", blocksPerTick, tickBudget);
+        this.world = world;
+        this.journal = journal;
+        this.undo = undo;
+        this.onComplete = onComplete;
+        this.min = journal.getMin();
+        this.max = journal.getMax();
+        this.tileEntities = new ArrayList<>((undo ? journal.getTileEntitiesBefore() : journal.getTileEntitiesAfter()).entrySet());
+    }
+
+    @Override
+    public int getTotal() {
+        return this.journal.getChangeCount() + this.tileEntities.size();
+    }
+
+    @Override
+    protected boolean isComplete() {
+        return this.phase == Phase.DONE;
+    }
+
+    @Override
+    protected Text onComplete() {
+        this.onComplete.run();
+        return Text.of(TextColors.GREEN, (this.undo ? "Undid " : "Redid ") + this.journal.getChangeCount() + " block changes.");
+    }
+
+    @Override
+    protected boolean step() {
+        if (this.phase == Phase.TILE_ENTITIES) {
+            if (this.cursor >= this.tileEntities.size()) {
+                this.phase = Phase.DONE;
+                return false;
+            }
+            final Map.Entry<Integer, TileEntityArchetype> entry = this.tileEntities.get(this.cursor++);
+            entry.getValue().apply(new Location<>(this.world, getPosition(entry.getKey())));
+            return true;
+        }
+        if (this.cursor >= this.journal.getChangeCount()) {
+            this.phase = this.phase == Phase.INTERIOR ? Phase.SHELL : this.phase == Phase.SHELL ? Phase.UPDATES : Phase.TILE_ENTITIES;
+            this.cursor = 0;
+            return false;
+        }
+        final int change = this.cursor++;
+        final Vector3i position = getPosition(this.journal.getIndex(change));
+        final boolean shell = position.getX() == this.min.getX() || position.getX() == this.max.getX()
+                || position.getY() == this.min.getY() || position.getY() == this.max.getY()
+                || position.getZ() == this.min.getZ() || position.getZ() == this.max.getZ();
+        if (this.phase == Phase.UPDATES) {
+            // Not part of the total, the blocks were counted when they were placed
+            if (!shell) {
+                PasteTask.scheduleUpdate(this.world, position);
+            }
+            return false;
+        }
+        if (shell != (this.phase == Phase.SHELL)) {
+            return false;
+        }
+        this.world.setBlock(position.getX(), position.getY(), position.getZ(), this.undo ? this.journal.getBefore(change) : this.journal.getAfter(change),
+                shell ? PasteTask.SHELL_FLAG : PasteTask.INTERIOR_FLAG);
+        return true;
+    }
+
+    private Vector3i getPosition(int index) {
+        final Vector3i size = this.journal.getSize();
+        return this.min.add(index % size.getX(), index / (size.getX() * size.getZ()), index / size.getX() % size.getZ());
+    }
+}
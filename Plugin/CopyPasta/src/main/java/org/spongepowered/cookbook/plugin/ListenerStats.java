@@ -0,0 +1,62 @@
+package org.spongepowered.cookbook.plugin;
+
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often a listener runs and how long it takes.
+ *
+ * <p>Listeners for common events run thousands of times a second, so
+ * recording must not allocate or contend. Each counter is a
+ * {@link LongAdder}, which only sums up its cells when it is read.</p>
+ */
+public final class ListenerStats {
+
+    private final String name;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    public ListenerStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Records a single run of the listener.
+     *
+     * @param start When the listener started, from {@link System#nanoTime()}
+     * @param handled Whether the listener acted on the event, rather than
+     *     bailing out
+     */
+    public void record(long start, boolean handled) {
+        this.nanos.add(System.nanoTime() - start);
+        this.invocations.increment();
+        if (handled) {
+            this.handled.increment();
+        }
+    }
+
+    public void reset() {
+        this.invocations.reset();
+        this.handled.reset();
+        this.nanos.reset();
+    }
+
+    /**
+     * Describes the counts so far, with the average time per run.
+     *
+     * @return The description
+     */
+    public Text toText() {
+        final long invocations = this.invocations.sum();
+        final long nanos = this.nanos.sum();
+        return Text.of(TextColors.GOLD, this.name, TextColors.GRAY, ": " + invocations + " calls, " + this.handled.sum() + " handled, "
+                + String.format("%.3f ms total, %d ns/call", nanos / 1e6, invocations == 0 ? 0 : nanos / invocations));
+    }
+}
@@ -0,0 +1,339 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.tileentity.TileEntityArchetype;
+import org.spongepowered.api.block.tileentity.TileEntityType;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.data.DataQuery;
+import org.spongepowered.api.data.persistence.InvalidDataException;
+import org.spongepowered.api.entity.EntityArchetype;
+import org.spongepowered.api.entity.EntityType;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads NBT one tag at a time, so large arrays can be consumed while they
+ * are being read instead of being loaded into memory first.
+ */
+public class NbtInputStream extends DataInputStream {
+
+    public static final byte TAG_END = 0;
+    public static final byte TAG_BYTE = 1;
+    public static final byte TAG_SHORT = 2;
+    public static final byte TAG_INT = 3;
+    public static final byte TAG_LONG = 4;
+    public static final byte TAG_FLOAT = 5;
+    public static final byte TAG_DOUBLE = 6;
+    public static final byte TAG_BYTE_ARRAY = 7;
+    public static final byte TAG_STRING = 8;
+    public static final byte TAG_LIST = 9;
+    public static final byte TAG_COMPOUND = 10;
+    public static final byte TAG_INT_ARRAY = 11;
+    public static final byte TAG_LONG_ARRAY = 12;
+
+    public NbtInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Reads the type and name of the root compound.
+     *
+     * @return The name of the root compound
+     * @throws IOException If the stream doesn't start with a compound
+     */
+    public String readRoot() throws IOException {
+        final byte type = readByte();
+        if (type != TAG_COMPOUND) {
+            throw new InvalidDataException("Expected a compound root tag, got " + type);
+        }
+        return readUTF();
+    }
+
+    /**
+     * Reads a numeric tag of any type as an int.
+     *
+     * @param type The type of the tag
+     * @return The value
+     * @throws IOException If the tag is not numeric
+     */
+    public int readIntValue(byte type) throws IOException {
+        switch (type) {
+            case TAG_BYTE:
+                return readByte();
+            case TAG_SHORT:
+                return readShort();
+            case TAG_INT:
+                return readInt();
+            case TAG_LONG:
+                return (int) readLong();
+            default:
+                throw new InvalidDataException("Expected a numeric tag, got " + type);
+        }
+    }
+
+    /**
+     * Reads an int array tag, accepting byte arrays as well.
+     *
+     * @param type The type of the tag
+     * @return The values
+     * @throws IOException If the tag is not an array
+     */
+    public int[] readIntArrayValue(byte type) throws IOException {
+        if (type != TAG_INT_ARRAY && type != TAG_BYTE_ARRAY) {
+            throw new InvalidDataException("Expected an array tag, got " + type);
+        }
+        final int[] values = new int[readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = type == TAG_INT_ARRAY ? readInt() : readByte();
+        }
+        return values;
+    }
+
+    /**
+     * Reads a compound into a new data container. The type and name of the
+     * compound must already have been read.
+     *
+     * @return The container
+     * @throws IOException If the compound couldn't be read
+     */
+    public DataContainer readCompound() throws IOException {
+        final DataContainer container = DataContainer.createNew();
+        byte type;
+        while ((type = readByte()) != TAG_END) {
+            final String name = readUTF();
+            container.set(DataQuery.of(name), readValue(type));
+        }
+        return container;
+    }
+
+    /**
+     * Reads the payload of a tag as the value a data view would hold.
+     *
+     * @param type The type of the tag
+     * @return The value
+     * @throws IOException If the tag couldn't be read
+     */
+    public Object readValue(byte type) throws IOException {
+        switch (type) {
+            case TAG_BYTE:
+                return readByte();
+            case TAG_SHORT:
+                return readShort();
+            case TAG_INT:
+                return readInt();
+            case TAG_LONG:
+                return readLong();
+            case TAG_FLOAT:
+                return readFloat();
+            case TAG_DOUBLE:
+                return readDouble();
+            case TAG_BYTE_ARRAY: {
+                final byte[] values = new byte[readInt()];
+                readFully(values);
+                return values;
+            }
+            case TAG_STRING:
+                return readUTF();
+            case TAG_LIST: {
+                final byte elementType = readByte();
+                final int length = readInt();
+                final List<Object> values = new ArrayList<>(length);
+                for (int i = 0; i < length; i++) {
+                    values.add(readValue(elementType));
+                }
+                return values;
+            }
+            case TAG_COMPOUND:
+                return readCompound();
+            case TAG_INT_ARRAY: {
+                final int[] values = new int[readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = readInt();
+                }
+                return values;
+            }
+            case TAG_LONG_ARRAY: {
+                final long[] values = new long[readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = readLong();
+                }
+                return values;
+            }
+            default:
+                throw new InvalidDataException("Unknown tag type " + type);
+        }
+    }
+
+    /**
+     * Skips over the payload of a tag without keeping any of it.
+     *
+     * @param type The type of the tag
+     * @throws IOException If the tag couldn't be skipped
+     */
+    public void skipValue(byte type) throws IOException {
+        switch (type) {
+            case TAG_BYTE:
+                skipFully(1);
+                break;
+            case TAG_SHORT:
+                skipFully(2);
+                break;
+            case TAG_INT:
+            case TAG_FLOAT:
+                skipFully(4);
+                break;
+            case TAG_LONG:
+            case TAG_DOUBLE:
+                skipFully(8);
+                break;
+            case TAG_BYTE_ARRAY:
+                skipFully(readInt());
+                break;
+            case TAG_STRING:
+                skipFully(readUnsignedShort());
+                break;
+            case TAG_LIST: {
+                final byte elementType = readByte();
+                final int length = readInt();
+                for (int i = 0; i < length; i++) {
+                    skipValue(elementType);
+                }
+                break;
+            }
+            case TAG_COMPOUND: {
+                byte elementType;
+                while ((elementType = readByte()) != TAG_END) {
+                    skipFully(readUnsignedShort());
+                    skipValue(elementType);
+                }
+                break;
+            }
+            case TAG_INT_ARRAY:
+                skipFully(readInt() * 4L);
+                break;
+            case TAG_LONG_ARRAY:
+                skipFully(readInt() * 8L);
+                break;
+            default:
+                throw new InvalidDataException("Unknown tag type " + type);
+        }
+    }
+
+    /**
+     * Reads a var int, as used by the block data of sponge schematics.
+     *
+     * @return The value
+     * @throws IOException If the var int couldn't be read
+     */
+    public int readVarInt() throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) {
+                throw new InvalidDataException("Var int is too big");
+            }
+            b = readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Skips a number of bytes, reading them if the stream can't skip.
+     *
+     * @param bytes The number of bytes to skip
+     * @throws IOException If the stream ended first
+     */
+    void skipFully(long bytes) throws IOException {
+        while (bytes > 0) {
+            final long skipped = skip(bytes);
+            if (skipped <= 0) {
+                // skip() may give up early, fall back to reading
+                readByte();
+                bytes--;
+            } else {
+                bytes -= skipped;
+            }
+        }
+    }
+
+    /**
+     * Reads a vector written by {@link NbtOutputStream#writeVector(Vector3i)}.
+     *
+     * @return The vector
+     * @throws IOException If the vector couldn't be read
+     */
+    public Vector3i readVector() throws IOException {
+        return new Vector3i(readInt(), readInt(), readInt());
+    }
+
+    /**
+     * Reads a position written by {@link NbtOutputStream#writePosition(Vector3d)}.
+     *
+     * @return The position
+     * @throws IOException If the position couldn't be read
+     */
+    public Vector3d readPosition() throws IOException {
+        return new Vector3d(readDouble(), readDouble(), readDouble());
+    }
+
+    /**
+     * Reads an archetype written by
+     * {@link NbtOutputStream#writeArchetype(TileEntityArchetype)}.
+     *
+     * @return The archetype
+     * @throws IOException If the archetype couldn't be read
+     * @throws InvalidDataException If its block state or type is unknown
+     */
+    public TileEntityArchetype readArchetype() throws IOException {
+        final BlockState state = readBlockState();
+        final String typeId = readUTF();
+        final DataContainer tileData = readCompound();
+        return TileEntityArchetype.builder()
+                .state(state)
+                .tile(Sponge.getRegistry().getType(TileEntityType.class, typeId)
+                        .orElseThrow(() -> new InvalidDataException("Unknown tile entity type " + typeId)))
+                .tileData(tileData)
+                .build();
+    }
+
+    /**
+     * Reads an entity archetype written by
+     * {@link NbtOutputStream#writeEntityArchetype(EntityArchetype)}.
+     *
+     * @return The archetype
+     * @throws IOException If the archetype couldn't be read
+     * @throws InvalidDataException If its type is unknown
+     */
+    public EntityArchetype readEntityArchetype() throws IOException {
+        final String typeId = readUTF();
+        final DataContainer entityData = readCompound();
+        return EntityArchetype.builder()
+                .type(Sponge.getRegistry().getType(EntityType.class, typeId)
+                        .orElseThrow(() -> new InvalidDataException("Unknown entity type " + typeId)))
+                .entityData(entityData)
+                .build();
+    }
+
+    /**
+     * Reads a block state id and looks it up, for the plugin's own file
+     * formats.
+     *
+     * @return The block state
+     * @throws IOException If the id couldn't be read
+     * @throws InvalidDataException If the block state is unknown
+     */
+    public BlockState readBlockState() throws IOException {
+        final String id = readUTF();
+        return Sponge.getRegistry().getType(BlockState.class, id).orElseThrow(() -> new InvalidDataException("Unknown block state " + id));
+    }
+}
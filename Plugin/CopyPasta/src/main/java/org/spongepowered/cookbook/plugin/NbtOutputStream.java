@@ -0,0 +1,283 @@
+package org.spongepowered.cookbook.plugin;
+
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_BYTE;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_BYTE_ARRAY;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_COMPOUND;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_DOUBLE;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_END;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_FLOAT;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_INT;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_INT_ARRAY;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_LIST;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_LONG;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_LONG_ARRAY;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_SHORT;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_STRING;
+
+import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.CatalogType;
+import org.spongepowered.api.block.tileentity.TileEntityArchetype;
+import org.spongepowered.api.data.DataQuery;
+import org.spongepowered.api.data.DataSerializable;
+import org.spongepowered.api.data.DataView;
+import org.spongepowered.api.data.persistence.InvalidDataException;
+import org.spongepowered.api.entity.EntityArchetype;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes NBT one tag at a time, so large arrays can be written while they
+ * are being encoded instead of being built in memory first.
+ */
+public class NbtOutputStream extends DataOutputStream {
+
+    public NbtOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Writes the type and name of a tag. The payload has to follow.
+     *
+     * @param type The type of the tag
+     * @param name The name of the tag
+     * @throws IOException If the header couldn't be written
+     */
+    public void writeTagHeader(byte type, String name) throws IOException {
+        writeByte(type);
+        writeUTF(name);
+    }
+
+    /**
+     * Ends the compound that is currently being written.
+     *
+     * @throws IOException If the end tag couldn't be written
+     */
+    public void writeEnd() throws IOException {
+        writeByte(TAG_END);
+    }
+
+    public void writeShortTag(String name, int value) throws IOException {
+        writeTagHeader(TAG_SHORT, name);
+        writeShort(value);
+    }
+
+    public void writeIntTag(String name, int value) throws IOException {
+        writeTagHeader(TAG_INT, name);
+        writeInt(value);
+    }
+
+    public void writeStringTag(String name, String value) throws IOException {
+        writeTagHeader(TAG_STRING, name);
+        writeUTF(value);
+    }
+
+    public void writeIntArrayTag(String name, int... values) throws IOException {
+        writeTagHeader(TAG_INT_ARRAY, name);
+        writeInt(values.length);
+        for (int value : values) {
+            writeInt(value);
+        }
+    }
+
+    /**
+     * Writes a value of a data view as a tag, picking the tag type from the
+     * type of the value.
+     *
+     * @param name The name of the tag
+     * @param value The value
+     * @throws IOException If the value couldn't be written
+     */
+    public void writeTag(String name, Object value) throws IOException {
+        value = normalize(value);
+        writeTagHeader(getType(value), name);
+        writeValue(value);
+    }
+
+    /**
+     * Writes the contents of a data view, followed by the end tag.
+     *
+     * @param view The view to write
+     * @throws IOException If the view couldn't be written
+     */
+    public void writeCompound(DataView view) throws IOException {
+        for (Map.Entry<DataQuery, Object> entry : view.getValues(false).entrySet()) {
+            writeTag(entry.getKey().asString('.'), entry.getValue());
+        }
+        writeEnd();
+    }
+
+    /**
+     * Writes a var int, as used by the block data of sponge schematics.
+     *
+     * @param value The value
+     * @throws IOException If the var int couldn't be written
+     */
+    public void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        write(value);
+    }
+
+    /**
+     * Gets the number of bytes {@link #writeVarInt(int)} uses for a value.
+     *
+     * @param value The value
+     * @return The number of bytes
+     */
+    public static int getVarIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value instanceof Byte) {
+            writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            writeShort((Short) value);
+        } else if (value instanceof Integer) {
+            writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            writeLong((Long) value);
+        } else if (value instanceof Float) {
+            writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            writeDouble((Double) value);
+        } else if (value instanceof byte[]) {
+            final byte[] values = (byte[]) value;
+            writeInt(values.length);
+            write(values);
+        } else if (value instanceof String) {
+            writeUTF((String) value);
+        } else if (value instanceof List) {
+            final List<?> values = (List<?>) value;
+            final byte elementType = values.isEmpty() ? TAG_END : getType(normalize(values.get(0)));
+            writeByte(elementType);
+            writeInt(values.size());
+            for (Object element : values) {
+                element = normalize(element);
+                if (getType(element) != elementType) {
+                    throw new InvalidDataException("Lists can only hold a single type of tag");
+                }
+                writeValue(element);
+            }
+        } else if (value instanceof DataView) {
+            writeCompound((DataView) value);
+        } else if (value instanceof int[]) {
+            final int[] values = (int[]) value;
+            writeInt(values.length);
+            for (int element : values) {
+                writeInt(element);
+            }
+        } else if (value instanceof long[]) {
+            final long[] values = (long[]) value;
+            writeInt(values.length);
+            for (long element : values) {
+                writeLong(element);
+            }
+        } else {
+            throw new InvalidDataException("Can't write " + value.getClass().getName() + " as NBT");
+        }
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof Boolean) {
+            return (byte) ((Boolean) value ? 1 : 0);
+        } else if (value instanceof DataSerializable) {
+            return ((DataSerializable) value).toContainer();
+        } else if (value instanceof CatalogType) {
+            return ((CatalogType) value).getId();
+        } else if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return value;
+    }
+
+    private static byte getType(Object value) {
+        if (value instanceof Byte) {
+            return TAG_BYTE;
+        } else if (value instanceof Short) {
+            return TAG_SHORT;
+        } else if (value instanceof Integer) {
+            return TAG_INT;
+        } else if (value instanceof Long) {
+            return TAG_LONG;
+        } else if (value instanceof Float) {
+            return TAG_FLOAT;
+        } else if (value instanceof Double) {
+            return TAG_DOUBLE;
+        } else if (value instanceof byte[]) {
+            return TAG_BYTE_ARRAY;
+        } else if (value instanceof String) {
+            return TAG_STRING;
+        } else if (value instanceof List) {
+            return TAG_LIST;
+        } else if (value instanceof DataView) {
+            return TAG_COMPOUND;
+        } else if (value instanceof int[]) {
+            return TAG_INT_ARRAY;
+        } else if (value instanceof long[]) {
+            return TAG_LONG_ARRAY;
+        }
+        throw new InvalidDataException("Can't write " + value.getClass().getName() + " as NBT");
+    }
+
+    /**
+     * Writes a vector as three ints, for the plugin's own file formats.
+     *
+     * @param vector The vector to write
+     * @throws IOException If the vector couldn't be written
+     */
+    public void writeVector(Vector3i vector) throws IOException {
+        writeInt(vector.getX());
+        writeInt(vector.getY());
+        writeInt(vector.getZ());
+    }
+
+    /**
+     * Writes a position as three doubles, for the plugin's own file formats.
+     *
+     * @param position The position to write
+     * @throws IOException If the position couldn't be written
+     */
+    public void writePosition(Vector3d position) throws IOException {
+        writeDouble(position.getX());
+        writeDouble(position.getY());
+        writeDouble(position.getZ());
+    }
+
+    /**
+     * Writes a tile entity archetype as its block state id, tile entity type
+     * id and tile data compound, for the plugin's own file formats.
+     *
+     * @param archetype The archetype to write
+     * @throws IOException If the archetype couldn't be written
+     */
+    public void writeArchetype(TileEntityArchetype archetype) throws IOException {
+        writeUTF(archetype.getState().getId());
+        writeUTF(archetype.getTileEntityType().getId());
+        writeCompound(archetype.getTileData());
+    }
+
+    /**
+     * Writes an entity archetype as its entity type id and entity data
+     * compound, for the plugin's own file formats.
+     *
+     * @param archetype The archetype to write
+     * @throws IOException If the archetype couldn't be written
+     */
+    public void writeEntityArchetype(EntityArchetype archetype) throws IOException {
+        writeUTF(archetype.getType().getId());
+        writeCompound(archetype.getEntityData());
+    }
+}
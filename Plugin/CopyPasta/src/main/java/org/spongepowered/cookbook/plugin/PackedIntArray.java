@@ -0,0 +1,198 @@
+package org.spongepowered.cookbook.plugin;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.LongBuffer;
+
+/**
+ * A fixed length array of small non-negative ints, packed into longs using
+ * only as many bits per value as needed.
+ *
+ * <p>Values never straddle two longs, the bits left over at the top of each
+ * long are unused. That wastes a little space for some bit counts, but keeps
+ * every access to a single long, and means ranges of values starting at a
+ * multiple of {@link #getValuesPerLong()} can be written by different threads
+ * without interfering with each other.</p>
+ */
+public final class PackedIntArray {
+
+    private final int bits;
+    private final int valuesPerLong;
+    private final long mask;
+    private final int length;
+    private final long[] data;
+
+    /**
+     * Creates a new array with all values set to zero.
+     *
+     * @param bits The number of bits per value, between 1 and 32
+     * @param length The number of values
+     */
+    public PackedIntArray(int bits, int length) {
+        checkArgument(bits >= 1 && bits <= 32, "bits must be between 1 and 32");
+        checkArgument(length >= 0, "length must not be negative");
+        this.bits = bits;
+        this.valuesPerLong = 64 / bits;
+        this.mask = (1L << bits) - 1;
+        this.length = length;
+        this.data = new long[(length + this.valuesPerLong - 1) / this.valuesPerLong];
+    }
+
+    /**
+     * Gets the number of bits needed to store the values {@code 0} up to
+     * {@code count - 1}.
+     *
+     * @param count The number of distinct values
+     * @return The number of bits, at least 1
+     */
+    public static int bitsFor(int count) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(count - 1));
+    }
+
+    /**
+     * Packs the given values into a new array.
+     *
+     * @param values The values
+     * @param bits The number of bits per value
+     * @return The new array
+     */
+    public static PackedIntArray of(int[] values, int bits) {
+        final PackedIntArray array = new PackedIntArray(bits, values.length);
+        for (int i = 0; i < values.length; i++) {
+            array.set(i, values[i]);
+        }
+        return array;
+    }
+
+    public int getBits() {
+        return this.bits;
+    }
+
+    public int getValuesPerLong() {
+        return this.valuesPerLong;
+    }
+
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Gets the largest value that fits in this array.
+     *
+     * @return The largest value
+     */
+    public int getMaxValue() {
+        return (int) this.mask;
+    }
+
+    /**
+     * Gets the number of longs the values are packed into.
+     *
+     * @return The number of longs
+     */
+    public int getDataLength() {
+        return this.data.length;
+    }
+
+    /**
+     * Gets the approximate number of bytes this array takes up on the heap.
+     *
+     * @return The size in bytes
+     */
+    public long getSizeInBytes() {
+        return 16 + (long) this.data.length * Long.BYTES;
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        return (int) (this.data[index / this.valuesPerLong] >>> (index % this.valuesPerLong * this.bits) & this.mask);
+    }
+
+    public void set(int index, int value) {
+        checkIndex(index);
+        if (value < 0 || value > this.mask) {
+            throw new IllegalArgumentException("Value " + value + " doesn't fit in " + this.bits + " bits");
+        }
+        final int word = index / this.valuesPerLong;
+        final int shift = index % this.valuesPerLong * this.bits;
+        this.data[word] = this.data[word] & ~(this.mask << shift) | (long) value << shift;
+    }
+
+    /**
+     * Writes a range of the packed longs to a buffer.
+     *
+     * @param buffer The buffer to write to
+     * @param offset The index of the first long to write
+     * @param count The number of longs to write
+     */
+    public void writeTo(LongBuffer buffer, int offset, int count) {
+        buffer.put(this.data, offset, count);
+    }
+
+    /**
+     * Reads a range of the packed longs from a buffer, as written by
+     * {@link #writeTo(LongBuffer, int, int)}.
+     *
+     * @param buffer The buffer to read from
+     * @param offset The index of the first long to read
+     * @param count The number of longs to read
+     */
+    public void readFrom(LongBuffer buffer, int offset, int count) {
+        buffer.get(this.data, offset, count);
+    }
+
+    /**
+     * Writes this array, including its bits per value and length, to a
+     * stream.
+     *
+     * @param out The stream to write to
+     * @throws IOException If the stream couldn't be written
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(this.bits);
+        out.writeInt(this.length);
+        for (long value : this.data) {
+            out.writeLong(value);
+        }
+    }
+
+    /**
+     * Reads an array that was written with {@link #write(DataOutput)}.
+     *
+     * @param in The stream to read from
+     * @return The array
+     * @throws IOException If the stream couldn't be read
+     */
+    public static PackedIntArray read(DataInput in) throws IOException {
+        final PackedIntArray array = new PackedIntArray(in.readUnsignedByte(), in.readInt());
+        for (int i = 0; i < array.data.length; i++) {
+            array.data[i] = in.readLong();
+        }
+        return array;
+    }
+
+    /**
+     * Copies this array into a new one with a different number of bits per
+     * value.
+     *
+     * @param bits The number of bits per value of the copy
+     * @return The copy
+     * @throws IllegalArgumentException If a value doesn't fit in the new number of bits
+     */
+    public PackedIntArray resize(int bits) {
+        final PackedIntArray array = new PackedIntArray(bits, this.length);
+        for (int i = 0; i < this.length; i++) {
+            array.set(i, get(i));
+        }
+        return array;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.length) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.spongepowered.cookbook.plugin;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockType;
+import org.spongepowered.api.block.BlockTypes;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Decides which blocks of a clipboard a paste places.
+ *
+ * <p>A mask can skip air, only paste some of the blocks of the clipboard, and
+ * only replace some of the blocks in the world. Checking a block state
+ * against a list of blocks is slow compared to placing the block, so the
+ * blocks of the clipboard are checked once per palette entry instead, which
+ * gives a table indexed by palette id. The blocks in the world aren't in a
+ * palette, so what was decided for each of their states is remembered
+ * instead.</p>
+ */
+public final class PasteMask {
+
+    /**
+     * A mask that pastes every block.
+     */
+    public static final PasteMask ALL = new PasteMask(false, null, null);
+
+    private final boolean skipAir;
+    // Null to paste or replace every block
+    private final Predicate<BlockState> only;
+    private final Predicate<BlockState> replace;
+
+    /**
+     * Creates a new mask.
+     *
+     * @param skipAir Whether to leave the world alone where the clipboard has
+     *     air
+     * @param only The blocks of the clipboard to paste, or null for all
+     * @param replace The blocks in the world to replace, or null for all
+     */
+    public PasteMask(boolean skipAir, Predicate<BlockState> only, Predicate<BlockState> replace) {
+        this.skipAir = skipAir;
+        this.only = only;
+        this.replace = replace;
+    }
+
+    /**
+     * Checks whether this mask pastes every block.
+     *
+     * @return Whether this mask pastes every block
+     */
+    public boolean isAll() {
+        return !this.skipAir && this.only == null && this.replace == null;
+    }
+
+    /**
+     * Checks which blocks of a palette are pasted.
+     *
+     * @param palette The palette of the clipboard
+     * @return Whether each palette id is pasted
+     */
+    public boolean[] compile(List<BlockState> palette) {
+        final boolean[] pasted = new boolean[palette.size()];
+        for (int id = 0; id < pasted.length; id++) {
+            final BlockState state = palette.get(id);
+            pasted[id] = !(this.skipAir && state.getType() == BlockTypes.AIR) && (this.only == null || this.only.test(state));
+        }
+        return pasted;
+    }
+
+    /**
+     * Creates a check of which blocks in the world are replaced. Each check
+     * remembers what it decided, so it should only be used by a single paste
+     * on the main thread.
+     *
+     * @return The check, or empty if every block is replaced
+     */
+    public Optional<Predicate<BlockState>> compileReplace() {
+        if (this.replace == null) {
+            return Optional.empty();
+        }
+        // Block states are unique, so they can be compared by identity
+        final Map<BlockState, Boolean> replaced = new IdentityHashMap<>();
+        return Optional.of(state -> replaced.computeIfAbsent(state, this.replace::test));
+    }
+
+    /**
+     * Parses a comma separated list of blocks. Each is either a block state,
+     * like {@code minecraft:log[axis=y,variant=oak]}, or a block type which
+     * matches all of its states.
+     *
+     * @param list The list of blocks
+     * @return Whether a block state is in the list
+     * @throws IllegalArgumentException If a block is unknown
+     */
+    public static Predicate<BlockState> parseBlocks(String list) {
+        final Set<BlockState> states = new HashSet<>();
+        final Set<BlockType> types = new HashSet<>();
+        // Commas also separate the traits of a block state, so only split
+        // outside of brackets
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i <= list.length(); i++) {
+            final char c = i < list.length() ? list.charAt(i) : ',';
+            if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                final String id = list.substring(start, i).trim();
+                start = i + 1;
+                if (id.isEmpty()) {
+                    continue;
+                }
+                final Optional<BlockState> state = id.indexOf('[') >= 0 ? Sponge.getRegistry().getType(BlockState.class, id) : Optional.empty();
+                if (state.isPresent()) {
+                    states.add(state.get());
+                } else {
+                    types.add(Sponge.getRegistry().getType(BlockType.class, id)
+                            .orElseThrow(() -> new IllegalArgumentException("Unknown block " + id)));
+                }
+            }
+        }
+        return state -> types.contains(state.getType()) || states.contains(state);
+    }
+}
@@ -0,0 +1,324 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.tileentity.TileEntity;
+import org.spongepowered.api.block.tileentity.TileEntityArchetype;
+import org.spongepowered.api.entity.EntityArchetype;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.util.Direction;
+import org.spongepowered.api.world.BlockChangeFlag;
+import org.spongepowered.api.world.BlockChangeFlags;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Pastes a clipboard into the world over several ticks.
+ *
+ * <p>The pasted region is split into chunk aligned sections, which are
+ * worked through one after the other, so every tick only touches a few
+ * chunks.</p>
+ *
+ * <p>Updating neighbors and running physics for every block is what makes a
+ * large paste expensive, and inside the pasted region it is pointless since
+ * the neighbors are pasted as well. So the paste runs in phases:</p>
+ *
+ * <ol>
+ *     <li>Every block except the outer shell is placed without any updates,
+ *     unless the mask leaves out one of its neighbors.</li>
+ *     <li>The outer shell is placed with all updates, which notifies the
+ *     blocks around the pasted region exactly once.</li>
+ *     <li>Every block placed without updates gets a single block update, so
+ *     falling blocks fall, liquids flow and torches and repeaters check
+ *     their power.</li>
+ *     <li>The tile entities are restored.</li>
+ *     <li>The entities are spawned.</li>
+ * </ol>
+ *
+ * <p>Blocks that are already the same as in the clipboard are left alone, as
+ * are blocks the {@link PasteMask} leaves out. The mask is checked before the
+ * world is looked at, so blocks it skips in the clipboard cost a single array
+ * read. Blocks next to a position the mask leaves out are placed with all
+ * updates, since that neighbor isn't pasted over and has to be notified.
+ * Every block and tile entity the paste changes is recorded in an
+ * {@link EditJournal}, so it can be undone. Entities are always spawned, the
+ * mask only applies to blocks, and undoing the paste leaves them be.</p>
+ */
+public class PasteTask extends BlockChangeTask {
+
+    static final BlockChangeFlag INTERIOR_FLAG = BlockChangeFlags.NONE;
+    static final BlockChangeFlag SHELL_FLAG = BlockChangeFlags.ALL;
+    // The API has no way to notify a block that didn't change, and placing
+    // the same state again does nothing, so the deferred pass schedules a
+    // block update for the next tick instead
+    private static final int UPDATE_PRIORITY = 0;
+    private static final int UPDATE_DELAY = 1;
+    private static final Direction[] NEIGHBORS = {
+            Direction.NORTH, Direction.EAST, Direction.SOUTH, Direction.WEST, Direction.UP, Direction.DOWN
+    };
+
+    private enum Phase {
+        INTERIOR,
+        SHELL,
+        UPDATES,
+        TILE_ENTITIES,
+        ENTITIES,
+        DONE
+    }
+
+    private final World world;
+    private final Vector3i origin;
+    private final Clipboard clipboard;
+    // Whether each palette id of the clipboard is pasted
+    private final boolean[] pasted;
+    // Null to replace every block in the world
+    private final Predicate<BlockState> replace;
+    // Whether the mask may leave out positions inside the region
+    private final boolean masked;
+    private final int total;
+    private final Vector3i min;
+    private final Vector3i max;
+    // Chunk aligned sections, as {minX, minY, minZ, maxX, maxY, maxZ} in world coordinates
+    private final List<int[]> sections = new ArrayList<>();
+    private final List<Map.Entry<Vector3i, TileEntityArchetype>> tileEntities;
+    private final Set<Integer> tileEntityIndices = new HashSet<>();
+    private final List<Map.Entry<Vector3d, EntityArchetype>> entities;
+    private final EditJournal.Builder journal;
+    // The changes of the journal that were placed without updates
+    private final BitSet deferred = new BitSet();
+    private final Consumer<EditJournal> journalConsumer;
+
+    private Phase phase = Phase.INTERIOR;
+    private int section;
+    private int cursor;
+
+    /**
+     * Creates a new paste task.
+     *
+     * @param owner The player to report progress to
+     * @param world The world to paste into
+     * @param origin Where the origin of the clipboard goes
+     * @param clipboard The clipboard to paste
+     * @param mask The blocks to paste
+     * @param blocksPerTick The most positions to go through in a single tick
+     * @param tickBudget The most time to spend in a single tick, in nanoseconds
+     * @param journalConsumer Receives the journal of the paste once it is
+     *     done or cancelled
+     */
+    public PasteTask(UUID owner, World world, Vector3i origin, Clipboard clipboard, PasteMask mask, int blocksPerTick, long tickBudget,
+            Consumer<EditJournal> journalConsumer) {
+        super(owner, "Paste", blocksPerTick, tickBudget);
+        this.world = world;
+        this.origin = origin;
+        this.clipboard = clipboard;
+        this.pasted = mask.compile(clipboard.getPalette());
+        this.replace = mask.compileReplace().orElse(null);
+        this.masked = !mask.isAll();
+        this.min = origin.add(clipboard.getMin());
+        this.max = origin.add(clipboard.getMax());
+        this.tileEntities = new ArrayList<>();
+        for (Map.Entry<Vector3i, TileEntityArchetype> entry : clipboard.getTileEntityArchetypes().entrySet()) {
+            final Vector3i position = entry.getKey();
+            final int index = clipboard.getIndex(position.getX(), position.getY(), position.getZ());
+            if (this.pasted[clipboard.getPaletteId(index)]) {
+                this.tileEntities.add(entry);
+                this.tileEntityIndices.add(index);
+            }
+        }
+        int blocks = 0;
+        if (mask.isAll()) {
+            blocks = clipboard.getVolume();
+        } else {
+            for (int i = 0; i < clipboard.getVolume(); i++) {
+                if (this.pasted[clipboard.getPaletteId(i)]) {
+                    blocks++;
+                }
+            }
+        }
+        this.entities = new ArrayList<>(clipboard.getEntityArchetypes().entries());
+        this.total = blocks + this.tileEntities.size() + this.entities.size();
+        this.journal = new EditJournal.Builder(world.getUniqueId(), this.min, clipboard.getSize());
+        this.journalConsumer = journalConsumer;
+        // Work through the region a chunk column at a time
+        for (int cx = this.min.getX() >> 4; cx <= this.max.getX() >> 4; cx++) {
+            for (int cz = this.min.getZ() >> 4; cz <= this.max.getZ() >> 4; cz++) {
+                for (int cy = this.min.getY() >> 4; cy <= this.max.getY() >> 4; cy++) {
+                    this.sections.add(new int[] {
+                            Math.max(cx << 4, this.min.getX()), Math.max(cy << 4, this.min.getY()), Math.max(cz << 4, this.min.getZ()),
+                            Math.min((cx << 4) + 15, this.max.getX()), Math.min((cy << 4) + 15, this.max.getY()),
+                            Math.min((cz << 4) + 15, this.max.getZ())
+                    });
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getTotal() {
+        return this.total;
+    }
+
+    @Override
+    protected boolean isComplete() {
+        return this.phase == Phase.DONE;
+    }
+
+    @Override
+    protected Text onComplete() {
+        this.journalConsumer.accept(this.journal.build());
+        return Text.of(TextColors.GREEN, "Pasted clipboard into world.");
+    }
+
+    @Override
+    protected void onCancel() {
+        // Whatever was pasted so far can still be undone
+        this.journalConsumer.accept(this.journal.build());
+    }
+
+    /**
+     * Schedules a block update at a position that was placed without any,
+     * which lets the block react to its neighbors once.
+     *
+     * @param world The world
+     * @param position The position
+     */
+    static void scheduleUpdate(World world, Vector3i position) {
+        world.addScheduledUpdate(position.getX(), position.getY(), position.getZ(), UPDATE_PRIORITY, UPDATE_DELAY);
+    }
+
+    @Override
+    protected boolean step() {
+        if (this.phase == Phase.ENTITIES) {
+            if (this.cursor >= this.entities.size()) {
+                this.phase = Phase.DONE;
+                return false;
+            }
+            final Map.Entry<Vector3d, EntityArchetype> entry = this.entities.get(this.cursor++);
+            entry.getValue().apply(new Location<>(this.world, this.origin.toDouble().add(entry.getKey())));
+            return true;
+        }
+        if (this.phase == Phase.TILE_ENTITIES) {
+            if (this.cursor >= this.tileEntities.size()) {
+                this.phase = Phase.ENTITIES;
+                this.cursor = 0;
+                return false;
+            }
+            final Map.Entry<Vector3i, TileEntityArchetype> entry = this.tileEntities.get(this.cursor++);
+            final Vector3i position = entry.getKey();
+            // The block of a tile entity may not have replaced the block in
+            // the world, in which case the tile entity doesn't belong there
+            final Vector3i target = this.origin.add(position);
+            if (this.replace != null && !this.world.getBlock(target).equals(entry.getValue().getState())) {
+                return true;
+            }
+            this.journal.recordTileEntityAfter(this.clipboard.getIndex(position.getX(), position.getY(), position.getZ()), entry.getValue());
+            entry.getValue().apply(new Location<>(this.world, target));
+            return true;
+        }
+        if (this.phase == Phase.UPDATES) {
+            // Not part of the total, the blocks were counted when they were placed
+            final int change = this.deferred.nextSetBit(this.cursor);
+            if (change < 0) {
+                this.phase = Phase.TILE_ENTITIES;
+                this.cursor = 0;
+                return false;
+            }
+            this.cursor = change + 1;
+            scheduleUpdate(this.world, getPosition(this.journal.getIndex(change)));
+            return false;
+        }
+        if (this.section >= this.sections.size()) {
+            this.phase = this.phase == Phase.INTERIOR ? Phase.SHELL : Phase.UPDATES;
+            this.section = 0;
+            this.cursor = 0;
+            return false;
+        }
+        final int[] bounds = this.sections.get(this.section);
+        final int sizeX = bounds[3] - bounds[0] + 1;
+        final int sizeZ = bounds[5] - bounds[2] + 1;
+        final int volume = sizeX * (bounds[4] - bounds[1] + 1) * sizeZ;
+        if (this.cursor >= volume) {
+            this.section++;
+            this.cursor = 0;
+            return false;
+        }
+        final int x = bounds[0] + this.cursor % sizeX;
+        final int z = bounds[2] + this.cursor / sizeX % sizeZ;
+        final int y = bounds[1] + this.cursor / (sizeX * sizeZ);
+        this.cursor++;
+        final boolean shell = x == this.min.getX() || x == this.max.getX() || y == this.min.getY() || y == this.max.getY()
+                || z == this.min.getZ() || z == this.max.getZ();
+        if (shell != (this.phase == Phase.SHELL)) {
+            return false;
+        }
+        final int index = this.clipboard.getIndex(x - this.origin.getX(), y - this.origin.getY(), z - this.origin.getZ());
+        final int id = this.clipboard.getPaletteId(index);
+        if (!this.pasted[id]) {
+            return false;
+        }
+        final BlockState state = this.clipboard.getPalette().get(id);
+        final BlockState current = this.world.getBlock(x, y, z);
+        if (this.replace != null && !current.equals(state) && !this.replace.test(current)) {
+            // Still counts toward the progress, since it is part of the total
+            return true;
+        }
+        final Optional<TileEntity> tileEntity = this.world.getTileEntity(x, y, z);
+        final boolean pastesTileEntity = !this.tileEntityIndices.isEmpty() && this.tileEntityIndices.contains(index);
+        if (current.equals(state) && !tileEntity.isPresent() && !pastesTileEntity) {
+            return true;
+        }
+        final boolean notify = shell || this.masked && isNextToSkipped(x, y, z);
+        if (!notify) {
+            this.deferred.set(this.journal.getChangeCount());
+        }
+        this.journal.record(index, current, state);
+        tileEntity.ifPresent(tile -> this.journal.recordTileEntityBefore(index, tile.createArchetype()));
+        this.world.setBlock(x, y, z, state, notify ? SHELL_FLAG : INTERIOR_FLAG);
+        return true;
+    }
+
+    private Vector3i getPosition(int index) {
+        final Vector3i size = this.clipboard.getSize();
+        return this.min.add(index % size.getX(), index / (size.getX() * size.getZ()), index / size.getX() % size.getZ());
+    }
+
+    /**
+     * Checks whether the mask leaves out any neighbor of an interior
+     * position. A neighbor the replace mask leaves out is one whose block in
+     * the world it rejects, unless that block is already the one pasted
+     * there.
+     */
+    private boolean isNextToSkipped(int x, int y, int z) {
+        for (Direction direction : NEIGHBORS) {
+            final Vector3i offset = direction.asBlockOffset();
+            final int nx = x + offset.getX();
+            final int ny = y + offset.getY();
+            final int nz = z + offset.getZ();
+            final int id = this.clipboard.getPaletteId(this.clipboard.getIndex(nx - this.origin.getX(), ny - this.origin.getY(),
+                    nz - this.origin.getZ()));
+            if (!this.pasted[id]) {
+                return true;
+            }
+            if (this.replace != null) {
+                final BlockState current = this.world.getBlock(nx, ny, nz);
+                if (!current.equals(this.clipboard.getPalette().get(id)) && !this.replace.test(current)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
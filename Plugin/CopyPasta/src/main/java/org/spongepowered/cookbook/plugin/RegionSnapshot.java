@@ -0,0 +1,226 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.tileentity.TileEntity;
+import org.spongepowered.api.block.tileentity.TileEntityArchetype;
+import org.spongepowered.api.entity.Entity;
+import org.spongepowered.api.entity.EntityArchetype;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.util.AABB;
+import org.spongepowered.api.world.Chunk;
+import org.spongepowered.api.world.World;
+import org.spongepowered.api.world.extent.ImmutableBlockVolume;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A copy of a region of the world, taken one chunk at a time, that can be
+ * turned into a {@link Clipboard} off the main thread.
+ *
+ * <p>Taking the snapshot is the only part that has to happen on the main
+ * thread. Each chunk's part of the region is copied into an immutable block
+ * buffer, which is a plain array copy, and the tile entities and entities
+ * are turned into archetypes. Building the palette and packing the blocks,
+ * which is the expensive part, is then split up over a fork-join pool.</p>
+ */
+public final class RegionSnapshot {
+
+    // Leaves of the fill task pack at most this many longs
+    private static final int FILL_THRESHOLD = 4096;
+
+    private final Vector3i min;
+    private final Vector3i max;
+    private final Vector3i origin;
+    private final int chunkMinX;
+    private final int chunkMinZ;
+    private final int chunksZ;
+    // One snapshot per chunk column, indexed by x * chunksZ + z
+    private final ImmutableBlockVolume[] columns;
+    private final Map<Vector3i, TileEntityArchetype> tileEntities;
+    private final ListMultimap<Vector3d, EntityArchetype> entities;
+
+    private RegionSnapshot(Vector3i min, Vector3i max, Vector3i origin, ImmutableBlockVolume[] columns,
+            Map<Vector3i, TileEntityArchetype> tileEntities, ListMultimap<Vector3d, EntityArchetype> entities) {
+        this.min = min;
+        this.max = max;
+        this.origin = origin;
+        this.chunkMinX = min.getX() >> 4;
+        this.chunkMinZ = min.getZ() >> 4;
+        this.chunksZ = (max.getZ() >> 4) - this.chunkMinZ + 1;
+        this.columns = columns;
+        this.tileEntities = tileEntities;
+        this.entities = entities;
+    }
+
+    /**
+     * Takes a snapshot of a region. This must be called on the main thread.
+     *
+     * @param world The world to copy from
+     * @param min The minimum position of the region
+     * @param max The maximum position of the region
+     * @param origin The position the clipboard will be relative to
+     * @return The snapshot
+     */
+    public static RegionSnapshot take(World world, Vector3i min, Vector3i max, Vector3i origin) {
+        final int chunkMinX = min.getX() >> 4;
+        final int chunkMinZ = min.getZ() >> 4;
+        final int chunksX = (max.getX() >> 4) - chunkMinX + 1;
+        final int chunksZ = (max.getZ() >> 4) - chunkMinZ + 1;
+        final ImmutableBlockVolume[] columns = new ImmutableBlockVolume[chunksX * chunksZ];
+        final Map<Vector3i, TileEntityArchetype> tileEntities = new HashMap<>();
+        for (int cx = 0; cx < chunksX; cx++) {
+            for (int cz = 0; cz < chunksZ; cz++) {
+                final int chunkX = chunkMinX + cx;
+                final int chunkZ = chunkMinZ + cz;
+                final Chunk chunk = world.getChunk(chunkX, 0, chunkZ).orElseGet(() -> world.loadChunk(chunkX, 0, chunkZ, true)
+                        .orElseThrow(() -> new IllegalStateException("Chunk " + chunkX + ", " + chunkZ + " couldn't be loaded")));
+                final Vector3i columnMin = new Vector3i(Math.max(chunkX << 4, min.getX()), min.getY(), Math.max(chunkZ << 4, min.getZ()));
+                final Vector3i columnMax = new Vector3i(Math.min((chunkX << 4) + 15, max.getX()), max.getY(),
+                        Math.min((chunkZ << 4) + 15, max.getZ()));
+                columns[cx * chunksZ + cz] = chunk.getBlockView(columnMin, columnMax).getImmutableBlockCopy();
+                for (TileEntity tileEntity : chunk.getTileEntities(tile -> contains(columnMin, columnMax, tile.getLocation().getBlockPosition()))) {
+                    tileEntities.put(tileEntity.getLocation().getBlockPosition().sub(origin), tileEntity.createArchetype());
+                }
+            }
+        }
+        return new RegionSnapshot(min, max, origin, columns, tileEntities, takeEntities(world, min, max, origin));
+    }
+
+    /**
+     * Turns the entities in a region into archetypes. Players are left out.
+     * This must be called on the main thread.
+     *
+     * @param world The world to copy from
+     * @param min The minimum position of the region
+     * @param max The maximum position of the region
+     * @param origin The position the archetypes will be relative to
+     * @return The archetypes, by position relative to the origin
+     */
+    public static ListMultimap<Vector3d, EntityArchetype> takeEntities(World world, Vector3i min, Vector3i max, Vector3i origin) {
+        final ListMultimap<Vector3d, EntityArchetype> entities = ArrayListMultimap.create();
+        final Vector3d offset = origin.toDouble();
+        for (Entity entity : world.getIntersectingEntities(new AABB(min, max.add(Vector3i.ONE)))) {
+            if (!(entity instanceof Player)) {
+                entities.put(entity.getLocation().getPosition().sub(offset), entity.createArchetype());
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Builds a clipboard from this snapshot. This may be called from any
+     * thread, the work is split up over the given pool.
+     *
+     * @param pool The pool to build the clipboard on
+     * @return The clipboard
+     */
+    public Clipboard toClipboard(ForkJoinPool pool) {
+        // Every chunk column collects its own block states, they are then
+        // merged into a single palette
+        final List<BlockState> palette = ImmutableList.copyOf(pool.submit(() -> Stream.of(this.columns)
+                .parallel()
+                .map(RegionSnapshot::collectStates)
+                .flatMap(Set::stream)
+                .distinct()
+                .collect(Collectors.toList())).join());
+        final Map<BlockState, Integer> ids = new HashMap<>();
+        for (int id = 0; id < palette.size(); id++) {
+            ids.put(palette.get(id), id);
+        }
+
+        final Vector3i size = this.max.sub(this.min).add(Vector3i.ONE);
+        final PackedIntArray blocks = new PackedIntArray(PackedIntArray.bitsFor(palette.size()), size.getX() * size.getY() * size.getZ());
+        pool.invoke(new Fill(ids, blocks, size, 0, blocks.getDataLength()));
+        return new Clipboard(this.min.sub(this.origin), size, palette, blocks, this.tileEntities, this.entities);
+    }
+
+    private static Set<BlockState> collectStates(ImmutableBlockVolume column) {
+        final Set<BlockState> states = new HashSet<>();
+        final Vector3i min = column.getBlockMin();
+        final Vector3i max = column.getBlockMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    states.add(column.getBlock(x, y, z));
+                }
+            }
+        }
+        return states;
+    }
+
+    private static boolean contains(Vector3i min, Vector3i max, Vector3i position) {
+        return position.getX() >= min.getX() && position.getY() >= min.getY() && position.getZ() >= min.getZ()
+                && position.getX() <= max.getX() && position.getY() <= max.getY() && position.getZ() <= max.getZ();
+    }
+
+    /**
+     * Packs the palette ids of a range of longs. The ranges are split on long
+     * boundaries, so no two tasks ever write to the same long.
+     */
+    private final class Fill extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Map<BlockState, Integer> ids;
+        private final PackedIntArray blocks;
+        private final Vector3i size;
+        private final int fromLong;
+        private final int toLong;
+
+        Fill(Map<BlockState, Integer> ids, PackedIntArray blocks, Vector3i size, int fromLong, int toLong) {
+            this.ids = ids;
+            this.blocks = blocks;
+            this.size = size;
+            this.fromLong = fromLong;
+            this.toLong = toLong;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.toLong - this.fromLong > FILL_THRESHOLD) {
+                final int middle = (this.fromLong + this.toLong) >>> 1;
+                invokeAll(new Fill(this.ids, this.blocks, this.size, this.fromLong, middle),
+                        new Fill(this.ids, this.blocks, this.size, middle, this.toLong));
+                return;
+            }
+            final int valuesPerLong = this.blocks.getValuesPerLong();
+            final int from = this.fromLong * valuesPerLong;
+            final int to = Math.min(this.toLong * valuesPerLong, this.blocks.length());
+            final int sizeX = this.size.getX();
+            final int sizeZ = this.size.getZ();
+            // Walk the positions in block order, starting from the first
+            // index of the range
+            int x = from % sizeX;
+            int z = from / sizeX % sizeZ;
+            int y = from / (sizeX * sizeZ);
+            for (int index = from; index < to; index++) {
+                final int worldX = RegionSnapshot.this.min.getX() + x;
+                final int worldY = RegionSnapshot.this.min.getY() + y;
+                final int worldZ = RegionSnapshot.this.min.getZ() + z;
+                final ImmutableBlockVolume column = RegionSnapshot.this.columns[((worldX >> 4) - RegionSnapshot.this.chunkMinX)
+                        * RegionSnapshot.this.chunksZ + (worldZ >> 4) - RegionSnapshot.this.chunkMinZ];
+                this.blocks.set(index, this.ids.get(column.getBlock(worldX, worldY, worldZ)));
+                if (++x == sizeX) {
+                    x = 0;
+                    if (++z == sizeZ) {
+                        z = 0;
+                        y++;
+                    }
+                }
+            }
+        }
+    }
+}
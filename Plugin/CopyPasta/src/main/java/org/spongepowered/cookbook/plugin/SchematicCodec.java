@@ -0,0 +1,262 @@
+package org.spongepowered.cookbook.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * How a schematic file is compressed.
+ *
+ * <p>Schematics are normally gzipped, which is what other tools expect. Zlib
+ * deflate saves the gzip header and checksum, and uncompressed schematics are
+ * larger but are read straight from the file without inflating anything.
+ * They aren't mapped, since a mapping is only released by the garbage
+ * collector and keeps the library from deleting or replacing the file.</p>
+ *
+ * <p>Reading doesn't need to know the codec, it is detected from the first
+ * bytes of the file. Gzip and zlib streams start with their own magic bytes,
+ * anything else is read as is. An uncompressed schematic starts with the
+ * compound tag of its root, and an uncompressed {@link SchematicDelta} with
+ * its format version, neither of which look like compressed streams.</p>
+ */
+public final class SchematicCodec {
+
+    // The size of the buffers around the compressed streams. The NBT
+    // streams read and write a few bytes at a time, which is slow on both the
+    // file and the (de)compressor.
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Type {
+        NONE,
+        DEFLATE,
+        GZIP
+    }
+
+    public static final SchematicCodec UNCOMPRESSED = new SchematicCodec(Type.NONE, Deflater.NO_COMPRESSION);
+
+    private final Type type;
+    private final int level;
+
+    private SchematicCodec(Type type, int level) {
+        this.type = type;
+        this.level = level;
+    }
+
+    /**
+     * Gets a codec that gzips the schematic.
+     *
+     * @param level The compression level, from 0 to 9, or
+     *     {@link Deflater#DEFAULT_COMPRESSION}
+     * @return The codec
+     */
+    public static SchematicCodec gzip(int level) {
+        return new SchematicCodec(Type.GZIP, checkLevel(level));
+    }
+
+    /**
+     * Gets a codec that compresses the schematic as a zlib stream.
+     *
+     * @param level The compression level, from 0 to 9, or
+     *     {@link Deflater#DEFAULT_COMPRESSION}
+     * @return The codec
+     */
+    public static SchematicCodec deflate(int level) {
+        return new SchematicCodec(Type.DEFLATE, checkLevel(level));
+    }
+
+    /**
+     * Parses a codec from its id, like {@code gzip}, {@code gzip:9},
+     * {@code deflate:1} or {@code none}.
+     *
+     * @param id The id of the codec
+     * @return The codec
+     * @throws IllegalArgumentException If the id is invalid
+     */
+    public static SchematicCodec parse(String id) {
+        final String[] parts = id.toLowerCase(Locale.ROOT).split(":", 2);
+        final int level;
+        try {
+            level = parts.length > 1 ? Integer.parseInt(parts[1]) : Deflater.DEFAULT_COMPRESSION;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid compression level " + parts[1]);
+        }
+        switch (parts[0]) {
+            case "none":
+                if (parts.length > 1) {
+                    throw new IllegalArgumentException("Uncompressed schematics have no level");
+                }
+                return UNCOMPRESSED;
+            case "deflate":
+                return deflate(level);
+            case "gzip":
+                return gzip(level);
+            default:
+                throw new IllegalArgumentException("Unknown codec " + parts[0] + ", supported codecs are [gzip, deflate, none]");
+        }
+    }
+
+    private static int checkLevel(int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Compression level must be between 0 and 9");
+        }
+        return level;
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    public int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Gets the id of this codec, which {@link #parse(String)} understands.
+     *
+     * @return The id
+     */
+    public String getId() {
+        final String name = this.type.name().toLowerCase(Locale.ROOT);
+        return this.type == Type.NONE || this.level == Deflater.DEFAULT_COMPRESSION ? name : name + ":" + this.level;
+    }
+
+    /**
+     * Opens a buffered stream that compresses what is written to it. Closing
+     * it closes the given stream.
+     *
+     * @param out The stream to write the compressed schematic to
+     * @return The stream to write the uncompressed schematic to
+     * @throws IOException If the stream couldn't be opened
+     */
+    public OutputStream newOutputStream(OutputStream out) throws IOException {
+        switch (this.type) {
+            case GZIP:
+                return new BufferedOutputStream(new LevelGZIPOutputStream(out, this.level), BUFFER_SIZE);
+            case DEFLATE:
+                return new BufferedOutputStream(new EndingDeflaterOutputStream(out, this.level), BUFFER_SIZE);
+            default:
+                return new BufferedOutputStream(out, BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Opens a schematic file, detecting how it is compressed. Closing the
+     * returned stream closes the file.
+     *
+     * @param file The file to open
+     * @return The stream to read the uncompressed schematic from
+     * @throws IOException If the file couldn't be opened
+     */
+    public static InputStream newInputStream(Path file) throws IOException {
+        return newInputStream(Files.newInputStream(file));
+    }
+
+    /**
+     * Wraps a stream of a schematic, detecting how it is compressed. Closing
+     * the returned stream closes the given stream.
+     *
+     * @param in The stream to read the compressed schematic from
+     * @return The stream to read the uncompressed schematic from
+     * @throws IOException If the stream couldn't be read
+     */
+    public static InputStream newInputStream(InputStream in) throws IOException {
+        final BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        final int first = buffered.read();
+        final int second = buffered.read();
+        buffered.reset();
+        switch (detect(first, second)) {
+            case GZIP:
+                return new BufferedInputStream(new GZIPInputStream(buffered, BUFFER_SIZE), BUFFER_SIZE);
+            case DEFLATE:
+                return new BufferedInputStream(new EndingInflaterInputStream(buffered), BUFFER_SIZE);
+            default:
+                return buffered;
+        }
+    }
+
+    /**
+     * Detects how a schematic file is compressed.
+     *
+     * @param file The file
+     * @return How it is compressed
+     * @throws IOException If the file couldn't be read
+     */
+    public static Type detect(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return detect(in.read(), in.read());
+        }
+    }
+
+    private static Type detect(int first, int second) {
+        if (first == 0x1F && second == 0x8B) {
+            return Type.GZIP;
+        }
+        // A zlib header uses compression method 8, and the two bytes are a
+        // multiple of 31 when read as a big endian short
+        if ((first & 0x0F) == 8 && second >= 0 && ((first << 8) | second) % 31 == 0) {
+            return Type.DEFLATE;
+        }
+        return Type.NONE;
+    }
+
+    @Override
+    public String toString() {
+        return getId();
+    }
+
+    private static final class LevelGZIPOutputStream extends GZIPOutputStream {
+
+        private LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE);
+            // Nothing has been deflated yet, so the level applies to everything
+            this.def.setLevel(level);
+        }
+    }
+
+    // The streams only end the deflater and inflater they create themselves,
+    // anything passed in would hold on to its native memory until finalized
+
+    private static final class EndingDeflaterOutputStream extends DeflaterOutputStream {
+
+        private EndingDeflaterOutputStream(OutputStream out, int level) {
+            super(out, new Deflater(level), BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                this.def.end();
+            }
+        }
+    }
+
+    private static final class EndingInflaterInputStream extends InflaterInputStream {
+
+        private EndingInflaterInputStream(InputStream in) {
+            super(in, new Inflater(), BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                this.inf.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.tileentity.TileEntityArchetype;
+import org.spongepowered.api.data.persistence.InvalidDataException;
+import org.spongepowered.api.entity.EntityArchetype;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The blocks in which a clipboard differs from the clipboard it is based on.
+ *
+ * <p>A delta holds the palette of the whole clipboard, and the index and
+ * palette id of every block that differs from the base, packed with as few
+ * bits as they need. Tile entities and entities are few and hard to compare,
+ * so all of those of the clipboard are stored. The delta only applies to a base of
+ * the same size, which is identified by its hash.</p>
+ *
+ * <p>Deltas are never modified once they have been created.</p>
+ */
+public final class SchematicDelta {
+
+    // Version 1 deltas have no entities
+    private static final int FORMAT_VERSION = 2;
+
+    private final String baseHash;
+    private final Vector3i min;
+    private final Vector3i size;
+    private final List<BlockState> palette;
+    private final PackedIntArray positions;
+    private final PackedIntArray ids;
+    private final Map<Vector3i, TileEntityArchetype> tileEntities;
+    private final ListMultimap<Vector3d, EntityArchetype> entities;
+
+    private SchematicDelta(String baseHash, Vector3i min, Vector3i size, List<BlockState> palette, PackedIntArray positions,
+            PackedIntArray ids, Map<Vector3i, TileEntityArchetype> tileEntities, ListMultimap<Vector3d, EntityArchetype> entities) {
+        this.baseHash = baseHash;
+        this.min = min;
+        this.size = size;
+        this.palette = ImmutableList.copyOf(palette);
+        this.positions = positions;
+        this.ids = ids;
+        this.tileEntities = ImmutableMap.copyOf(tileEntities);
+        this.entities = ImmutableListMultimap.copyOf(entities);
+    }
+
+    /**
+     * Creates the delta between a clipboard and the clipboard it is based on.
+     * They must have the same position and size.
+     *
+     * @param baseHash The hash of the base schematic
+     * @param base The base clipboard
+     * @param clipboard The clipboard to create the delta of
+     * @return The delta
+     */
+    public static SchematicDelta between(String baseHash, Clipboard base, Clipboard clipboard) {
+        if (!canCreate(base, clipboard)) {
+            throw new IllegalArgumentException("The clipboard must have the same position and size as its base");
+        }
+        final int[] remap = remap(base.getPalette(), clipboard.getPalette());
+        int[] positions = new int[256];
+        int[] ids = new int[256];
+        int changes = 0;
+        for (int i = 0; i < clipboard.getVolume(); i++) {
+            final int id = clipboard.getPaletteId(i);
+            if (remap[base.getPaletteId(i)] == id) {
+                continue;
+            }
+            if (changes == positions.length) {
+                positions = Arrays.copyOf(positions, changes * 2);
+                ids = Arrays.copyOf(ids, changes * 2);
+            }
+            positions[changes] = i;
+            ids[changes] = id;
+            changes++;
+        }
+        final PackedIntArray packedPositions = new PackedIntArray(PackedIntArray.bitsFor(clipboard.getVolume()), changes);
+        final PackedIntArray packedIds = new PackedIntArray(PackedIntArray.bitsFor(clipboard.getPalette().size()), changes);
+        for (int i = 0; i < changes; i++) {
+            packedPositions.set(i, positions[i]);
+            packedIds.set(i, ids[i]);
+        }
+        return new SchematicDelta(baseHash, clipboard.getMin(), clipboard.getSize(), clipboard.getPalette(), packedPositions, packedIds,
+                clipboard.getTileEntityArchetypes(), clipboard.getEntityArchetypes());
+    }
+
+    /**
+     * Checks whether a delta can be created between two clipboards.
+     *
+     * @param base The base clipboard
+     * @param clipboard The clipboard to create the delta of
+     * @return Whether they have the same position and size
+     */
+    public static boolean canCreate(Clipboard base, Clipboard clipboard) {
+        return base.getMin().equals(clipboard.getMin()) && base.getSize().equals(clipboard.getSize());
+    }
+
+    // Maps the ids of one palette to the ids of the same states in another,
+    // or to -1 if the other palette doesn't have the state
+    private static int[] remap(List<BlockState> from, List<BlockState> to) {
+        final Map<BlockState, Integer> ids = new HashMap<>();
+        for (int id = 0; id < to.size(); id++) {
+            ids.putIfAbsent(to.get(id), id);
+        }
+        final int[] remap = new int[from.size()];
+        for (int id = 0; id < remap.length; id++) {
+            remap[id] = ids.getOrDefault(from.get(id), -1);
+        }
+        return remap;
+    }
+
+    public String getBaseHash() {
+        return this.baseHash;
+    }
+
+    /**
+     * Gets the number of blocks that differ from the base.
+     *
+     * @return The number of changes
+     */
+    public int getChangeCount() {
+        return this.positions.length();
+    }
+
+    /**
+     * Rebuilds the clipboard this delta was created from.
+     *
+     * @param base The clipboard this delta is based on
+     * @return The clipboard
+     * @throws InvalidDataException If the delta doesn't match the base
+     */
+    public Clipboard applyTo(Clipboard base) {
+        if (!base.getMin().equals(this.min) || !base.getSize().equals(this.size)) {
+            throw new InvalidDataException("The delta doesn't have the same size as its base");
+        }
+        final int[] remap = remap(base.getPalette(), this.palette);
+        final PackedIntArray blocks = new PackedIntArray(PackedIntArray.bitsFor(this.palette.size()), base.getVolume());
+        // Base blocks that aren't in the palette of the delta must all be
+        // replaced by it, otherwise the delta belongs to a different base
+        int unmapped = 0;
+        for (int i = 0; i < blocks.length(); i++) {
+            final int id = remap[base.getPaletteId(i)];
+            if (id >= 0) {
+                blocks.set(i, id);
+            } else {
+                unmapped++;
+            }
+        }
+        for (int i = 0; i < this.positions.length(); i++) {
+            final int index = this.positions.get(i);
+            final int id = this.ids.get(i);
+            if (index >= blocks.length() || id >= this.palette.size()) {
+                throw new InvalidDataException("Delta change " + i + " is out of bounds");
+            }
+            if (remap[base.getPaletteId(index)] < 0) {
+                unmapped--;
+            }
+            blocks.set(index, id);
+        }
+        if (unmapped != 0) {
+            throw new InvalidDataException("The delta doesn't match its base");
+        }
+        return new Clipboard(this.min, this.size, this.palette, blocks, this.tileEntities, this.entities);
+    }
+
+    /**
+     * Writes this delta to a stream.
+     *
+     * @param out The stream to write to
+     * @throws IOException If the stream couldn't be written
+     */
+    public void write(NbtOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(this.baseHash);
+        out.writeVector(this.min);
+        out.writeVector(this.size);
+        out.writeInt(this.palette.size());
+        for (BlockState state : this.palette) {
+            out.writeUTF(state.getId());
+        }
+        this.positions.write(out);
+        this.ids.write(out);
+        out.writeInt(this.tileEntities.size());
+        for (Map.Entry<Vector3i, TileEntityArchetype> entry : this.tileEntities.entrySet()) {
+            out.writeVector(entry.getKey());
+            out.writeArchetype(entry.getValue());
+        }
+        out.writeInt(this.entities.size());
+        for (Map.Entry<Vector3d, EntityArchetype> entry : this.entities.entries()) {
+            out.writePosition(entry.getKey());
+            out.writeEntityArchetype(entry.getValue());
+        }
+    }
+
+    /**
+     * Reads a delta written by {@link #write(NbtOutputStream)}.
+     *
+     * @param in The stream to read from
+     * @return The delta
+     * @throws IOException If the stream couldn't be read
+     * @throws InvalidDataException If the delta is invalid
+     */
+    public static SchematicDelta read(NbtInputStream in) throws IOException {
+        final int version = in.readInt();
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new InvalidDataException("Unknown delta format");
+        }
+        final String baseHash = in.readUTF();
+        final Vector3i min = in.readVector();
+        final Vector3i size = in.readVector();
+        final List<BlockState> palette = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            palette.add(in.readBlockState());
+        }
+        final PackedIntArray positions = PackedIntArray.read(in);
+        final PackedIntArray ids = PackedIntArray.read(in);
+        if (positions.length() != ids.length()) {
+            throw new InvalidDataException("Delta positions and ids don't match");
+        }
+        final Map<Vector3i, TileEntityArchetype> tileEntities = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            tileEntities.put(in.readVector(), in.readArchetype());
+        }
+        final ListMultimap<Vector3d, EntityArchetype> entities = ArrayListMultimap.create();
+        if (version >= 2) {
+            for (int i = in.readInt(); i > 0; i--) {
+                entities.put(in.readPosition(), in.readEntityArchetype());
+            }
+        }
+        return new SchematicDelta(baseHash, min, size, palette, positions, ids, tileEntities, entities);
+    }
+}
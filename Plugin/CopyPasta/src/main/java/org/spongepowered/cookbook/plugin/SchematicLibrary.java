@@ -0,0 +1,804 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.slf4j.Logger;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.block.tileentity.TileEntityArchetype;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.data.DataQuery;
+import org.spongepowered.api.data.persistence.InvalidDataException;
+import org.spongepowered.api.entity.EntityArchetype;
+import org.spongepowered.api.world.schematic.Schematic;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * The saved schematics, stored by the hash of their contents.
+ *
+ * <p>Every schematic is stored once in the objects directory, named after
+ * the SHA-256 hash of its contents. Only the blocks, palette, tile entities
+ * and entities are hashed, along with the format, so saving the same
+ * clipboard under another name, at another time or with another codec
+ * reuses the stored file. The index maps the names players save and
+ * load schematics by to those files, and keeps the metadata of each one, so
+ * listing and searching the library never has to open a schematic.</p>
+ *
+ * <p>A schematic can also be saved as a {@link SchematicDelta} of another
+ * one, which only stores the blocks that differ. Saving the same build over
+ * and over with small edits then only writes the edits. The base may be a
+ * delta itself, so every delta has a chain of bases that ends at a full
+ * schematic. Deltas refer to their base by hash, so a base stays in the
+ * library as long as any delta needs it, even if its name was saved over.
+ * The chain can be compacted, which makes the delta refer to the full
+ * schematic at its end directly.</p>
+ *
+ * <p>Decoded schematics are shared through a cache. Each clipboard handed
+ * out by {@link #acquire(Entry)} holds a reference until it is
+ * {@link #release(String) released}, and clipboards that are still
+ * referenced are never evicted. Once nobody uses a clipboard anymore it stays
+ * cached until the cache grows past its budget. Several players loading the
+ * same schematic at the same time only decode it once.</p>
+ *
+ * <p>All methods are thread safe.</p>
+ */
+public final class SchematicLibrary {
+
+    private static final String FILE_EXTENSION = ".schematic";
+    private static final String DELTA_FILE_EXTENSION = ".delta";
+
+    private final Path objectsDir;
+    private final ConfigurationLoader<CommentedConfigurationNode> indexLoader;
+    private final long cacheBudget;
+    private final Logger logger;
+    private final Map<String, Entry> index = new HashMap<>();
+    // Access ordered, so iteration starts at the least recently used clipboard
+    private final LinkedHashMap<String, CachedClipboard> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    // How often the objects of each pinned schematic are pinned, by hash
+    private final Map<String, Integer> pins = new HashMap<>();
+
+    /**
+     * Opens a library, creating it if it doesn't exist yet.
+     *
+     * @param dir The directory of the library
+     * @param cacheBudget The most bytes of decoded clipboards to keep once
+     *     nobody uses them anymore
+     * @param logger The logger to report problems with the library to
+     * @throws IOException If the library couldn't be opened
+     */
+    public SchematicLibrary(Path dir, long cacheBudget, Logger logger) throws IOException {
+        this.objectsDir = dir.resolve("objects");
+        this.indexLoader = HoconConfigurationLoader.builder().setPath(dir.resolve("index.conf")).build();
+        this.cacheBudget = cacheBudget;
+        this.logger = logger;
+        Files.createDirectories(this.objectsDir);
+        final ConfigurationNode root = this.indexLoader.load();
+        for (Map.Entry<Object, ? extends ConfigurationNode> child : root.getNode("schematics").getChildrenMap().entrySet()) {
+            final Entry entry = Entry.read(child.getKey().toString(), child.getValue());
+            if (entry.getHash() == null || !entry.getObjects().keySet().stream().allMatch(hash -> Files.exists(getFile(entry, hash)))) {
+                logger.warn("Dropping schematic " + entry.getName() + " from the index, its file is missing");
+                continue;
+            }
+            this.index.put(entry.getName(), entry);
+        }
+    }
+
+    /**
+     * Gets the index entry of a schematic.
+     *
+     * @param name The name of the schematic
+     * @return The entry, if there is a schematic with that name
+     */
+    public synchronized Optional<Entry> getEntry(String name) {
+        return Optional.ofNullable(this.index.get(name));
+    }
+
+    /**
+     * Gets the index entry of a schematic, and keeps the files it needs from
+     * being deleted until it is {@link #unpin(Entry) unpinned}, even if the
+     * schematic is saved over in the meantime. Tasks that use an entry off
+     * the main thread pin it before they are scheduled.
+     *
+     * @param name The name of the schematic
+     * @return The pinned entry, if there is a schematic with that name
+     */
+    public synchronized Optional<Entry> pin(String name) {
+        final Entry entry = this.index.get(name);
+        if (entry != null) {
+            for (String hash : entry.getObjects().keySet()) {
+                this.pins.merge(hash, 1, Integer::sum);
+            }
+        }
+        return Optional.ofNullable(entry);
+    }
+
+    /**
+     * Releases a pin taken by {@link #pin(String)}, deleting the files of the
+     * entry that nothing needs anymore.
+     *
+     * @param entry The pinned entry
+     */
+    public synchronized void unpin(Entry entry) {
+        for (String hash : entry.getObjects().keySet()) {
+            this.pins.computeIfPresent(hash, (key, count) -> count > 1 ? count - 1 : null);
+        }
+        deleteUnused(entry);
+    }
+
+    /**
+     * Finds the schematics whose name or author contains the given text,
+     * ignoring case. Only the index is searched.
+     *
+     * @param query The text to search for, or an empty string to list all
+     * @return The matching entries, sorted by name
+     */
+    public synchronized List<Entry> search(String query) {
+        final String lowerQuery = query.toLowerCase(Locale.ROOT);
+        final List<Entry> matches = new ArrayList<>();
+        for (Entry entry : this.index.values()) {
+            if (entry.getName().toLowerCase(Locale.ROOT).contains(lowerQuery)
+                    || entry.getAuthor().toLowerCase(Locale.ROOT).contains(lowerQuery)) {
+                matches.add(entry);
+            }
+        }
+        matches.sort(Comparator.comparing(Entry::getName));
+        return matches;
+    }
+
+    /**
+     * Saves a clipboard to the library, replacing any schematic with the
+     * same name.
+     *
+     * <p>The schematic is written to a temporary file first and only moved
+     * into place once it is complete, so a failed save never leaves a
+     * truncated schematic behind.</p>
+     *
+     * @param name The name to save the schematic under
+     * @param clipboard The clipboard to save
+     * @param legacy Whether to use the legacy format
+     * @param author The author of the schematic
+     * @param codec How to compress the schematic
+     * @return The index entry of the saved schematic
+     * @throws IOException If the schematic couldn't be written
+     */
+    public Entry save(String name, Clipboard clipboard, boolean legacy, String author, SchematicCodec codec) throws IOException {
+        return saveFull(name, clipboard, legacy, author, System.currentTimeMillis(), codec, null);
+    }
+
+    /**
+     * Saves a clipboard to the library as a delta of another schematic,
+     * replacing any schematic with the same name. The delta uses the format
+     * of the base.
+     *
+     * <p>If the clipboard doesn't have the same position and size as the
+     * base, or differs from it in more than half of its blocks, a delta
+     * wouldn't save anything, and it is saved in full instead.</p>
+     *
+     * @param name The name to save the schematic under
+     * @param clipboard The clipboard to save
+     * @param base The index entry of the schematic to base the delta on
+     * @param author The author of the schematic
+     * @param codec How to compress the delta
+     * @return The index entry of the saved schematic
+     * @throws IOException If the schematic couldn't be written
+     */
+    public Entry saveDelta(String name, Clipboard clipboard, Entry base, String author, SchematicCodec codec) throws IOException {
+        return saveDelta(name, clipboard, base.getHash(), base.getChain(), base.isLegacy(), author, System.currentTimeMillis(), codec, null);
+    }
+
+    /**
+     * Compacts the chain of bases of a delta, so it is based on the full
+     * schematic at the end of its chain directly. Bases that no other
+     * schematic needs anymore are deleted.
+     *
+     * @param entry The index entry of the delta
+     * @param codec How to compress the compacted delta
+     * @return The index entry of the compacted schematic, which is the given
+     *     entry if there was nothing to compact
+     * @throws IOException If the schematic couldn't be compacted, or was
+     *     saved over while it was compacted
+     */
+    public Entry compact(Entry entry, SchematicCodec codec) throws IOException {
+        final List<String> chain = entry.getChain();
+        if (chain.size() <= 1) {
+            return entry;
+        }
+        final Clipboard clipboard = acquire(entry);
+        try {
+            return saveDelta(entry.getName(), clipboard, chain.get(chain.size() - 1), Collections.emptyList(), entry.isLegacy(),
+                    entry.getAuthor(), entry.getDate(), codec, entry);
+        } finally {
+            release(entry.getHash());
+        }
+    }
+
+    private Entry saveFull(String name, Clipboard clipboard, boolean legacy, String author, long date, SchematicCodec codec, Entry expected)
+            throws IOException {
+        final Path temp = Files.createTempFile(this.objectsDir, "save.", ".tmp");
+        try {
+            final String hash = hashContents(clipboard, legacy);
+            writeObject(temp, codec, out -> SchematicWriter.write(out, clipboard, legacy, name, author));
+            final Path file = moveIntoPlace(temp, hash, hash + FILE_EXTENSION);
+            final Entry entry;
+            try {
+                entry = new Entry(name, hash, legacy, Collections.emptyList(), clipboard, author, date, Files.size(file));
+                put(entry, expected);
+            } finally {
+                unpinObject(hash, file);
+            }
+            // The clipboard is identical to what decoding the file would give
+            cache(hash, clipboard);
+            return entry;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Entry saveDelta(String name, Clipboard clipboard, String baseHash, List<String> baseChain, boolean legacy, String author,
+            long date, SchematicCodec codec, Entry expected) throws IOException {
+        final Clipboard base = acquire(baseHash, baseChain, legacy);
+        final SchematicDelta delta;
+        try {
+            delta = SchematicDelta.canCreate(base, clipboard) ? SchematicDelta.between(baseHash, base, clipboard) : null;
+        } finally {
+            release(baseHash);
+        }
+        if (delta == null || delta.getChangeCount() > clipboard.getVolume() / 2) {
+            return saveFull(name, clipboard, legacy, author, date, codec, expected);
+        }
+        final Path temp = Files.createTempFile(this.objectsDir, "delta.", ".tmp");
+        try {
+            // Deltas hold no metadata, so their uncompressed stream is
+            // already canonical
+            final String hash = hash(out -> delta.write(new NbtOutputStream(out)));
+            writeObject(temp, codec, out -> delta.write(new NbtOutputStream(out)));
+            final Path file = moveIntoPlace(temp, hash, hash + DELTA_FILE_EXTENSION);
+            final List<String> chain = ImmutableList.<String>builder().add(baseHash).addAll(baseChain).build();
+            final Entry entry;
+            try {
+                entry = new Entry(name, hash, legacy, chain, clipboard, author, date, Files.size(file));
+                put(entry, expected);
+            } finally {
+                unpinObject(hash, file);
+            }
+            cache(hash, clipboard);
+            return entry;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Adds a schematic file from outside the library, under the given name.
+     * The file is copied, the original is left alone. Its compression is
+     * detected.
+     *
+     * @param name The name to add the schematic under
+     * @param file The schematic file
+     * @param legacy Whether the schematic is in the legacy format
+     * @return The index entry of the added schematic
+     * @throws IOException If the schematic couldn't be read
+     */
+    public Entry importFile(String name, Path file, boolean legacy) throws IOException {
+        final List<DataContainer> metadata = new ArrayList<>(1);
+        final Clipboard clipboard;
+        final Path temp = Files.createTempFile(this.objectsDir, "import.", ".tmp");
+        try {
+            Files.copy(file, temp, StandardCopyOption.REPLACE_EXISTING);
+            clipboard = read(temp, legacy, metadata::add);
+            final String hash = hashContents(clipboard, legacy);
+            final Path object = moveIntoPlace(temp, hash, hash + FILE_EXTENSION);
+            final Entry entry;
+            try {
+                final Optional<DataContainer> container = metadata.stream().findFirst();
+                final String author = container.flatMap(data -> data.getString(DataQuery.of(Schematic.METADATA_AUTHOR))).orElse("");
+                final long date = container.flatMap(data -> data.getLong(DataQuery.of(Schematic.METADATA_DATE)))
+                        .orElse(Files.getLastModifiedTime(file).toMillis());
+                entry = new Entry(name, hash, legacy, Collections.emptyList(), clipboard, author, date, Files.size(object));
+                put(entry, null);
+            } finally {
+                unpinObject(hash, object);
+            }
+            cache(hash, clipboard);
+            return entry;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Gets the decoded clipboard of a schematic, decoding it if it isn't
+     * cached yet. Deltas are applied to the clipboard of their base, which is
+     * cached as well. The caller holds a reference to the clipboard, and must
+     * {@link #release(String) release} it once it doesn't need it anymore.
+     *
+     * @param entry The index entry of the schematic
+     * @return The clipboard
+     * @throws IOException If the schematic couldn't be read
+     */
+    public Clipboard acquire(Entry entry) throws IOException {
+        return acquire(entry.getHash(), entry.getChain(), entry.isLegacy());
+    }
+
+    private Clipboard acquire(String hash, List<String> chain, boolean legacy) throws IOException {
+        final CachedClipboard cached;
+        boolean decode = false;
+        synchronized (this) {
+            CachedClipboard existing = this.cache.get(hash);
+            if (existing == null) {
+                existing = new CachedClipboard();
+                this.cache.put(hash, existing);
+                decode = true;
+            }
+            existing.references++;
+            cached = existing;
+        }
+        if (decode) {
+            // Anyone else asking for the same schematic in the meantime
+            // waits for this decode instead of starting their own
+            try {
+                final Clipboard clipboard = chain.isEmpty() ? read(this.objectsDir.resolve(hash + FILE_EXTENSION), legacy, metadata -> {
+                }) : readDelta(hash, chain, legacy);
+                cached.future.complete(clipboard);
+                synchronized (this) {
+                    cached.size = clipboard.getSizeInBytes();
+                    this.cachedBytes += cached.size;
+                    trim();
+                }
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    this.cache.remove(hash, cached);
+                }
+                cached.future.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return cached.future.join();
+        } catch (CompletionException e) {
+            throw new IOException("Failed to read schematic " + hash, e.getCause());
+        }
+    }
+
+    private Clipboard readDelta(String hash, List<String> chain, boolean legacy) throws IOException {
+        final String baseHash = chain.get(0);
+        final SchematicDelta delta;
+        try (NbtInputStream in = new NbtInputStream(SchematicCodec.newInputStream(this.objectsDir.resolve(hash + DELTA_FILE_EXTENSION)))) {
+            delta = SchematicDelta.read(in);
+        }
+        if (!delta.getBaseHash().equals(baseHash)) {
+            throw new InvalidDataException("Delta " + hash + " isn't based on " + baseHash);
+        }
+        final Clipboard base = acquire(baseHash, chain.subList(1, chain.size()), legacy);
+        try {
+            return delta.applyTo(base);
+        } finally {
+            release(baseHash);
+        }
+    }
+
+    /**
+     * Releases a reference to a clipboard returned by {@link #acquire(Entry)}.
+     *
+     * @param hash The hash of the schematic
+     */
+    public synchronized void release(String hash) {
+        final CachedClipboard cached = this.cache.get(hash);
+        if (cached != null && cached.references > 0) {
+            cached.references--;
+            trim();
+        }
+    }
+
+    private synchronized void put(Entry entry, Entry expected) throws IOException {
+        if (expected != null && this.index.get(entry.getName()) != expected) {
+            deleteUnused(entry);
+            throw new IOException("Schematic " + entry.getName() + " was saved over in the meantime");
+        }
+        final Entry previous = this.index.put(entry.getName(), entry);
+        saveIndex();
+        if (previous != null) {
+            deleteUnused(previous);
+        }
+    }
+
+    private synchronized void cache(String hash, Clipboard clipboard) {
+        if (!this.cache.containsKey(hash)) {
+            final CachedClipboard cached = new CachedClipboard();
+            cached.future.complete(clipboard);
+            cached.size = clipboard.getSizeInBytes();
+            this.cache.put(hash, cached);
+            this.cachedBytes += cached.size;
+            trim();
+        }
+    }
+
+    private void trim() {
+        final Iterator<CachedClipboard> iterator = this.cache.values().iterator();
+        while (this.cachedBytes > this.cacheBudget && iterator.hasNext()) {
+            final CachedClipboard cached = iterator.next();
+            if (cached.references == 0 && cached.future.isDone()) {
+                iterator.remove();
+                this.cachedBytes -= cached.size;
+            }
+        }
+    }
+
+    // The hashes of the objects the index or a pin needs
+    private Set<String> getUsedHashes() {
+        final Set<String> used = new HashSet<>(this.pins.keySet());
+        for (Entry other : this.index.values()) {
+            used.addAll(other.getObjects().keySet());
+        }
+        return used;
+    }
+
+    // Deletes the objects of an entry that neither the index nor a pin needs
+    private void deleteUnused(Entry entry) {
+        final Set<String> used = getUsedHashes();
+        for (String hash : entry.getObjects().keySet()) {
+            if (!used.contains(hash)) {
+                try {
+                    Files.deleteIfExists(getFile(entry, hash));
+                } catch (IOException e) {
+                    this.logger.warn("Failed to delete unused schematic " + hash, e);
+                }
+            }
+        }
+    }
+
+    private void saveIndex() throws IOException {
+        final ConfigurationNode root = this.indexLoader.createEmptyNode();
+        for (Entry entry : this.index.values()) {
+            entry.write(root.getNode("schematics", entry.getName()));
+        }
+        this.indexLoader.save(root);
+    }
+
+    private static void writeObject(Path file, SchematicCodec codec, ObjectWriter writer) throws IOException {
+        try (OutputStream out = codec.newOutputStream(Files.newOutputStream(file))) {
+            writer.write(out);
+        }
+    }
+
+    /**
+     * Hashes what an object writer writes, uncompressed, without storing it.
+     */
+    private static String hash(ObjectWriter writer) throws IOException {
+        final MessageDigest digest = createDigest();
+        try (OutputStream out = new DigestOutputStream(ByteStreams.nullOutputStream(), digest)) {
+            writer.write(out);
+        }
+        return BaseEncoding.base16().lowerCase().encode(digest.digest());
+    }
+
+    /**
+     * Hashes the contents of a clipboard, as they would be stored in the
+     * given format. Tile entities are hashed in the order of their position
+     * in the clipboard, since the order of the map depends on how it was
+     * built.
+     */
+    private static String hashContents(Clipboard clipboard, boolean legacy) throws IOException {
+        return hash(stream -> {
+            final NbtOutputStream out = new NbtOutputStream(stream);
+            out.writeBoolean(legacy);
+            out.writeVector(clipboard.getMin());
+            out.writeVector(clipboard.getSize());
+            final List<BlockState> palette = clipboard.getPalette();
+            out.writeInt(palette.size());
+            for (BlockState state : palette) {
+                out.writeUTF(state.getId());
+            }
+            for (int i = 0; i < clipboard.getVolume(); i++) {
+                out.writeVarInt(clipboard.getPaletteId(i));
+            }
+            final Map<Integer, TileEntityArchetype> tileEntities = new TreeMap<>();
+            for (Map.Entry<Vector3i, TileEntityArchetype> entry : clipboard.getTileEntityArchetypes().entrySet()) {
+                final Vector3i position = entry.getKey();
+                tileEntities.put(clipboard.getIndex(position.getX(), position.getY(), position.getZ()), entry.getValue());
+            }
+            out.writeInt(tileEntities.size());
+            for (Map.Entry<Integer, TileEntityArchetype> entry : tileEntities.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeArchetype(entry.getValue());
+            }
+            out.writeInt(clipboard.getEntityArchetypes().size());
+            for (Map.Entry<Vector3d, EntityArchetype> entry : clipboard.getEntityArchetypes().entries()) {
+                out.writePosition(entry.getKey());
+                out.writeEntityArchetype(entry.getValue());
+            }
+            out.flush();
+        });
+    }
+
+    /**
+     * Moves a finished object into place, unless the exact same object is
+     * already stored, and pins it until {@link #unpinObject(String, Path)}.
+     * A stored object may belong to a schematic that is being saved over,
+     * which would otherwise delete it before the new entry is in the index.
+     */
+    private synchronized Path moveIntoPlace(Path temp, String hash, String fileName) throws IOException {
+        final Path target = this.objectsDir.resolve(fileName);
+        if (!Files.exists(target)) {
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target);
+            }
+        }
+        this.pins.merge(hash, 1, Integer::sum);
+        return target;
+    }
+
+    // Releases the pin of moveIntoPlace, deleting the object if the save
+    // failed and nothing else needs it
+    private synchronized void unpinObject(String hash, Path file) {
+        this.pins.computeIfPresent(hash, (key, count) -> count > 1 ? count - 1 : null);
+        if (!getUsedHashes().contains(hash)) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                this.logger.warn("Failed to delete unused schematic " + hash, e);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a schematic that was just saved kept a stored file that
+     * is compressed differently than asked for. Identical files are only
+     * stored once, with the codec of the first save.
+     *
+     * @param entry The entry returned by the save
+     * @param codec The codec the save asked for
+     * @return How the stored file is compressed, if that isn't the codec
+     *     asked for
+     */
+    public Optional<SchematicCodec.Type> getKeptCodec(Entry entry, SchematicCodec codec) {
+        final SchematicCodec.Type stored;
+        try {
+            stored = SchematicCodec.detect(getFile(entry, entry.getHash()));
+        } catch (IOException e) {
+            // Saved over again in the meantime
+            return Optional.empty();
+        }
+        return stored == codec.getType() ? Optional.empty() : Optional.of(stored);
+    }
+
+    private Path getFile(Entry entry, String hash) {
+        return this.objectsDir.resolve(hash + (entry.getObjects().get(hash) ? DELTA_FILE_EXTENSION : FILE_EXTENSION));
+    }
+
+    private static Clipboard read(Path file, boolean legacy, Consumer<DataContainer> metadataConsumer) throws IOException {
+        try (InputStream in = SchematicCodec.newInputStream(file)) {
+            return SchematicReader.read(in, legacy, metadataConsumer);
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface ObjectWriter {
+
+        void write(OutputStream out) throws IOException;
+    }
+
+    private static final class CachedClipboard {
+
+        private final CompletableFuture<Clipboard> future = new CompletableFuture<>();
+        private int references;
+        private long size;
+    }
+
+    /**
+     * The metadata of a schematic in the library.
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final String hash;
+        private final boolean legacy;
+        private final List<String> chain;
+        private final int width;
+        private final int height;
+        private final int length;
+        private final String author;
+        private final long date;
+        private final int paletteSize;
+        private final int blockCount;
+        private final long fileSize;
+
+        private Entry(String name, String hash, boolean legacy, List<String> chain, int width, int height, int length, String author,
+                long date, int paletteSize, int blockCount, long fileSize) {
+            this.name = name;
+            this.hash = hash;
+            this.legacy = legacy;
+            this.chain = ImmutableList.copyOf(chain);
+            this.width = width;
+            this.height = height;
+            this.length = length;
+            this.author = author;
+            this.date = date;
+            this.paletteSize = paletteSize;
+            this.blockCount = blockCount;
+            this.fileSize = fileSize;
+        }
+
+        private Entry(String name, String hash, boolean legacy, List<String> chain, Clipboard clipboard, String author, long date,
+                long fileSize) {
+            this(name, hash, legacy, chain, clipboard.getSize().getX(), clipboard.getSize().getY(), clipboard.getSize().getZ(), author, date,
+                    clipboard.getPalette().size(), countBlocks(clipboard), fileSize);
+        }
+
+        private static int countBlocks(Clipboard clipboard) {
+            // Only count blocks that aren't air, the size already says how
+            // large the schematic is
+            final List<BlockState> palette = clipboard.getPalette();
+            final boolean[] air = new boolean[palette.size()];
+            for (int id = 0; id < air.length; id++) {
+                air[id] = palette.get(id).getType() == BlockTypes.AIR;
+            }
+            int count = 0;
+            for (int i = 0; i < clipboard.getVolume(); i++) {
+                if (!air[clipboard.getPaletteId(i)]) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private static Entry read(String name, ConfigurationNode node) {
+            return new Entry(name, node.getNode("hash").getString(), "legacy".equals(node.getNode("format").getString()),
+                    node.getNode("chain").getList(String::valueOf, Collections.emptyList()), node.getNode("width").getInt(),
+                    node.getNode("height").getInt(), node.getNode("length").getInt(),
+                    node.getNode("author").getString(""), node.getNode("date").getLong(), node.getNode("palette-size").getInt(),
+                    node.getNode("block-count").getInt(), node.getNode("file-size").getLong());
+        }
+
+        private void write(ConfigurationNode node) {
+            node.getNode("hash").setValue(this.hash);
+            node.getNode("format").setValue(this.legacy ? "legacy" : "sponge");
+            if (!this.chain.isEmpty()) {
+                node.getNode("chain").setValue(this.chain);
+            }
+            node.getNode("width").setValue(this.width);
+            node.getNode("height").setValue(this.height);
+            node.getNode("length").setValue(this.length);
+            node.getNode("author").setValue(this.author);
+            node.getNode("date").setValue(this.date);
+            node.getNode("palette-size").setValue(this.paletteSize);
+            node.getNode("block-count").setValue(this.blockCount);
+            node.getNode("file-size").setValue(this.fileSize);
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Gets the SHA-256 hash of the contents of the schematic or delta,
+         * as a hex string.
+         *
+         * @return The hash
+         */
+        public String getHash() {
+            return this.hash;
+        }
+
+        /**
+         * Checks whether the schematic, or the full schematic at the end of
+         * its chain if it is a delta, is in the legacy format.
+         *
+         * @return Whether the legacy format is used
+         */
+        public boolean isLegacy() {
+            return this.legacy;
+        }
+
+        public boolean isDelta() {
+            return !this.chain.isEmpty();
+        }
+
+        /**
+         * Gets the hashes of the schematics this delta is based on, its own
+         * base first and the full schematic last.
+         *
+         * @return The chain of bases, which is empty if this isn't a delta
+         */
+        public List<String> getChain() {
+            return this.chain;
+        }
+
+        // The hashes of every file needed to load this schematic, and
+        // whether they are deltas
+        private Map<String, Boolean> getObjects() {
+            final Map<String, Boolean> objects = new LinkedHashMap<>();
+            objects.put(this.hash, isDelta());
+            for (int i = 0; i < this.chain.size(); i++) {
+                objects.put(this.chain.get(i), i < this.chain.size() - 1);
+            }
+            return objects;
+        }
+
+        public int getWidth() {
+            return this.width;
+        }
+
+        public int getHeight() {
+            return this.height;
+        }
+
+        public int getLength() {
+            return this.length;
+        }
+
+        public String getAuthor() {
+            return this.author;
+        }
+
+        /**
+         * Gets when the schematic was saved, in milliseconds since the epoch.
+         *
+         * @return The date
+         */
+        public long getDate() {
+            return this.date;
+        }
+
+        public int getPaletteSize() {
+            return this.paletteSize;
+        }
+
+        /**
+         * Gets the number of blocks in the schematic that aren't air.
+         *
+         * @return The number of blocks
+         */
+        public int getBlockCount() {
+            return this.blockCount;
+        }
+
+        public long getFileSize() {
+            return this.fileSize;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.spongepowered.cookbook.plugin;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+/**
+ * Loads a schematic from the library off the main thread.
+ *
+ * <p>Schematics that are already cached by the library are shared instead of
+ * being decoded again. A schematic file that was put in the schematics
+ * directory by hand is added to the library the first time it is loaded.</p>
+ *
+ * <p>Once the schematic has been read the clipboard is handed to the callback
+ * on the main thread, along with the hash of the schematic, as long as the
+ * owner is still online. The callback takes over the library reference to the
+ * clipboard.</p>
+ */
+public class SchematicLoadTask implements Runnable {
+
+    private final Executor mainThread;
+    private final SchematicLibrary library;
+    private final UUID owner;
+    private final String name;
+    private final File looseFile;
+    private final boolean legacy;
+    private final BiConsumer<Clipboard, String> callback;
+
+    /**
+     * Creates a new load task.
+     *
+     * @param mainThread Runs the callback on the main thread
+     * @param library The library to load from
+     * @param owner The player who loads the schematic
+     * @param name The name of the schematic
+     * @param looseFile The file to add to the library if it doesn't have a
+     *     schematic with the name yet
+     * @param legacy Whether the loose file is in the legacy format
+     * @param callback Receives the clipboard and the hash of the schematic
+     */
+    public SchematicLoadTask(Executor mainThread, SchematicLibrary library, UUID owner, String name, File looseFile, boolean legacy,
+            BiConsumer<Clipboard, String> callback) {
+        this.mainThread = mainThread;
+        this.library = library;
+        this.owner = owner;
+        this.name = name;
+        this.looseFile = looseFile;
+        this.legacy = legacy;
+        this.callback = callback;
+    }
+
+    @Override
+    public void run() {
+        final SchematicLibrary.Entry entry;
+        final Clipboard clipboard;
+        // Pinned, so saving over the schematic can't delete its files before they are read
+        final Optional<SchematicLibrary.Entry> existing = this.library.pin(this.name);
+        try {
+            entry = existing.isPresent() ? existing.get() : this.library.importFile(this.name, this.looseFile.toPath(), this.legacy);
+            clipboard = this.library.acquire(entry);
+        } catch (Exception e) {
+            e.printStackTrace();
+            report(Text.of(TextColors.DARK_RED, "Error loading schematic: " + e.getMessage()));
+            return;
+        } finally {
+            existing.ifPresent(this.library::unpin);
+        }
+        this.mainThread.execute(() -> {
+            final Optional<Player> player = Sponge.getServer().getPlayer(this.owner);
+            if (!player.isPresent()) {
+                // The owner logged out in the meantime
+                this.library.release(entry.getHash());
+                return;
+            }
+            this.callback.accept(clipboard, entry.getHash());
+            player.get().sendMessage(Text.of(TextColors.GREEN, "Loaded schematic " + entry.getName()));
+        });
+    }
+
+    private void report(Text message) {
+        // Players may only be touched from the main thread, and the owner may
+        // have logged out while we were busy reading.
+        this.mainThread.execute(() -> Sponge.getServer().getPlayer(this.owner).ifPresent(player -> player.sendMessage(message)));
+    }
+}
@@ -0,0 +1,500 @@
+package org.spongepowered.cookbook.plugin;
+
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_BYTE_ARRAY;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_COMPOUND;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_END;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_LIST;
+
+import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.block.tileentity.TileEntityArchetype;
+import org.spongepowered.api.block.tileentity.TileEntityType;
+import org.spongepowered.api.data.DataContainer;
+import org.spongepowered.api.data.DataQuery;
+import org.spongepowered.api.data.persistence.InvalidDataException;
+import org.spongepowered.api.entity.EntityArchetype;
+import org.spongepowered.api.entity.EntityType;
+import org.spongepowered.api.world.schematic.BlockPalette;
+import org.spongepowered.api.world.schematic.BlockPaletteTypes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Reads sponge and legacy (MCEdit) schematics into a {@link Clipboard}.
+ *
+ * <p>Unlike reading the file with {@code DataFormats.NBT} and translating the
+ * resulting container, the block data is decoded straight from the stream
+ * into the clipboard's packed block array. Only the palette, the tile
+ * entities and the entities are kept around as data containers, which are tiny compared to the
+ * blocks. The block data is only buffered if a file lists it before the size
+ * or palette of the schematic, which neither sponge nor WorldEdit do.</p>
+ */
+public final class SchematicReader {
+
+    private static final DataQuery POS = DataQuery.of("Pos");
+    private static final DataQuery ID = DataQuery.of("Id");
+    private static final DataQuery CONTENT_VERSION = DataQuery.of("ContentVersion");
+    private static final DataQuery LEGACY_X = DataQuery.of("x");
+    private static final DataQuery LEGACY_Y = DataQuery.of("y");
+    private static final DataQuery LEGACY_Z = DataQuery.of("z");
+    private static final DataQuery LEGACY_ID = DataQuery.of("id");
+
+    private SchematicReader() {
+    }
+
+    /**
+     * Reads a schematic from an uncompressed NBT stream.
+     *
+     * @param in The stream to read from
+     * @param legacy Whether the schematic is in the legacy format
+     * @return The clipboard
+     * @throws IOException If the stream couldn't be read
+     * @throws InvalidDataException If the schematic is invalid
+     */
+    public static Clipboard read(InputStream in, boolean legacy) throws IOException {
+        return read(in, legacy, metadata -> {
+        });
+    }
+
+    /**
+     * Reads a schematic from an uncompressed NBT stream, passing its metadata
+     * to the given consumer. Legacy schematics have no metadata.
+     *
+     * @param in The stream to read from
+     * @param legacy Whether the schematic is in the legacy format
+     * @param metadataConsumer Receives the metadata, if the schematic has any
+     * @return The clipboard
+     * @throws IOException If the stream couldn't be read
+     * @throws InvalidDataException If the schematic is invalid
+     */
+    public static Clipboard read(InputStream in, boolean legacy, Consumer<DataContainer> metadataConsumer) throws IOException {
+        final NbtInputStream nbt = new NbtInputStream(in);
+        nbt.readRoot();
+        return legacy ? readLegacy(nbt) : readSponge(nbt, metadataConsumer);
+    }
+
+    private static Clipboard readSponge(NbtInputStream nbt, Consumer<DataContainer> metadataConsumer) throws IOException {
+        int width = -1;
+        int height = -1;
+        int length = -1;
+        int[] offset = new int[3];
+        BlockState[] palette = null;
+        PackedIntArray blocks = null;
+        byte[] bufferedBlockData = null;
+        final List<DataContainer> tileEntities = new ArrayList<>();
+        final List<DataContainer> entities = new ArrayList<>();
+        byte type;
+        while ((type = nbt.readByte()) != TAG_END) {
+            final String name = nbt.readUTF();
+            switch (name) {
+                case "Width":
+                    width = nbt.readIntValue(type) & 0xFFFF;
+                    break;
+                case "Height":
+                    height = nbt.readIntValue(type) & 0xFFFF;
+                    break;
+                case "Length":
+                    length = nbt.readIntValue(type) & 0xFFFF;
+                    break;
+                case "Offset":
+                    offset = nbt.readIntArrayValue(type);
+                    break;
+                case "Palette":
+                    expectType(name, type, TAG_COMPOUND);
+                    palette = readPalette(nbt);
+                    break;
+                case "BlockData":
+                    expectType(name, type, TAG_BYTE_ARRAY);
+                    if (width < 0 || height < 0 || length < 0 || palette == null) {
+                        bufferedBlockData = (byte[]) nbt.readValue(type);
+                    } else {
+                        blocks = readBlockData(nbt, nbt.readInt(), getVolume(width, height, length), palette);
+                    }
+                    break;
+                case "TileEntities":
+                    readCompoundList(nbt, name, type, tileEntities);
+                    break;
+                case "Entities":
+                    readCompoundList(nbt, name, type, entities);
+                    break;
+                case "Metadata":
+                    expectType(name, type, TAG_COMPOUND);
+                    metadataConsumer.accept(nbt.readCompound());
+                    break;
+                default:
+                    nbt.skipValue(type);
+                    break;
+            }
+        }
+        if (width < 0 || height < 0 || length < 0) {
+            throw new InvalidDataException("Schematic is missing its size");
+        }
+        if (palette == null) {
+            throw new InvalidDataException("Schematic is missing its palette");
+        }
+        if (bufferedBlockData != null) {
+            blocks = readBlockData(new NbtInputStream(new ByteArrayInputStream(bufferedBlockData)), bufferedBlockData.length,
+                    getVolume(width, height, length), palette);
+        }
+        if (blocks == null) {
+            throw new InvalidDataException("Schematic is missing its block data");
+        }
+        // Ids that no block uses may be missing from the palette
+        for (int id = 0; id < palette.length; id++) {
+            if (palette[id] == null) {
+                palette[id] = BlockTypes.AIR.getDefaultState();
+            }
+        }
+        final Vector3i min = new Vector3i(-offset[0], -offset[1], -offset[2]);
+        final Clipboard clipboard = new Clipboard(min, new Vector3i(width, height, length), Arrays.asList(palette), blocks,
+                new HashMap<>());
+        final Map<Vector3i, TileEntityArchetype> archetypes = new HashMap<>();
+        for (DataContainer tileData : tileEntities) {
+            final int[] pos = (int[]) tileData.get(POS).orElseThrow(() -> new InvalidDataException("Tile entity is missing its position"));
+            final Vector3i position = min.add(pos[0], pos[1], pos[2]);
+            final String id = tileData.getString(ID).orElseThrow(() -> new InvalidDataException("Tile entity is missing its id"));
+            tileData.remove(POS);
+            tileData.remove(ID);
+            tileData.remove(CONTENT_VERSION);
+            createTileEntity(clipboard, position, id, tileData).ifPresent(archetype -> archetypes.put(position, archetype));
+        }
+        final ListMultimap<Vector3d, EntityArchetype> entityArchetypes = ArrayListMultimap.create();
+        for (DataContainer entityData : entities) {
+            final Vector3d position = min.toDouble().add(readEntityPosition(entityData));
+            final String id = entityData.getString(ID).orElseThrow(() -> new InvalidDataException("Entity is missing its id"));
+            entityData.remove(POS);
+            entityData.remove(ID);
+            entityData.remove(CONTENT_VERSION);
+            createEntity(id, entityData).ifPresent(archetype -> entityArchetypes.put(position, archetype));
+        }
+        return new Clipboard(min, clipboard.getSize(), clipboard.getPalette(), blocks, archetypes, entityArchetypes);
+    }
+
+    private static BlockState[] readPalette(NbtInputStream nbt) throws IOException {
+        final Map<Integer, BlockState> entries = new HashMap<>();
+        int highestId = -1;
+        byte type;
+        while ((type = nbt.readByte()) != TAG_END) {
+            final String stateId = nbt.readUTF();
+            final int id = nbt.readIntValue(type);
+            final BlockState state = Sponge.getRegistry().getType(BlockState.class, stateId)
+                    .orElseThrow(() -> new InvalidDataException("Unknown block state " + stateId));
+            entries.put(id, state);
+            highestId = Math.max(highestId, id);
+        }
+        final BlockState[] palette = new BlockState[highestId + 1];
+        for (Map.Entry<Integer, BlockState> entry : entries.entrySet()) {
+            palette[entry.getKey()] = entry.getValue();
+        }
+        return palette;
+    }
+
+    private static PackedIntArray readBlockData(NbtInputStream nbt, int bytes, int volume, BlockState[] palette) throws IOException {
+        final PackedIntArray blocks = new PackedIntArray(PackedIntArray.bitsFor(palette.length), volume);
+        int read = 0;
+        for (int i = 0; i < volume; i++) {
+            if (read >= bytes) {
+                throw new InvalidDataException("Block data is too short");
+            }
+            final int id = nbt.readVarInt();
+            if (id >= palette.length || palette[id] == null) {
+                throw new InvalidDataException("Block data references unknown palette id " + id);
+            }
+            read += NbtOutputStream.getVarIntSize(id);
+            blocks.set(i, id);
+        }
+        if (read != bytes) {
+            throw new InvalidDataException("Block data is too long");
+        }
+        return blocks;
+    }
+
+    private static Clipboard readLegacy(NbtInputStream nbt) throws IOException {
+        int width = -1;
+        int height = -1;
+        int length = -1;
+        final int[] offset = new int[3];
+        LegacyBlocks blocks = null;
+        final Map<String, byte[]> bufferedArrays = new HashMap<>();
+        final List<DataContainer> tileEntities = new ArrayList<>();
+        final List<DataContainer> entities = new ArrayList<>();
+        byte type;
+        while ((type = nbt.readByte()) != TAG_END) {
+            final String name = nbt.readUTF();
+            switch (name) {
+                case "Width":
+                    width = nbt.readIntValue(type) & 0xFFFF;
+                    break;
+                case "Height":
+                    height = nbt.readIntValue(type) & 0xFFFF;
+                    break;
+                case "Length":
+                    length = nbt.readIntValue(type) & 0xFFFF;
+                    break;
+                case "WEOffsetX":
+                    offset[0] = nbt.readIntValue(type);
+                    break;
+                case "WEOffsetY":
+                    offset[1] = nbt.readIntValue(type);
+                    break;
+                case "WEOffsetZ":
+                    offset[2] = nbt.readIntValue(type);
+                    break;
+                case "Materials": {
+                    final Object materials = nbt.readValue(type);
+                    if (!"Alpha".equals(materials)) {
+                        throw new InvalidDataException("Unsupported schematic materials " + materials);
+                    }
+                    break;
+                }
+                case "Blocks":
+                case "AddBlocks":
+                case "Data":
+                    expectType(name, type, TAG_BYTE_ARRAY);
+                    if (width < 0 || height < 0 || length < 0) {
+                        bufferedArrays.put(name, (byte[]) nbt.readValue(type));
+                    } else {
+                        if (blocks == null) {
+                            blocks = new LegacyBlocks(getVolume(width, height, length));
+                        }
+                        blocks.read(nbt, name, nbt.readInt());
+                    }
+                    break;
+                case "TileEntities":
+                    readCompoundList(nbt, name, type, tileEntities);
+                    break;
+                case "Entities":
+                    readCompoundList(nbt, name, type, entities);
+                    break;
+                default:
+                    nbt.skipValue(type);
+                    break;
+            }
+        }
+        if (width < 0 || height < 0 || length < 0) {
+            throw new InvalidDataException("Schematic is missing its size");
+        }
+        if (blocks == null) {
+            blocks = new LegacyBlocks(getVolume(width, height, length));
+        }
+        for (Map.Entry<String, byte[]> entry : bufferedArrays.entrySet()) {
+            final byte[] array = entry.getValue();
+            blocks.read(new NbtInputStream(new ByteArrayInputStream(array)), entry.getKey(), array.length);
+        }
+        final List<BlockState> palette = blocks.getPalette();
+
+        final Vector3i min = new Vector3i(offset[0], offset[1], offset[2]);
+        final Clipboard clipboard = new Clipboard(min, new Vector3i(width, height, length), palette, blocks.packed, new HashMap<>());
+        final Map<Vector3i, TileEntityArchetype> archetypes = new HashMap<>();
+        for (DataContainer tileData : tileEntities) {
+            final Optional<Integer> x = tileData.getInt(LEGACY_X);
+            final Optional<Integer> y = tileData.getInt(LEGACY_Y);
+            final Optional<Integer> z = tileData.getInt(LEGACY_Z);
+            final Optional<String> id = tileData.getString(LEGACY_ID);
+            if (!x.isPresent() || !y.isPresent() || !z.isPresent() || !id.isPresent()) {
+                throw new InvalidDataException("Tile entity is missing its position or id");
+            }
+            final Vector3i position = min.add(x.get(), y.get(), z.get());
+            tileData.remove(LEGACY_X);
+            tileData.remove(LEGACY_Y);
+            tileData.remove(LEGACY_Z);
+            createTileEntity(clipboard, position, id.get(), tileData).ifPresent(archetype -> archetypes.put(position, archetype));
+        }
+        final ListMultimap<Vector3d, EntityArchetype> entityArchetypes = ArrayListMultimap.create();
+        for (DataContainer entityData : entities) {
+            final Vector3d position = min.toDouble().add(readEntityPosition(entityData));
+            final String id = entityData.getString(LEGACY_ID).orElseThrow(() -> new InvalidDataException("Entity is missing its id"));
+            entityData.remove(POS);
+            entityData.remove(LEGACY_ID);
+            createEntity(id, entityData).ifPresent(archetype -> entityArchetypes.put(position, archetype));
+        }
+        return new Clipboard(min, clipboard.getSize(), palette, blocks.packed, archetypes, entityArchetypes);
+    }
+
+    private static Optional<TileEntityArchetype> createTileEntity(Clipboard clipboard, Vector3i position, String id, DataContainer tileData) {
+        if (!clipboard.contains(position.getX(), position.getY(), position.getZ())) {
+            throw new InvalidDataException("Tile entity at " + position + " is outside of the schematic");
+        }
+        final Optional<TileEntityType> type = Sponge.getRegistry().getType(TileEntityType.class, id);
+        // Tile entities from mods that aren't installed are dropped, like
+        // the sponge translators do
+        return type.map(tileEntityType -> TileEntityArchetype.builder()
+                .state(clipboard.getBlock(position.getX(), position.getY(), position.getZ()))
+                .tile(tileEntityType)
+                .tileData(tileData)
+                .build());
+    }
+
+    /**
+     * Reads the position of an entity, relative to the schematic, from the
+     * list of three doubles both formats store it as.
+     */
+    private static Vector3d readEntityPosition(DataContainer entityData) {
+        final List<Double> pos = entityData.getDoubleList(POS).orElseThrow(() -> new InvalidDataException("Entity is missing its position"));
+        if (pos.size() != 3) {
+            throw new InvalidDataException("Entity position has " + pos.size() + " coordinates, expected 3");
+        }
+        return new Vector3d(pos.get(0), pos.get(1), pos.get(2));
+    }
+
+    private static Optional<EntityArchetype> createEntity(String id, DataContainer entityData) {
+        // Entities from mods that aren't installed are dropped, like tile
+        // entities are
+        return Sponge.getRegistry().getType(EntityType.class, id).map(entityType -> EntityArchetype.builder()
+                .type(entityType)
+                .entityData(entityData)
+                .build());
+    }
+
+    private static void readCompoundList(NbtInputStream nbt, String name, byte type, List<DataContainer> into) throws IOException {
+        expectType(name, type, TAG_LIST);
+        final byte elementType = nbt.readByte();
+        final int size = nbt.readInt();
+        if (size > 0 && elementType != TAG_COMPOUND) {
+            throw new InvalidDataException(name + " must be a list of compounds");
+        }
+        for (int i = 0; i < size; i++) {
+            into.add(nbt.readCompound());
+        }
+    }
+
+    private static void expectType(String name, byte type, byte expected) {
+        if (type != expected) {
+            throw new InvalidDataException(name + " has tag type " + type + ", expected " + expected);
+        }
+    }
+
+    private static void checkLength(String name, int bytes, int expected) {
+        if (bytes != expected) {
+            throw new InvalidDataException(name + " has " + bytes + " entries, expected " + expected);
+        }
+    }
+
+    private static int getVolume(int width, int height, int length) {
+        final long volume = (long) width * height * length;
+        if (volume > Integer.MAX_VALUE) {
+            throw new InvalidDataException("Schematic is too big");
+        }
+        return (int) volume;
+    }
+
+    /**
+     * Packs the global state ids of a legacy schematic while its arrays are
+     * read, without ever holding an unpacked id per block.
+     *
+     * <p>Each array holds a part of the global ids, the block id in the low
+     * 12 bits and the metadata in the high 4. Every position starts out as id
+     * 0, and reading an array ors its part into the id of each position. The
+     * packed array holds an index into the ids seen so far, which are numbered
+     * again while every array is read. An array can only split positions that
+     * had the same id, so there are never more ids than in the final palette,
+     * and the packed array never needs more bits than it does in the end.</p>
+     */
+    private static final class LegacyBlocks {
+
+        private PackedIntArray packed;
+        // The global id so far of each packed value
+        private int[] globalIds = {0};
+
+        LegacyBlocks(int volume) {
+            this.packed = new PackedIntArray(1, volume);
+        }
+
+        void read(NbtInputStream nbt, String name, int bytes) throws IOException {
+            final int volume = this.packed.length();
+            final Renumbering renumbering = new Renumbering();
+            switch (name) {
+                case "Blocks":
+                    checkLength(name, bytes, volume);
+                    for (int i = 0; i < bytes; i++) {
+                        renumbering.or(i, nbt.readUnsignedByte());
+                    }
+                    break;
+                case "AddBlocks": {
+                    // Two blocks per byte, the even one in the low nibble.
+                    // WorldEdit and the sponge translator write (n >> 1) + 1
+                    // bytes, the byte too many for an even volume is skipped.
+                    final int needed = (volume + 1) >> 1;
+                    if (bytes < needed) {
+                        throw new InvalidDataException(name + " has " + bytes + " entries, expected at least " + needed);
+                    }
+                    for (int i = 0; i < needed; i++) {
+                        final int add = nbt.readUnsignedByte();
+                        renumbering.or(i << 1, (add & 0x0F) << 8);
+                        if ((i << 1) + 1 < volume) {
+                            renumbering.or((i << 1) + 1, (add & 0xF0) << 4);
+                        }
+                    }
+                    nbt.skipFully(bytes - needed);
+                    break;
+                }
+                case "Data":
+                    checkLength(name, bytes, volume);
+                    for (int i = 0; i < bytes; i++) {
+                        renumbering.or(i, (nbt.readUnsignedByte() & 0xF) << 12);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException(name);
+            }
+            this.globalIds = Arrays.copyOf(renumbering.globalIds, renumbering.count);
+        }
+
+        List<BlockState> getPalette() {
+            final BlockPalette globalPalette = BlockPaletteTypes.GLOBAL.create();
+            final List<BlockState> palette = new ArrayList<>(this.globalIds.length);
+            for (int globalId : this.globalIds) {
+                palette.add(globalPalette.get(globalId)
+                        .orElseThrow(() -> new InvalidDataException("Unknown block id " + (globalId & 0xFFF) + ":" + (globalId >> 12))));
+            }
+            return palette;
+        }
+
+        /**
+         * Numbers the ids of the positions again while an array is read.
+         */
+        private final class Renumbering {
+
+            // The new packed value of each global id, -1 until it is seen,
+            // global ids have 16 bits
+            private final int[] ids = new int[1 << 16];
+            private int[] globalIds = new int[16];
+            private int count;
+
+            Renumbering() {
+                Arrays.fill(this.ids, -1);
+            }
+
+            void or(int index, int part) {
+                final int globalId = LegacyBlocks.this.globalIds[LegacyBlocks.this.packed.get(index)] | part;
+                int id = this.ids[globalId];
+                if (id < 0) {
+                    id = this.count++;
+                    this.ids[globalId] = id;
+                    if (id == this.globalIds.length) {
+                        this.globalIds = Arrays.copyOf(this.globalIds, id << 1);
+                    }
+                    this.globalIds[id] = globalId;
+                    if (id > LegacyBlocks.this.packed.getMaxValue()) {
+                        LegacyBlocks.this.packed = LegacyBlocks.this.packed.resize(LegacyBlocks.this.packed.getBits() + 1);
+                    }
+                }
+                LegacyBlocks.this.packed.set(index, id);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.spongepowered.cookbook.plugin;
+
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Saves a clipboard to the schematic library off the main thread, either in
+ * full or as a delta of another schematic.
+ *
+ * <p>Everything this task needs is captured on the main thread when it is
+ * created. {@link Clipboard}s are never modified once they are built, so
+ * holding on to the reference is enough to get a consistent snapshot.</p>
+ */
+public class SchematicSaveTask implements Runnable {
+
+    private final Executor mainThread;
+    private final SchematicLibrary library;
+    private final UUID owner;
+    private final Clipboard clipboard;
+    private final String author;
+    private final String name;
+    private final boolean legacy;
+    private final SchematicCodec codec;
+    private final SchematicLibrary.Entry base;
+
+    public SchematicSaveTask(Executor mainThread, SchematicLibrary library, UUID owner, Clipboard clipboard, String author, String name,
+            boolean legacy, SchematicCodec codec) {
+        this(mainThread, library, owner, clipboard, author, name, legacy, codec, null);
+    }
+
+    /**
+     * Creates a new save task.
+     *
+     * @param mainThread Reports back to the owner on the main thread
+     * @param library The library to save to
+     * @param owner The player who saves the schematic
+     * @param clipboard The clipboard to save
+     * @param author The author of the schematic
+     * @param name The name to save the schematic under
+     * @param legacy Whether to use the legacy format, if it is saved in full
+     * @param codec How to compress the schematic
+     * @param base The schematic to save a delta of, or null to save it in
+     *     full. It must be {@link SchematicLibrary#pin(String) pinned}, the
+     *     task unpins it once it is done.
+     */
+    public SchematicSaveTask(Executor mainThread, SchematicLibrary library, UUID owner, Clipboard clipboard, String author, String name,
+            boolean legacy, SchematicCodec codec, SchematicLibrary.Entry base) {
+        this.mainThread = mainThread;
+        this.library = library;
+        this.owner = owner;
+        this.clipboard = clipboard;
+        this.author = author;
+        this.name = name;
+        this.legacy = legacy;
+        this.codec = codec;
+        this.base = base;
+    }
+
+    @Override
+    public void run() {
+        final SchematicLibrary.Entry entry;
+        try {
+            entry = this.base == null ? this.library.save(this.name, this.clipboard, this.legacy, this.author, this.codec)
+                    : this.library.saveDelta(this.name, this.clipboard, this.base, this.author, this.codec);
+        } catch (Exception e) {
+            e.printStackTrace();
+            report(Text.of(TextColors.DARK_RED, "Error saving schematic: " + e.getMessage()));
+            return;
+        } finally {
+            if (this.base != null) {
+                this.library.unpin(this.base);
+            }
+        }
+        final String kept = this.library.getKeptCodec(entry, this.codec)
+                .map(type -> ", kept the identical stored file compressed as " + type.name().toLowerCase(Locale.ROOT)).orElse("");
+        if (entry.isDelta()) {
+            report(Text.of(TextColors.GREEN, "Saved schematic " + entry.getName() + " (" + entry.getHash().substring(0, 12) + ") as a delta of "
+                    + this.base.getName() + ", " + entry.getChain().size() + " deep" + kept));
+        } else if (this.base != null) {
+            report(Text.of(TextColors.GREEN, "Saved schematic " + entry.getName() + " (" + entry.getHash().substring(0, 12) + ") in full, it "
+                    + "differs too much from " + this.base.getName() + " for a delta" + kept));
+        } else {
+            report(Text.of(TextColors.GREEN, "Saved schematic " + entry.getName() + " (" + entry.getHash().substring(0, 12) + ")" + kept));
+        }
+    }
+
+    private void report(Text message) {
+        // Players may only be touched from the main thread, and the owner may
+        // have logged out while we were busy writing.
+        this.mainThread.execute(() -> Sponge.getServer().getPlayer(this.owner).ifPresent(player -> player.sendMessage(message)));
+    }
+}
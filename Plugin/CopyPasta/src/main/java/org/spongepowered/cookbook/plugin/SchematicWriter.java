@@ -0,0 +1,225 @@
+package org.spongepowered.cookbook.plugin;
+
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_BYTE_ARRAY;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_COMPOUND;
+import static org.spongepowered.cookbook.plugin.NbtInputStream.TAG_LIST;
+
+import com.flowpowered.math.vector.Vector3d;
+import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.tileentity.TileEntityArchetype;
+import org.spongepowered.api.data.DataQuery;
+import org.spongepowered.api.data.DataView;
+import org.spongepowered.api.data.persistence.InvalidDataException;
+import org.spongepowered.api.entity.EntityArchetype;
+import org.spongepowered.api.world.schematic.BlockPalette;
+import org.spongepowered.api.world.schematic.BlockPaletteTypes;
+import org.spongepowered.api.world.schematic.Schematic;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a {@link Clipboard} as a sponge or legacy (MCEdit) schematic.
+ *
+ * <p>The block data is encoded while it is being written, so saving never
+ * needs more memory than the clipboard itself.</p>
+ */
+public final class SchematicWriter {
+
+    private static final int SPONGE_VERSION = 1;
+    private static final Set<String> SPONGE_RESERVED_KEYS = ImmutableSet.of("ContentVersion", "Pos", "Id");
+    private static final Set<String> LEGACY_TILE_ENTITY_KEYS = ImmutableSet.of("x", "y", "z", "id");
+    private static final Set<String> LEGACY_ENTITY_KEYS = ImmutableSet.of("Pos", "id");
+
+    private SchematicWriter() {
+    }
+
+    /**
+     * Writes a schematic to an uncompressed NBT stream.
+     *
+     * @param out The stream to write to
+     * @param clipboard The clipboard to write
+     * @param legacy Whether to use the legacy format
+     * @param name The name of the schematic
+     * @param author The author of the schematic
+     * @throws IOException If the stream couldn't be written
+     * @throws InvalidDataException If the clipboard can't be represented in the format
+     */
+    public static void write(OutputStream out, Clipboard clipboard, boolean legacy, String name, String author) throws IOException {
+        final NbtOutputStream nbt = new NbtOutputStream(out);
+        nbt.writeTagHeader(TAG_COMPOUND, "Schematic");
+        if (legacy) {
+            writeLegacy(nbt, clipboard);
+        } else {
+            writeSponge(nbt, clipboard, name, author);
+        }
+        nbt.writeEnd();
+        nbt.flush();
+    }
+
+    private static void writeSponge(NbtOutputStream nbt, Clipboard clipboard, String name, String author) throws IOException {
+        final Vector3i min = clipboard.getMin();
+        final Vector3i size = clipboard.getSize();
+        final List<BlockState> palette = clipboard.getPalette();
+        nbt.writeIntTag("Version", SPONGE_VERSION);
+        nbt.writeTagHeader(TAG_COMPOUND, "Metadata");
+        nbt.writeStringTag(Schematic.METADATA_NAME, name);
+        nbt.writeStringTag(Schematic.METADATA_AUTHOR, author);
+        nbt.writeTagHeader(NbtInputStream.TAG_LONG, Schematic.METADATA_DATE);
+        nbt.writeLong(System.currentTimeMillis());
+        nbt.writeEnd();
+        writeSize(nbt, size);
+        nbt.writeIntArrayTag("Offset", -min.getX(), -min.getY(), -min.getZ());
+        nbt.writeIntTag("PaletteMax", palette.size());
+        nbt.writeTagHeader(TAG_COMPOUND, "Palette");
+        for (int id = 0; id < palette.size(); id++) {
+            nbt.writeIntTag(palette.get(id).getId(), id);
+        }
+        nbt.writeEnd();
+
+        // The length of the array has to be written first, so the var ints
+        // are sized up before they are written
+        final int volume = clipboard.getVolume();
+        int bytes = 0;
+        for (int i = 0; i < volume; i++) {
+            bytes += NbtOutputStream.getVarIntSize(clipboard.getPaletteId(i));
+        }
+        nbt.writeTagHeader(TAG_BYTE_ARRAY, "BlockData");
+        nbt.writeInt(bytes);
+        for (int i = 0; i < volume; i++) {
+            nbt.writeVarInt(clipboard.getPaletteId(i));
+        }
+
+        final Map<Vector3i, TileEntityArchetype> tileEntities = clipboard.getTileEntityArchetypes();
+        nbt.writeTagHeader(TAG_LIST, "TileEntities");
+        nbt.writeByte(TAG_COMPOUND);
+        nbt.writeInt(tileEntities.size());
+        for (Map.Entry<Vector3i, TileEntityArchetype> entry : tileEntities.entrySet()) {
+            final Vector3i pos = entry.getKey().sub(min);
+            final TileEntityArchetype archetype = entry.getValue();
+            nbt.writeIntTag("ContentVersion", 1);
+            nbt.writeIntArrayTag("Pos", pos.getX(), pos.getY(), pos.getZ());
+            nbt.writeStringTag("Id", archetype.getTileEntityType().getId());
+            writeData(nbt, archetype.getTileData(), SPONGE_RESERVED_KEYS);
+        }
+
+        final ListMultimap<Vector3d, EntityArchetype> entities = clipboard.getEntityArchetypes();
+        nbt.writeTagHeader(TAG_LIST, "Entities");
+        nbt.writeByte(TAG_COMPOUND);
+        nbt.writeInt(entities.size());
+        for (Map.Entry<Vector3d, EntityArchetype> entry : entities.entries()) {
+            final EntityArchetype archetype = entry.getValue();
+            nbt.writeIntTag("ContentVersion", 1);
+            writeEntityPosition(nbt, entry.getKey().sub(min.toDouble()));
+            nbt.writeStringTag("Id", archetype.getType().getId());
+            writeData(nbt, archetype.getEntityData(), SPONGE_RESERVED_KEYS);
+        }
+    }
+
+    private static void writeLegacy(NbtOutputStream nbt, Clipboard clipboard) throws IOException {
+        final Vector3i min = clipboard.getMin();
+        final List<BlockState> palette = clipboard.getPalette();
+
+        // Look up the global id of every palette entry once, the block id
+        // is in the low 12 bits and the metadata in the high 4
+        final BlockPalette globalPalette = BlockPaletteTypes.GLOBAL.create();
+        final int[] globalIds = new int[palette.size()];
+        boolean needsAddBlocks = false;
+        for (int id = 0; id < globalIds.length; id++) {
+            final BlockState state = palette.get(id);
+            globalIds[id] = globalPalette.get(state).orElseThrow(() -> new InvalidDataException(state.getId() + " has no legacy id"));
+            needsAddBlocks |= (globalIds[id] & 0xFFF) > 0xFF;
+        }
+
+        writeSize(nbt, clipboard.getSize());
+        nbt.writeStringTag("Materials", "Alpha");
+        nbt.writeIntTag("WEOffsetX", min.getX());
+        nbt.writeIntTag("WEOffsetY", min.getY());
+        nbt.writeIntTag("WEOffsetZ", min.getZ());
+        final int volume = clipboard.getVolume();
+        nbt.writeTagHeader(TAG_BYTE_ARRAY, "Blocks");
+        nbt.writeInt(volume);
+        for (int i = 0; i < volume; i++) {
+            nbt.writeByte(globalIds[clipboard.getPaletteId(i)] & 0xFF);
+        }
+        nbt.writeTagHeader(TAG_BYTE_ARRAY, "Data");
+        nbt.writeInt(volume);
+        for (int i = 0; i < volume; i++) {
+            nbt.writeByte(globalIds[clipboard.getPaletteId(i)] >> 12 & 0xF);
+        }
+        if (needsAddBlocks) {
+            // Two blocks per byte, the even one in the low nibble. The array
+            // is (n >> 1) + 1 bytes long like WorldEdit writes it, so an even
+            // volume ends with an unused byte.
+            nbt.writeTagHeader(TAG_BYTE_ARRAY, "AddBlocks");
+            nbt.writeInt((volume >> 1) + 1);
+            for (int i = 0; i < volume; i += 2) {
+                int add = globalIds[clipboard.getPaletteId(i)] >> 8 & 0xF;
+                if (i + 1 < volume) {
+                    add |= (globalIds[clipboard.getPaletteId(i + 1)] >> 8 & 0xF) << 4;
+                }
+                nbt.writeByte(add);
+            }
+            if ((volume & 1) == 0) {
+                nbt.writeByte(0);
+            }
+        }
+
+        final Map<Vector3i, TileEntityArchetype> tileEntities = clipboard.getTileEntityArchetypes();
+        nbt.writeTagHeader(TAG_LIST, "TileEntities");
+        nbt.writeByte(TAG_COMPOUND);
+        nbt.writeInt(tileEntities.size());
+        for (Map.Entry<Vector3i, TileEntityArchetype> entry : tileEntities.entrySet()) {
+            final Vector3i pos = entry.getKey().sub(min);
+            final TileEntityArchetype archetype = entry.getValue();
+            nbt.writeIntTag("x", pos.getX());
+            nbt.writeIntTag("y", pos.getY());
+            nbt.writeIntTag("z", pos.getZ());
+            nbt.writeStringTag("id", archetype.getTileEntityType().getId());
+            writeData(nbt, archetype.getTileData(), LEGACY_TILE_ENTITY_KEYS);
+        }
+
+        final ListMultimap<Vector3d, EntityArchetype> entities = clipboard.getEntityArchetypes();
+        nbt.writeTagHeader(TAG_LIST, "Entities");
+        nbt.writeByte(TAG_COMPOUND);
+        nbt.writeInt(entities.size());
+        for (Map.Entry<Vector3d, EntityArchetype> entry : entities.entries()) {
+            final EntityArchetype archetype = entry.getValue();
+            writeEntityPosition(nbt, entry.getKey().sub(min.toDouble()));
+            nbt.writeStringTag("id", archetype.getType().getId());
+            writeData(nbt, archetype.getEntityData(), LEGACY_ENTITY_KEYS);
+        }
+    }
+
+    private static void writeEntityPosition(NbtOutputStream nbt, Vector3d pos) throws IOException {
+        nbt.writeTag("Pos", Arrays.asList(pos.getX(), pos.getY(), pos.getZ()));
+    }
+
+    private static void writeData(NbtOutputStream nbt, DataView data, Set<String> reservedKeys) throws IOException {
+        // The position and id have already been written, and must not show
+        // up twice in the same compound
+        for (Map.Entry<DataQuery, Object> entry : data.getValues(false).entrySet()) {
+            final String key = entry.getKey().asString('.');
+            if (!reservedKeys.contains(key)) {
+                nbt.writeTag(key, entry.getValue());
+            }
+        }
+        nbt.writeEnd();
+    }
+
+    private static void writeSize(NbtOutputStream nbt, Vector3i size) throws IOException {
+        if (size.getX() > 0xFFFF || size.getY() > 0xFFFF || size.getZ() > 0xFFFF) {
+            throw new InvalidDataException("Schematics can't be larger than 65535 blocks along any axis");
+        }
+        nbt.writeShortTag("Width", size.getX());
+        nbt.writeShortTag("Height", size.getY());
+        nbt.writeShortTag("Length", size.getZ());
+    }
+}
@@ -0,0 +1,454 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.slf4j.Logger;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.biome.BiomeTypes;
+import org.spongepowered.api.world.extent.BiomeVolume;
+import org.spongepowered.api.world.extent.BlockVolume;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Measures the bytes the implementation's volumes allocate per call of
+ * their hot operations, from the allocation counter the JVM keeps for each
+ * thread.
+ *
+ * <p>Each case calls its operation enough times for the JIT to compile it,
+ * then counts the bytes allocated over many more calls. The calls go
+ * through every position of a small volume, so bounds checks and index
+ * computations are covered. A case is over budget if it allocates at least
+ * a byte per call more than its budget, anything less is noise from the
+ * measurement rather than an object allocated per call.</p>
+ *
+ * <p>The counter is only available on JVMs that implement
+ * {@code com.sun.management.ThreadMXBean}, which HotSpot does.</p>
+ */
+public class AllocationProfile implements Runnable {
+
+    private static final long SEED = 0x5EED;
+    private static final int SIZE = 16;
+    private static final int WARM_UP_CALLS = 1 << 16;
+    private static final int MEASURED_CALLS = 1 << 17;
+    private static final BlockState AIR = BlockTypes.AIR.getDefaultState();
+    private static final BlockState[] BLOCKS = {
+            BlockTypes.STONE.getDefaultState(),
+            BlockTypes.DIRT.getDefaultState(),
+            BlockTypes.GRASS.getDefaultState(),
+            BlockTypes.COAL_ORE.getDefaultState()
+    };
+    private static final BiomeType[] BIOMES = {
+            BiomeTypes.OCEAN,
+            BiomeTypes.PLAINS,
+            BiomeTypes.DESERT,
+            BiomeTypes.FOREST
+    };
+    private static final DiscreteTransform3 VIEW_TRANSFORM = DiscreteTransform3.fromTranslation(3, -5, 7);
+    private static final com.sun.management.ThreadMXBean THREADS = getThreads();
+
+    /**
+     * A call of an operation, which returns something derived from its
+     * result so it can't be optimized away.
+     */
+    @FunctionalInterface
+    private interface Call {
+
+        /**
+         * Calls the operation.
+         *
+         * @param i The number of the call, from which the position is taken
+         * @return Something derived from the result
+         */
+        long call(int i);
+    }
+
+    /**
+     * The operations that can be profiled, with the bytes each may allocate
+     * per call by default. None of them needs to allocate.
+     */
+    public enum Case {
+        BLOCK_GET("blockGet", 0) {
+            @Override
+            Call prepare() {
+                final BlockVolume volume = randomBlocks();
+                return i -> volume.getBlock(x(i), y(i), z(i)).hashCode();
+            }
+        },
+        BLOCK_GET_VECTOR("blockGetVector", 0) {
+            @Override
+            Call prepare() {
+                final BlockVolume volume = randomBlocks();
+                final Vector3i[] positions = positions();
+                return i -> volume.getBlock(positions[i & (positions.length - 1)]).hashCode();
+            }
+        },
+        BLOCK_GET_TYPE("blockGetType", 0) {
+            @Override
+            Call prepare() {
+                final BlockVolume volume = randomBlocks();
+                return i -> volume.getBlockType(x(i), y(i), z(i)).hashCode();
+            }
+        },
+        BLOCK_SET("blockSet", 0) {
+            @Override
+            Call prepare() {
+                final MutableBlockVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createBlockBuffer(SIZE, SIZE, SIZE);
+                return i -> {
+                    volume.setBlock(x(i), y(i), z(i), BLOCKS[i & 3]);
+                    return i;
+                };
+            }
+        },
+        BLOCK_THREAD_SAFE_GET("blockThreadSafeGet", 0) {
+            @Override
+            Call prepare() {
+                final MutableBlockVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBlockBuffer(SIZE, SIZE, SIZE);
+                final BlockVolume random = randomBlocks();
+                volume.getBlockWorker().fill(random::getBlock);
+                return i -> volume.getBlock(x(i), y(i), z(i)).hashCode();
+            }
+        },
+        BLOCK_THREAD_SAFE_SET("blockThreadSafeSet", 0) {
+            @Override
+            Call prepare() {
+                final MutableBlockVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBlockBuffer(SIZE, SIZE, SIZE);
+                return i -> {
+                    volume.setBlock(x(i), y(i), z(i), BLOCKS[i & 3]);
+                    return i;
+                };
+            }
+        },
+        BLOCK_VIEW_GET("blockViewGet", 0) {
+            @Override
+            Call prepare() {
+                final BlockVolume volume = randomBlocks().getBlockView(VIEW_TRANSFORM);
+                final Vector3i min = volume.getBlockMin();
+                return i -> volume.getBlock(x(i) + min.getX(), y(i) + min.getY(), z(i) + min.getZ()).hashCode();
+            }
+        },
+        BLOCK_UNMODIFIABLE_GET("blockUnmodifiableGet", 0) {
+            @Override
+            Call prepare() {
+                final BlockVolume volume = randomBlocks().getUnmodifiableBlockView();
+                return i -> volume.getBlock(x(i), y(i), z(i)).hashCode();
+            }
+        },
+        BLOCK_IMMUTABLE_GET("blockImmutableGet", 0) {
+            @Override
+            Call prepare() {
+                final BlockVolume volume = randomBlocks().getImmutableBlockCopy();
+                return i -> volume.getBlock(x(i), y(i), z(i)).hashCode();
+            }
+        },
+        BLOCK_BOUNDS("blockBounds", 0) {
+            @Override
+            Call prepare() {
+                final BlockVolume volume = randomBlocks();
+                return i -> volume.getBlockMin().getX() + volume.getBlockMax().getY() + volume.getBlockSize().getZ();
+            }
+        },
+        BLOCK_CONTAINS("blockContains", 0) {
+            @Override
+            Call prepare() {
+                final BlockVolume volume = randomBlocks();
+                // Also asks about positions just outside the volume
+                return i -> volume.containsBlock(x(i) - 1, y(i), z(i) + 1) ? 1 : 0;
+            }
+        },
+        BIOME_GET("biomeGet", 0) {
+            @Override
+            Call prepare() {
+                final BiomeVolume volume = randomBiomes();
+                return i -> volume.getBiome(x(i), y(i), z(i)).hashCode();
+            }
+        },
+        BIOME_SET("biomeSet", 0) {
+            @Override
+            Call prepare() {
+                final MutableBiomeVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createBiomeBuffer(SIZE, SIZE, SIZE);
+                return i -> {
+                    volume.setBiome(x(i), y(i), z(i), BIOMES[i & 3]);
+                    return i;
+                };
+            }
+        },
+        BIOME_VIEW_GET("biomeViewGet", 0) {
+            @Override
+            Call prepare() {
+                final BiomeVolume volume = randomBiomes().getBiomeView(VIEW_TRANSFORM);
+                final Vector3i min = volume.getBiomeMin();
+                return i -> volume.getBiome(x(i) + min.getX(), y(i) + min.getY(), z(i) + min.getZ()).hashCode();
+            }
+        },
+        BIOME_UNMODIFIABLE_GET("biomeUnmodifiableGet", 0) {
+            @Override
+            Call prepare() {
+                final BiomeVolume volume = randomBiomes().getUnmodifiableBiomeView();
+                return i -> volume.getBiome(x(i), y(i), z(i)).hashCode();
+            }
+        },
+        BIOME_IMMUTABLE_GET("biomeImmutableGet", 0) {
+            @Override
+            Call prepare() {
+                final BiomeVolume volume = randomBiomes().getImmutableBiomeCopy();
+                return i -> volume.getBiome(x(i), y(i), z(i)).hashCode();
+            }
+        },
+        BIOME_BOUNDS("biomeBounds", 0) {
+            @Override
+            Call prepare() {
+                final BiomeVolume volume = randomBiomes();
+                return i -> volume.getBiomeMin().getX() + volume.getBiomeMax().getY() + volume.getBiomeSize().getZ();
+            }
+        },
+        BIOME_CONTAINS("biomeContains", 0) {
+            @Override
+            Call prepare() {
+                final BiomeVolume volume = randomBiomes();
+                return i -> volume.containsBiome(x(i) - 1, y(i), z(i) + 1) ? 1 : 0;
+            }
+        };
+
+        private final String id;
+        private final long budget;
+
+        Case(String id, long budget) {
+            this.id = id;
+            this.budget = budget;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        /**
+         * Gets the bytes this case may allocate per call, unless the config
+         * gives another budget.
+         *
+         * @return The budget in bytes
+         */
+        public long getDefaultBudget() {
+            return this.budget;
+        }
+
+        /**
+         * Builds the volumes for this case.
+         *
+         * @return A call of the operation
+         */
+        abstract Call prepare();
+
+        /**
+         * Finds a case by its id, ignoring case.
+         *
+         * @param id The id
+         * @return The case, or null if there is none
+         */
+        public static Case byId(String id) {
+            for (Case profileCase : values()) {
+                if (profileCase.id.equalsIgnoreCase(id)) {
+                    return profileCase;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final List<Case> cases;
+    private final Map<Case, Long> budgets;
+    private final Consumer<Text> reporter;
+    private final Logger logger;
+
+    /**
+     * Creates a new profile.
+     *
+     * @param cases The cases to run, in order
+     * @param budgets The bytes each case may allocate per call
+     * @param reporter Sends a line of the report, from any thread
+     * @param logger Logs the errors of the profile
+     */
+    public AllocationProfile(List<Case> cases, Map<Case, Long> budgets, Consumer<Text> reporter, Logger logger) {
+        this.cases = cases;
+        this.budgets = budgets;
+        this.reporter = reporter;
+        this.logger = logger;
+    }
+
+    private static com.sun.management.ThreadMXBean getThreads() {
+        final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        final com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        if (!sunThreads.isThreadAllocatedMemoryEnabled()) {
+            sunThreads.setThreadAllocatedMemoryEnabled(true);
+        }
+        return sunThreads;
+    }
+
+    /**
+     * Gets whether the JVM counts the bytes allocated by each thread.
+     *
+     * @return Whether cases can be measured
+     */
+    public static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    // Calls go through the volume in the order x, z, y
+    private static int x(int i) {
+        return i & (SIZE - 1);
+    }
+
+    private static int y(int i) {
+        return (i >>> 8) & (SIZE - 1);
+    }
+
+    private static int z(int i) {
+        return (i >>> 4) & (SIZE - 1);
+    }
+
+    private static Vector3i[] positions() {
+        final Vector3i[] positions = new Vector3i[SIZE * SIZE * SIZE];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = new Vector3i(x(i), y(i), z(i));
+        }
+        return positions;
+    }
+
+    private static MutableBlockVolume randomBlocks() {
+        final Random random = new Random(SEED);
+        final MutableBlockVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createBlockBuffer(SIZE, SIZE, SIZE);
+        volume.getBlockWorker().fill((x, y, z) -> random.nextBoolean() ? AIR : BLOCKS[random.nextInt(BLOCKS.length)]);
+        return volume;
+    }
+
+    private static MutableBiomeVolume randomBiomes() {
+        final Random random = new Random(SEED);
+        final MutableBiomeVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createBiomeBuffer(SIZE, SIZE, SIZE);
+        volume.getBiomeWorker().fill((x, y, z) -> BIOMES[random.nextInt(BIOMES.length)]);
+        return volume;
+    }
+
+    /**
+     * Measures the bytes a case allocates per call once it is compiled.
+     *
+     * @param profileCase The case
+     * @param budget The bytes it may allocate per call
+     * @return The result
+     * @throws IllegalStateException If the JVM doesn't count allocations
+     */
+    public static Result measure(Case profileCase, long budget) {
+        if (!isSupported()) {
+            throw new IllegalStateException("The JVM doesn't count the bytes allocated by each thread");
+        }
+        final Call call = profileCase.prepare();
+        // An empty call measures what counting costs, so it isn't blamed on the case
+        final Call empty = i -> i;
+        count(call, WARM_UP_CALLS);
+        count(empty, WARM_UP_CALLS);
+        final long bytes = Math.max(0, count(call, MEASURED_CALLS) - count(empty, MEASURED_CALLS));
+        return new Result(profileCase, (double) bytes / MEASURED_CALLS, budget);
+    }
+
+    /**
+     * Makes calls on the current thread and counts the bytes it allocated
+     * meanwhile.
+     */
+    private static long count(Call call, int calls) {
+        final long thread = Thread.currentThread().getId();
+        long sink = 0;
+        final long start = THREADS.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < calls; i++) {
+            sink += call.call(i);
+        }
+        final long bytes = THREADS.getThreadAllocatedBytes(thread) - start;
+        // Uses the results, so the calls can't be optimized away
+        if (sink == Long.MIN_VALUE) {
+            throw new AssertionError();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void run() {
+        if (!isSupported()) {
+            this.reporter.accept(Text.of(TextColors.DARK_RED, "This JVM doesn't count the bytes allocated by each thread"));
+            return;
+        }
+        int over = 0;
+        try {
+            for (Case profileCase : this.cases) {
+                final Result result = measure(profileCase, this.budgets.get(profileCase));
+                if (result.isOverBudget()) {
+                    over++;
+                }
+                this.reporter.accept(Text.of(TextColors.GOLD, profileCase.getId(), TextColors.GRAY, ": ",
+                        result.isOverBudget() ? TextColors.RED : TextColors.GREEN, result.toString()));
+            }
+        } catch (Exception e) {
+            this.logger.error("Error profiling allocations", e);
+            this.reporter.accept(Text.of(TextColors.DARK_RED, "Error profiling allocations: " + e.getMessage()));
+            return;
+        }
+        this.reporter.accept(over == 0 ? Text.of(TextColors.GREEN, "Every operation is within its allocation budget")
+                : Text.of(TextColors.RED, over + " operation(s) over their allocation budget"));
+    }
+
+    /**
+     * The bytes a case allocated per call.
+     */
+    public static final class Result {
+
+        private final Case profileCase;
+        private final double bytesPerCall;
+        private final long budget;
+
+        Result(Case profileCase, double bytesPerCall, long budget) {
+            this.profileCase = profileCase;
+            this.bytesPerCall = bytesPerCall;
+            this.budget = budget;
+        }
+
+        public Case getCase() {
+            return this.profileCase;
+        }
+
+        public double getBytesPerCall() {
+            return this.bytesPerCall;
+        }
+
+        public long getBudget() {
+            return this.budget;
+        }
+
+        /**
+         * Gets whether the case allocated at least a byte per call more than
+         * its budget.
+         *
+         * @return Whether the case is over budget
+         */
+        public boolean isOverBudget() {
+            return this.bytesPerCall >= this.budget + 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.2f bytes/call, budget %d", this.bytesPerCall, this.budget);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.extent.BlockVolume;
+import org.spongepowered.api.world.extent.ImmutableBlockVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBlockVolume;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Stresses block volumes with one thread writing them while others read
+ * them, their views and their immutable copies.
+ *
+ * <p>The writer goes through generations, each of which sets every block of
+ * the volume to the block of the generation, so any block read tells which
+ * generations could have written it. A read is torn if it gives a block
+ * that wasn't written by a generation running at some point during the read,
+ * and an immutable copy is torn if any of its blocks is, or if it changes
+ * after it was taken. The tests also report the throughput under
+ * contention, but don't fail on a slow machine.</p>
+ *
+ * <p>The tests keep every core busy for a few seconds, so they aren't part of
+ * the suite run at startup, only of {@code /testsuite stress}.</p>
+ */
+public class BlockVolumeConcurrencyTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlockVolumeConcurrencyTest.class);
+    // Generation g writes GENERATIONS[g % GENERATIONS.length], generation 0 is the empty volume
+    private static final BlockState[] GENERATIONS = {
+            BlockTypes.AIR.getDefaultState(),
+            BlockTypes.STONE.getDefaultState(),
+            BlockTypes.DIRT.getDefaultState(),
+            BlockTypes.GRASS.getDefaultState(),
+            BlockTypes.LOG.getDefaultState(),
+            BlockTypes.WOOL.getDefaultState(),
+            BlockTypes.COBBLESTONE.getDefaultState(),
+            BlockTypes.COAL_ORE.getDefaultState(),
+            BlockTypes.IRON_ORE.getDefaultState(),
+            BlockTypes.GOLD_ORE.getDefaultState(),
+            BlockTypes.DIAMOND_ORE.getDefaultState()
+    };
+    private static final Vector3i SIZE = new Vector3i(16, 16, 16);
+    private static final Vector3i VIEW_OFFSET = new Vector3i(5, -7, 3);
+    private static final int READERS = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+    private static final long DURATION_MILLIS = 2000;
+
+    @Test
+    public void testImmutableCopiesReadOffThread() throws InterruptedException {
+        // The buffer isn't thread safe, so only the writer touches it, and hands copies of each finished generation to the readers
+        final MutableBlockVolume buffer = TestSuite.EXTENT_BUFFER_FACTORY.createBlockBuffer(SIZE);
+        final Generations generations = new Generations(buffer);
+        final AtomicReference<Snapshot> latest = new AtomicReference<>(new Snapshot(buffer.getImmutableBlockCopy(), 0));
+        final Stress stress = new Stress(() -> {
+            final int generation = generations.writeNext();
+            latest.set(new Snapshot(buffer.getImmutableBlockCopy(), generation));
+        }, () -> () -> {
+            final Snapshot snapshot = latest.get();
+            assertUniform(snapshot.copy, getBlock(snapshot.generation));
+        });
+        stress.run();
+        stress.report("Immutable copies of a buffer", "copies read");
+    }
+
+    @Test
+    public void testThreadSafeBufferReads() throws InterruptedException {
+        final MutableBlockVolume buffer = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBlockBuffer(SIZE);
+        final Generations generations = new Generations(buffer);
+        final UnmodifiableBlockVolume unmodifiable = buffer.getUnmodifiableBlockView();
+        final UnmodifiableBlockVolume unmodifiableView = buffer.getBlockView(DiscreteTransform3.fromTranslation(VIEW_OFFSET))
+                .getUnmodifiableBlockView();
+        final Stress stress = new Stress(generations::writeNext, () -> () -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final int x = random.nextInt(SIZE.getX());
+            final int y = random.nextInt(SIZE.getY());
+            final int z = random.nextInt(SIZE.getZ());
+            final int completed = generations.completed;
+            final BlockState block;
+            switch (random.nextInt(3)) {
+                case 0:
+                    block = buffer.getBlock(x, y, z);
+                    break;
+                case 1:
+                    block = unmodifiable.getBlock(x, y, z);
+                    break;
+                default:
+                    block = unmodifiableView.getBlock(x + VIEW_OFFSET.getX(), y + VIEW_OFFSET.getY(), z + VIEW_OFFSET.getZ());
+                    break;
+            }
+            assertWrittenBetween(block, completed, generations.started, x, y, z);
+        });
+        stress.run();
+        stress.report("Blocks of a thread safe buffer", "blocks read");
+    }
+
+    @Test
+    public void testThreadSafeBufferCopies() throws InterruptedException {
+        final MutableBlockVolume buffer = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBlockBuffer(SIZE);
+        final Generations generations = new Generations(buffer);
+        final Stress stress = new Stress(generations::writeNext, () -> new Runnable() {
+
+            // The previous copy of this reader, checked again once the writer has moved on
+            private ImmutableBlockVolume previous;
+            private BlockState[] previousBlocks;
+
+            @Override
+            public void run() {
+                final int completed = generations.completed;
+                final ImmutableBlockVolume copy = buffer.getImmutableBlockCopy();
+                final int started = generations.started;
+                final BlockState[] blocks = getBlocks(copy);
+                for (int i = 0; i < blocks.length; i++) {
+                    assertWrittenBetween(blocks[i], completed, started, i % SIZE.getX(), i / (SIZE.getX() * SIZE.getZ()),
+                            i / SIZE.getX() % SIZE.getZ());
+                }
+                if (this.previous != null) {
+                    Assert.assertArrayEquals("An immutable copy changed", this.previousBlocks, getBlocks(this.previous));
+                }
+                this.previous = copy;
+                this.previousBlocks = blocks;
+            }
+        });
+        stress.run();
+        stress.report("Immutable copies of a thread safe buffer", "copies taken");
+    }
+
+    private static BlockState getBlock(int generation) {
+        return GENERATIONS[generation % GENERATIONS.length];
+    }
+
+    private static int getGenerationIndex(BlockState block) {
+        for (int i = 0; i < GENERATIONS.length; i++) {
+            if (GENERATIONS[i].equals(block)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Fails unless a block was written by one of the generations from
+     * {@code completed} to {@code started}. The check is skipped if so many
+     * generations ran during the read that every block is possible.
+     */
+    private static void assertWrittenBetween(BlockState block, int completed, int started, int x, int y, int z) {
+        final int index = getGenerationIndex(block);
+        if (index < 0) {
+            Assert.fail("Torn read at (" + x + ", " + y + ", " + z + "): " + block + " was never written");
+        }
+        if (started - completed >= GENERATIONS.length - 1) {
+            return;
+        }
+        final int age = Math.floorMod(index - completed, GENERATIONS.length);
+        if (age > started - completed) {
+            Assert.fail("Torn read at (" + x + ", " + y + ", " + z + "): " + block + " wasn't written by generations "
+                    + completed + " to " + started);
+        }
+    }
+
+    private static void assertUniform(BlockVolume volume, BlockState expected) {
+        final Vector3i min = volume.getBlockMin();
+        final Vector3i max = volume.getBlockMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    final BlockState block = volume.getBlock(x, y, z);
+                    if (!block.equals(expected)) {
+                        Assert.fail("Torn read at (" + x + ", " + y + ", " + z + "): expected " + expected + " but was " + block);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the blocks of a volume in the order y, z, x.
+     */
+    private static BlockState[] getBlocks(BlockVolume volume) {
+        final Vector3i min = volume.getBlockMin();
+        final Vector3i max = volume.getBlockMax();
+        final BlockState[] blocks = new BlockState[volume.getBlockSize().getX() * volume.getBlockSize().getY() * volume.getBlockSize().getZ()];
+        int i = 0;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    blocks[i++] = volume.getBlock(x, y, z);
+                }
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Writes generations to a volume, every other one through a translated
+     * view of it.
+     */
+    private static class Generations {
+
+        private final MutableBlockVolume volume;
+        private final MutableBlockVolume view;
+        // Written before and after each generation, so readers can tell which could have written what they read
+        private volatile int started;
+        private volatile int completed;
+
+        private Generations(MutableBlockVolume volume) {
+            this.volume = volume;
+            this.view = volume.getBlockView(DiscreteTransform3.fromTranslation(VIEW_OFFSET));
+        }
+
+        private int writeNext() {
+            final int generation = this.started + 1;
+            this.started = generation;
+            final BlockState block = getBlock(generation);
+            final boolean throughView = (generation & 1) == 0;
+            final MutableBlockVolume volume = throughView ? this.view : this.volume;
+            final Vector3i offset = throughView ? VIEW_OFFSET : Vector3i.ZERO;
+            for (int y = 0; y < SIZE.getY(); y++) {
+                for (int z = 0; z < SIZE.getZ(); z++) {
+                    for (int x = 0; x < SIZE.getX(); x++) {
+                        volume.setBlock(x + offset.getX(), y + offset.getY(), z + offset.getZ(), block);
+                    }
+                }
+            }
+            this.completed = generation;
+            return generation;
+        }
+    }
+
+    private static class Snapshot {
+
+        private final ImmutableBlockVolume copy;
+        private final int generation;
+
+        private Snapshot(ImmutableBlockVolume copy, int generation) {
+            this.copy = copy;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Runs a writer and several readers against each other for a while,
+     * counting the steps of each, and rethrows the first failure of any.
+     */
+    private static class Stress {
+
+        private final Runnable writer;
+        private final Supplier<Runnable> readers;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicLong reads = new AtomicLong();
+        private volatile boolean running = true;
+        private long writes;
+        private long nanos;
+
+        private Stress(Runnable writer, Supplier<Runnable> readers) {
+            this.writer = writer;
+            this.readers = readers;
+        }
+
+        private void run() throws InterruptedException {
+            final List<Thread> threads = new ArrayList<>();
+            threads.add(new Thread(() -> this.writes = loop(this.writer), "Stress writer"));
+            for (int i = 0; i < READERS; i++) {
+                final Runnable reader = this.readers.get();
+                threads.add(new Thread(() -> this.reads.addAndGet(loop(reader)), "Stress reader " + i));
+            }
+            final long start = System.nanoTime();
+            threads.forEach(Thread::start);
+            Thread.sleep(DURATION_MILLIS);
+            this.running = false;
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            this.nanos = System.nanoTime() - start;
+            final Throwable failure = this.failure.get();
+            if (failure instanceof AssertionError) {
+                throw (AssertionError) failure;
+            }
+            if (failure != null) {
+                throw new AssertionError("A stress thread failed", failure);
+            }
+        }
+
+        private long loop(Runnable step) {
+            long steps = 0;
+            try {
+                while (this.running && this.failure.get() == null) {
+                    step.run();
+                    steps++;
+                }
+            } catch (Throwable throwable) {
+                this.failure.compareAndSet(null, throwable);
+            }
+            return steps;
+        }
+
+        private void report(String name, String reads) {
+            final double seconds = this.nanos / 1e9;
+            LOGGER.info("{}: {} generations/s written against {} {}/s on {} reader threads", name, String.format("%.0f", this.writes / seconds),
+                    String.format("%.0f", this.reads.get() / seconds), reads, READERS);
+        }
+    }
+}
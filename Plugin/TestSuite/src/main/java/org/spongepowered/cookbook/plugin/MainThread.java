@@ -0,0 +1,22 @@
+package org.spongepowered.cookbook.plugin;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a test, or every test of a class, as needing the main thread, for
+ * example because it touches a loaded world. Other tests run on a background
+ * thread, so the server keeps ticking while they do.
+ *
+ * <p>A class with only some tests marked is run twice, once for the tests
+ * that are marked and once for those that aren't, so its
+ * {@link org.junit.BeforeClass} and {@link org.junit.AfterClass} methods run
+ * on both threads.</p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface MainThread {
+
+}
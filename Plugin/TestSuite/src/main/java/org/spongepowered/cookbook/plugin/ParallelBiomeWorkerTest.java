@@ -0,0 +1,157 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.biome.BiomeTypes;
+import org.spongepowered.api.world.extent.BiomeVolume;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.worker.MutableBiomeVolumeWorker;
+import org.spongepowered.api.world.extent.worker.procedure.BiomeVolumeMapper;
+import org.spongepowered.api.world.extent.worker.procedure.BiomeVolumeReducer;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that the parallel biome workers give the same results as the
+ * implementation's sequential ones. The volumes are large enough to be
+ * split into several regions, and the parallel workers write into thread
+ * safe buffers.
+ */
+public class ParallelBiomeWorkerTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelBiomeWorkerTest.class);
+    private static final Random RANDOM = new Random();
+    private static final BiomeType SKY = BiomeTypes.SKY;
+    private static final BiomeType PLAINS = BiomeTypes.PLAINS;
+    private static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+    private static final Vector3i SIZE = new Vector3i(300, 1, 250);
+    private static final Vector3i LARGE_SIZE = new Vector3i(2048, 1, 2048);
+    private static final int TIMED_RUNS = 3;
+
+    @Test
+    public void testFill() {
+        final MutableBiomeVolume reference = createRandomVolume(SIZE);
+        final MutableBiomeVolume sequential = TestSuite.EXTENT_BUFFER_FACTORY.createBiomeBuffer(SIZE);
+        sequential.getBiomeWorker().fill(reference::getBiome);
+        final MutableBiomeVolume parallel = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBiomeBuffer(SIZE);
+        new ParallelMutableBiomeWorker<>(parallel, POOL).fill(reference::getBiome);
+        assertSameBiomes(sequential, parallel);
+    }
+
+    @Test
+    public void testMap() {
+        final MutableBiomeVolume reference = createRandomVolume(SIZE);
+        // Map sky to plains and anything else to sky, and look at a neighbour to check the mapper sees the whole volume
+        final Vector3i max = reference.getBiomeMax();
+        final BiomeVolumeMapper mapper =
+                (v, x, y, z) -> v.getBiome(x, y, z).equals(SKY) && v.getBiome(x == max.getX() ? x : x + 1, y, z).equals(SKY) ? PLAINS : SKY;
+        final MutableBiomeVolume sequential = TestSuite.EXTENT_BUFFER_FACTORY.createBiomeBuffer(SIZE);
+        reference.getBiomeWorker().map(mapper, sequential);
+        final MutableBiomeVolume parallel = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBiomeBuffer(SIZE);
+        new ParallelBiomeWorker<>(reference, POOL).map(mapper, parallel);
+        assertSameBiomes(sequential, parallel);
+    }
+
+    @Test
+    public void testMerge() {
+        final MutableBiomeVolume reference1 = createRandomVolume(SIZE);
+        // Also test with a larger, shifted second volume and a shifted destination
+        final MutableBiomeVolume reference2 = createRandomVolume(SIZE.add(2, 0, 3));
+        final MutableBiomeVolume shiftedReference2 = reference2.getBiomeView(DiscreteTransform3.fromTranslation(-42, 0, 71));
+        final MutableBiomeVolume sequential = TestSuite.EXTENT_BUFFER_FACTORY.createBiomeBuffer(SIZE);
+        reference1.getBiomeWorker().merge(shiftedReference2, ParallelBiomeWorkerTest::mergeNonSky, sequential);
+        final MutableBiomeVolume parallel = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBiomeBuffer(SIZE);
+        final MutableBiomeVolume shiftedParallel = parallel.getBiomeView(DiscreteTransform3.fromTranslation(13, 0, 5));
+        new ParallelBiomeWorker<>(reference1, POOL).merge(shiftedReference2, ParallelBiomeWorkerTest::mergeNonSky, shiftedParallel);
+        assertSameBiomes(sequential, parallel);
+    }
+
+    @Test
+    public void testReduce() {
+        final MutableBiomeVolume volume = createRandomVolume(SIZE);
+        final ParallelBiomeWorker<MutableBiomeVolume> worker = new ParallelBiomeWorker<>(volume, POOL);
+        final BiomeVolumeReducer<Integer> skyHash = (v, x, y, z, r) -> r + (v.getBiome(x, y, z).equals(SKY) ? x | y | z : 0);
+        Assert.assertEquals(volume.getBiomeWorker().reduce(skyHash, (a, b) -> a + b, 0), worker.reduce(skyHash, (a, b) -> a + b, 0));
+        // Concatenation doesn't commute, so this also checks the partial results are merged in the order y, z, x
+        final Vector3i min = volume.getBiomeMin();
+        final Vector3i max = volume.getBiomeMax();
+        final StringBuilder order = new StringBuilder();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    if (!volume.getBiome(x, y, z).equals(SKY)) {
+                        order.append(x).append(',');
+                    }
+                }
+            }
+        }
+        final BiomeVolumeReducer<String> notEmptyX = (v, x, y, z, r) -> v.getBiome(x, y, z).equals(SKY) ? r : r + x + ',';
+        Assert.assertEquals(order.toString(), worker.reduce(notEmptyX, String::concat, ""));
+    }
+
+    @Test
+    public void testSpeedup() {
+        // Doesn't fail on a slow machine, only reports the speedup
+        final MutableBiomeVolume volume = createRandomVolume(LARGE_SIZE);
+        final MutableBiomeVolume sequential = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBiomeBuffer(LARGE_SIZE);
+        final MutableBiomeVolume parallel = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBiomeBuffer(LARGE_SIZE);
+        final MutableBiomeVolumeWorker<? extends MutableBiomeVolume> sequentialWorker = volume.getBiomeWorker();
+        final ParallelBiomeWorker<MutableBiomeVolume> parallelWorker = new ParallelBiomeWorker<>(volume, POOL);
+        final BiomeVolumeMapper mapper = (v, x, y, z) -> v.getBiome(x, y, z).equals(SKY) ? PLAINS : SKY;
+        final long sequentialNanos = time(() -> sequentialWorker.map(mapper, sequential));
+        final long parallelNanos = time(() -> parallelWorker.map(mapper, parallel));
+        assertSameBiomes(sequential, parallel);
+        LOGGER.info("Mapped {} biomes in {} ms sequentially and {} ms on {} threads, {}x speedup", LARGE_SIZE, sequentialNanos / 1000000,
+                parallelNanos / 1000000, POOL.getParallelism(), String.format("%.2f", (double) sequentialNanos / parallelNanos));
+    }
+
+    private static MutableBiomeVolume createRandomVolume(Vector3i size) {
+        final MutableBiomeVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createBiomeBuffer(size);
+        volume.getBiomeWorker().fill((x, y, z) -> RANDOM.nextBoolean() ? SKY : BiomeBufferTest.getRandomBiome());
+        return volume;
+    }
+
+    private static BiomeType mergeNonSky(BiomeVolume firstVolume, int xFirst, int yFirst, int zFirst,
+            BiomeVolume secondVolume, int xSecond, int ySecond, int zSecond) {
+        final BiomeType firstBiome = firstVolume.getBiome(xFirst, yFirst, zFirst);
+        final BiomeType secondBiome = secondVolume.getBiome(xSecond, ySecond, zSecond);
+        if (firstBiome.equals(SKY) && !secondBiome.equals(SKY)) {
+            return secondBiome;
+        }
+        return firstBiome;
+    }
+
+    private static long time(Runnable run) {
+        // The first run warms up, the fastest of the others is reported
+        run.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            final long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void assertSameBiomes(BiomeVolume expected, BiomeVolume actual) {
+        Assert.assertEquals(expected.getBiomeSize(), actual.getBiomeSize());
+        final Vector3i min = expected.getBiomeMin();
+        final Vector3i offset = actual.getBiomeMin().sub(min);
+        final Vector3i max = expected.getBiomeMax();
+        for (int x = min.getX(); x <= max.getX(); x++) {
+            for (int y = min.getY(); y <= max.getY(); y++) {
+                for (int z = min.getZ(); z <= max.getZ(); z++) {
+                    final BiomeType biome = actual.getBiome(x + offset.getX(), y + offset.getY(), z + offset.getZ());
+                    Assert.assertEquals(expected.getBiome(x, y, z), biome);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.world.extent.BlockVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBlockVolume;
+import org.spongepowered.api.world.extent.worker.BlockVolumeWorker;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeMapper;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeMerger;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeReducer;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeVisitor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+
+/**
+ * Works through a block volume on a fork-join pool.
+ *
+ * <p>The volume is split into regions that don't overlap, and each region is
+ * worked through by its own task. The mappers and mergers still see the
+ * whole volume, only the positions they are asked for are split up. They
+ * are called from several threads at once, so they must not depend on being
+ * called in order. For the same reason the destination is written from
+ * several threads at once, at distinct positions: use a thread safe buffer
+ * unless the implementation is known to allow that.</p>
+ *
+ * <p>{@link #reduce} reduces each region from the identity and merges the
+ * partial results in the order of the regions. {@link #iterate} runs in
+ * order on the calling thread, since visitors usually collect into
+ * something that isn't thread safe.</p>
+ *
+ * @param <V> The type of the volume
+ */
+public class ParallelBlockWorker<V extends BlockVolume> implements BlockVolumeWorker<V> {
+
+    protected final V volume;
+    protected final ForkJoinPool pool;
+
+    public ParallelBlockWorker(V volume, ForkJoinPool pool) {
+        this.volume = volume;
+        this.pool = pool;
+    }
+
+    @Override
+    public V getVolume() {
+        return this.volume;
+    }
+
+    @Override
+    public void map(BlockVolumeMapper mapper, MutableBlockVolume destination) {
+        final Vector3i offset = align(destination);
+        final int xOffset = offset.getX();
+        final int yOffset = offset.getY();
+        final int zOffset = offset.getZ();
+        final UnmodifiableBlockVolume unmodifiableVolume = this.volume.getUnmodifiableBlockView();
+        this.pool.invoke(new WorkRegion.Action(region(), region -> {
+            for (int y = region.minY; y <= region.maxY; y++) {
+                for (int z = region.minZ; z <= region.maxZ; z++) {
+                    for (int x = region.minX; x <= region.maxX; x++) {
+                        destination.setBlock(x + xOffset, y + yOffset, z + zOffset, mapper.map(unmodifiableVolume, x, y, z));
+                    }
+                }
+            }
+        }));
+    }
+
+    @Override
+    public void merge(BlockVolume second, BlockVolumeMerger merger, MutableBlockVolume destination) {
+        final Vector3i offsetSecond = align(second);
+        final int xOffsetSecond = offsetSecond.getX();
+        final int yOffsetSecond = offsetSecond.getY();
+        final int zOffsetSecond = offsetSecond.getZ();
+        final Vector3i offsetDestination = align(destination);
+        final int xOffsetDestination = offsetDestination.getX();
+        final int yOffsetDestination = offsetDestination.getY();
+        final int zOffsetDestination = offsetDestination.getZ();
+        final UnmodifiableBlockVolume firstUnmodifiableVolume = this.volume.getUnmodifiableBlockView();
+        final UnmodifiableBlockVolume secondUnmodifiableVolume = second.getUnmodifiableBlockView();
+        this.pool.invoke(new WorkRegion.Action(region(), region -> {
+            for (int y = region.minY; y <= region.maxY; y++) {
+                for (int z = region.minZ; z <= region.maxZ; z++) {
+                    for (int x = region.minX; x <= region.maxX; x++) {
+                        destination.setBlock(x + xOffsetDestination, y + yOffsetDestination, z + zOffsetDestination,
+                                merger.merge(firstUnmodifiableVolume, x, y, z,
+                                        secondUnmodifiableVolume, x + xOffsetSecond, y + yOffsetSecond, z + zOffsetSecond));
+                    }
+                }
+            }
+        }));
+    }
+
+    @Override
+    public void iterate(BlockVolumeVisitor<V> visitor) {
+        final Vector3i min = this.volume.getBlockMin();
+        final Vector3i max = this.volume.getBlockMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    visitor.visit(this.volume, x, y, z);
+                }
+            }
+        }
+    }
+
+    @Override
+    public <T> T reduce(BlockVolumeReducer<T> reducer, BiFunction<T, T, T> merge, T identity) {
+        final UnmodifiableBlockVolume unmodifiableVolume = this.volume.getUnmodifiableBlockView();
+        return this.pool.invoke(new WorkRegion.Reduce<>(region(), merge, region -> {
+            T reduction = identity;
+            for (int y = region.minY; y <= region.maxY; y++) {
+                for (int z = region.minZ; z <= region.maxZ; z++) {
+                    for (int x = region.minX; x <= region.maxX; x++) {
+                        reduction = reducer.reduce(unmodifiableVolume, x, y, z, reduction);
+                    }
+                }
+            }
+            return reduction;
+        }));
+    }
+
+    private WorkRegion region() {
+        return new WorkRegion(this.volume.getBlockMin(), this.volume.getBlockMax());
+    }
+
+    /**
+     * Gets the offset from this volume to another one it is worked into.
+     *
+     * @param other The other volume
+     * @return The offset to add to positions in this volume
+     * @throws IllegalArgumentException If the other volume is smaller
+     */
+    protected Vector3i align(BlockVolume other) {
+        final Vector3i size = this.volume.getBlockSize();
+        final Vector3i otherSize = other.getBlockSize();
+        if (otherSize.getX() < size.getX() || otherSize.getY() < size.getY() || otherSize.getZ() < size.getZ()) {
+            throw new IllegalArgumentException("The other volume is smaller than the work volume, " + otherSize + " < " + size);
+        }
+        return other.getBlockMin().sub(this.volume.getBlockMin());
+    }
+}
@@ -0,0 +1,157 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.extent.BlockVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+import org.spongepowered.api.world.extent.worker.MutableBlockVolumeWorker;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeMapper;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeReducer;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that the parallel block workers give the same results as the
+ * implementation's sequential ones. The volumes are large enough to be
+ * split into several regions, and the parallel workers write into thread
+ * safe buffers.
+ */
+public class ParallelBlockWorkerTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelBlockWorkerTest.class);
+    private static final Random RANDOM = new Random();
+    private static final BlockState AIR = BlockTypes.AIR.getDefaultState();
+    private static final BlockState STONE = BlockTypes.STONE.getDefaultState();
+    private static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+    private static final Vector3i SIZE = new Vector3i(40, 30, 35);
+    private static final Vector3i LARGE_SIZE = new Vector3i(128, 128, 128);
+    private static final int TIMED_RUNS = 3;
+
+    @Test
+    public void testFill() {
+        final MutableBlockVolume reference = createRandomVolume(SIZE);
+        final MutableBlockVolume sequential = TestSuite.EXTENT_BUFFER_FACTORY.createBlockBuffer(SIZE);
+        sequential.getBlockWorker().fill(reference::getBlock);
+        final MutableBlockVolume parallel = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBlockBuffer(SIZE);
+        new ParallelMutableBlockWorker<>(parallel, POOL).fill(reference::getBlock);
+        assertSameBlocks(sequential, parallel);
+    }
+
+    @Test
+    public void testMap() {
+        final MutableBlockVolume reference = createRandomVolume(SIZE);
+        // Map air to stone and anything else to air, and look at a neighbour to check the mapper sees the whole volume
+        final Vector3i max = reference.getBlockMax();
+        final BlockVolumeMapper mapper =
+                (v, x, y, z) -> v.getBlock(x, y, z).equals(AIR) && v.getBlock(x == max.getX() ? x : x + 1, y, z).equals(AIR) ? STONE : AIR;
+        final MutableBlockVolume sequential = TestSuite.EXTENT_BUFFER_FACTORY.createBlockBuffer(SIZE);
+        reference.getBlockWorker().map(mapper, sequential);
+        final MutableBlockVolume parallel = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBlockBuffer(SIZE);
+        new ParallelBlockWorker<>(reference, POOL).map(mapper, parallel);
+        assertSameBlocks(sequential, parallel);
+    }
+
+    @Test
+    public void testMerge() {
+        final MutableBlockVolume reference1 = createRandomVolume(SIZE);
+        // Also test with a larger, shifted second volume and a shifted destination
+        final MutableBlockVolume reference2 = createRandomVolume(SIZE.add(2, 6, 3));
+        final MutableBlockVolume shiftedReference2 = reference2.getBlockView(DiscreteTransform3.fromTranslation(-42, 16, 71));
+        final MutableBlockVolume sequential = TestSuite.EXTENT_BUFFER_FACTORY.createBlockBuffer(SIZE);
+        reference1.getBlockWorker().merge(shiftedReference2, ParallelBlockWorkerTest::mergeNonAir, sequential);
+        final MutableBlockVolume parallel = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBlockBuffer(SIZE);
+        final MutableBlockVolume shiftedParallel = parallel.getBlockView(DiscreteTransform3.fromTranslation(13, -7, 5));
+        new ParallelBlockWorker<>(reference1, POOL).merge(shiftedReference2, ParallelBlockWorkerTest::mergeNonAir, shiftedParallel);
+        assertSameBlocks(sequential, parallel);
+    }
+
+    @Test
+    public void testReduce() {
+        final MutableBlockVolume volume = createRandomVolume(SIZE);
+        final ParallelBlockWorker<MutableBlockVolume> worker = new ParallelBlockWorker<>(volume, POOL);
+        final BlockVolumeReducer<Integer> airHash = (v, x, y, z, r) -> r + (v.getBlock(x, y, z).equals(AIR) ? x | y | z : 0);
+        Assert.assertEquals(volume.getBlockWorker().reduce(airHash, (a, b) -> a + b, 0), worker.reduce(airHash, (a, b) -> a + b, 0));
+        // Concatenation doesn't commute, so this also checks the partial results are merged in the order y, z, x
+        final Vector3i min = volume.getBlockMin();
+        final Vector3i max = volume.getBlockMax();
+        final StringBuilder order = new StringBuilder();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    if (!volume.getBlock(x, y, z).equals(AIR)) {
+                        order.append(x).append(',');
+                    }
+                }
+            }
+        }
+        final BlockVolumeReducer<String> notEmptyX = (v, x, y, z, r) -> v.getBlock(x, y, z).equals(AIR) ? r : r + x + ',';
+        Assert.assertEquals(order.toString(), worker.reduce(notEmptyX, String::concat, ""));
+    }
+
+    @Test
+    public void testSpeedup() {
+        // Doesn't fail on a slow machine, only reports the speedup
+        final MutableBlockVolume volume = createRandomVolume(LARGE_SIZE);
+        final MutableBlockVolume sequential = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBlockBuffer(LARGE_SIZE);
+        final MutableBlockVolume parallel = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBlockBuffer(LARGE_SIZE);
+        final MutableBlockVolumeWorker<? extends MutableBlockVolume> sequentialWorker = volume.getBlockWorker();
+        final ParallelBlockWorker<MutableBlockVolume> parallelWorker = new ParallelBlockWorker<>(volume, POOL);
+        final BlockVolumeMapper mapper = (v, x, y, z) -> v.getBlock(x, y, z).equals(AIR) ? STONE : AIR;
+        final long sequentialNanos = time(() -> sequentialWorker.map(mapper, sequential));
+        final long parallelNanos = time(() -> parallelWorker.map(mapper, parallel));
+        assertSameBlocks(sequential, parallel);
+        LOGGER.info("Mapped {} blocks in {} ms sequentially and {} ms on {} threads, {}x speedup", LARGE_SIZE, sequentialNanos / 1000000,
+                parallelNanos / 1000000, POOL.getParallelism(), String.format("%.2f", (double) sequentialNanos / parallelNanos));
+    }
+
+    private static MutableBlockVolume createRandomVolume(Vector3i size) {
+        final MutableBlockVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createBlockBuffer(size);
+        volume.getBlockWorker().fill((x, y, z) -> RANDOM.nextBoolean() ? AIR : BlockBufferTest.getRandomBlock());
+        return volume;
+    }
+
+    private static BlockState mergeNonAir(BlockVolume firstVolume, int xFirst, int yFirst, int zFirst,
+            BlockVolume secondVolume, int xSecond, int ySecond, int zSecond) {
+        final BlockState firstBlock = firstVolume.getBlock(xFirst, yFirst, zFirst);
+        final BlockState secondBlock = secondVolume.getBlock(xSecond, ySecond, zSecond);
+        if (firstBlock.equals(AIR) && !secondBlock.equals(AIR)) {
+            return secondBlock;
+        }
+        return firstBlock;
+    }
+
+    private static long time(Runnable run) {
+        // The first run warms up, the fastest of the others is reported
+        run.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            final long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void assertSameBlocks(BlockVolume expected, BlockVolume actual) {
+        Assert.assertEquals(expected.getBlockSize(), actual.getBlockSize());
+        final Vector3i min = expected.getBlockMin();
+        final Vector3i offset = actual.getBlockMin().sub(min);
+        final Vector3i max = expected.getBlockMax();
+        for (int x = min.getX(); x <= max.getX(); x++) {
+            for (int y = min.getY(); y <= max.getY(); y++) {
+                for (int z = min.getZ(); z <= max.getZ(); z++) {
+                    final BlockState block = actual.getBlock(x + offset.getX(), y + offset.getY(), z + offset.getZ());
+                    Assert.assertEquals(expected.getBlock(x, y, z), block);
+                }
+            }
+        }
+    }
+
+}
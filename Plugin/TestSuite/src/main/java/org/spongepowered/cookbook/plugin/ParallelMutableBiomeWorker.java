@@ -0,0 +1,34 @@
+package org.spongepowered.cookbook.plugin;
+
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.worker.MutableBiomeVolumeWorker;
+import org.spongepowered.api.world.extent.worker.procedure.BiomeVolumeFiller;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Works through a mutable biome volume on a fork-join pool. The volume is
+ * filled from several threads at once, see {@link ParallelBiomeWorker}.
+ *
+ * @param <V> The type of the volume
+ */
+public class ParallelMutableBiomeWorker<V extends MutableBiomeVolume> extends ParallelBiomeWorker<V>
+        implements MutableBiomeVolumeWorker<V> {
+
+    public ParallelMutableBiomeWorker(V volume, ForkJoinPool pool) {
+        super(volume, pool);
+    }
+
+    @Override
+    public void fill(BiomeVolumeFiller filler) {
+        this.pool.invoke(new WorkRegion.Action(new WorkRegion(this.volume.getBiomeMin(), this.volume.getBiomeMax()), region -> {
+            for (int y = region.minY; y <= region.maxY; y++) {
+                for (int z = region.minZ; z <= region.maxZ; z++) {
+                    for (int x = region.minX; x <= region.maxX; x++) {
+                        this.volume.setBiome(x, y, z, filler.produce(x, y, z));
+                    }
+                }
+            }
+        }));
+    }
+}
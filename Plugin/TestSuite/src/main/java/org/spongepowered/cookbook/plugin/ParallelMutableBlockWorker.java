@@ -0,0 +1,34 @@
+package org.spongepowered.cookbook.plugin;
+
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+import org.spongepowered.api.world.extent.worker.MutableBlockVolumeWorker;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeFiller;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Works through a mutable block volume on a fork-join pool. The volume is
+ * filled from several threads at once, see {@link ParallelBlockWorker}.
+ *
+ * @param <V> The type of the volume
+ */
+public class ParallelMutableBlockWorker<V extends MutableBlockVolume> extends ParallelBlockWorker<V>
+        implements MutableBlockVolumeWorker<V> {
+
+    public ParallelMutableBlockWorker(V volume, ForkJoinPool pool) {
+        super(volume, pool);
+    }
+
+    @Override
+    public void fill(BlockVolumeFiller filler) {
+        this.pool.invoke(new WorkRegion.Action(new WorkRegion(this.volume.getBlockMin(), this.volume.getBlockMax()), region -> {
+            for (int y = region.minY; y <= region.maxY; y++) {
+                for (int z = region.minZ; z <= region.maxZ; z++) {
+                    for (int x = region.minX; x <= region.maxX; x++) {
+                        this.volume.setBlock(x, y, z, filler.produce(x, y, z));
+                    }
+                }
+            }
+        }));
+    }
+}
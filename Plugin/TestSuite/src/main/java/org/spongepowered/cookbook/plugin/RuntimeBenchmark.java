@@ -0,0 +1,445 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+import org.spongepowered.api.Platform;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.biome.BiomeTypes;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Times the implementation's extent buffers and workers from inside the
+ * server, off the main thread.
+ *
+ * <p>Each case builds its volumes once, runs a number of unmeasured rounds to
+ * let the JIT compile it, then times each of the measured rounds on its own.
+ * The rounds are reported as percentiles of their times and as the time per
+ * position of the median round, so builds of the implementation can be
+ * compared on the hardware they run on. The volumes are filled from a fixed
+ * seed, so every run works on the same contents.</p>
+ *
+ * <p>The results can also be written to a JSON file, one object per case,
+ * along with the implementation and Java version they were measured on.</p>
+ */
+public class RuntimeBenchmark implements Runnable {
+
+    private static final long SEED = 0x5EED;
+    private static final BlockState AIR = BlockTypes.AIR.getDefaultState();
+    private static final BlockState[] BLOCKS = {
+            BlockTypes.STONE.getDefaultState(),
+            BlockTypes.DIRT.getDefaultState(),
+            BlockTypes.GRASS.getDefaultState(),
+            BlockTypes.COAL_ORE.getDefaultState(),
+            BlockTypes.IRON_ORE.getDefaultState()
+    };
+    private static final BiomeType[] BIOMES = {
+            BiomeTypes.OCEAN,
+            BiomeTypes.PLAINS,
+            BiomeTypes.DESERT,
+            BiomeTypes.FOREST,
+            BiomeTypes.TAIGA
+    };
+    private static final double[] PERCENTILES = {50, 90, 99};
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    /**
+     * A round of a benchmark, which returns something derived from its work
+     * so it can't be optimized away.
+     */
+    @FunctionalInterface
+    private interface Round {
+
+        long run();
+    }
+
+    /**
+     * The operations that can be benchmarked. Block cases work on a cube of
+     * the given size, biome cases on a square.
+     */
+    public enum Case {
+        BLOCK_GET("blockGet") {
+            @Override
+            Round prepare(int size) {
+                final MutableBlockVolume volume = randomBlocks(size);
+                return () -> {
+                    long hash = 0;
+                    for (int y = 0; y < size; y++) {
+                        for (int z = 0; z < size; z++) {
+                            for (int x = 0; x < size; x++) {
+                                hash += volume.getBlock(x, y, z).hashCode();
+                            }
+                        }
+                    }
+                    return hash;
+                };
+            }
+        },
+        BLOCK_SET("blockSet") {
+            @Override
+            Round prepare(int size) {
+                final MutableBlockVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createBlockBuffer(size, size, size);
+                final int[] round = new int[1];
+                return () -> {
+                    final BlockState block = BLOCKS[round[0]++ % BLOCKS.length];
+                    for (int y = 0; y < size; y++) {
+                        for (int z = 0; z < size; z++) {
+                            for (int x = 0; x < size; x++) {
+                                volume.setBlock(x, y, z, block);
+                            }
+                        }
+                    }
+                    return round[0];
+                };
+            }
+        },
+        BLOCK_COPY("blockCopy") {
+            @Override
+            Round prepare(int size) {
+                final MutableBlockVolume volume = randomBlocks(size);
+                return () -> volume.getBlockCopy().getBlockMax().getX();
+            }
+        },
+        BLOCK_FILL("blockFill") {
+            @Override
+            Round prepare(int size) {
+                final MutableBlockVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createBlockBuffer(size, size, size);
+                return () -> {
+                    volume.getBlockWorker().fill((x, y, z) -> BLOCKS[(x ^ y ^ z) & 3]);
+                    return volume.getBlock(0, 0, 0).hashCode();
+                };
+            }
+        },
+        BLOCK_MAP("blockMap") {
+            @Override
+            Round prepare(int size) {
+                final MutableBlockVolume volume = randomBlocks(size);
+                final MutableBlockVolume destination = TestSuite.EXTENT_BUFFER_FACTORY.createBlockBuffer(size, size, size);
+                return () -> {
+                    volume.getBlockWorker().map((v, x, y, z) -> v.getBlock(x, y, z).equals(AIR) ? BLOCKS[0] : AIR, destination);
+                    return destination.getBlock(0, 0, 0).hashCode();
+                };
+            }
+        },
+        BLOCK_REDUCE("blockReduce") {
+            @Override
+            Round prepare(int size) {
+                final MutableBlockVolume volume = randomBlocks(size);
+                return () -> volume.getBlockWorker().reduce((v, x, y, z, r) -> v.getBlock(x, y, z).equals(AIR) ? r + 1 : r, Integer::sum, 0);
+            }
+        },
+        BLOCK_PARALLEL_MAP("blockParallelMap") {
+            @Override
+            Round prepare(int size) {
+                final MutableBlockVolume volume = randomBlocks(size);
+                final MutableBlockVolume destination = TestSuite.EXTENT_BUFFER_FACTORY.createThreadSafeBlockBuffer(size, size, size);
+                final ParallelBlockWorker<MutableBlockVolume> worker = new ParallelBlockWorker<>(volume, ForkJoinPool.commonPool());
+                return () -> {
+                    worker.map((v, x, y, z) -> v.getBlock(x, y, z).equals(AIR) ? BLOCKS[0] : AIR, destination);
+                    return destination.getBlock(0, 0, 0).hashCode();
+                };
+            }
+        },
+        BIOME_GET("biomeGet") {
+            @Override
+            Round prepare(int size) {
+                final MutableBiomeVolume volume = randomBiomes(size);
+                return () -> {
+                    long hash = 0;
+                    for (int z = 0; z < size; z++) {
+                        for (int x = 0; x < size; x++) {
+                            hash += volume.getBiome(x, 0, z).hashCode();
+                        }
+                    }
+                    return hash;
+                };
+            }
+        },
+        BIOME_SET("biomeSet") {
+            @Override
+            Round prepare(int size) {
+                final MutableBiomeVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createBiomeBuffer(size, 1, size);
+                final int[] round = new int[1];
+                return () -> {
+                    final BiomeType biome = BIOMES[round[0]++ % BIOMES.length];
+                    for (int z = 0; z < size; z++) {
+                        for (int x = 0; x < size; x++) {
+                            volume.setBiome(x, 0, z, biome);
+                        }
+                    }
+                    return round[0];
+                };
+            }
+        },
+        BIOME_FILL("biomeFill") {
+            @Override
+            Round prepare(int size) {
+                final MutableBiomeVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createBiomeBuffer(size, 1, size);
+                return () -> {
+                    volume.getBiomeWorker().fill((x, y, z) -> BIOMES[(x ^ z) & 3]);
+                    return volume.getBiome(0, 0, 0).hashCode();
+                };
+            }
+        },
+        BIOME_MAP("biomeMap") {
+            @Override
+            Round prepare(int size) {
+                final MutableBiomeVolume volume = randomBiomes(size);
+                final MutableBiomeVolume destination = TestSuite.EXTENT_BUFFER_FACTORY.createBiomeBuffer(size, 1, size);
+                return () -> {
+                    volume.getBiomeWorker().map((v, x, y, z) -> v.getBiome(x, y, z) == BIOMES[0] ? BIOMES[1] : BIOMES[0], destination);
+                    return destination.getBiome(0, 0, 0).hashCode();
+                };
+            }
+        };
+
+        private final String id;
+
+        Case(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        /**
+         * Gets the number of positions a round of this case works through.
+         *
+         * @param size The size of the volumes
+         * @return The number of positions
+         */
+        long getOperations(int size) {
+            return isBiome() ? (long) size * size : (long) size * size * size;
+        }
+
+        boolean isBiome() {
+            return this.id.startsWith("biome");
+        }
+
+        /**
+         * Builds the volumes for this case.
+         *
+         * @param size The size of the volumes
+         * @return A round of the case
+         */
+        abstract Round prepare(int size);
+
+        /**
+         * Finds a case by its id, ignoring case.
+         *
+         * @param id The id
+         * @return The case, or null if there is none
+         */
+        public static Case byId(String id) {
+            for (Case benchmarkCase : values()) {
+                if (benchmarkCase.id.equalsIgnoreCase(id)) {
+                    return benchmarkCase;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final List<Case> cases;
+    private final int iterations;
+    private final int size;
+    private final Path resultsDir;
+    private final Consumer<Text> reporter;
+    private final Logger logger;
+    // Keeps the results of the rounds alive, so they can't be optimized away
+    private volatile long sink;
+
+    /**
+     * Creates a new benchmark.
+     *
+     * @param cases The cases to run, in order
+     * @param iterations How many measured rounds each case runs
+     * @param size The size of the volumes
+     * @param resultsDir The directory to write a JSON file of the results
+     *     to, or null not to write one
+     * @param reporter Sends a line of the report, from any thread
+     * @param logger Logs the errors of the benchmark
+     */
+    public RuntimeBenchmark(List<Case> cases, int iterations, int size, Path resultsDir, Consumer<Text> reporter, Logger logger) {
+        this.cases = cases;
+        this.iterations = iterations;
+        this.size = size;
+        this.resultsDir = resultsDir;
+        this.reporter = reporter;
+        this.logger = logger;
+    }
+
+    private static MutableBlockVolume randomBlocks(int size) {
+        final Random random = new Random(SEED);
+        final MutableBlockVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createBlockBuffer(size, size, size);
+        volume.getBlockWorker().fill((x, y, z) -> random.nextBoolean() ? AIR : BLOCKS[random.nextInt(BLOCKS.length)]);
+        return volume;
+    }
+
+    private static MutableBiomeVolume randomBiomes(int size) {
+        final Random random = new Random(SEED);
+        final MutableBiomeVolume volume = TestSuite.EXTENT_BUFFER_FACTORY.createBiomeBuffer(size, 1, size);
+        volume.getBiomeWorker().fill((x, y, z) -> BIOMES[random.nextInt(BIOMES.length)]);
+        return volume;
+    }
+
+    /**
+     * Gets the number of unmeasured rounds run before the measured ones.
+     */
+    private int getWarmUp() {
+        return Math.max(5, this.iterations / 2);
+    }
+
+    @Override
+    public void run() {
+        final List<Result> results = new ArrayList<>();
+        try {
+            for (Case benchmarkCase : this.cases) {
+                final Result result = measure(benchmarkCase);
+                results.add(result);
+                this.reporter.accept(Text.of(TextColors.GOLD, benchmarkCase.getId(), TextColors.GRAY, ": " + result));
+            }
+            if (this.resultsDir != null) {
+                final Path file = writeResults(results);
+                this.reporter.accept(Text.of(TextColors.GRAY, "Wrote results to " + file));
+            }
+        } catch (Exception e) {
+            this.logger.error("Error running benchmark", e);
+            this.reporter.accept(Text.of(TextColors.DARK_RED, "Error running benchmark: " + e.getMessage()));
+        }
+    }
+
+    private Result measure(Case benchmarkCase) {
+        final Round round = benchmarkCase.prepare(this.size);
+        long sink = 0;
+        for (int i = 0; i < getWarmUp(); i++) {
+            sink += round.run();
+        }
+        final long[] times = new long[this.iterations];
+        for (int i = 0; i < times.length; i++) {
+            final long start = System.nanoTime();
+            sink += round.run();
+            times[i] = System.nanoTime() - start;
+        }
+        this.sink += sink;
+        return new Result(benchmarkCase, this.size, benchmarkCase.getOperations(this.size), times);
+    }
+
+    private Path writeResults(List<Result> results) throws IOException {
+        Files.createDirectories(this.resultsDir);
+        final String name = (this.cases.size() == 1 ? this.cases.get(0).getId() : "all") + "-" + LocalDateTime.now().format(FILE_TIME) + ".json";
+        final Path file = this.resultsDir.resolve(name);
+        final Platform platform = Sponge.getPlatform();
+        final PluginContainer implementation = platform.getContainer(Platform.Component.IMPLEMENTATION);
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8); JsonWriter json = new JsonWriter(out)) {
+            json.setIndent("  ");
+            json.beginObject();
+            json.name("implementation").value(implementation.getName());
+            json.name("implementationVersion").value(implementation.getVersion().orElse("unknown"));
+            json.name("minecraftVersion").value(platform.getMinecraftVersion().getName());
+            json.name("java").value(System.getProperty("java.version"));
+            json.name("processors").value(Runtime.getRuntime().availableProcessors());
+            json.name("iterations").value(this.iterations);
+            json.name("warmUp").value(getWarmUp());
+            json.name("size").value(this.size);
+            json.name("results").beginArray();
+            for (Result result : results) {
+                result.write(json);
+            }
+            json.endArray();
+            json.endObject();
+        }
+        return file;
+    }
+
+    /**
+     * The times of the measured rounds of a case.
+     */
+    static final class Result {
+
+        private final Case benchmarkCase;
+        private final int size;
+        private final long operations;
+        // Sorted, shortest first
+        private final long[] times;
+
+        Result(Case benchmarkCase, int size, long operations, long[] times) {
+            this.benchmarkCase = benchmarkCase;
+            this.size = size;
+            this.operations = operations;
+            this.times = times.clone();
+            Arrays.sort(this.times);
+        }
+
+        /**
+         * Gets a percentile of the round times, by the nearest rank.
+         *
+         * @param percentile The percentile, from 0 to 100
+         * @return The time in nanoseconds
+         */
+        long getPercentile(double percentile) {
+            final int rank = (int) Math.ceil(percentile / 100 * this.times.length);
+            return this.times[Math.max(0, Math.min(this.times.length - 1, rank - 1))];
+        }
+
+        double getMean() {
+            return Arrays.stream(this.times).average().orElse(0);
+        }
+
+        double getNanosPerOperation() {
+            return (double) getPercentile(50) / this.operations;
+        }
+
+        void write(JsonWriter json) throws IOException {
+            json.beginObject();
+            json.name("name").value(this.benchmarkCase.getId());
+            json.name("size").value(this.size);
+            json.name("operations").value(this.operations);
+            json.name("meanNs").value(getMean());
+            json.name("minNs").value(this.times[0]);
+            for (double percentile : PERCENTILES) {
+                json.name("p" + (int) percentile + "Ns").value(getPercentile(percentile));
+            }
+            json.name("maxNs").value(this.times[this.times.length - 1]);
+            json.name("nsPerOperation").value(getNanosPerOperation());
+            json.name("timesNs").beginArray();
+            for (long time : this.times) {
+                json.value(time);
+            }
+            json.endArray();
+            json.endObject();
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder(String.format(Locale.ROOT, "%.2f ns/op", getNanosPerOperation()));
+            for (double percentile : PERCENTILES) {
+                builder.append(String.format(Locale.ROOT, ", p%d %.3f ms", (int) percentile, getPercentile(percentile) / 1e6));
+            }
+            builder.append(String.format(Locale.ROOT, ", mean %.3f ms over %d rounds", getMean() / 1e6, this.times.length));
+            return builder.toString();
+        }
+    }
+}
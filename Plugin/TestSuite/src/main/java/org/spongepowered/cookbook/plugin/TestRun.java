@@ -0,0 +1,194 @@
+package org.spongepowered.cookbook.plugin;
+
+import org.apache.commons.lang3.time.DurationFormatUtils;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.slf4j.Logger;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Runs the test classes off the main thread, reporting each test as it
+ * finishes.
+ *
+ * <p>Tests marked {@link MainThread} are handed to the main thread and
+ * waited for, everything else runs on the thread this is run on. Failures
+ * are reported as a line each, their stack traces go to the log.</p>
+ */
+public class TestRun implements Runnable {
+
+    private final List<Class<?>> classes;
+    private final ExecutorService mainThread;
+    private final Consumer<Text> reporter;
+    private final Logger logger;
+    private int runCount;
+    private int ignoreCount;
+    private int failureCount;
+    private long runTime;
+
+    /**
+     * Creates a new test run.
+     *
+     * @param classes The test classes, in the order to run them
+     * @param mainThread Runs the tests that need the main thread
+     * @param reporter Sends a line of the report, from any thread
+     * @param logger The logger to write stack traces to
+     */
+    public TestRun(List<Class<?>> classes, ExecutorService mainThread, Consumer<Text> reporter, Logger logger) {
+        this.classes = classes;
+        this.mainThread = mainThread;
+        this.reporter = reporter;
+        this.logger = logger;
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (Class<?> testClass : this.classes) {
+                runClass(testClass);
+            }
+        } catch (Exception e) {
+            this.logger.error("Error running tests", e);
+            this.reporter.accept(Text.of(TextColors.DARK_RED, "Error running tests: " + e.getMessage()));
+            return;
+        }
+        this.reporter.accept(Text.of("Ran ", this.runCount, " test(s), ignored ", this.ignoreCount, " test(s), took ",
+                DurationFormatUtils.formatDurationWords(this.runTime, true, true)));
+        if (this.failureCount > 0) {
+            this.reporter.accept(Text.of(TextColors.DARK_RED, "Failed ", this.failureCount, " test(s)"));
+            this.reporter.accept(Text.of(TextColors.DARK_RED, "Failure"));
+        } else {
+            this.reporter.accept(Text.of("Success"));
+        }
+    }
+
+    private void runClass(Class<?> testClass) throws Exception {
+        if (testClass.isAnnotationPresent(MainThread.class)) {
+            run(Request.aClass(testClass), true);
+            return;
+        }
+        boolean anyOnMainThread = false;
+        boolean anyOffMainThread = false;
+        for (Method method : testClass.getMethods()) {
+            if (method.isAnnotationPresent(Test.class)) {
+                if (method.isAnnotationPresent(MainThread.class)) {
+                    anyOnMainThread = true;
+                } else {
+                    anyOffMainThread = true;
+                }
+            }
+        }
+        if (!anyOnMainThread) {
+            run(Request.aClass(testClass), false);
+            return;
+        }
+        // Filtering out every test is an error, so only filter when both
+        // kinds are there
+        if (anyOffMainThread) {
+            run(Request.aClass(testClass).filterWith(new ThreadFilter(false)), false);
+        }
+        run(Request.aClass(testClass).filterWith(new ThreadFilter(true)), true);
+    }
+
+    private void run(Request request, boolean onMainThread) throws Exception {
+        final JUnitCore core = new JUnitCore();
+        core.addListener(new Streamer());
+        // The waiting thread sees everything the main thread reported, since
+        // getting the result of a future happens after it is set
+        final Result result = onMainThread ? this.mainThread.submit(() -> core.run(request)).get() : core.run(request);
+        this.runCount += result.getRunCount();
+        this.ignoreCount += result.getIgnoreCount();
+        this.failureCount += result.getFailureCount();
+        this.runTime += result.getRunTime();
+    }
+
+    private static String getName(Description description) {
+        if (description.getTestClass() == null || description.getMethodName() == null) {
+            return description.getDisplayName();
+        }
+        return description.getTestClass().getSimpleName() + "." + description.getMethodName();
+    }
+
+    /**
+     * Reports each test as it finishes.
+     */
+    private class Streamer extends RunListener {
+
+        private long started;
+        private boolean failed;
+
+        @Override
+        public void testStarted(Description description) {
+            this.started = System.nanoTime();
+            this.failed = false;
+        }
+
+        @Override
+        public void testFailure(Failure failure) {
+            this.failed = true;
+            TestRun.this.reporter.accept(Text.of(TextColors.DARK_RED, "FAIL ", getName(failure.getDescription()), ": ", failure.getMessage()));
+            TestRun.this.logger.warn(failure.toString());
+            TestRun.this.logger.warn(failure.getTrace());
+        }
+
+        @Override
+        public void testAssumptionFailure(Failure failure) {
+            this.failed = true;
+            TestRun.this.reporter.accept(Text.of(TextColors.GRAY, "SKIP ", getName(failure.getDescription()), ": ", failure.getMessage()));
+        }
+
+        @Override
+        public void testIgnored(Description description) {
+            TestRun.this.reporter.accept(Text.of(TextColors.GRAY, "IGNORED ", getName(description)));
+        }
+
+        @Override
+        public void testFinished(Description description) {
+            if (!this.failed) {
+                final long millis = (System.nanoTime() - this.started) / 1000000;
+                TestRun.this.reporter.accept(Text.of(TextColors.GREEN, "PASS ", TextColors.GRAY, getName(description), " (", millis, " ms)"));
+            }
+        }
+    }
+
+    /**
+     * Keeps the tests that need the main thread, or those that don't.
+     */
+    private static class ThreadFilter extends Filter {
+
+        private final boolean mainThread;
+
+        ThreadFilter(boolean mainThread) {
+            this.mainThread = mainThread;
+        }
+
+        @Override
+        public boolean shouldRun(Description description) {
+            if (description.isTest()) {
+                return (description.getAnnotation(MainThread.class) != null) == this.mainThread;
+            }
+            for (Description child : description.getChildren()) {
+                if (shouldRun(child)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String describe() {
+            return this.mainThread ? "tests on the main thread" : "tests off the main thread";
+        }
+    }
+}
@@ -1,34 +1,61 @@
 package org.spongepowered.cookbook.plugin;
 
 import com.google.inject.Inject;
-import org.apache.commons.lang3.time.DurationFormatUtils;
-import org.junit.runner.JUnitCore;
-import org.junit.runner.Result;
-import org.junit.runner.notification.Failure;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
 import org.slf4j.Logger;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandCallable;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.config.ConfigDir;
+import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.game.state.GameStartingServerEvent;
 import org.spongepowered.api.plugin.Plugin;
 import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.api.scheduler.SpongeExecutorService;
 import org.spongepowered.api.text.Text;
-import org.spongepowered.api.text.format.TextColors;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 import org.spongepowered.api.world.extent.ExtentBufferFactory;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Plugin(id = "sponge_test_suite", name = "TestSuite", version = "0.4", description = "Runtime test suite for sponge implementations")
 public class TestSuite {
 
     public static ExtentBufferFactory EXTENT_BUFFER_FACTORY;
+    // The bytes each operation may allocate per call, from the config
+    public static Map<AllocationProfile.Case, Long> ALLOCATION_BUDGETS;
+
+    private static final List<Class<?>> TEST_CLASSES = Arrays.asList(BiomeBufferTest.class, BlockBufferTest.class,
+            BiomeWorkerTest.class, BlockWorkerTest.class, ParallelBiomeWorkerTest.class, ParallelBlockWorkerTest.class,
+            VolumeAllocationTest.class);
+    // These keep every core busy for seconds, so they only run when asked for
+    private static final List<Class<?>> STRESS_TEST_CLASSES = Collections.singletonList(BlockVolumeConcurrencyTest.class);
+    private static final int DEFAULT_BENCHMARK_ITERATIONS = 20;
+    private static final int DEFAULT_BENCHMARK_SIZE = 64;
+    // A block volume of this size has 16M positions, larger ones take more
+    // memory than a server can spare
+    private static final int MAX_BENCHMARK_SIZE = 256;
 
     @Inject
     private Logger logger;
@@ -36,37 +63,115 @@ public class TestSuite {
     @Inject
     private PluginContainer instance;
 
+    @Inject
+    @ConfigDir(sharedRoot = false)
+    private Path config;
+
+    private SpongeExecutorService syncExecutor;
+    private SpongeExecutorService asyncExecutor;
+    // Only one test run and one benchmark run at a time, so they don't skew
+    // each other
+    private final AtomicBoolean testing = new AtomicBoolean();
+    private final AtomicBoolean benchmarking = new AtomicBoolean();
+
     @Listener
     public void onServerStarting(GameStartingServerEvent event) {
         EXTENT_BUFFER_FACTORY = Sponge.getRegistry().getExtentBufferFactory();
+        ALLOCATION_BUDGETS = loadAllocationBudgets();
+        this.syncExecutor = Sponge.getScheduler().createSyncExecutor(this);
+        this.asyncExecutor = Sponge.getScheduler().createAsyncExecutor(this);
         Sponge.getCommandManager().register(this.instance, new Commands(), "testsuite");
-        this.logger.info("Running test suite...");
-        final Result result = runTests();
-        this.logger.info("Ran {} test(s), ignored {} test(s), took {}", result.getRunCount(), result.getIgnoreCount(),
-                DurationFormatUtils.formatDurationWords(result.getRunTime(), true, true));
-        if (result.getFailureCount() > 0) {
-            this.logger.warn("Failed {} test(s)", result.getFailureCount());
-            for (Failure failure : result.getFailures()) {
-                this.logger.warn(failure.toString());
-                this.logger.warn(failure.getTrace());
-            }
+        // Runs in the background, the server finishes starting meanwhile
+        runTests(TEST_CLASSES, message -> this.logger.info(message.toPlain()));
+    }
+
+    /**
+     * Loads the allocation budgets from the config, and writes the default
+     * budget of every case it doesn't have back to it.
+     *
+     * @return The budget of every case
+     */
+    private Map<AllocationProfile.Case, Long> loadAllocationBudgets() {
+        final Map<AllocationProfile.Case, Long> budgets = new EnumMap<>(AllocationProfile.Case.class);
+        for (AllocationProfile.Case profileCase : AllocationProfile.Case.values()) {
+            budgets.put(profileCase, profileCase.getDefaultBudget());
         }
-        if (result.wasSuccessful()) {
-            this.logger.info("Success");
-        } else {
-            this.logger.warn("Failure");
+        final ConfigurationLoader<CommentedConfigurationNode> loader =
+                HoconConfigurationLoader.builder().setPath(this.config.resolve("testsuite.conf")).build();
+        try {
+            Files.createDirectories(this.config);
+            final CommentedConfigurationNode root = loader.load();
+            final CommentedConfigurationNode budgetsNode = root.getNode("allocation-budgets")
+                    .setComment("The bytes each operation may allocate per call, checked by the tests and /testsuite alloc");
+            for (AllocationProfile.Case profileCase : AllocationProfile.Case.values()) {
+                final CommentedConfigurationNode node = budgetsNode.getNode(profileCase.getId());
+                if (node.isVirtual()) {
+                    node.setValue(profileCase.getDefaultBudget());
+                    continue;
+                }
+                final long budget = node.getLong(-1);
+                if (budget < 0) {
+                    this.logger.warn("The allocation budget of " + profileCase.getId() + " must be a number of bytes, was "
+                            + node.getValue() + ", using " + profileCase.getDefaultBudget());
+                    continue;
+                }
+                budgets.put(profileCase, budget);
+            }
+            loader.save(root);
+        } catch (IOException e) {
+            this.logger.error("Error loading the config, using the default allocation budgets", e);
         }
+        return budgets;
     }
 
-    private static Result runTests() {
-        return JUnitCore.runClasses(BiomeBufferTest.class, BlockBufferTest.class, BiomeWorkerTest.class, BlockWorkerTest.class);
+    /**
+     * Starts running tests in the background, unless some already are.
+     *
+     * @param classes The test classes to run
+     * @param reporter Sends a line of the report, from any thread
+     * @return Whether the tests were started
+     */
+    private boolean runTests(List<Class<?>> classes, Consumer<Text> reporter) {
+        if (!this.testing.compareAndSet(false, true)) {
+            return false;
+        }
+        reporter.accept(Text.of("Running test suite..."));
+        final TestRun run = new TestRun(classes, this.syncExecutor, reporter, this.logger);
+        this.asyncExecutor.execute(() -> {
+            try {
+                run.run();
+            } finally {
+                this.testing.set(false);
+            }
+        });
+        return true;
     }
 
     private class Commands implements CommandCallable {
 
         @Override
         public List<String> getSuggestions(CommandSource source, String arguments, @Nullable Location<World> targetPosition) throws CommandException {
-            return null;
+            final String[] args = arguments.split(" ", -1);
+            if (args.length == 1) {
+                return Arrays.asList("alloc", "bench", "stress").stream().filter(name -> name.startsWith(args[0].toLowerCase(Locale.ROOT)))
+                        .collect(Collectors.toList());
+            }
+            if (args.length == 2 && (args[0].equalsIgnoreCase("bench") || args[0].equalsIgnoreCase("alloc"))) {
+                final List<String> names = new ArrayList<>();
+                names.add("all");
+                if (args[0].equalsIgnoreCase("bench")) {
+                    for (RuntimeBenchmark.Case benchmarkCase : RuntimeBenchmark.Case.values()) {
+                        names.add(benchmarkCase.getId());
+                    }
+                } else {
+                    for (AllocationProfile.Case profileCase : AllocationProfile.Case.values()) {
+                        names.add(profileCase.getId());
+                    }
+                }
+                return names.stream().filter(name -> name.toLowerCase(Locale.ROOT).startsWith(args[1].toLowerCase(Locale.ROOT)))
+                        .collect(Collectors.toList());
+            }
+            return Collections.emptyList();
         }
 
         @Override
@@ -86,31 +191,142 @@ public class TestSuite {
 
         @Override
         public Text getUsage(CommandSource source) {
-            return Text.of("testsuite");
+            return Text.of("testsuite [bench <name|all> [iterations] [size] [json] | alloc <name|all> [budget] | stress]");
         }
 
         @Override
-        public CommandResult process(CommandSource source, String arguments) {
-            source.sendMessage(Text.of("Running test suite..."));
-            final Result result = runTests();
-            source.sendMessage(Text.of("Ran ", result.getRunCount(), " test(s), ignored ", result.getIgnoreCount(), " test(s), took ",
-                    DurationFormatUtils.formatDurationWords(result.getRunTime(), true, true)));
-            if (result.getFailureCount() > 0) {
-                source.sendMessage(Text.of(TextColors.DARK_RED, "Failed ", result.getFailureCount(), " test(s)"));
-                source.sendMessage(Text.of(TextColors.DARK_RED, "See console for stack traces"));
-                for (Failure failure : result.getFailures()) {
-                    source.sendMessage(Text.of(TextColors.DARK_RED, failure.toString()));
-                    TestSuite.this.logger.warn(failure.getTrace());
+        public CommandResult process(CommandSource source, String arguments) throws CommandException {
+            final String[] args = arguments.trim().isEmpty() ? new String[0] : arguments.trim().split("\\s+");
+            if (args.length > 0 && args[0].equalsIgnoreCase("bench")) {
+                return benchmark(source, Arrays.copyOfRange(args, 1, args.length));
+            }
+            if (args.length > 0 && args[0].equalsIgnoreCase("alloc")) {
+                return profileAllocations(source, Arrays.copyOfRange(args, 1, args.length));
+            }
+            final boolean stress = args.length == 1 && args[0].equalsIgnoreCase("stress");
+            if (args.length > 0 && !stress) {
+                throw new CommandException(Text.of("Usage: /", getUsage(source)));
+            }
+            if (!runTests(stress ? STRESS_TEST_CLASSES : TEST_CLASSES, reporter(source))) {
+                throw new CommandException(Text.of("The test suite is already running"));
+            }
+            return CommandResult.success();
+        }
+
+        private CommandResult benchmark(CommandSource source, String[] args) throws CommandException {
+            if (args.length == 0 || args.length > 4) {
+                throw new CommandException(Text.of("Usage: /", getUsage(source)));
+            }
+            final List<RuntimeBenchmark.Case> cases;
+            if (args[0].equalsIgnoreCase("all")) {
+                cases = Arrays.asList(RuntimeBenchmark.Case.values());
+            } else {
+                final RuntimeBenchmark.Case benchmarkCase = RuntimeBenchmark.Case.byId(args[0]);
+                if (benchmarkCase == null) {
+                    throw new CommandException(Text.of("Unknown benchmark " + args[0] + ", try one of: all, "
+                            + Arrays.stream(RuntimeBenchmark.Case.values()).map(RuntimeBenchmark.Case::getId).collect(Collectors.joining(", "))));
+                }
+                cases = Collections.singletonList(benchmarkCase);
+            }
+            final boolean json = args[args.length - 1].equalsIgnoreCase("json");
+            final int numbers = json ? args.length - 1 : args.length;
+            final int iterations = numbers > 1 ? parsePositive(args[1], "iterations") : DEFAULT_BENCHMARK_ITERATIONS;
+            final int size = numbers > 2 ? parsePositive(args[2], "size") : DEFAULT_BENCHMARK_SIZE;
+            if (size > MAX_BENCHMARK_SIZE || (long) size * size * size > Integer.MAX_VALUE) {
+                throw new CommandException(Text.of("The size can be at most " + MAX_BENCHMARK_SIZE + ", was " + size));
+            }
+            if (!TestSuite.this.benchmarking.compareAndSet(false, true)) {
+                throw new CommandException(Text.of("A benchmark is already running"));
+            }
+            source.sendMessage(Text.of("Running " + cases.size() + " benchmark(s), " + iterations + " iteration(s) of size " + size
+                    + " each..."));
+            final Consumer<Text> reporter = reporter(source);
+            final RuntimeBenchmark benchmark = new RuntimeBenchmark(cases, iterations, size,
+                    json ? TestSuite.this.config.resolve("benchmarks") : null, reporter, TestSuite.this.logger);
+            TestSuite.this.asyncExecutor.execute(() -> {
+                try {
+                    benchmark.run();
+                } finally {
+                    TestSuite.this.benchmarking.set(false);
+                    reporter.accept(Text.of("Done"));
                 }
+            });
+            return CommandResult.success();
+        }
+
+        private CommandResult profileAllocations(CommandSource source, String[] args) throws CommandException {
+            if (args.length == 0 || args.length > 2) {
+                throw new CommandException(Text.of("Usage: /", getUsage(source)));
             }
-            if (result.wasSuccessful()) {
-                source.sendMessage(Text.of("Success"));
+            final List<AllocationProfile.Case> cases;
+            if (args[0].equalsIgnoreCase("all")) {
+                cases = Arrays.asList(AllocationProfile.Case.values());
             } else {
-                source.sendMessage(Text.of(TextColors.DARK_RED, "Failure"));
+                final AllocationProfile.Case profileCase = AllocationProfile.Case.byId(args[0]);
+                if (profileCase == null) {
+                    throw new CommandException(Text.of("Unknown operation " + args[0] + ", try one of: all, "
+                            + Arrays.stream(AllocationProfile.Case.values()).map(AllocationProfile.Case::getId).collect(Collectors.joining(", "))));
+                }
+                cases = Collections.singletonList(profileCase);
             }
+            final Long budget = args.length > 1 ? parseBudget(args[1]) : null;
+            // Shares the guard of the benchmarks, so a profile and a benchmark don't run at once
+            if (!TestSuite.this.benchmarking.compareAndSet(false, true)) {
+                throw new CommandException(Text.of("A benchmark is already running"));
+            }
+            source.sendMessage(Text.of("Profiling the allocations of " + cases.size() + " operation(s)..."));
+            final Consumer<Text> reporter = reporter(source);
+            final Map<AllocationProfile.Case, Long> budgets = new EnumMap<>(TestSuite.ALLOCATION_BUDGETS);
+            if (budget != null) {
+                budgets.replaceAll((profileCase, caseBudget) -> budget);
+            }
+            final AllocationProfile profile = new AllocationProfile(cases, budgets, reporter, TestSuite.this.logger);
+            TestSuite.this.asyncExecutor.execute(() -> {
+                try {
+                    profile.run();
+                } finally {
+                    TestSuite.this.benchmarking.set(false);
+                }
+            });
             return CommandResult.success();
         }
 
+        private long parseBudget(String arg) throws CommandException {
+            try {
+                final long value = Long.parseLong(arg);
+                if (value >= 0) {
+                    return value;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+            throw new CommandException(Text.of("The budget must be a number of bytes, was " + arg));
+        }
+
+        private int parsePositive(String arg, String name) throws CommandException {
+            try {
+                final int value = Integer.parseInt(arg);
+                if (value > 0) {
+                    return value;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+            throw new CommandException(Text.of("The " + name + " must be a positive number, was " + arg));
+        }
+
+        /**
+         * Sends messages to a command source from any thread. Players are
+         * only touched from the main thread, and may have logged out by the
+         * time a message is sent.
+         */
+        private Consumer<Text> reporter(CommandSource source) {
+            if (source instanceof Player) {
+                final UUID owner = ((Player) source).getUniqueId();
+                return message -> TestSuite.this.syncExecutor.execute(() ->
+                        Sponge.getServer().getPlayer(owner).ifPresent(player -> player.sendMessage(message)));
+            }
+            return message -> TestSuite.this.syncExecutor.execute(() -> source.sendMessage(message));
+        }
+
     }
 
 }
@@ -0,0 +1,36 @@
+package org.spongepowered.cookbook.plugin;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that the hot operations of block and biome volumes stay within
+ * the allocation budgets of the config once compiled. Skipped on JVMs that
+ * don't count the bytes allocated by each thread.
+ */
+public class VolumeAllocationTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VolumeAllocationTest.class);
+
+    @Test
+    public void testAllocationBudgets() {
+        Assume.assumeTrue("The JVM doesn't count allocated bytes", AllocationProfile.isSupported());
+        final List<String> over = new ArrayList<>();
+        for (AllocationProfile.Case profileCase : AllocationProfile.Case.values()) {
+            final AllocationProfile.Result result = AllocationProfile.measure(profileCase, TestSuite.ALLOCATION_BUDGETS.get(profileCase));
+            LOGGER.info("{}: {}", profileCase.getId(), result);
+            if (result.isOverBudget()) {
+                over.add(profileCase.getId() + " (" + result + ")");
+            }
+        }
+        // Measures every case before failing, so one regression doesn't hide another
+        Assert.assertTrue("Over their allocation budget: " + String.join(", ", over), over.isEmpty());
+    }
+
+}
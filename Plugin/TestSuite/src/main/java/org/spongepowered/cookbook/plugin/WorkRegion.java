@@ -0,0 +1,153 @@
+package org.spongepowered.cookbook.plugin;
+
+import com.flowpowered.math.vector.Vector3i;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+
+/**
+ * A box of positions that a parallel worker handles in one task.
+ *
+ * <p>Regions are split in half until they are small enough. Splitting
+ * keeps the order of the positions, so partial reductions can be merged
+ * with a combiner that doesn't commute.</p>
+ */
+final class WorkRegion {
+
+    /**
+     * Regions with at most this many positions aren't split any further.
+     */
+    static final int THRESHOLD = 4096;
+
+    final int minX;
+    final int minY;
+    final int minZ;
+    final int maxX;
+    final int maxY;
+    final int maxZ;
+
+    WorkRegion(Vector3i min, Vector3i max) {
+        this(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+    }
+
+    private WorkRegion(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+
+    boolean isSmall() {
+        return (long) (this.maxX - this.minX + 1) * (this.maxY - this.minY + 1) * (this.maxZ - this.minZ + 1) <= THRESHOLD;
+    }
+
+    /**
+     * Splits this region in two along the outermost axis that is more than
+     * one position thick. Positions are worked through y first, then z, then
+     * x, so the first half holds all the positions that come before those in
+     * the second half.
+     *
+     * @return The two halves
+     */
+    WorkRegion[] split() {
+        if (this.maxY > this.minY) {
+            final int middle = (this.minY + this.maxY) >> 1;
+            return new WorkRegion[] {
+                    new WorkRegion(this.minX, this.minY, this.minZ, this.maxX, middle, this.maxZ),
+                    new WorkRegion(this.minX, middle + 1, this.minZ, this.maxX, this.maxY, this.maxZ)
+            };
+        }
+        if (this.maxZ > this.minZ) {
+            final int middle = (this.minZ + this.maxZ) >> 1;
+            return new WorkRegion[] {
+                    new WorkRegion(this.minX, this.minY, this.minZ, this.maxX, this.maxY, middle),
+                    new WorkRegion(this.minX, this.minY, middle + 1, this.maxX, this.maxY, this.maxZ)
+            };
+        }
+        final int middle = (this.minX + this.maxX) >> 1;
+        return new WorkRegion[] {
+                new WorkRegion(this.minX, this.minY, this.minZ, middle, this.maxY, this.maxZ),
+                new WorkRegion(middle + 1, this.minY, this.minZ, this.maxX, this.maxY, this.maxZ)
+        };
+    }
+
+    /**
+     * Works through a single region, once it is small enough.
+     */
+    interface Work {
+
+        void work(WorkRegion region);
+    }
+
+    /**
+     * Splits a region until it is small enough, then works through it.
+     */
+    static final class Action extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final WorkRegion region;
+        private final Work work;
+
+        Action(WorkRegion region, Work work) {
+            this.region = region;
+            this.work = work;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.region.isSmall()) {
+                this.work.work(this.region);
+            } else {
+                final WorkRegion[] halves = this.region.split();
+                invokeAll(new Action(halves[0], this.work), new Action(halves[1], this.work));
+            }
+        }
+    }
+
+    /**
+     * Reduces a single region from the identity, once it is small enough.
+     *
+     * @param <T> The type of the reduction
+     */
+    interface Reduction<T> {
+
+        T reduce(WorkRegion region);
+    }
+
+    /**
+     * Splits a region until it is small enough, then reduces it. The partial
+     * results are merged in the order of the positions.
+     *
+     * @param <T> The type of the reduction
+     */
+    static final class Reduce<T> extends RecursiveTask<T> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final WorkRegion region;
+        private final BiFunction<T, T, T> merge;
+        private final Reduction<T> reduction;
+
+        Reduce(WorkRegion region, BiFunction<T, T, T> merge, Reduction<T> reduction) {
+            this.region = region;
+            this.merge = merge;
+            this.reduction = reduction;
+        }
+
+        @Override
+        protected T compute() {
+            if (this.region.isSmall()) {
+                return this.reduction.reduce(this.region);
+            }
+            final WorkRegion[] halves = this.region.split();
+            final Reduce<T> second = new Reduce<>(halves[1], this.merge, this.reduction);
+            second.fork();
+            final T first = new Reduce<>(halves[0], this.merge, this.reduction).compute();
+            return this.merge.apply(first, second.join());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.world.biome.BiomeType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paints a biome over most of a biome buffer, and copies a region of one
+ * buffer into another, a column at a time through {@code setBiome} and a
+ * region at a time through {@link MutablePaletteBiomeVolume}.
+ *
+ * <p>The painted region spans the buffer along x, so whole sections of it
+ * are made uniform without being written to. The painted rectangle is half
+ * as wide and starts off x, so every row of it fills only part of a section.
+ * The {@code height} parameter gives the buffer the layers of a 3D biome
+ * volume.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BiomeFillBenchmark {
+
+    private static final int SIZE = 512;
+
+    @Param({"1", "16"})
+    public int height;
+
+    @Param({"DENSE", "COMPACT"})
+    public CompactStorageBenchmark.Storage storage;
+
+    private MutablePaletteBiomeVolume buffer;
+    private MutablePaletteBiomeVolume source;
+    private Vector3i paintMax;
+    private Vector3i rectangleMin;
+    private Vector3i rectangleMax;
+    private int paint;
+
+    @Setup
+    public void setUp() {
+        final Vector3i size = new Vector3i(SIZE, this.height, SIZE);
+        final StandInExtentBufferFactory factory = (StandInExtentBufferFactory) VolumeFixtures.FACTORY;
+        this.buffer = (MutablePaletteBiomeVolume) (this.storage == CompactStorageBenchmark.Storage.COMPACT
+                ? factory.createCompactBiomeBuffer(size) : factory.createBiomeBuffer(size));
+        this.source = (MutablePaletteBiomeVolume) VolumeFixtures.randomBiomes(size);
+        this.paintMax = new Vector3i(SIZE - 1, this.height - 1, SIZE * 3 / 4 - 1);
+        this.rectangleMin = new Vector3i(7, 0, 7);
+        this.rectangleMax = new Vector3i(SIZE / 2 + 6, this.height - 1, SIZE * 3 / 4 + 6);
+    }
+
+    /**
+     * Gets the next biome to paint, so every invocation changes the buffer.
+     */
+    private BiomeType nextBiome() {
+        return VolumeFixtures.BIOMES[this.paint++ % VolumeFixtures.BIOMES.length];
+    }
+
+    @Benchmark
+    public MutablePaletteBiomeVolume paintSetBiome() {
+        final MutablePaletteBiomeVolume buffer = this.buffer;
+        final BiomeType biome = nextBiome();
+        for (int y = 0; y <= this.paintMax.getY(); y++) {
+            for (int z = 0; z <= this.paintMax.getZ(); z++) {
+                for (int x = 0; x <= this.paintMax.getX(); x++) {
+                    buffer.setBiome(x, y, z, biome);
+                }
+            }
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public MutablePaletteBiomeVolume paintFill() {
+        this.buffer.fillBiomes(Vector3i.ZERO, this.paintMax, nextBiome());
+        return this.buffer;
+    }
+
+    @Benchmark
+    public MutablePaletteBiomeVolume paintRectangleSetBiome() {
+        final MutablePaletteBiomeVolume buffer = this.buffer;
+        final BiomeType biome = nextBiome();
+        for (int y = this.rectangleMin.getY(); y <= this.rectangleMax.getY(); y++) {
+            for (int z = this.rectangleMin.getZ(); z <= this.rectangleMax.getZ(); z++) {
+                for (int x = this.rectangleMin.getX(); x <= this.rectangleMax.getX(); x++) {
+                    buffer.setBiome(x, y, z, biome);
+                }
+            }
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public MutablePaletteBiomeVolume paintRectangleFill() {
+        this.buffer.fillBiomes(this.rectangleMin, this.rectangleMax, nextBiome());
+        return this.buffer;
+    }
+
+    @Benchmark
+    public MutablePaletteBiomeVolume copySetBiome() {
+        final MutablePaletteBiomeVolume buffer = this.buffer;
+        final MutablePaletteBiomeVolume source = this.source;
+        // Starts off x, so copied rows don't line up with sections
+        for (int y = 0; y < this.height; y++) {
+            for (int z = 0; z < SIZE / 2; z++) {
+                for (int x = 0; x < SIZE / 2; x++) {
+                    buffer.setBiome(x + 7, y, z + 7, source.getBiome(x, y, z));
+                }
+            }
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public MutablePaletteBiomeVolume copyRegion() {
+        this.buffer.copyBiomes(this.source, Vector3i.ZERO, new Vector3i(SIZE / 2 - 1, this.height - 1, SIZE / 2 - 1), new Vector3i(7, 0, 7));
+        return this.buffer;
+    }
+}
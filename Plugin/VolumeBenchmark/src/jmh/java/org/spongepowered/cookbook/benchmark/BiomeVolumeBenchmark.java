@@ -0,0 +1,142 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.extent.BiomeVolume;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBiomeVolume;
+import org.spongepowered.api.world.extent.worker.BiomeVolumeWorker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads every biome of a square, through each of the ways a biome volume can
+ * be accessed. Each invocation covers the whole square, divide by
+ * the square of {@code size} for the time per biome.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BiomeVolumeBenchmark {
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    @Param({"MUTABLE", "UNMODIFIABLE", "IMMUTABLE"})
+    public VolumeFixtures.Variant variant;
+
+    @Param({"0", "1", "3"})
+    public int depth;
+
+    private BiomeVolume volume;
+    private BiomeVolume second;
+    private MutableBiomeVolume destination;
+    private BiomeVolumeWorker<? extends BiomeVolume> worker;
+
+    @Setup
+    public void setUp() {
+        final Vector3i size = new Vector3i(this.size, 1, this.size);
+        this.volume = VolumeFixtures.views(VolumeFixtures.variant(VolumeFixtures.randomBiomes(size), this.variant), this.depth);
+        // The second operand of merge is a plain buffer, so only the views of the first are measured
+        this.second = VolumeFixtures.randomBiomes(size).getImmutableBiomeCopy();
+        this.destination = VolumeFixtures.FACTORY.createBiomeBuffer(size);
+        this.worker = this.volume.getBiomeWorker();
+    }
+
+    @Benchmark
+    public int getBiome() {
+        final BiomeVolume volume = this.volume;
+        final Vector3i min = volume.getBiomeMin();
+        final Vector3i max = volume.getBiomeMax();
+        int land = 0;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    if (volume.getBiome(x, y, z) != VolumeFixtures.OCEAN) {
+                        land++;
+                    }
+                }
+            }
+        }
+        return land;
+    }
+
+    @Benchmark
+    public int visitRuns() {
+        final PaletteBiomeVolume volume = (PaletteBiomeVolume) this.volume;
+        final int ocean = volume.getBiomePalette().getId(VolumeFixtures.OCEAN);
+        final int[] land = new int[1];
+        volume.visitBiomeRuns((ids, from, to, offset) -> {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (ids[i] != ocean) {
+                    count++;
+                }
+            }
+            land[0] += count;
+        });
+        return land[0];
+    }
+
+    @Benchmark
+    public int countBiomes() {
+        final PaletteBiomeVolume volume = (PaletteBiomeVolume) this.volume;
+        return volume.countBiomes(volume.getBiomeMin(), volume.getBiomeMax(), biome -> biome != VolumeFixtures.OCEAN);
+    }
+
+    @Benchmark
+    public MutableBiomeVolume map() {
+        this.worker.map((volume, x, y, z) -> volume.getBiome(x, y, z), this.destination);
+        return this.destination;
+    }
+
+    @Benchmark
+    public MutableBiomeVolume merge() {
+        this.worker.merge(this.second, (first, x1, y1, z1, second, x2, y2, z2) -> {
+            final BiomeType biome = first.getBiome(x1, y1, z1);
+            return biome == VolumeFixtures.OCEAN ? second.getBiome(x2, y2, z2) : biome;
+        }, this.destination);
+        return this.destination;
+    }
+
+    @Benchmark
+    public int iterate() {
+        final int[] land = new int[1];
+        this.worker.iterate((volume, x, y, z) -> {
+            if (volume.getBiome(x, y, z) != VolumeFixtures.OCEAN) {
+                land[0]++;
+            }
+        });
+        return land[0];
+    }
+
+    @Benchmark
+    public Integer reduce() {
+        return this.worker.reduce((volume, x, y, z, land) -> volume.getBiome(x, y, z) == VolumeFixtures.OCEAN ? land : land + 1,
+                Integer::sum, 0);
+    }
+
+    @Benchmark
+    public MutableBiomeVolume getBiomeCopy() {
+        return this.volume.getBiomeCopy();
+    }
+
+    @Benchmark
+    public UnmodifiableBiomeVolume getImmutableBiomeCopy() {
+        return this.volume.getImmutableBiomeCopy();
+    }
+}
@@ -0,0 +1,142 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.world.extent.BlockVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBlockVolume;
+import org.spongepowered.api.world.extent.worker.BlockVolumeWorker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads every block of a cube, through each of the ways a block volume can
+ * be accessed. Each invocation covers the whole cube, divide by
+ * the cube of {@code size} for the time per block.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockVolumeBenchmark {
+
+    @Param({"16", "64", "128"})
+    public int size;
+
+    @Param({"MUTABLE", "UNMODIFIABLE", "IMMUTABLE"})
+    public VolumeFixtures.Variant variant;
+
+    @Param({"0", "1", "3"})
+    public int depth;
+
+    private BlockVolume volume;
+    private BlockVolume second;
+    private MutableBlockVolume destination;
+    private BlockVolumeWorker<? extends BlockVolume> worker;
+
+    @Setup
+    public void setUp() {
+        final Vector3i size = new Vector3i(this.size, this.size, this.size);
+        this.volume = VolumeFixtures.views(VolumeFixtures.variant(VolumeFixtures.randomBlocks(size), this.variant), this.depth);
+        // The second operand of merge is a plain buffer, so only the views of the first are measured
+        this.second = VolumeFixtures.randomBlocks(size).getImmutableBlockCopy();
+        this.destination = VolumeFixtures.FACTORY.createBlockBuffer(size);
+        this.worker = this.volume.getBlockWorker();
+    }
+
+    @Benchmark
+    public int getBlock() {
+        final BlockVolume volume = this.volume;
+        final Vector3i min = volume.getBlockMin();
+        final Vector3i max = volume.getBlockMax();
+        int solid = 0;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    if (volume.getBlock(x, y, z) != VolumeFixtures.AIR) {
+                        solid++;
+                    }
+                }
+            }
+        }
+        return solid;
+    }
+
+    @Benchmark
+    public int visitRuns() {
+        final PaletteBlockVolume volume = (PaletteBlockVolume) this.volume;
+        final int air = volume.getBlockPalette().getId(VolumeFixtures.AIR);
+        final int[] solid = new int[1];
+        volume.visitBlockRuns((ids, from, to, offset) -> {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (ids[i] != air) {
+                    count++;
+                }
+            }
+            solid[0] += count;
+        });
+        return solid[0];
+    }
+
+    @Benchmark
+    public int countBlocks() {
+        final PaletteBlockVolume volume = (PaletteBlockVolume) this.volume;
+        return volume.countBlocks(volume.getBlockMin(), volume.getBlockMax(), block -> block != VolumeFixtures.AIR);
+    }
+
+    @Benchmark
+    public MutableBlockVolume map() {
+        this.worker.map((volume, x, y, z) -> volume.getBlock(x, y, z), this.destination);
+        return this.destination;
+    }
+
+    @Benchmark
+    public MutableBlockVolume merge() {
+        this.worker.merge(this.second, (first, x1, y1, z1, second, x2, y2, z2) -> {
+            final BlockState block = first.getBlock(x1, y1, z1);
+            return block == VolumeFixtures.AIR ? second.getBlock(x2, y2, z2) : block;
+        }, this.destination);
+        return this.destination;
+    }
+
+    @Benchmark
+    public int iterate() {
+        final int[] solid = new int[1];
+        this.worker.iterate((volume, x, y, z) -> {
+            if (volume.getBlock(x, y, z) != VolumeFixtures.AIR) {
+                solid[0]++;
+            }
+        });
+        return solid[0];
+    }
+
+    @Benchmark
+    public Integer reduce() {
+        return this.worker.reduce((volume, x, y, z, solid) -> volume.getBlock(x, y, z) == VolumeFixtures.AIR ? solid : solid + 1,
+                Integer::sum, 0);
+    }
+
+    @Benchmark
+    public MutableBlockVolume getBlockCopy() {
+        return this.volume.getBlockCopy();
+    }
+
+    @Benchmark
+    public UnmodifiableBlockVolume getImmutableBlockCopy() {
+        return this.volume.getImmutableBlockCopy();
+    }
+}
@@ -0,0 +1,178 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares compact buffers to dense ones, for contents from empty to noise.
+ * Run with {@code -prof gc}: the memory allocated by {@code build} and
+ * {@code buildBiomes} is about what the buffer takes once built.
+ *
+ * <p>Sections are a layer of a buffer as wide as this one, so the air above
+ * {@code TERRAIN} is uniform, the ground below it is packed, and
+ * {@code NOISE} has too many blocks to pack at all.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactStorageBenchmark {
+
+    private static final int SIZE = 64;
+    private static final int BIOME_SIZE = 256;
+    private static final BlockState[] NOISE_BLOCKS = StandInCatalog.blockStates("benchmark:noise", 64);
+    private static final BiomeType[] NOISE_BIOMES = StandInCatalog.biomes("benchmark:noise", 64);
+    private static final StandInExtentBufferFactory FACTORY = (StandInExtentBufferFactory) VolumeFixtures.FACTORY;
+
+    public enum Storage {
+        DENSE,
+        COMPACT
+    }
+
+    public enum Contents {
+        // Nothing but air
+        EMPTY,
+        // One in a hundred positions is a random block
+        SPARSE,
+        // Ground with some ore in the bottom half, air above
+        TERRAIN,
+        // Every position is one of many blocks
+        NOISE
+    }
+
+    @Param({"DENSE", "COMPACT"})
+    public Storage storage;
+
+    @Param({"EMPTY", "SPARSE", "TERRAIN", "NOISE"})
+    public Contents contents;
+
+    // Indexed y, then z, then x, like the buffers
+    private BlockState[] blockContents;
+    private BiomeType[] biomeContents;
+    private MutableBlockVolume blocks;
+    private MutableBiomeVolume biomes;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(0x5EED);
+        this.blockContents = new BlockState[SIZE * SIZE * SIZE];
+        for (int i = 0; i < this.blockContents.length; i++) {
+            this.blockContents[i] = block(random, i / (SIZE * SIZE));
+        }
+        this.biomeContents = new BiomeType[BIOME_SIZE * BIOME_SIZE];
+        for (int i = 0; i < this.biomeContents.length; i++) {
+            this.biomeContents[i] = biome(random, i / BIOME_SIZE);
+        }
+        this.blocks = build();
+        this.biomes = buildBiomes();
+    }
+
+    private BlockState block(Random random, int y) {
+        switch (this.contents) {
+            case SPARSE:
+                return random.nextInt(100) == 0 ? VolumeFixtures.BLOCKS[random.nextInt(VolumeFixtures.BLOCKS.length)] : VolumeFixtures.AIR;
+            case TERRAIN:
+                if (y >= SIZE / 2) {
+                    return VolumeFixtures.AIR;
+                }
+                return random.nextInt(64) == 0 ? VolumeFixtures.BLOCKS[1 + random.nextInt(3)] : VolumeFixtures.BLOCKS[0];
+            case NOISE:
+                return NOISE_BLOCKS[random.nextInt(NOISE_BLOCKS.length)];
+            default:
+                return VolumeFixtures.AIR;
+        }
+    }
+
+    private BiomeType biome(Random random, int z) {
+        switch (this.contents) {
+            case SPARSE:
+                return random.nextInt(100) == 0 ? VolumeFixtures.BIOMES[random.nextInt(VolumeFixtures.BIOMES.length)] : VolumeFixtures.OCEAN;
+            case TERRAIN:
+                return z < BIOME_SIZE / 2 ? VolumeFixtures.OCEAN : VolumeFixtures.BIOMES[0];
+            case NOISE:
+                return NOISE_BIOMES[random.nextInt(NOISE_BIOMES.length)];
+            default:
+                return VolumeFixtures.OCEAN;
+        }
+    }
+
+    @Benchmark
+    public MutableBlockVolume build() {
+        final Vector3i size = new Vector3i(SIZE, SIZE, SIZE);
+        final MutableBlockVolume buffer = this.storage == Storage.COMPACT ? FACTORY.createCompactBlockBuffer(size) : FACTORY.createBlockBuffer(size);
+        final BlockState[] contents = this.blockContents;
+        buffer.getBlockWorker().fill((x, y, z) -> contents[(y * SIZE + z) * SIZE + x]);
+        return buffer;
+    }
+
+    @Benchmark
+    public MutableBiomeVolume buildBiomes() {
+        final Vector3i size = new Vector3i(BIOME_SIZE, 1, BIOME_SIZE);
+        final MutableBiomeVolume buffer = this.storage == Storage.COMPACT ? FACTORY.createCompactBiomeBuffer(size) : FACTORY.createBiomeBuffer(size);
+        final BiomeType[] contents = this.biomeContents;
+        buffer.getBiomeWorker().fill((x, y, z) -> contents[z * BIOME_SIZE + x]);
+        return buffer;
+    }
+
+    @Benchmark
+    public int getBlock() {
+        final MutableBlockVolume volume = this.blocks;
+        int solid = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int z = 0; z < SIZE; z++) {
+                for (int x = 0; x < SIZE; x++) {
+                    if (volume.getBlock(x, y, z) != VolumeFixtures.AIR) {
+                        solid++;
+                    }
+                }
+            }
+        }
+        return solid;
+    }
+
+    @Benchmark
+    public int getBiome() {
+        final MutableBiomeVolume volume = this.biomes;
+        int land = 0;
+        for (int z = 0; z < BIOME_SIZE; z++) {
+            for (int x = 0; x < BIOME_SIZE; x++) {
+                if (volume.getBiome(x, 0, z) != VolumeFixtures.OCEAN) {
+                    land++;
+                }
+            }
+        }
+        return land;
+    }
+
+    @Benchmark
+    public int countBlocks() {
+        final PaletteBlockVolume volume = (PaletteBlockVolume) this.blocks;
+        return volume.countBlocks(volume.getBlockMin(), volume.getBlockMax(), block -> block != VolumeFixtures.AIR);
+    }
+
+    @Benchmark
+    public MutableBlockVolume snapshotThenWrite() {
+        final MutableBlockVolume copy = this.blocks.getBlockCopy();
+        copy.setBlock(SIZE / 2, SIZE / 2, SIZE / 2, VolumeFixtures.BLOCKS[5]);
+        return copy;
+    }
+}
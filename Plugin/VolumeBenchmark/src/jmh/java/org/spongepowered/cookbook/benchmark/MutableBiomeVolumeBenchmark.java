@@ -0,0 +1,69 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes every biome of a square, directly and through stacked views. Each
+ * invocation covers the whole square, divide by the square of {@code size} for the time per
+ * biome.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MutableBiomeVolumeBenchmark {
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    @Param({"0", "1", "3"})
+    public int depth;
+
+    private MutableBiomeVolume volume;
+
+    @Setup
+    public void setUp() {
+        this.volume = (MutableBiomeVolume) VolumeFixtures.views(VolumeFixtures.randomBiomes(new Vector3i(this.size, 1, this.size)),
+                this.depth);
+    }
+
+    @Benchmark
+    public MutableBiomeVolume setBiome() {
+        final MutableBiomeVolume volume = this.volume;
+        final BiomeType[] biomes = VolumeFixtures.BIOMES;
+        final Vector3i min = volume.getBiomeMin();
+        final Vector3i max = volume.getBiomeMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    volume.setBiome(x, y, z, biomes[(x + y + z) & 7]);
+                }
+            }
+        }
+        return volume;
+    }
+
+    @Benchmark
+    public MutableBiomeVolume fill() {
+        final BiomeType[] biomes = VolumeFixtures.BIOMES;
+        this.volume.getBiomeWorker().fill((x, y, z) -> biomes[(x + y + z) & 7]);
+        return this.volume;
+    }
+}
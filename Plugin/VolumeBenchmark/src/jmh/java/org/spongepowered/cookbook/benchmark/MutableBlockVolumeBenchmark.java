@@ -0,0 +1,69 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes every block of a cube, directly and through stacked views. Each
+ * invocation covers the whole cube, divide by the cube of {@code size} for the time per
+ * block.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MutableBlockVolumeBenchmark {
+
+    @Param({"16", "64", "128"})
+    public int size;
+
+    @Param({"0", "1", "3"})
+    public int depth;
+
+    private MutableBlockVolume volume;
+
+    @Setup
+    public void setUp() {
+        this.volume = (MutableBlockVolume) VolumeFixtures.views(VolumeFixtures.randomBlocks(new Vector3i(this.size, this.size, this.size)),
+                this.depth);
+    }
+
+    @Benchmark
+    public MutableBlockVolume setBlock() {
+        final MutableBlockVolume volume = this.volume;
+        final BlockState[] blocks = VolumeFixtures.BLOCKS;
+        final Vector3i min = volume.getBlockMin();
+        final Vector3i max = volume.getBlockMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    volume.setBlock(x, y, z, blocks[(x + y + z) & 7]);
+                }
+            }
+        }
+        return volume;
+    }
+
+    @Benchmark
+    public MutableBlockVolume fill() {
+        final BlockState[] blocks = VolumeFixtures.BLOCKS;
+        this.volume.getBlockWorker().fill((x, y, z) -> blocks[(x + y + z) & 7]);
+        return this.volume;
+    }
+}
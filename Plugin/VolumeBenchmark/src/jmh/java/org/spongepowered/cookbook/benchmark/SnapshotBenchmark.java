@@ -0,0 +1,69 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.world.extent.ImmutableBlockVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes snapshots of a buffer that keeps being written to. Copies share the
+ * sections of the buffer, so a snapshot costs next to nothing and a write
+ * after it copies a single section. Run with {@code -prof gc} to see how
+ * little memory a snapshot takes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({"64", "128"})
+    public int size;
+
+    private MutableBlockVolume buffer;
+    private int write;
+
+    @Setup
+    public void setUp() {
+        this.buffer = VolumeFixtures.randomBlocks(new Vector3i(this.size, this.size, this.size));
+    }
+
+    @Benchmark
+    public ImmutableBlockVolume snapshot() {
+        return this.buffer.getImmutableBlockCopy();
+    }
+
+    @Benchmark
+    public ImmutableBlockVolume snapshotThenWrite() {
+        final ImmutableBlockVolume snapshot = this.buffer.getImmutableBlockCopy();
+        // A different position every time, so the write lands in every section in turn
+        final int write = this.write++;
+        this.buffer.setBlock(write % this.size, (write / this.size) % this.size, (write / this.size / this.size) % this.size,
+                VolumeFixtures.BLOCKS[write & 7]);
+        return snapshot;
+    }
+
+    @Benchmark
+    public MutableBlockVolume mutableCopy() {
+        return this.buffer.getBlockCopy();
+    }
+
+    @Benchmark
+    public ImmutableBlockVolume relativeSnapshot() {
+        return this.buffer.getRelativeBlockView().getImmutableBlockCopy();
+    }
+}
@@ -0,0 +1,101 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.world.extent.BiomeVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes through ever deeper stacks of views. Views of views
+ * collapse into a single view of the buffer, so the time per invocation
+ * depends on what the composed transform does, not on the depth: nothing up
+ * to a depth of 1, a move at 2, a rotation from 3. Four quarter turns add
+ * up to a move again, at a depth of 12.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewDepthBenchmark {
+
+    private static final int SIZE = 64;
+    private static final int BIOME_SIZE = 512;
+
+    @Param({"0", "1", "2", "3", "6", "12", "24"})
+    public int depth;
+
+    private MutableBlockVolume blocks;
+    private BiomeVolume biomes;
+
+    @Setup
+    public void setUp() {
+        this.blocks = (MutableBlockVolume) VolumeFixtures.views(VolumeFixtures.randomBlocks(new Vector3i(SIZE, SIZE, SIZE)), this.depth);
+        this.biomes = VolumeFixtures.views(VolumeFixtures.randomBiomes(new Vector3i(BIOME_SIZE, 1, BIOME_SIZE)), this.depth);
+    }
+
+    @Benchmark
+    public int getBlock() {
+        final MutableBlockVolume volume = this.blocks;
+        final Vector3i min = volume.getBlockMin();
+        final Vector3i max = volume.getBlockMax();
+        int solid = 0;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    if (volume.getBlock(x, y, z) != VolumeFixtures.AIR) {
+                        solid++;
+                    }
+                }
+            }
+        }
+        return solid;
+    }
+
+    @Benchmark
+    public MutableBlockVolume setBlock() {
+        final MutableBlockVolume volume = this.blocks;
+        final BlockState[] blocks = VolumeFixtures.BLOCKS;
+        final Vector3i min = volume.getBlockMin();
+        final Vector3i max = volume.getBlockMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    volume.setBlock(x, y, z, blocks[(x + y + z) & 7]);
+                }
+            }
+        }
+        return volume;
+    }
+
+    @Benchmark
+    public int getBiome() {
+        final BiomeVolume volume = this.biomes;
+        final Vector3i min = volume.getBiomeMin();
+        final Vector3i max = volume.getBiomeMax();
+        final int y = min.getY();
+        int land = 0;
+        for (int z = min.getZ(); z <= max.getZ(); z++) {
+            for (int x = min.getX(); x <= max.getX(); x++) {
+                if (volume.getBiome(x, y, z) != VolumeFixtures.OCEAN) {
+                    land++;
+                }
+            }
+        }
+        return land;
+    }
+}
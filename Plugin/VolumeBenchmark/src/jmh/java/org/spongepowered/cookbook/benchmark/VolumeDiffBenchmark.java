@@ -0,0 +1,99 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a buffer to another volume with a single changed block, the way
+ * {@code BlockBufferTest} does and through the bulk comparison.
+ *
+ * <p>A copy still shares all but one section with the buffer, so only that
+ * section is read. A separate buffer has to be compared in full, a section
+ * at a time. A view of a larger buffer isn't laid out like the buffer, so it
+ * is compared a layer at a time.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VolumeDiffBenchmark {
+
+    public enum Other {
+        COPY,
+        SEPARATE,
+        VIEW
+    }
+
+    @Param({"64", "128"})
+    public int size;
+
+    @Param({"COPY", "SEPARATE", "VIEW"})
+    public Other other;
+
+    private MutableBlockVolume buffer;
+    private MutableBlockVolume changed;
+
+    @Setup
+    public void setUp() {
+        final Vector3i size = new Vector3i(this.size, this.size, this.size);
+        this.buffer = VolumeFixtures.randomBlocks(size);
+        switch (this.other) {
+            case COPY:
+                this.changed = this.buffer.getBlockCopy();
+                break;
+            case SEPARATE:
+                this.changed = VolumeFixtures.randomBlocks(size);
+                break;
+            default:
+                final MutableBlockVolume larger = VolumeFixtures.FACTORY.createBlockBuffer(size.add(2, 2, 2));
+                this.changed = larger.getBlockView(Vector3i.ONE, size).getRelativeBlockView();
+                final MutableBlockVolume buffer = this.buffer;
+                this.changed.getBlockWorker().fill(buffer::getBlock);
+                break;
+        }
+        final int middle = this.size / 2;
+        this.changed.setBlock(middle, middle, middle, VolumeFixtures.AIR == this.buffer.getBlock(middle, middle, middle)
+                ? VolumeFixtures.BLOCKS[0] : VolumeFixtures.AIR);
+    }
+
+    @Benchmark
+    public boolean getBlockLoop() {
+        final MutableBlockVolume buffer = this.buffer;
+        final MutableBlockVolume changed = this.changed;
+        for (int x = 0; x < this.size; x++) {
+            for (int y = 0; y < this.size; y++) {
+                for (int z = 0; z < this.size; z++) {
+                    if (!buffer.getBlock(x, y, z).equals(changed.getBlock(x, y, z))) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean contentEquals() {
+        return ((PaletteBlockVolume) this.buffer).blockContentEquals((PaletteBlockVolume) this.changed);
+    }
+
+    @Benchmark
+    public VolumeDiff diff() {
+        return ((PaletteBlockVolume) this.buffer).diffBlocks((PaletteBlockVolume) this.changed);
+    }
+}
@@ -0,0 +1,149 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.util.Axis;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.extent.BiomeVolume;
+import org.spongepowered.api.world.extent.BlockVolume;
+import org.spongepowered.api.world.extent.ExtentBufferFactory;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+
+import java.util.Random;
+
+/**
+ * The volumes the benchmarks work on.
+ *
+ * <p>Views are stacked the same way {@code BlockBufferTest} stacks them: a
+ * downsize, then a relative view, then a rotation, repeated for deeper
+ * stacks. The downsize keeps the bounds of the volume it views, so every
+ * depth covers the same number of positions and only the cost of the views
+ * differs.</p>
+ */
+public final class VolumeFixtures {
+
+    public static final BlockState AIR = StandInCatalog.blockState("minecraft:air");
+    public static final BlockState[] BLOCKS = StandInCatalog.blockStates("benchmark:block", 10);
+    public static final BiomeType OCEAN = StandInCatalog.biome("minecraft:ocean");
+    public static final BiomeType[] BIOMES = StandInCatalog.biomes("benchmark:biome", 10);
+    public static final ExtentBufferFactory FACTORY = new StandInExtentBufferFactory(AIR, OCEAN);
+
+    // The same contents on every run, so runs can be compared
+    private static final long SEED = 0x5EED;
+
+    /**
+     * How a volume is accessed.
+     */
+    public enum Variant {
+        MUTABLE,
+        UNMODIFIABLE,
+        IMMUTABLE
+    }
+
+    private VolumeFixtures() {
+    }
+
+    /**
+     * Creates a block buffer where half the blocks are air and the rest are
+     * random.
+     *
+     * @param size The size of the buffer
+     * @return The buffer
+     */
+    public static MutableBlockVolume randomBlocks(Vector3i size) {
+        final Random random = new Random(SEED);
+        final MutableBlockVolume buffer = FACTORY.createBlockBuffer(size);
+        buffer.getBlockWorker().fill((x, y, z) -> random.nextBoolean() ? AIR : BLOCKS[random.nextInt(BLOCKS.length)]);
+        return buffer;
+    }
+
+    /**
+     * Creates a biome buffer where half the biomes are ocean and the rest
+     * are random.
+     *
+     * @param size The size of the buffer
+     * @return The buffer
+     */
+    public static MutableBiomeVolume randomBiomes(Vector3i size) {
+        final Random random = new Random(SEED);
+        final MutableBiomeVolume buffer = FACTORY.createBiomeBuffer(size);
+        buffer.getBiomeWorker().fill((x, y, z) -> random.nextBoolean() ? OCEAN : BIOMES[random.nextInt(BIOMES.length)]);
+        return buffer;
+    }
+
+    public static BlockVolume variant(MutableBlockVolume buffer, Variant variant) {
+        switch (variant) {
+            case UNMODIFIABLE:
+                return buffer.getUnmodifiableBlockView();
+            case IMMUTABLE:
+                return buffer.getImmutableBlockCopy();
+            default:
+                return buffer;
+        }
+    }
+
+    public static BiomeVolume variant(MutableBiomeVolume buffer, Variant variant) {
+        switch (variant) {
+            case UNMODIFIABLE:
+                return buffer.getUnmodifiableBiomeView();
+            case IMMUTABLE:
+                return buffer.getImmutableBiomeCopy();
+            default:
+                return buffer;
+        }
+    }
+
+    /**
+     * Stacks views on a block volume. The views keep the type of the
+     * volume, so views of a mutable volume are mutable as well.
+     *
+     * @param volume The volume to view
+     * @param depth The number of views to stack
+     * @return The outermost view
+     */
+    public static BlockVolume views(BlockVolume volume, int depth) {
+        BlockVolume view = volume;
+        for (int i = 0; i < depth; i++) {
+            switch (i % 3) {
+                case 0:
+                    view = view.getBlockView(view.getBlockMin(), view.getBlockMax());
+                    break;
+                case 1:
+                    view = view.getRelativeBlockView();
+                    break;
+                default:
+                    view = view.getBlockView(DiscreteTransform3.rotationAroundCenter(1, Axis.Y, view.getBlockSize()));
+                    break;
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Stacks views on a biome volume. The views keep the type of the
+     * volume, so views of a mutable volume are mutable as well.
+     *
+     * @param volume The volume to view
+     * @param depth The number of views to stack
+     * @return The outermost view
+     */
+    public static BiomeVolume views(BiomeVolume volume, int depth) {
+        BiomeVolume view = volume;
+        for (int i = 0; i < depth; i++) {
+            switch (i % 3) {
+                case 0:
+                    view = view.getBiomeView(view.getBiomeMin(), view.getBiomeMax());
+                    break;
+                case 1:
+                    view = view.getRelativeBiomeView();
+                    break;
+                default:
+                    view = view.getBiomeView(DiscreteTransform3.rotationAroundCenter(1, Axis.Y, view.getBiomeSize()));
+                    break;
+            }
+        }
+        return view;
+    }
+}
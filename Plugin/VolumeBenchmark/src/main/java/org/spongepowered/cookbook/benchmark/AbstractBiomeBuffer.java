@@ -0,0 +1,158 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.extent.BiomeVolume;
+import org.spongepowered.api.world.extent.ImmutableBiomeVolume;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.StorageType;
+
+/**
+ * A biome volume backed by an array of palette ids.
+ */
+public abstract class AbstractBiomeBuffer implements PaletteBiomeVolume {
+
+    protected final VolumeBounds bounds;
+    protected final Palette<BiomeType> palette;
+    protected final SectionArray biomes;
+
+    protected AbstractBiomeBuffer(VolumeBounds bounds, Palette<BiomeType> palette, SectionArray biomes) {
+        this.bounds = bounds;
+        this.palette = palette;
+        this.biomes = biomes;
+    }
+
+    @Override
+    public Vector3i getBiomeMin() {
+        return this.bounds.getMin();
+    }
+
+    @Override
+    public Vector3i getBiomeMax() {
+        return this.bounds.getMax();
+    }
+
+    @Override
+    public Vector3i getBiomeSize() {
+        return this.bounds.getSize();
+    }
+
+    @Override
+    public boolean containsBiome(int x, int y, int z) {
+        return this.bounds.contains(x, y, z);
+    }
+
+    @Override
+    public BiomeType getBiome(int x, int y, int z) {
+        this.bounds.checkRange(x, y, z);
+        return this.palette.get(this.biomes.get(this.bounds.getIndex(x, y, z)));
+    }
+
+    @Override
+    public Palette<BiomeType> getBiomePalette() {
+        return this.palette;
+    }
+
+    @Override
+    public int getBiomeId(int x, int y, int z) {
+        this.bounds.checkRange(x, y, z);
+        return this.biomes.get(this.bounds.getIndex(x, y, z));
+    }
+
+    @Override
+    public void visitBiomeRuns(Vector3i min, Vector3i max, RunVisitor visitor) {
+        this.bounds.visitRuns(this.biomes, min, max, visitor);
+    }
+
+    @Override
+    public MutableBiomeVolume getBiomeCopy(StorageType type) {
+        return getBiomeCopy(this.bounds, type);
+    }
+
+    @Override
+    public ImmutableBiomeVolume getImmutableBiomeCopy() {
+        return getImmutableBiomeCopy(this.bounds);
+    }
+
+    /**
+     * Copies this buffer into other bounds of the same size. The copy shares
+     * the sections of this buffer until either of them writes to one.
+     *
+     * @param bounds The bounds of the copy
+     * @param type How the copy is accessed
+     * @return The copy
+     */
+    MutableBiomeVolume getBiomeCopy(VolumeBounds bounds, StorageType type) {
+        return newBuffer(bounds, this.palette.copy(), this.biomes.copy(), type);
+    }
+
+    /**
+     * Copies this buffer into other bounds of the same size. The copy shares
+     * the sections of this buffer until this buffer writes to one.
+     *
+     * @param bounds The bounds of the copy
+     * @return The copy
+     */
+    ImmutableBiomeVolume getImmutableBiomeCopy(VolumeBounds bounds) {
+        return new ArrayImmutableBiomeBuffer(bounds, this.palette.copy(), this.biomes.copy());
+    }
+
+    /**
+     * Creates a new mutable buffer.
+     *
+     * @param bounds The bounds of the buffer
+     * @param palette The palette of the buffer, which it takes ownership of
+     * @param biomes The palette ids of the biomes, which the buffer takes
+     *     ownership of
+     * @param type How the buffer is accessed
+     * @return The buffer
+     */
+    static MutableBiomeVolume newBuffer(VolumeBounds bounds, Palette<BiomeType> palette, SectionArray biomes, StorageType type) {
+        switch (type) {
+            case STANDARD:
+                return new ArrayMutableBiomeBuffer(bounds, palette, biomes);
+            case THREAD_SAFE:
+                return new ThreadSafeBiomeBuffer(bounds, palette, biomes);
+            default:
+                throw new UnsupportedOperationException("Unsupported storage type " + type);
+        }
+    }
+
+    /**
+     * Reads every biome of a volume into an array of palette ids.
+     *
+     * @param volume The volume to read
+     * @param palette The palette to assign the ids from
+     * @return The palette ids, in the layout of {@link VolumeBounds}
+     */
+    static SectionArray readBiomes(BiomeVolume volume, Palette<BiomeType> palette) {
+        final Vector3i min = volume.getBiomeMin();
+        final Vector3i max = volume.getBiomeMax();
+        final Vector3i size = volume.getBiomeSize();
+        final SectionArray biomes = new SectionArray(size.getX() * size.getY() * size.getZ());
+        int index = 0;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    biomes.set(index++, palette.getOrAssign(volume.getBiome(x, y, z)));
+                }
+            }
+        }
+        return biomes;
+    }
+
+    /**
+     * Copies the palette ids of a region of a volume, a run at a time. The
+     * ids stay those of the palette of the volume.
+     *
+     * @param volume The volume to copy from
+     * @param bounds The region to copy
+     * @param compact Whether to store the copy compactly
+     * @return The palette ids, in the layout of {@link VolumeBounds}
+     */
+    static SectionArray copyBiomeIds(PaletteBiomeVolume volume, VolumeBounds bounds, boolean compact) {
+        final SectionArray biomes = compact ? SectionArray.compact(bounds.getVolume()) : new SectionArray(bounds.getVolume());
+        volume.visitBiomeRuns(bounds.getMin(), bounds.getMax(), (ids, from, to, offset) -> biomes.set(offset, ids, from, to));
+        return biomes;
+    }
+}
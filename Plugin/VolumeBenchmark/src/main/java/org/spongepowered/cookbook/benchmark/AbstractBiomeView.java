@@ -0,0 +1,219 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.extent.BiomeVolume;
+import org.spongepowered.api.world.extent.ImmutableBiomeVolume;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.StorageType;
+
+/**
+ * A view of another biome volume, either shrunk to smaller bounds or seen
+ * through a transform.
+ *
+ * <p>Views of a view don't wrap it, they view the same volume with the
+ * transforms composed into one. However deep views are stacked, an access is
+ * checked against the bounds of the outermost view, transformed once, and
+ * passed on to the volume at the bottom of the stack. The bounds of a view
+ * always lie within those of the view it was created from, so no other
+ * check is needed.</p>
+ *
+ * @param <V> The type of the viewed volume
+ */
+public abstract class AbstractBiomeView<V extends BiomeVolume> implements PaletteBiomeVolume {
+
+    protected final V volume;
+    protected final VolumeBounds bounds;
+    // Maps positions in this view to positions in the volume, null if they
+    // are the same
+    protected final DiscreteTransform3 inverse;
+    // The offset the inverse moves positions by, null if it does more than
+    // that or there is no inverse
+    protected final Vector3i translation;
+    // The inverse in integers, null unless it does more than move positions
+    protected final IntegerTransform mapping;
+
+    protected AbstractBiomeView(V volume, VolumeBounds bounds, DiscreteTransform3 inverse) {
+        this.volume = volume;
+        this.bounds = bounds;
+        final Vector3i translation = inverse == null ? null : VolumeBounds.getTranslation(inverse);
+        // Views that were moved back where they started don't need a transform
+        this.inverse = Vector3i.ZERO.equals(translation) ? null : inverse;
+        this.translation = this.inverse == null ? null : translation;
+        this.mapping = this.inverse == null || this.translation != null ? null : new IntegerTransform(this.inverse);
+    }
+
+    /**
+     * Gets the inverse of a view of this view seen through a transform,
+     * mapping positions straight to the viewed volume.
+     *
+     * @param transform The transform of the new view
+     * @return The inverse for the new view
+     */
+    protected DiscreteTransform3 composeInverse(DiscreteTransform3 transform) {
+        final DiscreteTransform3 inverse = transform.invert();
+        return this.inverse == null ? inverse : inverse.withTransformation(this.inverse);
+    }
+
+    @Override
+    public Vector3i getBiomeMin() {
+        return this.bounds.getMin();
+    }
+
+    @Override
+    public Vector3i getBiomeMax() {
+        return this.bounds.getMax();
+    }
+
+    @Override
+    public Vector3i getBiomeSize() {
+        return this.bounds.getSize();
+    }
+
+    @Override
+    public boolean containsBiome(int x, int y, int z) {
+        return this.bounds.contains(x, y, z);
+    }
+
+    @Override
+    public BiomeType getBiome(int x, int y, int z) {
+        this.bounds.checkRange(x, y, z);
+        if (this.inverse == null) {
+            return this.volume.getBiome(x, y, z);
+        }
+        if (this.translation != null) {
+            return this.volume.getBiome(x + this.translation.getX(), y + this.translation.getY(), z + this.translation.getZ());
+        }
+        return this.volume.getBiome(this.mapping.transformX(x, y, z), this.mapping.transformY(x, y, z), this.mapping.transformZ(x, y, z));
+    }
+
+    @Override
+    public Palette<BiomeType> getBiomePalette() {
+        return getViewed().getBiomePalette();
+    }
+
+    @Override
+    public int getBiomeId(int x, int y, int z) {
+        this.bounds.checkRange(x, y, z);
+        if (this.inverse == null) {
+            return getViewed().getBiomeId(x, y, z);
+        }
+        if (this.translation != null) {
+            return getViewed().getBiomeId(x + this.translation.getX(), y + this.translation.getY(), z + this.translation.getZ());
+        }
+        return getViewed().getBiomeId(this.mapping.transformX(x, y, z), this.mapping.transformY(x, y, z), this.mapping.transformZ(x, y, z));
+    }
+
+    @Override
+    public void visitBiomeRuns(Vector3i min, Vector3i max, RunVisitor visitor) {
+        this.bounds.checkRange(min.getX(), min.getY(), min.getZ());
+        this.bounds.checkRange(max.getX(), max.getY(), max.getZ());
+        if (this.inverse == null) {
+            getViewed().visitBiomeRuns(min, max, visitor);
+        } else if (this.translation != null) {
+            // The layout of a moved region is the same, so the runs are too
+            getViewed().visitBiomeRuns(min.add(this.translation), max.add(this.translation), visitor);
+        } else {
+            visitTransformedRuns(min, max, visitor);
+        }
+    }
+
+    /**
+     * Visits a region through a rotation or a flip. Rows of this view aren't
+     * rows of the viewed volume any more, so each row is gathered into a
+     * scratch array first, stepping through the viewed volume along the
+     * transformed x axis.
+     */
+    private void visitTransformedRuns(Vector3i min, Vector3i max, RunVisitor visitor) {
+        final PaletteBiomeVolume viewed = getViewed();
+        final int minX = min.getX();
+        final int runX = max.getX() - minX + 1;
+        final Vector3i step = this.mapping.getStepX();
+        final int stepX = step.getX();
+        final int stepY = step.getY();
+        final int stepZ = step.getZ();
+        final char[] row = new char[runX];
+        int offset = 0;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                int viewedX = this.mapping.transformX(minX, y, z);
+                int viewedY = this.mapping.transformY(minX, y, z);
+                int viewedZ = this.mapping.transformZ(minX, y, z);
+                for (int i = 0; i < runX; i++) {
+                    row[i] = (char) viewed.getBiomeId(viewedX, viewedY, viewedZ);
+                    viewedX += stepX;
+                    viewedY += stepY;
+                    viewedZ += stepZ;
+                }
+                visitor.visitRun(row, 0, runX, offset);
+                offset += runX;
+            }
+        }
+    }
+
+    /**
+     * Gets whether a volume is another volume or a view of it.
+     *
+     * @param volume The volume to check
+     * @param viewed The other volume
+     * @return Whether reading the volume reads the other volume
+     */
+    static boolean isOf(BiomeVolume volume, BiomeVolume viewed) {
+        return volume == viewed || volume instanceof AbstractBiomeView && ((AbstractBiomeView<?>) volume).volume == viewed;
+    }
+
+    /**
+     * Gets the viewed volume as one that exposes its palette ids. Views are
+     * only ever created of the volumes in this package, which all do.
+     */
+    private PaletteBiomeVolume getViewed() {
+        return (PaletteBiomeVolume) this.volume;
+    }
+
+    @Override
+    public MutableBiomeVolume getBiomeCopy(StorageType type) {
+        final AbstractBiomeBuffer buffer = getCoveredBuffer();
+        if (buffer != null) {
+            return buffer.getBiomeCopy(this.bounds, type);
+        }
+        // The ids are copied first, the palette only ever grows so it then
+        // holds all of them
+        final SectionArray biomes = AbstractBiomeBuffer.copyBiomeIds(this, this.bounds, isCompact());
+        return AbstractBiomeBuffer.newBuffer(this.bounds, getBiomePalette().copy(), biomes, type);
+    }
+
+    @Override
+    public ImmutableBiomeVolume getImmutableBiomeCopy() {
+        final AbstractBiomeBuffer buffer = getCoveredBuffer();
+        if (buffer != null) {
+            return buffer.getImmutableBiomeCopy(this.bounds);
+        }
+        final SectionArray biomes = AbstractBiomeBuffer.copyBiomeIds(this, this.bounds, isCompact());
+        return new ArrayImmutableBiomeBuffer(this.bounds, getBiomePalette().copy(), biomes);
+    }
+
+    /**
+     * Gets whether the viewed buffer is stored compactly, so copies of this
+     * view should be as well.
+     */
+    private boolean isCompact() {
+        return this.volume instanceof AbstractBiomeBuffer && ((AbstractBiomeBuffer) this.volume).biomes.isCompact();
+    }
+
+    /**
+     * Gets the buffer this view covers, if it covers all of it and only
+     * moves it. The layout of a copy of this view is then the same as that
+     * of the buffer, so the copy can share its sections.
+     *
+     * @return The buffer, or null if the view doesn't cover a whole buffer
+     */
+    AbstractBiomeBuffer getCoveredBuffer() {
+        if (!(this.volume instanceof AbstractBiomeBuffer) || this.inverse != null && this.translation == null) {
+            return null;
+        }
+        final AbstractBiomeBuffer buffer = (AbstractBiomeBuffer) this.volume;
+        final Vector3i min = this.inverse == null ? this.bounds.getMin() : this.bounds.getMin().add(this.translation);
+        return min.equals(buffer.getBiomeMin()) && this.bounds.getSize().equals(buffer.getBiomeSize()) ? buffer : null;
+    }
+}
@@ -0,0 +1,164 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockType;
+import org.spongepowered.api.world.extent.BlockVolume;
+import org.spongepowered.api.world.extent.ImmutableBlockVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+import org.spongepowered.api.world.extent.StorageType;
+
+/**
+ * A block volume backed by an array of palette ids.
+ */
+public abstract class AbstractBlockBuffer implements PaletteBlockVolume {
+
+    protected final VolumeBounds bounds;
+    protected final Palette<BlockState> palette;
+    protected final SectionArray blocks;
+
+    protected AbstractBlockBuffer(VolumeBounds bounds, Palette<BlockState> palette, SectionArray blocks) {
+        this.bounds = bounds;
+        this.palette = palette;
+        this.blocks = blocks;
+    }
+
+    @Override
+    public Vector3i getBlockMin() {
+        return this.bounds.getMin();
+    }
+
+    @Override
+    public Vector3i getBlockMax() {
+        return this.bounds.getMax();
+    }
+
+    @Override
+    public Vector3i getBlockSize() {
+        return this.bounds.getSize();
+    }
+
+    @Override
+    public boolean containsBlock(int x, int y, int z) {
+        return this.bounds.contains(x, y, z);
+    }
+
+    @Override
+    public BlockState getBlock(int x, int y, int z) {
+        this.bounds.checkRange(x, y, z);
+        return this.palette.get(this.blocks.get(this.bounds.getIndex(x, y, z)));
+    }
+
+    @Override
+    public BlockType getBlockType(int x, int y, int z) {
+        return getBlock(x, y, z).getType();
+    }
+
+    @Override
+    public Palette<BlockState> getBlockPalette() {
+        return this.palette;
+    }
+
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        this.bounds.checkRange(x, y, z);
+        return this.blocks.get(this.bounds.getIndex(x, y, z));
+    }
+
+    @Override
+    public void visitBlockRuns(Vector3i min, Vector3i max, RunVisitor visitor) {
+        this.bounds.visitRuns(this.blocks, min, max, visitor);
+    }
+
+    @Override
+    public MutableBlockVolume getBlockCopy(StorageType type) {
+        return getBlockCopy(this.bounds, type);
+    }
+
+    @Override
+    public ImmutableBlockVolume getImmutableBlockCopy() {
+        return getImmutableBlockCopy(this.bounds);
+    }
+
+    /**
+     * Copies this buffer into other bounds of the same size. The copy shares
+     * the sections of this buffer until either of them writes to one.
+     *
+     * @param bounds The bounds of the copy
+     * @param type How the copy is accessed
+     * @return The copy
+     */
+    MutableBlockVolume getBlockCopy(VolumeBounds bounds, StorageType type) {
+        return newBuffer(bounds, this.palette.copy(), this.blocks.copy(), type);
+    }
+
+    /**
+     * Copies this buffer into other bounds of the same size. The copy shares
+     * the sections of this buffer until this buffer writes to one.
+     *
+     * @param bounds The bounds of the copy
+     * @return The copy
+     */
+    ImmutableBlockVolume getImmutableBlockCopy(VolumeBounds bounds) {
+        return new ArrayImmutableBlockBuffer(bounds, this.palette.copy(), this.blocks.copy());
+    }
+
+    /**
+     * Creates a new mutable buffer.
+     *
+     * @param bounds The bounds of the buffer
+     * @param palette The palette of the buffer, which it takes ownership of
+     * @param blocks The palette ids of the blocks, which the buffer takes
+     *     ownership of
+     * @param type How the buffer is accessed
+     * @return The buffer
+     */
+    static MutableBlockVolume newBuffer(VolumeBounds bounds, Palette<BlockState> palette, SectionArray blocks, StorageType type) {
+        switch (type) {
+            case STANDARD:
+                return new ArrayMutableBlockBuffer(bounds, palette, blocks);
+            case THREAD_SAFE:
+                return new ThreadSafeBlockBuffer(bounds, palette, blocks);
+            default:
+                throw new UnsupportedOperationException("Unsupported storage type " + type);
+        }
+    }
+
+    /**
+     * Reads every block of a volume into an array of palette ids.
+     *
+     * @param volume The volume to read
+     * @param palette The palette to assign the ids from
+     * @return The palette ids, in the layout of {@link VolumeBounds}
+     */
+    static SectionArray readBlocks(BlockVolume volume, Palette<BlockState> palette) {
+        final Vector3i min = volume.getBlockMin();
+        final Vector3i max = volume.getBlockMax();
+        final Vector3i size = volume.getBlockSize();
+        final SectionArray blocks = new SectionArray(size.getX() * size.getY() * size.getZ());
+        int index = 0;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    blocks.set(index++, palette.getOrAssign(volume.getBlock(x, y, z)));
+                }
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Copies the palette ids of a region of a volume, a run at a time. The
+     * ids stay those of the palette of the volume.
+     *
+     * @param volume The volume to copy from
+     * @param bounds The region to copy
+     * @param compact Whether to store the copy compactly
+     * @return The palette ids, in the layout of {@link VolumeBounds}
+     */
+    static SectionArray copyBlockIds(PaletteBlockVolume volume, VolumeBounds bounds, boolean compact) {
+        final SectionArray blocks = compact ? SectionArray.compact(bounds.getVolume()) : new SectionArray(bounds.getVolume());
+        volume.visitBlockRuns(bounds.getMin(), bounds.getMax(), (ids, from, to, offset) -> blocks.set(offset, ids, from, to));
+        return blocks;
+    }
+}
@@ -0,0 +1,61 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.extent.BiomeVolume;
+import org.spongepowered.api.world.extent.ImmutableBiomeVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBiomeVolume;
+import org.spongepowered.api.world.extent.worker.BiomeVolumeWorker;
+
+/**
+ * A biome buffer that never changes, so it may be read from any thread.
+ */
+public class ArrayImmutableBiomeBuffer extends AbstractBiomeBuffer implements ImmutableBiomeVolume {
+
+    ArrayImmutableBiomeBuffer(VolumeBounds bounds, Palette<BiomeType> palette, SectionArray biomes) {
+        super(bounds, palette, biomes);
+    }
+
+    /**
+     * Copies a volume into a new immutable buffer.
+     *
+     * @param volume The volume to copy
+     * @return The copy
+     */
+    public static ImmutableBiomeVolume copyOf(BiomeVolume volume) {
+        final Palette<BiomeType> palette = new Palette<>();
+        final SectionArray biomes = readBiomes(volume, palette);
+        return new ArrayImmutableBiomeBuffer(new VolumeBounds(volume.getBiomeMin(), volume.getBiomeMax()), palette, biomes);
+    }
+
+    @Override
+    public ImmutableBiomeVolume getBiomeView(Vector3i newMin, Vector3i newMax) {
+        return new ImmutableBiomeView(this, this.bounds.shrink(newMin, newMax), null);
+    }
+
+    @Override
+    public ImmutableBiomeVolume getBiomeView(DiscreteTransform3 transform) {
+        return new ImmutableBiomeView(this, this.bounds.transform(transform), transform.invert());
+    }
+
+    @Override
+    public ImmutableBiomeVolume getRelativeBiomeView() {
+        return getBiomeView(DiscreteTransform3.fromTranslation(this.bounds.getMin().negate()));
+    }
+
+    @Override
+    public UnmodifiableBiomeVolume getUnmodifiableBiomeView() {
+        return this;
+    }
+
+    @Override
+    public ImmutableBiomeVolume getImmutableBiomeCopy() {
+        return this;
+    }
+
+    @Override
+    public BiomeVolumeWorker<? extends ImmutableBiomeVolume> getBiomeWorker() {
+        return new BiomeWorker<>(this);
+    }
+}
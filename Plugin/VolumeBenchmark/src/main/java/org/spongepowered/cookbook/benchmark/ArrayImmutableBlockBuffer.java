@@ -0,0 +1,61 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.extent.BlockVolume;
+import org.spongepowered.api.world.extent.ImmutableBlockVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBlockVolume;
+import org.spongepowered.api.world.extent.worker.BlockVolumeWorker;
+
+/**
+ * A block buffer that never changes, so it may be read from any thread.
+ */
+public class ArrayImmutableBlockBuffer extends AbstractBlockBuffer implements ImmutableBlockVolume {
+
+    ArrayImmutableBlockBuffer(VolumeBounds bounds, Palette<BlockState> palette, SectionArray blocks) {
+        super(bounds, palette, blocks);
+    }
+
+    /**
+     * Copies a volume into a new immutable buffer.
+     *
+     * @param volume The volume to copy
+     * @return The copy
+     */
+    public static ImmutableBlockVolume copyOf(BlockVolume volume) {
+        final Palette<BlockState> palette = new Palette<>();
+        final SectionArray blocks = readBlocks(volume, palette);
+        return new ArrayImmutableBlockBuffer(new VolumeBounds(volume.getBlockMin(), volume.getBlockMax()), palette, blocks);
+    }
+
+    @Override
+    public ImmutableBlockVolume getBlockView(Vector3i newMin, Vector3i newMax) {
+        return new ImmutableBlockView(this, this.bounds.shrink(newMin, newMax), null);
+    }
+
+    @Override
+    public ImmutableBlockVolume getBlockView(DiscreteTransform3 transform) {
+        return new ImmutableBlockView(this, this.bounds.transform(transform), transform.invert());
+    }
+
+    @Override
+    public ImmutableBlockVolume getRelativeBlockView() {
+        return getBlockView(DiscreteTransform3.fromTranslation(this.bounds.getMin().negate()));
+    }
+
+    @Override
+    public UnmodifiableBlockVolume getUnmodifiableBlockView() {
+        return this;
+    }
+
+    @Override
+    public ImmutableBlockVolume getImmutableBlockCopy() {
+        return this;
+    }
+
+    @Override
+    public BlockVolumeWorker<? extends ImmutableBlockVolume> getBlockWorker() {
+        return new BlockWorker<>(this);
+    }
+}
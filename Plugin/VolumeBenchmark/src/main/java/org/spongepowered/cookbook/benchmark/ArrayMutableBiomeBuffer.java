@@ -0,0 +1,106 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBiomeVolume;
+import org.spongepowered.api.world.extent.worker.MutableBiomeVolumeWorker;
+
+import java.util.Arrays;
+
+/**
+ * A biome buffer that may only be used from one thread at a time.
+ */
+public class ArrayMutableBiomeBuffer extends AbstractBiomeBuffer implements MutablePaletteBiomeVolume {
+
+    /**
+     * Creates a new buffer filled with a single biome.
+     *
+     * @param bounds The bounds of the buffer
+     * @param fill The biome to fill the buffer with
+     */
+    public ArrayMutableBiomeBuffer(VolumeBounds bounds, BiomeType fill) {
+        this(bounds, new Palette<>(), new SectionArray(bounds.getVolume()));
+        // A new array is all zeros, which is the first id
+        this.palette.getOrAssign(fill);
+    }
+
+    ArrayMutableBiomeBuffer(VolumeBounds bounds, Palette<BiomeType> palette, SectionArray biomes) {
+        super(bounds, palette, biomes);
+    }
+
+    @Override
+    public boolean setBiome(int x, int y, int z, BiomeType biome) {
+        this.bounds.checkRange(x, y, z);
+        this.biomes.set(this.bounds.getIndex(x, y, z), this.palette.getOrAssign(biome));
+        return true;
+    }
+
+    @Override
+    public void fillBiomes(Vector3i min, Vector3i max, BiomeType biome) {
+        final char id = this.palette.getOrAssign(biome);
+        this.bounds.visitRanges(min, max, (from, to, offset) -> this.biomes.fill(from, to, id));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The region is copied a chunk of layers or rows at a time: the ids of
+     * the source are translated to the palette of this buffer into a scratch
+     * array, which is then copied into whole sections where it covers
+     * them.</p>
+     */
+    @Override
+    public void copyBiomes(PaletteBiomeVolume source, Vector3i sourceMin, Vector3i sourceMax, Vector3i destination) {
+        // Both regions are checked before anything is written
+        new VolumeBounds(source.getBiomeMin(), source.getBiomeMax()).shrink(sourceMin, sourceMax);
+        final VolumeBounds region = this.bounds.shrink(destination, destination.add(sourceMax.sub(sourceMin)));
+        // A copy of this buffer shares its sections, so taking one costs
+        // little and keeps the region from being read after it is written
+        final PaletteBiomeVolume read = AbstractBiomeView.isOf(source, this) ? (PaletteBiomeVolume) source.getImmutableBiomeCopy() : source;
+        final Palette<BiomeType> sourcePalette = read.getBiomePalette();
+        final int[] translation = new int[sourcePalette.size()];
+        Arrays.fill(translation, -1);
+        final Vector3i offset = sourceMin.sub(destination);
+        final char[] scratch = new char[Math.min(region.getVolume(), Math.max(SectionArray.SECTION_SIZE, region.getSize().getX()))];
+        region.visitChunks(SectionArray.SECTION_SIZE, (min, max, index) -> {
+            read.visitBiomeRuns(min.add(offset), max.add(offset), (ids, from, to, runOffset) -> {
+                for (int i = from; i < to; i++) {
+                    int id = translation[ids[i]];
+                    if (id < 0) {
+                        id = translation[ids[i]] = this.palette.getOrAssign(sourcePalette.get(ids[i]));
+                    }
+                    scratch[runOffset++] = (char) id;
+                }
+            });
+            this.bounds.visitRanges(min, max,
+                    (from, to, rangeOffset) -> this.biomes.set(from, scratch, rangeOffset, rangeOffset + to - from));
+        });
+    }
+
+    @Override
+    public MutableBiomeVolume getBiomeView(Vector3i newMin, Vector3i newMax) {
+        return new MutableBiomeView(this, this.bounds.shrink(newMin, newMax), null);
+    }
+
+    @Override
+    public MutableBiomeVolume getBiomeView(DiscreteTransform3 transform) {
+        return new MutableBiomeView(this, this.bounds.transform(transform), transform.invert());
+    }
+
+    @Override
+    public MutableBiomeVolume getRelativeBiomeView() {
+        return getBiomeView(DiscreteTransform3.fromTranslation(this.bounds.getMin().negate()));
+    }
+
+    @Override
+    public UnmodifiableBiomeVolume getUnmodifiableBiomeView() {
+        return new UnmodifiableBiomeView(this, this.bounds, null);
+    }
+
+    @Override
+    public MutableBiomeVolumeWorker<? extends MutableBiomeVolume> getBiomeWorker() {
+        return new MutableBiomeWorker<>(this);
+    }
+}
@@ -0,0 +1,62 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBlockVolume;
+import org.spongepowered.api.world.extent.worker.MutableBlockVolumeWorker;
+
+/**
+ * A block buffer that may only be used from one thread at a time.
+ */
+public class ArrayMutableBlockBuffer extends AbstractBlockBuffer implements MutableBlockVolume {
+
+    /**
+     * Creates a new buffer filled with a single block.
+     *
+     * @param bounds The bounds of the buffer
+     * @param fill The block to fill the buffer with
+     */
+    public ArrayMutableBlockBuffer(VolumeBounds bounds, BlockState fill) {
+        this(bounds, new Palette<>(), new SectionArray(bounds.getVolume()));
+        // A new array is all zeros, which is the first id
+        this.palette.getOrAssign(fill);
+    }
+
+    ArrayMutableBlockBuffer(VolumeBounds bounds, Palette<BlockState> palette, SectionArray blocks) {
+        super(bounds, palette, blocks);
+    }
+
+    @Override
+    public boolean setBlock(int x, int y, int z, BlockState block) {
+        this.bounds.checkRange(x, y, z);
+        this.blocks.set(this.bounds.getIndex(x, y, z), this.palette.getOrAssign(block));
+        return true;
+    }
+
+    @Override
+    public MutableBlockVolume getBlockView(Vector3i newMin, Vector3i newMax) {
+        return new MutableBlockView(this, this.bounds.shrink(newMin, newMax), null);
+    }
+
+    @Override
+    public MutableBlockVolume getBlockView(DiscreteTransform3 transform) {
+        return new MutableBlockView(this, this.bounds.transform(transform), transform.invert());
+    }
+
+    @Override
+    public MutableBlockVolume getRelativeBlockView() {
+        return getBlockView(DiscreteTransform3.fromTranslation(this.bounds.getMin().negate()));
+    }
+
+    @Override
+    public UnmodifiableBlockVolume getUnmodifiableBlockView() {
+        return new UnmodifiableBlockView(this, this.bounds, null);
+    }
+
+    @Override
+    public MutableBlockVolumeWorker<? extends MutableBlockVolume> getBlockWorker() {
+        return new MutableBlockWorker<>(this);
+    }
+}
@@ -0,0 +1,122 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.world.extent.BiomeVolume;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBiomeVolume;
+import org.spongepowered.api.world.extent.worker.BiomeVolumeWorker;
+import org.spongepowered.api.world.extent.worker.procedure.BiomeVolumeMapper;
+import org.spongepowered.api.world.extent.worker.procedure.BiomeVolumeMerger;
+import org.spongepowered.api.world.extent.worker.procedure.BiomeVolumeReducer;
+import org.spongepowered.api.world.extent.worker.procedure.BiomeVolumeVisitor;
+
+import java.util.function.BiFunction;
+
+/**
+ * Works through every position of a biome volume, one after the other.
+ *
+ * @param <V> The type of the volume
+ */
+public class BiomeWorker<V extends BiomeVolume> implements BiomeVolumeWorker<V> {
+
+    protected final V volume;
+
+    public BiomeWorker(V volume) {
+        this.volume = volume;
+    }
+
+    @Override
+    public V getVolume() {
+        return this.volume;
+    }
+
+    @Override
+    public void map(BiomeVolumeMapper mapper, MutableBiomeVolume destination) {
+        final Vector3i offset = align(destination);
+        final int xOffset = offset.getX();
+        final int yOffset = offset.getY();
+        final int zOffset = offset.getZ();
+        final UnmodifiableBiomeVolume unmodifiableVolume = this.volume.getUnmodifiableBiomeView();
+        final Vector3i min = this.volume.getBiomeMin();
+        final Vector3i max = this.volume.getBiomeMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    destination.setBiome(x + xOffset, y + yOffset, z + zOffset, mapper.map(unmodifiableVolume, x, y, z));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void merge(BiomeVolume second, BiomeVolumeMerger merger, MutableBiomeVolume destination) {
+        final Vector3i offsetSecond = align(second);
+        final int xOffsetSecond = offsetSecond.getX();
+        final int yOffsetSecond = offsetSecond.getY();
+        final int zOffsetSecond = offsetSecond.getZ();
+        final Vector3i offsetDestination = align(destination);
+        final int xOffsetDestination = offsetDestination.getX();
+        final int yOffsetDestination = offsetDestination.getY();
+        final int zOffsetDestination = offsetDestination.getZ();
+        final UnmodifiableBiomeVolume firstUnmodifiableVolume = this.volume.getUnmodifiableBiomeView();
+        final UnmodifiableBiomeVolume secondUnmodifiableVolume = second.getUnmodifiableBiomeView();
+        final Vector3i min = this.volume.getBiomeMin();
+        final Vector3i max = this.volume.getBiomeMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    destination.setBiome(x + xOffsetDestination, y + yOffsetDestination, z + zOffsetDestination,
+                            merger.merge(firstUnmodifiableVolume, x, y, z,
+                                    secondUnmodifiableVolume, x + xOffsetSecond, y + yOffsetSecond, z + zOffsetSecond));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void iterate(BiomeVolumeVisitor<V> visitor) {
+        final Vector3i min = this.volume.getBiomeMin();
+        final Vector3i max = this.volume.getBiomeMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    visitor.visit(this.volume, x, y, z);
+                }
+            }
+        }
+    }
+
+    @Override
+    public <T> T reduce(BiomeVolumeReducer<T> reducer, BiFunction<T, T, T> merge, T identity) {
+        // Everything is reduced in order, so the partial results never need
+        // to be merged
+        final UnmodifiableBiomeVolume unmodifiableVolume = this.volume.getUnmodifiableBiomeView();
+        final Vector3i min = this.volume.getBiomeMin();
+        final Vector3i max = this.volume.getBiomeMax();
+        T reduction = identity;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    reduction = reducer.reduce(unmodifiableVolume, x, y, z, reduction);
+                }
+            }
+        }
+        return reduction;
+    }
+
+    /**
+     * Gets the offset from this volume to another one it is worked into.
+     *
+     * @param other The other volume
+     * @return The offset to add to positions in this volume
+     * @throws IllegalArgumentException If the other volume is smaller
+     */
+    protected Vector3i align(BiomeVolume other) {
+        final Vector3i size = this.volume.getBiomeSize();
+        final Vector3i otherSize = other.getBiomeSize();
+        if (otherSize.getX() < size.getX() || otherSize.getY() < size.getY() || otherSize.getZ() < size.getZ()) {
+            throw new IllegalArgumentException("The other volume is smaller than the work volume, " + otherSize + " < " + size);
+        }
+        return other.getBiomeMin().sub(this.volume.getBiomeMin());
+    }
+}
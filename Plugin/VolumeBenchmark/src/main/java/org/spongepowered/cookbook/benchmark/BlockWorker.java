@@ -0,0 +1,122 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.world.extent.BlockVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBlockVolume;
+import org.spongepowered.api.world.extent.worker.BlockVolumeWorker;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeMapper;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeMerger;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeReducer;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeVisitor;
+
+import java.util.function.BiFunction;
+
+/**
+ * Works through every position of a block volume, one after the other.
+ *
+ * @param <V> The type of the volume
+ */
+public class BlockWorker<V extends BlockVolume> implements BlockVolumeWorker<V> {
+
+    protected final V volume;
+
+    public BlockWorker(V volume) {
+        this.volume = volume;
+    }
+
+    @Override
+    public V getVolume() {
+        return this.volume;
+    }
+
+    @Override
+    public void map(BlockVolumeMapper mapper, MutableBlockVolume destination) {
+        final Vector3i offset = align(destination);
+        final int xOffset = offset.getX();
+        final int yOffset = offset.getY();
+        final int zOffset = offset.getZ();
+        final UnmodifiableBlockVolume unmodifiableVolume = this.volume.getUnmodifiableBlockView();
+        final Vector3i min = this.volume.getBlockMin();
+        final Vector3i max = this.volume.getBlockMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    destination.setBlock(x + xOffset, y + yOffset, z + zOffset, mapper.map(unmodifiableVolume, x, y, z));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void merge(BlockVolume second, BlockVolumeMerger merger, MutableBlockVolume destination) {
+        final Vector3i offsetSecond = align(second);
+        final int xOffsetSecond = offsetSecond.getX();
+        final int yOffsetSecond = offsetSecond.getY();
+        final int zOffsetSecond = offsetSecond.getZ();
+        final Vector3i offsetDestination = align(destination);
+        final int xOffsetDestination = offsetDestination.getX();
+        final int yOffsetDestination = offsetDestination.getY();
+        final int zOffsetDestination = offsetDestination.getZ();
+        final UnmodifiableBlockVolume firstUnmodifiableVolume = this.volume.getUnmodifiableBlockView();
+        final UnmodifiableBlockVolume secondUnmodifiableVolume = second.getUnmodifiableBlockView();
+        final Vector3i min = this.volume.getBlockMin();
+        final Vector3i max = this.volume.getBlockMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    destination.setBlock(x + xOffsetDestination, y + yOffsetDestination, z + zOffsetDestination,
+                            merger.merge(firstUnmodifiableVolume, x, y, z,
+                                    secondUnmodifiableVolume, x + xOffsetSecond, y + yOffsetSecond, z + zOffsetSecond));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void iterate(BlockVolumeVisitor<V> visitor) {
+        final Vector3i min = this.volume.getBlockMin();
+        final Vector3i max = this.volume.getBlockMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    visitor.visit(this.volume, x, y, z);
+                }
+            }
+        }
+    }
+
+    @Override
+    public <T> T reduce(BlockVolumeReducer<T> reducer, BiFunction<T, T, T> merge, T identity) {
+        // Everything is reduced in order, so the partial results never need
+        // to be merged
+        final UnmodifiableBlockVolume unmodifiableVolume = this.volume.getUnmodifiableBlockView();
+        final Vector3i min = this.volume.getBlockMin();
+        final Vector3i max = this.volume.getBlockMax();
+        T reduction = identity;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    reduction = reducer.reduce(unmodifiableVolume, x, y, z, reduction);
+                }
+            }
+        }
+        return reduction;
+    }
+
+    /**
+     * Gets the offset from this volume to another one it is worked into.
+     *
+     * @param other The other volume
+     * @return The offset to add to positions in this volume
+     * @throws IllegalArgumentException If the other volume is smaller
+     */
+    protected Vector3i align(BlockVolume other) {
+        final Vector3i size = this.volume.getBlockSize();
+        final Vector3i otherSize = other.getBlockSize();
+        if (otherSize.getX() < size.getX() || otherSize.getY() < size.getY() || otherSize.getZ() < size.getZ()) {
+            throw new IllegalArgumentException("The other volume is smaller than the work volume, " + otherSize + " < " + size);
+        }
+        return other.getBlockMin().sub(this.volume.getBlockMin());
+    }
+}
@@ -0,0 +1,47 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.extent.ImmutableBiomeVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBiomeVolume;
+import org.spongepowered.api.world.extent.worker.BiomeVolumeWorker;
+
+/**
+ * A view of an immutable biome volume, which is immutable itself.
+ */
+public class ImmutableBiomeView extends AbstractBiomeView<ImmutableBiomeVolume> implements ImmutableBiomeVolume {
+
+    public ImmutableBiomeView(ImmutableBiomeVolume volume, VolumeBounds bounds, DiscreteTransform3 inverse) {
+        super(volume, bounds, inverse);
+    }
+
+    @Override
+    public ImmutableBiomeVolume getBiomeView(Vector3i newMin, Vector3i newMax) {
+        return new ImmutableBiomeView(this.volume, this.bounds.shrink(newMin, newMax), this.inverse);
+    }
+
+    @Override
+    public ImmutableBiomeVolume getBiomeView(DiscreteTransform3 transform) {
+        return new ImmutableBiomeView(this.volume, this.bounds.transform(transform), composeInverse(transform));
+    }
+
+    @Override
+    public ImmutableBiomeVolume getRelativeBiomeView() {
+        return getBiomeView(DiscreteTransform3.fromTranslation(this.bounds.getMin().negate()));
+    }
+
+    @Override
+    public UnmodifiableBiomeVolume getUnmodifiableBiomeView() {
+        return this;
+    }
+
+    @Override
+    public ImmutableBiomeVolume getImmutableBiomeCopy() {
+        return this;
+    }
+
+    @Override
+    public BiomeVolumeWorker<? extends ImmutableBiomeVolume> getBiomeWorker() {
+        return new BiomeWorker<>(this);
+    }
+}
@@ -0,0 +1,47 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.extent.ImmutableBlockVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBlockVolume;
+import org.spongepowered.api.world.extent.worker.BlockVolumeWorker;
+
+/**
+ * A view of an immutable block volume, which is immutable itself.
+ */
+public class ImmutableBlockView extends AbstractBlockView<ImmutableBlockVolume> implements ImmutableBlockVolume {
+
+    public ImmutableBlockView(ImmutableBlockVolume volume, VolumeBounds bounds, DiscreteTransform3 inverse) {
+        super(volume, bounds, inverse);
+    }
+
+    @Override
+    public ImmutableBlockVolume getBlockView(Vector3i newMin, Vector3i newMax) {
+        return new ImmutableBlockView(this.volume, this.bounds.shrink(newMin, newMax), this.inverse);
+    }
+
+    @Override
+    public ImmutableBlockVolume getBlockView(DiscreteTransform3 transform) {
+        return new ImmutableBlockView(this.volume, this.bounds.transform(transform), composeInverse(transform));
+    }
+
+    @Override
+    public ImmutableBlockVolume getRelativeBlockView() {
+        return getBlockView(DiscreteTransform3.fromTranslation(this.bounds.getMin().negate()));
+    }
+
+    @Override
+    public UnmodifiableBlockVolume getUnmodifiableBlockView() {
+        return this;
+    }
+
+    @Override
+    public ImmutableBlockVolume getImmutableBlockCopy() {
+        return this;
+    }
+
+    @Override
+    public BlockVolumeWorker<? extends ImmutableBlockVolume> getBlockWorker() {
+        return new BlockWorker<>(this);
+    }
+}
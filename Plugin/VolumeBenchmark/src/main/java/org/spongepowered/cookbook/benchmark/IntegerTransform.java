@@ -0,0 +1,71 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.util.DiscreteTransform3;
+
+/**
+ * A {@link DiscreteTransform3} as an integer matrix and offset.
+ *
+ * <p>Discrete transforms keep a matrix of doubles, and transforming a
+ * position multiplies a row of it for each coordinate. Their matrices only
+ * ever hold whole numbers, so the transform can be read off once, from where
+ * it maps the origin and the unit vectors, and then applied with integer
+ * arithmetic alone.</p>
+ */
+final class IntegerTransform {
+
+    private final int xx;
+    private final int xy;
+    private final int xz;
+    private final int yx;
+    private final int yy;
+    private final int yz;
+    private final int zx;
+    private final int zy;
+    private final int zz;
+    private final int offsetX;
+    private final int offsetY;
+    private final int offsetZ;
+    // Where moving one step along x in the source moves a position to
+    private final Vector3i stepX;
+
+    IntegerTransform(DiscreteTransform3 transform) {
+        final Vector3i origin = transform.transform(0, 0, 0);
+        this.stepX = transform.transform(1, 0, 0).sub(origin);
+        final Vector3i stepY = transform.transform(0, 1, 0).sub(origin);
+        final Vector3i stepZ = transform.transform(0, 0, 1).sub(origin);
+        this.xx = this.stepX.getX();
+        this.yx = this.stepX.getY();
+        this.zx = this.stepX.getZ();
+        this.xy = stepY.getX();
+        this.yy = stepY.getY();
+        this.zy = stepY.getZ();
+        this.xz = stepZ.getX();
+        this.yz = stepZ.getY();
+        this.zz = stepZ.getZ();
+        this.offsetX = origin.getX();
+        this.offsetY = origin.getY();
+        this.offsetZ = origin.getZ();
+    }
+
+    int transformX(int x, int y, int z) {
+        return this.xx * x + this.xy * y + this.xz * z + this.offsetX;
+    }
+
+    int transformY(int x, int y, int z) {
+        return this.yx * x + this.yy * y + this.yz * z + this.offsetY;
+    }
+
+    int transformZ(int x, int y, int z) {
+        return this.zx * x + this.zy * y + this.zz * z + this.offsetZ;
+    }
+
+    /**
+     * Gets where a step of one along the x axis is transformed to.
+     *
+     * @return The transformed step
+     */
+    Vector3i getStepX() {
+        return this.stepX;
+    }
+}
@@ -0,0 +1,105 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.extent.BiomeVolume;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBiomeVolume;
+import org.spongepowered.api.world.extent.worker.MutableBiomeVolumeWorker;
+
+/**
+ * A view of a mutable biome volume, which writes through to it.
+ */
+public class MutableBiomeView extends AbstractBiomeView<MutableBiomeVolume> implements MutablePaletteBiomeVolume {
+
+    public MutableBiomeView(MutableBiomeVolume volume, VolumeBounds bounds, DiscreteTransform3 inverse) {
+        super(volume, bounds, inverse);
+    }
+
+    @Override
+    public boolean setBiome(int x, int y, int z, BiomeType biome) {
+        this.bounds.checkRange(x, y, z);
+        if (this.inverse == null) {
+            return this.volume.setBiome(x, y, z, biome);
+        }
+        if (this.translation != null) {
+            return this.volume.setBiome(x + this.translation.getX(), y + this.translation.getY(), z + this.translation.getZ(), biome);
+        }
+        return this.volume.setBiome(this.mapping.transformX(x, y, z), this.mapping.transformY(x, y, z), this.mapping.transformZ(x, y, z),
+                biome);
+    }
+
+    @Override
+    public void fillBiomes(Vector3i min, Vector3i max, BiomeType biome) {
+        this.bounds.shrink(min, max);
+        if (this.inverse == null) {
+            getMutableViewed().fillBiomes(min, max, biome);
+        } else if (this.translation != null) {
+            getMutableViewed().fillBiomes(min.add(this.translation), max.add(this.translation), biome);
+        } else {
+            for (int y = min.getY(); y <= max.getY(); y++) {
+                for (int z = min.getZ(); z <= max.getZ(); z++) {
+                    for (int x = min.getX(); x <= max.getX(); x++) {
+                        setBiome(x, y, z, biome);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void copyBiomes(PaletteBiomeVolume source, Vector3i sourceMin, Vector3i sourceMax, Vector3i destination) {
+        this.bounds.shrink(destination, destination.add(sourceMax.sub(sourceMin)));
+        if (this.inverse == null) {
+            getMutableViewed().copyBiomes(source, sourceMin, sourceMax, destination);
+        } else if (this.translation != null) {
+            getMutableViewed().copyBiomes(source, sourceMin, sourceMax, destination.add(this.translation));
+        } else {
+            new VolumeBounds(source.getBiomeMin(), source.getBiomeMax()).shrink(sourceMin, sourceMax);
+            final BiomeVolume read = isOf(source, this.volume) ? source.getImmutableBiomeCopy() : source;
+            final Vector3i offset = sourceMin.sub(destination);
+            for (int y = sourceMin.getY(); y <= sourceMax.getY(); y++) {
+                for (int z = sourceMin.getZ(); z <= sourceMax.getZ(); z++) {
+                    for (int x = sourceMin.getX(); x <= sourceMax.getX(); x++) {
+                        setBiome(x - offset.getX(), y - offset.getY(), z - offset.getZ(), read.getBiome(x, y, z));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the viewed volume as one that can be written a region at a time.
+     * Mutable views are only ever created of the mutable buffers in this
+     * package, which all can.
+     */
+    private MutablePaletteBiomeVolume getMutableViewed() {
+        return (MutablePaletteBiomeVolume) this.volume;
+    }
+
+    @Override
+    public MutableBiomeVolume getBiomeView(Vector3i newMin, Vector3i newMax) {
+        return new MutableBiomeView(this.volume, this.bounds.shrink(newMin, newMax), this.inverse);
+    }
+
+    @Override
+    public MutableBiomeVolume getBiomeView(DiscreteTransform3 transform) {
+        return new MutableBiomeView(this.volume, this.bounds.transform(transform), composeInverse(transform));
+    }
+
+    @Override
+    public MutableBiomeVolume getRelativeBiomeView() {
+        return getBiomeView(DiscreteTransform3.fromTranslation(this.bounds.getMin().negate()));
+    }
+
+    @Override
+    public UnmodifiableBiomeVolume getUnmodifiableBiomeView() {
+        return new UnmodifiableBiomeView(this.volume, this.bounds, this.inverse);
+    }
+
+    @Override
+    public MutableBiomeVolumeWorker<? extends MutableBiomeVolume> getBiomeWorker() {
+        return new MutableBiomeWorker<>(this);
+    }
+}
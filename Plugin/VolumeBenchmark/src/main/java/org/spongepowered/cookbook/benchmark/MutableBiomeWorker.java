@@ -0,0 +1,32 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.worker.MutableBiomeVolumeWorker;
+import org.spongepowered.api.world.extent.worker.procedure.BiomeVolumeFiller;
+
+/**
+ * Works through every position of a mutable biome volume, one after the
+ * other.
+ *
+ * @param <V> The type of the volume
+ */
+public class MutableBiomeWorker<V extends MutableBiomeVolume> extends BiomeWorker<V> implements MutableBiomeVolumeWorker<V> {
+
+    public MutableBiomeWorker(V volume) {
+        super(volume);
+    }
+
+    @Override
+    public void fill(BiomeVolumeFiller filler) {
+        final Vector3i min = this.volume.getBiomeMin();
+        final Vector3i max = this.volume.getBiomeMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    this.volume.setBiome(x, y, z, filler.produce(x, y, z));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBlockVolume;
+import org.spongepowered.api.world.extent.worker.MutableBlockVolumeWorker;
+
+/**
+ * A view of a mutable block volume, which writes through to it.
+ */
+public class MutableBlockView extends AbstractBlockView<MutableBlockVolume> implements MutableBlockVolume {
+
+    public MutableBlockView(MutableBlockVolume volume, VolumeBounds bounds, DiscreteTransform3 inverse) {
+        super(volume, bounds, inverse);
+    }
+
+    @Override
+    public boolean setBlock(int x, int y, int z, BlockState block) {
+        this.bounds.checkRange(x, y, z);
+        if (this.inverse == null) {
+            return this.volume.setBlock(x, y, z, block);
+        }
+        if (this.translation != null) {
+            return this.volume.setBlock(x + this.translation.getX(), y + this.translation.getY(), z + this.translation.getZ(), block);
+        }
+        return this.volume.setBlock(this.mapping.transformX(x, y, z), this.mapping.transformY(x, y, z), this.mapping.transformZ(x, y, z),
+                block);
+    }
+
+    @Override
+    public MutableBlockVolume getBlockView(Vector3i newMin, Vector3i newMax) {
+        return new MutableBlockView(this.volume, this.bounds.shrink(newMin, newMax), this.inverse);
+    }
+
+    @Override
+    public MutableBlockVolume getBlockView(DiscreteTransform3 transform) {
+        return new MutableBlockView(this.volume, this.bounds.transform(transform), composeInverse(transform));
+    }
+
+    @Override
+    public MutableBlockVolume getRelativeBlockView() {
+        return getBlockView(DiscreteTransform3.fromTranslation(this.bounds.getMin().negate()));
+    }
+
+    @Override
+    public UnmodifiableBlockVolume getUnmodifiableBlockView() {
+        return new UnmodifiableBlockView(this.volume, this.bounds, this.inverse);
+    }
+
+    @Override
+    public MutableBlockVolumeWorker<? extends MutableBlockVolume> getBlockWorker() {
+        return new MutableBlockWorker<>(this);
+    }
+}
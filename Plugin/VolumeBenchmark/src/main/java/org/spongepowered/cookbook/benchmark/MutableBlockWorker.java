@@ -0,0 +1,32 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+import org.spongepowered.api.world.extent.worker.MutableBlockVolumeWorker;
+import org.spongepowered.api.world.extent.worker.procedure.BlockVolumeFiller;
+
+/**
+ * Works through every position of a mutable block volume, one after the
+ * other.
+ *
+ * @param <V> The type of the volume
+ */
+public class MutableBlockWorker<V extends MutableBlockVolume> extends BlockWorker<V> implements MutableBlockVolumeWorker<V> {
+
+    public MutableBlockWorker(V volume) {
+        super(volume);
+    }
+
+    @Override
+    public void fill(BlockVolumeFiller filler) {
+        final Vector3i min = this.volume.getBlockMin();
+        final Vector3i max = this.volume.getBlockMax();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    this.volume.setBlock(x, y, z, filler.produce(x, y, z));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+
+/**
+ * A mutable biome volume that can be written a region at a time, straight to
+ * its palette ids instead of through a {@link #setBiome} per position.
+ */
+public interface MutablePaletteBiomeVolume extends PaletteBiomeVolume, MutableBiomeVolume {
+
+    /**
+     * Sets every biome of a region to the same biome. Filling a region that
+     * covers whole sections of a buffer only touches each section once.
+     *
+     * @param min The minimum of the region
+     * @param max The maximum of the region
+     * @param biome The biome
+     * @throws org.spongepowered.api.util.PositionOutOfBoundsException If the
+     *     region isn't within this volume
+     */
+    void fillBiomes(Vector3i min, Vector3i max, BiomeType biome);
+
+    /**
+     * Copies the biomes of a region of another volume into this one. The
+     * volume may be this one, the region is then read before it is written.
+     *
+     * @param source The volume to copy from
+     * @param sourceMin The minimum of the region to copy
+     * @param sourceMax The maximum of the region to copy
+     * @param destination Where the minimum of the region goes in this volume
+     * @throws org.spongepowered.api.util.PositionOutOfBoundsException If
+     *     either region isn't within its volume
+     */
+    void copyBiomes(PaletteBiomeVolume source, Vector3i sourceMin, Vector3i sourceMax, Vector3i destination);
+}
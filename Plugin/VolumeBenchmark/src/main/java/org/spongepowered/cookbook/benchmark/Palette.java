@@ -0,0 +1,76 @@
+package org.spongepowered.cookbook.benchmark;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns small ids to the values stored in a buffer, so the buffer only
+ * has to store a {@code char} per position.
+ *
+ * <p>Catalog types are singletons, so values are compared by identity. Ids
+ * are never freed, a buffer only ever holds a handful of distinct values.</p>
+ *
+ * @param <T> The type of the values
+ */
+public final class Palette<T> {
+
+    private static final int MAX_SIZE = Character.MAX_VALUE + 1;
+
+    private final List<T> values;
+    private final Map<T, Character> ids;
+
+    public Palette() {
+        this.values = new ArrayList<>();
+        this.ids = new IdentityHashMap<>();
+    }
+
+    private Palette(Palette<T> palette) {
+        this.values = new ArrayList<>(palette.values);
+        this.ids = new IdentityHashMap<>(palette.ids);
+    }
+
+    /**
+     * Gets the id of a value, assigning the next free one if it has none yet.
+     *
+     * @param value The value
+     * @return The id
+     */
+    public char getOrAssign(T value) {
+        final Character id = this.ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (this.values.size() == MAX_SIZE) {
+            throw new IllegalStateException("A palette can't hold more than " + MAX_SIZE + " values");
+        }
+        final char assigned = (char) this.values.size();
+        this.values.add(value);
+        this.ids.put(value, assigned);
+        return assigned;
+    }
+
+    /**
+     * Gets the id of a value.
+     *
+     * @param value The value
+     * @return The id, or -1 if the value has none
+     */
+    public int getId(T value) {
+        final Character id = this.ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    public T get(int id) {
+        return this.values.get(id);
+    }
+
+    public int size() {
+        return this.values.size();
+    }
+
+    public Palette<T> copy() {
+        return new Palette<>(this);
+    }
+}
@@ -0,0 +1,112 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.world.extent.BlockVolume;
+
+import java.util.function.Predicate;
+
+/**
+ * A block volume that exposes the palette ids it stores, so bulk reads can
+ * scan arrays instead of looking up a {@link BlockState} per position.
+ */
+public interface PaletteBlockVolume extends BlockVolume {
+
+    /**
+     * Gets the palette the ids of this volume are from. Views share the
+     * palette of the volume they view. The palette of a mutable volume grows
+     * as new blocks are set, so the palette of a thread safe buffer should
+     * only be read while visiting it.
+     *
+     * @return The palette
+     */
+    Palette<BlockState> getBlockPalette();
+
+    /**
+     * Gets the palette id of the block at a position.
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param z The z coordinate
+     * @return The palette id
+     */
+    int getBlockId(int x, int y, int z);
+
+    /**
+     * Visits the palette ids of a region of this volume in runs.
+     *
+     * @param min The minimum of the region
+     * @param max The maximum of the region
+     * @param visitor The visitor
+     * @throws org.spongepowered.api.util.PositionOutOfBoundsException If the
+     *     region isn't within this volume
+     */
+    void visitBlockRuns(Vector3i min, Vector3i max, RunVisitor visitor);
+
+    /**
+     * Visits the palette ids of this volume in runs.
+     *
+     * @param visitor The visitor
+     */
+    default void visitBlockRuns(RunVisitor visitor) {
+        visitBlockRuns(getBlockMin(), getBlockMax(), visitor);
+    }
+
+    /**
+     * Counts the blocks of a region that match a filter. The filter is only
+     * tested once per palette entry.
+     *
+     * @param min The minimum of the region
+     * @param max The maximum of the region
+     * @param filter The filter
+     * @return The number of matching blocks
+     */
+    default int countBlocks(Vector3i min, Vector3i max, Predicate<BlockState> filter) {
+        final Palette<BlockState> palette = getBlockPalette();
+        final boolean[] matches = new boolean[palette.size()];
+        for (int id = 0; id < matches.length; id++) {
+            matches[id] = filter.test(palette.get(id));
+        }
+        final int[] count = new int[1];
+        visitBlockRuns(min, max, (ids, from, to, offset) -> {
+            int matched = 0;
+            for (int i = from; i < to; i++) {
+                if (matches[ids[i]]) {
+                    matched++;
+                }
+            }
+            count[0] += matched;
+        });
+        return count[0];
+    }
+
+    /**
+     * Checks whether another volume of the same size holds the same blocks,
+     * position for position. The volumes may be anywhere, views and copies of
+     * each other or not, and don't have to share a palette. Sections a copy
+     * still shares with this volume aren't compared at all.
+     *
+     * @param other The other volume
+     * @return Whether the volumes are the same size and hold the same blocks
+     */
+    default boolean blockContentEquals(PaletteBlockVolume other) {
+        return getBlockSize().equals(other.getBlockSize()) && VolumeComparison.compareBlocks(this, other, null);
+    }
+
+    /**
+     * Finds the positions at which another volume of the same size holds
+     * other blocks than this one.
+     *
+     * @param other The other volume
+     * @return The changes, in the coordinates of this volume
+     * @throws IllegalArgumentException If the volumes aren't the same size
+     */
+    default VolumeDiff diffBlocks(PaletteBlockVolume other) {
+        if (!getBlockSize().equals(other.getBlockSize())) {
+            throw new IllegalArgumentException("Volumes must be the same size, were " + getBlockSize() + " and " + other.getBlockSize());
+        }
+        final VolumeDiff diff = new VolumeDiff(new VolumeBounds(getBlockMin(), getBlockMax()));
+        VolumeComparison.compareBlocks(this, other, diff);
+        return diff;
+    }
+}
@@ -0,0 +1,27 @@
+package org.spongepowered.cookbook.benchmark;
+
+/**
+ * Visits the palette ids of a volume a run at a time, rather than calling
+ * back for every position.
+ *
+ * <p>A run is a stretch of positions that lie next to each other in the
+ * layout of {@link VolumeBounds}: along x, then z, then y. Runs are visited
+ * in that order, so the offset of each run follows on from the end of the
+ * previous one.</p>
+ */
+@FunctionalInterface
+public interface RunVisitor {
+
+    /**
+     * Visits a run of palette ids.
+     *
+     * @param ids The palette ids. This may be the storage of the volume
+     *     itself, or a scratch array that is reused for the next run, so it
+     *     must not be modified or kept
+     * @param from The index in {@code ids} of the first position of the run
+     * @param to The index in {@code ids} after the last position of the run
+     * @param offset The offset of the first position of the run within the
+     *     visited region, in the layout of {@link VolumeBounds}
+     */
+    void visitRun(char[] ids, int from, int to, int offset);
+}
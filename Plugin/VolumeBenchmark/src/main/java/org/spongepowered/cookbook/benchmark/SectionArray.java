@@ -0,0 +1,490 @@
+package org.spongepowered.cookbook.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * The palette ids of a buffer, split into sections that copies of the
+ * buffer share until one of them writes.
+ *
+ * <p>A section holds {@link #SECTION_SIZE} consecutive positions in the
+ * layout of {@link VolumeBounds}, as many as a chunk section, but not the
+ * same shape. Positions are laid out x first, then z, then y, so a section
+ * is a run of whole or partial layers of the buffer rather than a 16 by 16
+ * by 16 cell. Only a buffer 16 wide and 16 long has sections shaped like
+ * chunk sections, in a wider buffer a section covers less than one layer.
+ * Keeping the buffer's own layout means an index maps to its section with a
+ * shift, and runs of the buffer stay runs of a section. Copying an
+ * array only copies the references to its sections and marks them shared on
+ * both sides. The first write to a shared section copies that one section,
+ * so a snapshot of a large buffer costs next to nothing until the buffer is
+ * changed, and then only as much as what was changed.</p>
+ *
+ * <p>The sections of a {@link #compact(int) compact} array start out
+ * uniform, a single id and no array at all. Writing a second id to a section
+ * packs it: a small palette of the ids in the section, and as few bits per
+ * position as that palette needs. A section with more than
+ * {@link #MAX_PACKED_IDS} ids becomes a plain {@code char} array, like every
+ * section of a dense array is. Copying a whole section in at once picks the
+ * smallest of the three for its contents, so a section can also go back to
+ * being uniform. Reading a compact section costs a little more than reading
+ * a plain one, in return for a mostly empty buffer taking next to no
+ * memory.</p>
+ *
+ * <p>{@link #fill(int, int, char) Filling} a whole section makes it uniform
+ * in either kind of array, so filling a large range costs about as much as
+ * the number of sections it covers. A uniform section of a dense array
+ * becomes a plain array again the next time it is written to. Filling part
+ * of a compact section adds the id to its palette once, then fills the
+ * packed bits a word at a time, so the rows of a box that doesn't span the
+ * buffer are filled without a {@code set} per position.</p>
+ *
+ * <p>Sections are only ever replaced, never written to while shared, so a
+ * copy handed to another thread never sees a write made after it was
+ * taken. The array itself is not thread safe.</p>
+ */
+public final class SectionArray {
+
+    static final int SECTION_BITS = 12;
+    static final int SECTION_SIZE = 1 << SECTION_BITS;
+    private static final int SECTION_MASK = SECTION_SIZE - 1;
+    // Packed sections use 1, 2 or 4 bits per position, which never straddle
+    // two words
+    static final int MAX_PACKED_IDS = 16;
+
+    private final int length;
+    private final boolean compact;
+    // The sections stored as plain arrays, null where a section is packed or
+    // uniform
+    private final char[][] dense;
+    // The bits of packed sections, null where a section is uniform
+    private final long[][] packed;
+    // The ids of packed sections, indexed by the values in their bits
+    private final char[][] packedIds;
+    // The bits per position of packed sections, as a power of two
+    private final byte[] shifts;
+    // The id of uniform sections
+    private final char[] uniform;
+    // Whether another array may hold the same section, which then has to be
+    // copied before it is written to
+    private final boolean[] shared;
+
+    /**
+     * Creates a new dense array of zeros.
+     *
+     * @param length The length of the array
+     */
+    public SectionArray(int length) {
+        this(length, false);
+        for (int i = 0; i < this.dense.length; i++) {
+            this.dense[i] = new char[sectionLength(i)];
+        }
+    }
+
+    private SectionArray(int length, boolean compact) {
+        this.length = length;
+        this.compact = compact;
+        final int count = (length + SECTION_MASK) >>> SECTION_BITS;
+        this.dense = new char[count][];
+        this.packed = new long[count][];
+        this.packedIds = new char[count][];
+        this.shifts = new byte[count];
+        this.uniform = new char[count];
+        this.shared = new boolean[count];
+    }
+
+    private SectionArray(SectionArray array) {
+        this.length = array.length;
+        this.compact = array.compact;
+        this.dense = array.dense.clone();
+        this.packed = array.packed.clone();
+        this.packedIds = array.packedIds.clone();
+        this.shifts = array.shifts.clone();
+        this.uniform = array.uniform.clone();
+        this.shared = new boolean[array.shared.length];
+    }
+
+    /**
+     * Creates a new compact array of zeros. Every section starts out
+     * uniform.
+     *
+     * @param length The length of the array
+     * @return The array
+     */
+    public static SectionArray compact(int length) {
+        return new SectionArray(length, true);
+    }
+
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Gets whether sections of this array are stored as compactly as their
+     * contents allow, rather than always as plain arrays.
+     *
+     * @return Whether this array is compact
+     */
+    public boolean isCompact() {
+        return this.compact;
+    }
+
+    public char get(int index) {
+        final int section = index >>> SECTION_BITS;
+        final char[] ids = this.dense[section];
+        if (ids != null) {
+            return ids[index & SECTION_MASK];
+        }
+        final long[] words = this.packed[section];
+        if (words == null) {
+            return this.uniform[section];
+        }
+        return this.packedIds[section][unpack(words, this.shifts[section], index & SECTION_MASK)];
+    }
+
+    public void set(int index, char id) {
+        final int section = index >>> SECTION_BITS;
+        if (this.dense[section] == null && !this.compact) {
+            expandSection(section);
+        }
+        if (this.dense[section] != null) {
+            writableSection(section);
+            this.dense[section][index & SECTION_MASK] = id;
+        } else {
+            setCompact(section, index & SECTION_MASK, id);
+        }
+    }
+
+    /**
+     * Copies a range of ids into this array.
+     *
+     * @param index The index in this array of the first id
+     * @param ids The ids to copy
+     * @param from The index in {@code ids} of the first id to copy
+     * @param to The index in {@code ids} after the last id to copy
+     */
+    public void set(int index, char[] ids, int from, int to) {
+        while (from < to) {
+            final int section = index >>> SECTION_BITS;
+            final int start = index & SECTION_MASK;
+            final int count = Math.min(to - from, SECTION_SIZE - start);
+            if (this.dense[section] == null && !this.compact) {
+                expandSection(section);
+            }
+            if (this.compact && count == sectionLength(section)) {
+                replaceSection(section, ids, from);
+            } else if (this.dense[section] != null) {
+                writableSection(section);
+                System.arraycopy(ids, from, this.dense[section], start, count);
+            } else {
+                // The section may become dense part way through
+                for (int i = 0; i < count; i++) {
+                    set(index + i, ids[from + i]);
+                }
+            }
+            index += count;
+            from += count;
+        }
+    }
+
+    /**
+     * Fills a range of this array with a single id. Sections the range
+     * covers entirely are made uniform rather than written to.
+     *
+     * @param from The index of the first id to fill
+     * @param to The index after the last id to fill
+     * @param id The id
+     */
+    public void fill(int from, int to, char id) {
+        while (from < to) {
+            final int section = from >>> SECTION_BITS;
+            final int start = from & SECTION_MASK;
+            final int count = Math.min(to - from, SECTION_SIZE - start);
+            if (count == sectionLength(section)) {
+                this.dense[section] = null;
+                this.packed[section] = null;
+                this.packedIds[section] = null;
+                this.uniform[section] = id;
+                this.shared[section] = false;
+            } else {
+                if (this.dense[section] == null && !this.compact) {
+                    expandSection(section);
+                }
+                if (this.dense[section] != null) {
+                    writableSection(section);
+                    Arrays.fill(this.dense[section], start, start + count, id);
+                } else {
+                    fillCompact(section, start, count, id);
+                }
+            }
+            from += count;
+        }
+    }
+
+    /**
+     * Visits a range of this array, one run per section it touches. Runs of
+     * compact sections are unpacked into a scratch array first.
+     *
+     * @param from The index of the first id to visit
+     * @param to The index after the last id to visit
+     * @param offset The offset to report for the first id
+     * @param visitor The visitor
+     */
+    public void visitRange(int from, int to, int offset, RunVisitor visitor) {
+        char[] scratch = null;
+        while (from < to) {
+            final int section = from >>> SECTION_BITS;
+            final int start = from & SECTION_MASK;
+            final int count = Math.min(to - from, SECTION_SIZE - start);
+            final char[] ids = this.dense[section];
+            if (ids != null) {
+                visitor.visitRun(ids, start, start + count, offset);
+            } else {
+                if (scratch == null) {
+                    scratch = new char[Math.min(to - from, SECTION_SIZE)];
+                }
+                final long[] words = this.packed[section];
+                if (words == null) {
+                    Arrays.fill(scratch, 0, count, this.uniform[section]);
+                } else {
+                    final char[] packedIds = this.packedIds[section];
+                    final int shift = this.shifts[section];
+                    for (int i = 0; i < count; i++) {
+                        scratch[i] = packedIds[unpack(words, shift, start + i)];
+                    }
+                }
+                visitor.visitRun(scratch, 0, count, offset);
+            }
+            from += count;
+            offset += count;
+        }
+    }
+
+    /**
+     * Copies this array. Nothing but the references to the sections is
+     * copied, every section becomes shared by both arrays.
+     *
+     * @return The copy
+     */
+    public SectionArray copy() {
+        final SectionArray copy = new SectionArray(this);
+        for (int i = 0; i < this.shared.length; i++) {
+            this.shared[i] = true;
+            copy.shared[i] = true;
+        }
+        return copy;
+    }
+
+    /**
+     * Gets whether a section of this array is known to hold the same ids as
+     * that of another array of the same length, without reading it. That is
+     * the case while the section is still shared with a copy, or if both are
+     * uniform with the same id.
+     *
+     * @param other The other array
+     * @param section The index of the section
+     * @return Whether the sections hold the same ids, false if unknown
+     */
+    boolean sharesSection(SectionArray other, int section) {
+        if (this.dense[section] != null || other.dense[section] != null) {
+            return this.dense[section] == other.dense[section];
+        }
+        if (this.packed[section] != null || other.packed[section] != null) {
+            return this.packed[section] == other.packed[section] && this.packedIds[section] == other.packedIds[section];
+        }
+        return this.uniform[section] == other.uniform[section];
+    }
+
+    private void writableSection(int section) {
+        if (this.shared[section]) {
+            if (this.dense[section] != null) {
+                this.dense[section] = this.dense[section].clone();
+            }
+            if (this.packed[section] != null) {
+                this.packed[section] = this.packed[section].clone();
+            }
+            // Ids of packed sections are replaced rather than written to,
+            // so they can stay shared
+            this.shared[section] = false;
+        }
+    }
+
+    private void setCompact(int section, int index, char id) {
+        final long[] words = this.packed[section];
+        if (words == null) {
+            final char fill = this.uniform[section];
+            if (id != fill) {
+                // All zeros is the id the section was filled with
+                this.packed[section] = new long[wordCount(section, 0)];
+                this.packedIds[section] = new char[] {fill, id};
+                this.shifts[section] = 0;
+                this.shared[section] = false;
+                pack(this.packed[section], 0, index, 1);
+            }
+            return;
+        }
+        final char[] packedIds = this.packedIds[section];
+        int value = indexOf(packedIds, packedIds.length, id);
+        if (value < 0) {
+            if (packedIds.length == MAX_PACKED_IDS) {
+                unpackSection(section);
+                this.dense[section][index] = id;
+                return;
+            }
+            value = packedIds.length;
+            final char[] grown = Arrays.copyOf(packedIds, value + 1);
+            grown[value] = id;
+            this.packedIds[section] = grown;
+            if (value == 1 << (1 << this.shifts[section])) {
+                repackSection(section, this.shifts[section] + 1);
+            }
+        }
+        writableSection(section);
+        pack(this.packed[section], this.shifts[section], index, value);
+    }
+
+    /**
+     * Fills part of a uniform or packed section. Setting the first position
+     * adds the id to the palette of the section, packing, repacking or
+     * unpacking it as needed, after which the rest is filled in place.
+     */
+    private void fillCompact(int section, int start, int count, char id) {
+        if (this.packed[section] == null && this.uniform[section] == id) {
+            return;
+        }
+        setCompact(section, start, id);
+        if (this.dense[section] != null) {
+            Arrays.fill(this.dense[section], start + 1, start + count, id);
+            return;
+        }
+        final char[] packedIds = this.packedIds[section];
+        fillPacked(this.packed[section], this.shifts[section], start + 1, start + count, indexOf(packedIds, packedIds.length, id));
+    }
+
+    /**
+     * Replaces a whole section, stored as compactly as its new ids allow.
+     */
+    private void replaceSection(int section, char[] ids, int from) {
+        final int count = sectionLength(section);
+        final char[] found = new char[MAX_PACKED_IDS];
+        int size = 0;
+        for (int i = from; i < from + count; i++) {
+            if (indexOf(found, size, ids[i]) < 0) {
+                if (size == MAX_PACKED_IDS) {
+                    this.dense[section] = Arrays.copyOfRange(ids, from, from + count);
+                    this.packed[section] = null;
+                    this.packedIds[section] = null;
+                    this.shared[section] = false;
+                    return;
+                }
+                found[size++] = ids[i];
+            }
+        }
+        this.dense[section] = null;
+        this.shared[section] = false;
+        if (size == 1) {
+            this.uniform[section] = found[0];
+            this.packed[section] = null;
+            this.packedIds[section] = null;
+            return;
+        }
+        int shift = 0;
+        while (1 << (1 << shift) < size) {
+            shift++;
+        }
+        final long[] words = new long[wordCount(section, shift)];
+        for (int i = 0; i < count; i++) {
+            pack(words, shift, i, indexOf(found, size, ids[from + i]));
+        }
+        this.packed[section] = words;
+        this.packedIds[section] = Arrays.copyOf(found, size);
+        this.shifts[section] = (byte) shift;
+    }
+
+    private void repackSection(int section, int shift) {
+        final long[] words = this.packed[section];
+        final int oldShift = this.shifts[section];
+        final long[] repacked = new long[wordCount(section, shift)];
+        final int count = sectionLength(section);
+        for (int i = 0; i < count; i++) {
+            pack(repacked, shift, i, unpack(words, oldShift, i));
+        }
+        this.packed[section] = repacked;
+        this.shifts[section] = (byte) shift;
+        this.shared[section] = false;
+    }
+
+    /**
+     * Turns a uniform section of a dense array back into a plain array.
+     */
+    private void expandSection(int section) {
+        final char[] ids = new char[sectionLength(section)];
+        Arrays.fill(ids, this.uniform[section]);
+        this.dense[section] = ids;
+        this.shared[section] = false;
+    }
+
+    private void unpackSection(int section) {
+        final long[] words = this.packed[section];
+        final char[] packedIds = this.packedIds[section];
+        final int shift = this.shifts[section];
+        final char[] ids = new char[sectionLength(section)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = packedIds[unpack(words, shift, i)];
+        }
+        this.dense[section] = ids;
+        this.packed[section] = null;
+        this.packedIds[section] = null;
+        this.shared[section] = false;
+    }
+
+    private int sectionLength(int section) {
+        return Math.min(SECTION_SIZE, this.length - (section << SECTION_BITS));
+    }
+
+    private int wordCount(int section, int shift) {
+        return ((sectionLength(section) << shift) + 63) >>> 6;
+    }
+
+    private static int unpack(long[] words, int shift, int index) {
+        final int perWord = 6 - shift;
+        final int bit = (index & ((1 << perWord) - 1)) << shift;
+        return (int) (words[index >>> perWord] >>> bit) & ((1 << (1 << shift)) - 1);
+    }
+
+    private static void pack(long[] words, int shift, int index, int value) {
+        final int perWord = 6 - shift;
+        final int bit = (index & ((1 << perWord) - 1)) << shift;
+        final int word = index >>> perWord;
+        final long mask = ((1L << (1 << shift)) - 1) << bit;
+        words[word] = words[word] & ~mask | (long) value << bit;
+    }
+
+    private static void fillPacked(long[] words, int shift, int from, int to, int value) {
+        final int perWord = 6 - shift;
+        final int wordMask = (1 << perWord) - 1;
+        while (from < to && (from & wordMask) != 0) {
+            pack(words, shift, from++, value);
+        }
+        // The value repeated over every position of a word
+        long pattern = value;
+        for (int width = 1 << shift; width < 64; width <<= 1) {
+            pattern |= pattern << width;
+        }
+        while (to - from > wordMask) {
+            words[from >>> perWord] = pattern;
+            from += wordMask + 1;
+        }
+        while (from < to) {
+            pack(words, shift, from++, value);
+        }
+    }
+
+    private static int indexOf(char[] ids, int size, char id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
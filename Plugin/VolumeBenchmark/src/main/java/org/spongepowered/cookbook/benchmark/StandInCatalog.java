@@ -0,0 +1,75 @@
+package org.spongepowered.cookbook.benchmark;
+
+import org.spongepowered.api.CatalogType;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.world.biome.BiomeType;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Creates block states and biomes for the stand-in buffers to hold.
+ *
+ * <p>The catalog types of the game are only registered on a running server.
+ * The stand-ins only have an id, and are only equal to themselves, which is
+ * all the buffers need. Anything else throws.</p>
+ */
+public final class StandInCatalog {
+
+    private StandInCatalog() {
+    }
+
+    public static BlockState blockState(String id) {
+        return create(BlockState.class, id);
+    }
+
+    public static BiomeType biome(String id) {
+        return create(BiomeType.class, id);
+    }
+
+    /**
+     * Creates a number of distinct block states, named after their index.
+     *
+     * @param prefix The prefix of the ids
+     * @param count The number of block states
+     * @return The block states
+     */
+    public static BlockState[] blockStates(String prefix, int count) {
+        final BlockState[] states = new BlockState[count];
+        for (int i = 0; i < count; i++) {
+            states[i] = blockState(prefix + i);
+        }
+        return states;
+    }
+
+    /**
+     * Creates a number of distinct biomes, named after their index.
+     *
+     * @param prefix The prefix of the ids
+     * @param count The number of biomes
+     * @return The biomes
+     */
+    public static BiomeType[] biomes(String prefix, int count) {
+        final BiomeType[] biomes = new BiomeType[count];
+        for (int i = 0; i < count; i++) {
+            biomes[i] = biome(prefix + i);
+        }
+        return biomes;
+    }
+
+    private static <T extends CatalogType> T create(Class<T> type, String id) {
+        return type.cast(Proxy.newProxyInstance(StandInCatalog.class.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                case "getName":
+                case "toString":
+                    return id;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    throw new UnsupportedOperationException(method.getName() + " isn't supported by the stand-in " + id);
+            }
+        }));
+    }
+}
@@ -0,0 +1,92 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.extent.ArchetypeVolume;
+import org.spongepowered.api.world.extent.ExtentBufferFactory;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+
+/**
+ * Creates block and biome buffers without a running server.
+ *
+ * <p>The buffers keep a palette per buffer and store a {@code char} per
+ * position, like the buffers of the implementation do. Views don't: a view
+ * of a view is collapsed into a single view of the buffer underneath, where
+ * the implementation wraps one view in the next. Benchmarks of these
+ * buffers measure the stand-in, not Sponge, and deep view stacks in
+ * particular are much cheaper here than on a server.</p>
+ */
+public class StandInExtentBufferFactory implements ExtentBufferFactory {
+
+    private final BlockState emptyBlock;
+    private final BiomeType emptyBiome;
+
+    /**
+     * Creates a new factory.
+     *
+     * @param emptyBlock The block new buffers are filled with, normally air
+     * @param emptyBiome The biome new buffers are filled with
+     */
+    public StandInExtentBufferFactory(BlockState emptyBlock, BiomeType emptyBiome) {
+        this.emptyBlock = emptyBlock;
+        this.emptyBiome = emptyBiome;
+    }
+
+    @Override
+    public MutableBiomeVolume createBiomeBuffer(Vector3i size) {
+        return new ArrayMutableBiomeBuffer(VolumeBounds.ofSize(size), this.emptyBiome);
+    }
+
+    @Override
+    public MutableBiomeVolume createThreadSafeBiomeBuffer(Vector3i size) {
+        return new ThreadSafeBiomeBuffer(VolumeBounds.ofSize(size), this.emptyBiome);
+    }
+
+    @Override
+    public MutableBlockVolume createBlockBuffer(Vector3i size) {
+        return new ArrayMutableBlockBuffer(VolumeBounds.ofSize(size), this.emptyBlock);
+    }
+
+    @Override
+    public MutableBlockVolume createThreadSafeBlockBuffer(Vector3i size) {
+        return new ThreadSafeBlockBuffer(VolumeBounds.ofSize(size), this.emptyBlock);
+    }
+
+    /**
+     * Creates a block buffer that stores each section as compactly as its
+     * contents allow, see {@link SectionArray#compact(int)}. A buffer that is
+     * mostly air takes next to no memory, at a small cost to every read.
+     *
+     * @param size The size of the buffer
+     * @return The buffer
+     */
+    public MutableBlockVolume createCompactBlockBuffer(Vector3i size) {
+        final VolumeBounds bounds = VolumeBounds.ofSize(size);
+        final Palette<BlockState> palette = new Palette<>();
+        // A new array is all zeros, which is the first id
+        palette.getOrAssign(this.emptyBlock);
+        return new ArrayMutableBlockBuffer(bounds, palette, SectionArray.compact(bounds.getVolume()));
+    }
+
+    /**
+     * Creates a biome buffer that stores each section as compactly as its
+     * contents allow, see {@link SectionArray#compact(int)}.
+     *
+     * @param size The size of the buffer
+     * @return The buffer
+     */
+    public MutableBiomeVolume createCompactBiomeBuffer(Vector3i size) {
+        final VolumeBounds bounds = VolumeBounds.ofSize(size);
+        final Palette<BiomeType> palette = new Palette<>();
+        palette.getOrAssign(this.emptyBiome);
+        return new ArrayMutableBiomeBuffer(bounds, palette, SectionArray.compact(bounds.getVolume()));
+    }
+
+    @Override
+    public ArchetypeVolume createArchetypeVolume(Vector3i size, Vector3i origin) {
+        // Archetypes need tile entities, which need a server
+        throw new UnsupportedOperationException("The stand-in factory doesn't create archetype volumes");
+    }
+}
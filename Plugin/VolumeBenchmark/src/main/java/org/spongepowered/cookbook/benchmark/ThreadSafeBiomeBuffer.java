@@ -0,0 +1,69 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.world.biome.BiomeType;
+import org.spongepowered.api.world.extent.ImmutableBiomeVolume;
+import org.spongepowered.api.world.extent.MutableBiomeVolume;
+import org.spongepowered.api.world.extent.StorageType;
+
+import java.util.function.Predicate;
+
+/**
+ * A biome buffer that may be used from several threads at once. Every
+ * access locks the buffer, since writes may add to the palette.
+ */
+public class ThreadSafeBiomeBuffer extends ArrayMutableBiomeBuffer {
+
+    public ThreadSafeBiomeBuffer(VolumeBounds bounds, BiomeType fill) {
+        super(bounds, fill);
+    }
+
+    ThreadSafeBiomeBuffer(VolumeBounds bounds, Palette<BiomeType> palette, SectionArray biomes) {
+        super(bounds, palette, biomes);
+    }
+
+    @Override
+    public synchronized BiomeType getBiome(int x, int y, int z) {
+        return super.getBiome(x, y, z);
+    }
+
+    @Override
+    public synchronized int getBiomeId(int x, int y, int z) {
+        return super.getBiomeId(x, y, z);
+    }
+
+    @Override
+    public synchronized void visitBiomeRuns(Vector3i min, Vector3i max, RunVisitor visitor) {
+        super.visitBiomeRuns(min, max, visitor);
+    }
+
+    @Override
+    public synchronized int countBiomes(Vector3i min, Vector3i max, Predicate<BiomeType> filter) {
+        return super.countBiomes(min, max, filter);
+    }
+
+    @Override
+    public synchronized boolean setBiome(int x, int y, int z, BiomeType biome) {
+        return super.setBiome(x, y, z, biome);
+    }
+
+    @Override
+    public synchronized void fillBiomes(Vector3i min, Vector3i max, BiomeType biome) {
+        super.fillBiomes(min, max, biome);
+    }
+
+    @Override
+    public synchronized void copyBiomes(PaletteBiomeVolume source, Vector3i sourceMin, Vector3i sourceMax, Vector3i destination) {
+        super.copyBiomes(source, sourceMin, sourceMax, destination);
+    }
+
+    @Override
+    synchronized MutableBiomeVolume getBiomeCopy(VolumeBounds bounds, StorageType type) {
+        return super.getBiomeCopy(bounds, type);
+    }
+
+    @Override
+    synchronized ImmutableBiomeVolume getImmutableBiomeCopy(VolumeBounds bounds) {
+        return super.getImmutableBiomeCopy(bounds);
+    }
+}
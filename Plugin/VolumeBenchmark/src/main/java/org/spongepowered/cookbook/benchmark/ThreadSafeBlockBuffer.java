@@ -0,0 +1,59 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.world.extent.ImmutableBlockVolume;
+import org.spongepowered.api.world.extent.MutableBlockVolume;
+import org.spongepowered.api.world.extent.StorageType;
+
+import java.util.function.Predicate;
+
+/**
+ * A block buffer that may be used from several threads at once. Every
+ * access locks the buffer, since writes may add to the palette.
+ */
+public class ThreadSafeBlockBuffer extends ArrayMutableBlockBuffer {
+
+    public ThreadSafeBlockBuffer(VolumeBounds bounds, BlockState fill) {
+        super(bounds, fill);
+    }
+
+    ThreadSafeBlockBuffer(VolumeBounds bounds, Palette<BlockState> palette, SectionArray blocks) {
+        super(bounds, palette, blocks);
+    }
+
+    @Override
+    public synchronized BlockState getBlock(int x, int y, int z) {
+        return super.getBlock(x, y, z);
+    }
+
+    @Override
+    public synchronized int getBlockId(int x, int y, int z) {
+        return super.getBlockId(x, y, z);
+    }
+
+    @Override
+    public synchronized void visitBlockRuns(Vector3i min, Vector3i max, RunVisitor visitor) {
+        super.visitBlockRuns(min, max, visitor);
+    }
+
+    @Override
+    public synchronized int countBlocks(Vector3i min, Vector3i max, Predicate<BlockState> filter) {
+        return super.countBlocks(min, max, filter);
+    }
+
+    @Override
+    public synchronized boolean setBlock(int x, int y, int z, BlockState block) {
+        return super.setBlock(x, y, z, block);
+    }
+
+    @Override
+    synchronized MutableBlockVolume getBlockCopy(VolumeBounds bounds, StorageType type) {
+        return super.getBlockCopy(bounds, type);
+    }
+
+    @Override
+    synchronized ImmutableBlockVolume getImmutableBlockCopy(VolumeBounds bounds) {
+        return super.getImmutableBlockCopy(bounds);
+    }
+}
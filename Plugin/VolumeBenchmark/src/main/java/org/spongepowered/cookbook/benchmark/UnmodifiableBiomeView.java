@@ -0,0 +1,43 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.extent.BiomeVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBiomeVolume;
+import org.spongepowered.api.world.extent.worker.BiomeVolumeWorker;
+
+/**
+ * A read only view of a biome volume. The volume may still be changed
+ * through other references to it.
+ */
+public class UnmodifiableBiomeView extends AbstractBiomeView<BiomeVolume> implements UnmodifiableBiomeVolume {
+
+    public UnmodifiableBiomeView(BiomeVolume volume, VolumeBounds bounds, DiscreteTransform3 inverse) {
+        super(volume, bounds, inverse);
+    }
+
+    @Override
+    public UnmodifiableBiomeVolume getBiomeView(Vector3i newMin, Vector3i newMax) {
+        return new UnmodifiableBiomeView(this.volume, this.bounds.shrink(newMin, newMax), this.inverse);
+    }
+
+    @Override
+    public UnmodifiableBiomeVolume getBiomeView(DiscreteTransform3 transform) {
+        return new UnmodifiableBiomeView(this.volume, this.bounds.transform(transform), composeInverse(transform));
+    }
+
+    @Override
+    public UnmodifiableBiomeVolume getRelativeBiomeView() {
+        return getBiomeView(DiscreteTransform3.fromTranslation(this.bounds.getMin().negate()));
+    }
+
+    @Override
+    public UnmodifiableBiomeVolume getUnmodifiableBiomeView() {
+        return this;
+    }
+
+    @Override
+    public BiomeVolumeWorker<? extends UnmodifiableBiomeVolume> getBiomeWorker() {
+        return new BiomeWorker<>(this);
+    }
+}
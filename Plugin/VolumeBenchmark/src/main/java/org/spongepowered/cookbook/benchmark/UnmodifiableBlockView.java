@@ -0,0 +1,43 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.world.extent.BlockVolume;
+import org.spongepowered.api.world.extent.UnmodifiableBlockVolume;
+import org.spongepowered.api.world.extent.worker.BlockVolumeWorker;
+
+/**
+ * A read only view of a block volume. The volume may still be changed
+ * through other references to it.
+ */
+public class UnmodifiableBlockView extends AbstractBlockView<BlockVolume> implements UnmodifiableBlockVolume {
+
+    public UnmodifiableBlockView(BlockVolume volume, VolumeBounds bounds, DiscreteTransform3 inverse) {
+        super(volume, bounds, inverse);
+    }
+
+    @Override
+    public UnmodifiableBlockVolume getBlockView(Vector3i newMin, Vector3i newMax) {
+        return new UnmodifiableBlockView(this.volume, this.bounds.shrink(newMin, newMax), this.inverse);
+    }
+
+    @Override
+    public UnmodifiableBlockVolume getBlockView(DiscreteTransform3 transform) {
+        return new UnmodifiableBlockView(this.volume, this.bounds.transform(transform), composeInverse(transform));
+    }
+
+    @Override
+    public UnmodifiableBlockVolume getRelativeBlockView() {
+        return getBlockView(DiscreteTransform3.fromTranslation(this.bounds.getMin().negate()));
+    }
+
+    @Override
+    public UnmodifiableBlockVolume getUnmodifiableBlockView() {
+        return this;
+    }
+
+    @Override
+    public BlockVolumeWorker<? extends UnmodifiableBlockVolume> getBlockWorker() {
+        return new BlockWorker<>(this);
+    }
+}
@@ -0,0 +1,264 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+import org.spongepowered.api.util.DiscreteTransform3;
+import org.spongepowered.api.util.PositionOutOfBoundsException;
+
+/**
+ * The bounds of a volume, and the layout of its positions in an array.
+ *
+ * <p>Positions are laid out x first, then z, then y, like chunk sections are
+ * in the game.</p>
+ */
+public final class VolumeBounds {
+
+    private final Vector3i min;
+    private final Vector3i max;
+    private final Vector3i size;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final int sizeX;
+    private final int area;
+
+    public VolumeBounds(Vector3i min, Vector3i max) {
+        this.min = min;
+        this.max = max;
+        this.size = max.sub(min).add(Vector3i.ONE);
+        this.minX = min.getX();
+        this.minY = min.getY();
+        this.minZ = min.getZ();
+        this.maxX = max.getX();
+        this.maxY = max.getY();
+        this.maxZ = max.getZ();
+        this.sizeX = this.size.getX();
+        this.area = this.sizeX * this.size.getZ();
+    }
+
+    /**
+     * Creates the bounds of a buffer of the given size, starting at zero.
+     *
+     * @param size The size of the buffer
+     * @return The bounds
+     */
+    public static VolumeBounds ofSize(Vector3i size) {
+        if (size.getX() <= 0 || size.getY() <= 0 || size.getZ() <= 0) {
+            throw new IllegalArgumentException("Size must be positive, was " + size);
+        }
+        return new VolumeBounds(Vector3i.ZERO, size.sub(Vector3i.ONE));
+    }
+
+    /**
+     * Gets bounds within these, for a view that shrinks a volume.
+     *
+     * @param min The new minimum
+     * @param max The new maximum
+     * @return The new bounds
+     * @throws PositionOutOfBoundsException If the new bounds aren't within
+     *     these
+     */
+    public VolumeBounds shrink(Vector3i min, Vector3i max) {
+        checkRange(min.getX(), min.getY(), min.getZ());
+        checkRange(max.getX(), max.getY(), max.getZ());
+        return new VolumeBounds(min, max);
+    }
+
+    /**
+     * Gets these bounds as seen through a transform.
+     *
+     * @param transform The transform
+     * @return The transformed bounds
+     */
+    public VolumeBounds transform(DiscreteTransform3 transform) {
+        final Vector3i first = transform.transform(this.min);
+        final Vector3i second = transform.transform(this.max);
+        return new VolumeBounds(first.min(second), first.max(second));
+    }
+
+    public Vector3i getMin() {
+        return this.min;
+    }
+
+    public Vector3i getMax() {
+        return this.max;
+    }
+
+    public Vector3i getSize() {
+        return this.size;
+    }
+
+    public int getVolume() {
+        return this.area * this.size.getY();
+    }
+
+    public boolean contains(int x, int y, int z) {
+        return x >= this.minX && y >= this.minY && z >= this.minZ && x <= this.maxX && y <= this.maxY && z <= this.maxZ;
+    }
+
+    /**
+     * Checks whether other bounds lie entirely within these.
+     *
+     * @param min The minimum of the other bounds
+     * @param max The maximum of the other bounds
+     * @return Whether the other bounds are contained
+     */
+    public boolean contains(Vector3i min, Vector3i max) {
+        return contains(min.getX(), min.getY(), min.getZ()) && contains(max.getX(), max.getY(), max.getZ());
+    }
+
+    public void checkRange(int x, int y, int z) {
+        if (!contains(x, y, z)) {
+            throw new PositionOutOfBoundsException(new Vector3i(x, y, z), this.min, this.max);
+        }
+    }
+
+    /**
+     * Gets the array index of a position, without checking it is in bounds.
+     *
+     * @param x The x coordinate
+     * @param y The y coordinate
+     * @param z The z coordinate
+     * @return The index
+     */
+    public int getIndex(int x, int y, int z) {
+        return (y - this.minY) * this.area + (z - this.minZ) * this.sizeX + (x - this.minX);
+    }
+
+    /**
+     * Visits a region of an array laid out in these bounds, in runs that are
+     * as long as the layout allows: the whole region if it spans these bounds
+     * along x and z, a layer at a time if it spans them along x, and a row at
+     * a time otherwise. Runs are split further where the sections of the
+     * array end.
+     *
+     * @param ids The array
+     * @param min The minimum of the region
+     * @param max The maximum of the region
+     * @param visitor The visitor
+     * @throws PositionOutOfBoundsException If the region isn't within these
+     *     bounds
+     */
+    public void visitRuns(SectionArray ids, Vector3i min, Vector3i max, RunVisitor visitor) {
+        visitRanges(min, max, (from, to, offset) -> ids.visitRange(from, to, offset, visitor));
+    }
+
+    /**
+     * Visits the ranges of indices a region takes up in the layout of these
+     * bounds, as long as the layout allows like {@link #visitRuns}.
+     *
+     * @param min The minimum of the region
+     * @param max The maximum of the region
+     * @param visitor The visitor
+     * @throws PositionOutOfBoundsException If the region isn't within these
+     *     bounds
+     */
+    public void visitRanges(Vector3i min, Vector3i max, RangeVisitor visitor) {
+        checkRange(min.getX(), min.getY(), min.getZ());
+        checkRange(max.getX(), max.getY(), max.getZ());
+        final int runX = max.getX() - min.getX() + 1;
+        final int runZ = max.getZ() - min.getZ() + 1;
+        final int runY = max.getY() - min.getY() + 1;
+        if (runX == this.sizeX) {
+            if (runX * runZ == this.area) {
+                final int from = getIndex(this.minX, min.getY(), this.minZ);
+                visitor.visitRange(from, from + this.area * runY, 0);
+                return;
+            }
+            final int layer = runX * runZ;
+            int offset = 0;
+            for (int y = min.getY(); y <= max.getY(); y++) {
+                final int from = getIndex(this.minX, y, min.getZ());
+                visitor.visitRange(from, from + layer, offset);
+                offset += layer;
+            }
+            return;
+        }
+        int offset = 0;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                final int from = getIndex(min.getX(), y, z);
+                visitor.visitRange(from, from + runX, offset);
+                offset += runX;
+            }
+        }
+    }
+
+    /**
+     * Splits these bounds into boxes that are each a single range of the
+     * layout: as many whole layers as fit in the given number of positions,
+     * or as many rows of a layer if a layer doesn't fit, and at least one
+     * row.
+     *
+     * @param chunkSize The number of positions a box should hold at most
+     * @param visitor The visitor, given the minimum and maximum of each box
+     *     and the index of its first position
+     */
+    public void visitChunks(int chunkSize, ChunkVisitor visitor) {
+        if (this.area <= chunkSize) {
+            final int layers = chunkSize / this.area;
+            for (int y = this.minY; y <= this.maxY; y += layers) {
+                final Vector3i max = new Vector3i(this.maxX, Math.min(this.maxY, y + layers - 1), this.maxZ);
+                visitor.visitChunk(new Vector3i(this.minX, y, this.minZ), max, (y - this.minY) * this.area);
+            }
+            return;
+        }
+        final int rows = Math.max(1, chunkSize / this.sizeX);
+        for (int y = this.minY; y <= this.maxY; y++) {
+            for (int z = this.minZ; z <= this.maxZ; z += rows) {
+                final Vector3i max = new Vector3i(this.maxX, y, Math.min(this.maxZ, z + rows - 1));
+                visitor.visitChunk(new Vector3i(this.minX, y, z), max, getIndex(this.minX, y, z));
+            }
+        }
+    }
+
+    /**
+     * Gets the offset a transform moves positions by, if that is all it does.
+     *
+     * @param transform The transform
+     * @return The offset, or null if the transform also rotates, flips or
+     *     scales
+     */
+    public static Vector3i getTranslation(DiscreteTransform3 transform) {
+        final Vector3i origin = transform.transform(0, 0, 0);
+        if (transform.transform(1, 0, 0).sub(origin).equals(Vector3i.UNIT_X)
+                && transform.transform(0, 1, 0).sub(origin).equals(Vector3i.UNIT_Y)
+                && transform.transform(0, 0, 1).sub(origin).equals(Vector3i.UNIT_Z)) {
+            return origin;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return this.min + " to " + this.max;
+    }
+
+    /**
+     * Visits a range of indices in the layout of some bounds.
+     */
+    @FunctionalInterface
+    public interface RangeVisitor {
+
+        /**
+         * Visits a range of indices.
+         *
+         * @param from The first index
+         * @param to The index after the last
+         * @param offset The index of the first position in the layout of the
+         *     visited region
+         */
+        void visitRange(int from, int to, int offset);
+    }
+
+    /**
+     * Visits a box that is a single range of the layout of some bounds.
+     */
+    @FunctionalInterface
+    public interface ChunkVisitor {
+
+        void visitChunk(Vector3i min, Vector3i max, int index);
+    }
+}
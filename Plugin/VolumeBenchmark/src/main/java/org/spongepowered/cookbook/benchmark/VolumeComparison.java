@@ -0,0 +1,209 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+
+/**
+ * Compares the palette ids of two volumes of the same size, a chunk of
+ * positions at a time.
+ *
+ * <p>The ids of a chunk of the second volume are visited into a scratch
+ * array, translated to the palette of the first, and the runs of the first
+ * volume are then compared against it. Chunks are whole layers, or rows of a
+ * layer if one layer is too large, so the scratch array stays small however
+ * large the volumes are.</p>
+ *
+ * <p>If both volumes are buffers, or views that only move one, their arrays
+ * have the layout of the volumes and are compared a section at a time
+ * instead. Sections a copy still shares with the buffer it was taken from
+ * aren't read at all. Thread safe buffers are always compared through their
+ * runs, which lock the buffer, rather than by reading their arrays.</p>
+ *
+ * <p>Neither volume should be written to while they are compared.</p>
+ */
+final class VolumeComparison {
+
+    // The number of positions compared at a time, unless a single row is
+    // longer
+    private static final int CHUNK_SIZE = SectionArray.SECTION_SIZE;
+
+    /**
+     * Visits the palette ids of a region of a volume in runs.
+     */
+    @FunctionalInterface
+    interface RegionVisitor {
+
+        void visitRuns(Vector3i min, Vector3i max, RunVisitor visitor);
+    }
+
+    private final VolumeBounds bounds;
+    // The offset from positions in the first volume to those in the second
+    private final Vector3i offset;
+    // Maps ids of the second palette to those of the first, -1 if the first
+    // has no id for the value, null if the ids are the same
+    private final int[] translation;
+    // The changes found so far, null to stop at the first one
+    private final VolumeDiff diff;
+    private final int[] scratch;
+    // The index of the first position of the current chunk
+    private int base;
+    private boolean different;
+
+    private VolumeComparison(VolumeBounds bounds, Vector3i otherMin, int[] translation, VolumeDiff diff) {
+        this.bounds = bounds;
+        this.offset = otherMin.sub(bounds.getMin());
+        this.translation = translation;
+        this.diff = diff;
+        this.scratch = new int[Math.min(bounds.getVolume(), Math.max(CHUNK_SIZE, bounds.getSize().getX()))];
+    }
+
+    /**
+     * Compares two block volumes of the same size.
+     *
+     * @param first The first volume
+     * @param second The second volume
+     * @param diff The diff to mark changes in, or null to stop at the first
+     * @return Whether the volumes hold the same blocks
+     */
+    static boolean compareBlocks(PaletteBlockVolume first, PaletteBlockVolume second, VolumeDiff diff) {
+        final VolumeComparison comparison = new VolumeComparison(new VolumeBounds(first.getBlockMin(), first.getBlockMax()),
+                second.getBlockMin(), translate(first.getBlockPalette(), second.getBlockPalette()), diff);
+        final SectionArray firstIds = getBlockIds(first);
+        final SectionArray secondIds = getBlockIds(second);
+        if (firstIds != null && secondIds != null) {
+            return comparison.compareSections(firstIds, secondIds);
+        }
+        return comparison.compareChunks(first::visitBlockRuns, second::visitBlockRuns);
+    }
+
+    /**
+     * Compares two biome volumes of the same size.
+     *
+     * @param first The first volume
+     * @param second The second volume
+     * @param diff The diff to mark changes in, or null to stop at the first
+     * @return Whether the volumes hold the same biomes
+     */
+    static boolean compareBiomes(PaletteBiomeVolume first, PaletteBiomeVolume second, VolumeDiff diff) {
+        final VolumeComparison comparison = new VolumeComparison(new VolumeBounds(first.getBiomeMin(), first.getBiomeMax()),
+                second.getBiomeMin(), translate(first.getBiomePalette(), second.getBiomePalette()), diff);
+        final SectionArray firstIds = getBiomeIds(first);
+        final SectionArray secondIds = getBiomeIds(second);
+        if (firstIds != null && secondIds != null) {
+            return comparison.compareSections(firstIds, secondIds);
+        }
+        return comparison.compareChunks(first::visitBiomeRuns, second::visitBiomeRuns);
+    }
+
+    /**
+     * Gets the ids of a block volume if they are laid out like the volume,
+     * and may be read without locking it.
+     */
+    private static SectionArray getBlockIds(PaletteBlockVolume volume) {
+        final AbstractBlockBuffer buffer;
+        if (volume instanceof AbstractBlockBuffer) {
+            buffer = (AbstractBlockBuffer) volume;
+        } else if (volume instanceof AbstractBlockView) {
+            buffer = ((AbstractBlockView<?>) volume).getCoveredBuffer();
+        } else {
+            return null;
+        }
+        return buffer == null || buffer instanceof ThreadSafeBlockBuffer ? null : buffer.blocks;
+    }
+
+    /**
+     * Gets the ids of a biome volume if they are laid out like the volume,
+     * and may be read without locking it.
+     */
+    private static SectionArray getBiomeIds(PaletteBiomeVolume volume) {
+        final AbstractBiomeBuffer buffer;
+        if (volume instanceof AbstractBiomeBuffer) {
+            buffer = (AbstractBiomeBuffer) volume;
+        } else if (volume instanceof AbstractBiomeView) {
+            buffer = ((AbstractBiomeView<?>) volume).getCoveredBuffer();
+        } else {
+            return null;
+        }
+        return buffer == null || buffer instanceof ThreadSafeBiomeBuffer ? null : buffer.biomes;
+    }
+
+    private static <T> int[] translate(Palette<T> first, Palette<T> second) {
+        if (first == second) {
+            return null;
+        }
+        final int[] translation = new int[second.size()];
+        boolean same = true;
+        for (int id = 0; id < translation.length; id++) {
+            translation[id] = first.getId(second.get(id));
+            same &= translation[id] == id;
+        }
+        // Copies keep the ids of the palette they were copied from
+        return same ? null : translation;
+    }
+
+    private boolean compareSections(SectionArray first, SectionArray second) {
+        final int length = first.length();
+        for (int from = 0; from < length && !isDone(); from += SectionArray.SECTION_SIZE) {
+            if (this.translation == null && first.sharesSection(second, from >>> SectionArray.SECTION_BITS)) {
+                continue;
+            }
+            final int to = Math.min(length, from + SectionArray.SECTION_SIZE);
+            this.base = from;
+            second.visitRange(from, to, 0, this::store);
+            first.visitRange(from, to, 0, this::compare);
+        }
+        return !this.different;
+    }
+
+    private boolean compareChunks(RegionVisitor first, RegionVisitor second) {
+        this.bounds.visitChunks(CHUNK_SIZE, (min, max, index) -> {
+            if (!isDone()) {
+                this.base = index;
+                compareChunk(first, second, min, max);
+            }
+        });
+        return !this.different;
+    }
+
+    private void compareChunk(RegionVisitor first, RegionVisitor second, Vector3i min, Vector3i max) {
+        second.visitRuns(min.add(this.offset), max.add(this.offset), this::store);
+        first.visitRuns(min, max, this::compare);
+    }
+
+    private void store(char[] ids, int from, int to, int offset) {
+        final int[] scratch = this.scratch;
+        final int[] translation = this.translation;
+        if (translation == null) {
+            for (int i = from; i < to; i++) {
+                scratch[offset++] = ids[i];
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                scratch[offset++] = translation[ids[i]];
+            }
+        }
+    }
+
+    private void compare(char[] ids, int from, int to, int offset) {
+        if (isDone()) {
+            return;
+        }
+        final int[] scratch = this.scratch;
+        for (int i = from; i < to; i++, offset++) {
+            if (ids[i] != scratch[offset]) {
+                this.different = true;
+                if (this.diff == null) {
+                    return;
+                }
+                this.diff.mark(this.base + offset);
+            }
+        }
+    }
+
+    /**
+     * Gets whether the comparison can stop, because it only had to find
+     * whether there is a change and has found one.
+     */
+    private boolean isDone() {
+        return this.different && this.diff == null;
+    }
+}
@@ -0,0 +1,145 @@
+package org.spongepowered.cookbook.benchmark;
+
+import com.flowpowered.math.vector.Vector3i;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The positions at which two volumes of the same size differ, in the
+ * coordinates of the first one.
+ *
+ * <p>Changes are kept as a bitmap in the layout of {@link VolumeBounds}, a
+ * bit per position. The changed boxes are worked out from it on request, one
+ * per 16 by 16 by 16 cell of the volume that has changes, so a caller that
+ * only has to resend or redraw what changed doesn't have to look at every
+ * position.</p>
+ */
+public final class VolumeDiff {
+
+    private static final int CELL_BITS = 4;
+
+    private final VolumeBounds bounds;
+    private final long[] changed;
+    private int count;
+
+    VolumeDiff(VolumeBounds bounds) {
+        this.bounds = bounds;
+        this.changed = new long[(bounds.getVolume() + 63) >>> 6];
+    }
+
+    /**
+     * Marks a position as changed. Each position is marked at most once.
+     *
+     * @param index The index of the position
+     */
+    void mark(int index) {
+        this.changed[index >>> 6] |= 1L << index;
+        this.count++;
+    }
+
+    /**
+     * Gets the bounds of the first volume, which the changes are in.
+     *
+     * @return The bounds
+     */
+    public VolumeBounds getBounds() {
+        return this.bounds;
+    }
+
+    public boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    public int getChangedCount() {
+        return this.count;
+    }
+
+    public boolean isChanged(int x, int y, int z) {
+        this.bounds.checkRange(x, y, z);
+        final int index = this.bounds.getIndex(x, y, z);
+        return (this.changed[index >>> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * Gets the changed positions as a bitmap, indexed in the layout of
+     * {@link VolumeBounds}.
+     *
+     * @return A copy of the bitmap
+     */
+    public BitSet toBitSet() {
+        return BitSet.valueOf(this.changed);
+    }
+
+    /**
+     * Gets the smallest box that holds every change.
+     *
+     * @return The box, or null if nothing changed
+     */
+    public VolumeBounds getChangedBounds() {
+        Vector3i min = null;
+        Vector3i max = null;
+        for (VolumeBounds box : getChangedBoxes()) {
+            min = min == null ? box.getMin() : min.min(box.getMin());
+            max = max == null ? box.getMax() : max.max(box.getMax());
+        }
+        return min == null ? null : new VolumeBounds(min, max);
+    }
+
+    /**
+     * Gets the boxes around the changes in each 16 by 16 by 16 cell of the
+     * volume, the cells counted from its minimum. Cells without changes have
+     * no box.
+     *
+     * @return The boxes, ordered like the cells are laid out
+     */
+    public List<VolumeBounds> getChangedBoxes() {
+        final List<VolumeBounds> boxes = new ArrayList<>();
+        if (this.count == 0) {
+            return boxes;
+        }
+        final Vector3i size = this.bounds.getSize();
+        final int sizeX = size.getX();
+        final int area = sizeX * size.getZ();
+        final int cellsX = (sizeX + (1 << CELL_BITS) - 1) >>> CELL_BITS;
+        final int cellsZ = (size.getZ() + (1 << CELL_BITS) - 1) >>> CELL_BITS;
+        final int cellsY = (size.getY() + (1 << CELL_BITS) - 1) >>> CELL_BITS;
+        // The minimum and maximum x, y and z of the changes in each cell
+        final int[][] cells = new int[cellsX * cellsZ * cellsY][];
+        for (int word = 0; word < this.changed.length; word++) {
+            long bits = this.changed[word];
+            while (bits != 0) {
+                final int index = word << 6 | Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                final int y = index / area;
+                final int z = index % area / sizeX;
+                final int x = index % sizeX;
+                final int cell = ((y >>> CELL_BITS) * cellsZ + (z >>> CELL_BITS)) * cellsX + (x >>> CELL_BITS);
+                final int[] box = cells[cell];
+                if (box == null) {
+                    cells[cell] = new int[] {x, y, z, x, y, z};
+                } else {
+                    box[0] = Math.min(box[0], x);
+                    box[1] = Math.min(box[1], y);
+                    box[2] = Math.min(box[2], z);
+                    box[3] = Math.max(box[3], x);
+                    box[4] = Math.max(box[4], y);
+                    box[5] = Math.max(box[5], z);
+                }
+            }
+        }
+        final Vector3i min = this.bounds.getMin();
+        for (int[] box : cells) {
+            if (box != null) {
+                boxes.add(new VolumeBounds(min.add(box[0], box[1], box[2]), min.add(box[3], box[4], box[5])));
+            }
+        }
+        return boxes;
+    }
+
+    @Override
+    public String toString() {
+        return this.count + " changed in " + this.bounds;
+    }
+}